@@ -118,10 +118,17 @@ module KBaseSearchEngine {
 
     /*
       Pagination rules. Default values are: start = 0, count = 50.
+      continuation_token - the continuation_token from a previous search_objects result
+          (optional). The search resumes after the last object returned in that result, and
+          start must be 0 or omitted. The other search parameters should be the same as in the
+          previous search. Unlike start, the cost of fetching a page does not increase with
+          the number of objects skipped, so this should be used to walk through large result
+          sets.
     */
     typedef structure {
         int start;
         int count;
+        string continuation_token;
     } Pagination;
 
     /*
@@ -222,6 +229,8 @@ module KBaseSearchEngine {
           pagination and sorting.
       total - total number of found objects.
       search_time - common time in milliseconds spent.
+      continuation_token - a token that can be provided in Pagination to fetch the next page
+          of results. Absent if there are no more results.
       mapping<access_group_id, narrative_info> access_group_narrative_info - information about
          the workspaces in which the objects in the results reside. This data only applies to
          workspace objects.
@@ -233,6 +242,7 @@ module KBaseSearchEngine {
         int total;
         int search_time;
         mapping<access_group_id, narrative_info> access_group_narrative_info;
+        string continuation_token;
     } SearchObjectsOutput;
 
     /*
@@ -241,6 +251,38 @@ module KBaseSearchEngine {
     funcdef search_objects(SearchObjectsInput params)
         returns (SearchObjectsOutput) authentication required;
 
+    /*
+      Input parameters for the 'multi_search' method.
+      object_searches - a list of searches for objects, as for search_objects (optional).
+      type_searches - a list of searches for type counts, as for search_types (optional).
+    */
+    typedef structure {
+        list<SearchObjectsInput> object_searches;
+        list<SearchTypesInput> type_searches;
+    } MultiSearchInput;
+
+    /*
+      Output results for the 'multi_search' method.
+      object_results - the results of the object searches, in the same order as the input. The
+          search_time for each result is the time spent in the search engine for that search.
+      type_results - the results of the type searches, in the same order as the input. The
+          search_time for each result is the time spent in the search engine for that search.
+      search_time - the total time in milliseconds spent.
+    */
+    typedef structure {
+        list<SearchObjectsOutput> object_results;
+        list<SearchTypesOutput> type_results;
+        int search_time;
+    } MultiSearchOutput;
+
+    /*
+      Run several object and type searches in one request. This is equivalent to calling
+      search_objects and search_types for each search, but the user's permissions are only
+      looked up once and the searches are sent to the search engine together.
+    */
+    funcdef multi_search(MultiSearchInput params)
+        returns (MultiSearchOutput) authentication required;
+
     /*
       Input parameters for get_objects method.
     */
@@ -271,9 +313,13 @@ module KBaseSearchEngine {
     /*
       Input parameters for list_types method.
       type_name - optional parameter; if not specified all types are described.
+      types_version - optional parameter; the types_version returned by a previous call. If
+          the type descriptions have not changed since that call, types is omitted from the
+          output and the client may reuse its copy of the descriptions.
     */
     typedef structure {
         string type_name;
+        string types_version;
     } ListTypesInput;
 
     /*
@@ -305,9 +351,14 @@ module KBaseSearchEngine {
 
     /*
       Output results of list_types method.
+      types - the type descriptions. Omitted if types_version was provided in the input and
+          matches the current version.
+      types_version - the current version of the type descriptions. The version changes if
+          and only if the descriptions change.
     */
     typedef structure {
         mapping<string, TypeDescriptor> types;
+        string types_version;
     } ListTypesOutput;
 
     /*
@@ -198,6 +198,26 @@ public class KBaseSearchEngineClient {
         return res.get(0);
     }
 
+    /**
+     * <p>Original spec-file function name: multi_search</p>
+     * <pre>
+     * Run several object and type searches in one request. This is equivalent to calling
+     * search_objects and search_types for each search, but the user's permissions are only
+     * looked up once and the searches are sent to the search engine together.
+     * </pre>
+     * @param   params   instance of type {@link kbasesearchengine.MultiSearchInput MultiSearchInput}
+     * @return   instance of type {@link kbasesearchengine.MultiSearchOutput MultiSearchOutput}
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public MultiSearchOutput multiSearch(MultiSearchInput params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<MultiSearchOutput>> retType = new TypeReference<List<MultiSearchOutput>>() {};
+        List<MultiSearchOutput> res = caller.jsonrpcCall("KBaseSearchEngine.multi_search", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
     /**
      * <p>Original spec-file function name: get_objects</p>
      * <pre>
@@ -11,6 +11,7 @@ import us.kbase.common.service.RpcContext;
 
 //BEGIN_HEADER
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.URL;
 import java.nio.file.Path;
@@ -18,8 +19,15 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.http.HttpHost;
 import org.slf4j.LoggerFactory;
 
@@ -28,7 +36,7 @@ import com.google.common.collect.ImmutableMap;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import kbasesearchengine.authorization.AccessGroupCache;
-import kbasesearchengine.authorization.AccessGroupProvider;
+import kbasesearchengine.authorization.CachingAuth2Client;
 import kbasesearchengine.authorization.TemporaryAuth2Client;
 import kbasesearchengine.authorization.WorkspaceAccessGroupProvider;
 import kbasesearchengine.common.GUID;
@@ -42,6 +50,7 @@ import kbasesearchengine.main.SearchVersion;
 import kbasesearchengine.main.TemporaryNarrativePruner;
 import kbasesearchengine.main.NarrativeInfoDecorator;
 import kbasesearchengine.search.ElasticIndexingStorage;
+import kbasesearchengine.search.SearchResultCache;
 import kbasesearchengine.system.FileLister;
 import kbasesearchengine.system.ObjectTypeParsingRulesFileParser;
 import kbasesearchengine.system.TypeFileStorage;
@@ -49,7 +58,9 @@ import kbasesearchengine.system.TypeStorage;
 import kbasesearchengine.system.TypeMappingParser;
 import kbasesearchengine.system.YAMLTypeMappingParser;
 import us.kbase.auth.AuthConfig;
+import us.kbase.auth.AuthException;
 import us.kbase.auth.ConfigurableAuthService;
+import us.kbase.common.service.UObject;
 import us.kbase.workspace.WorkspaceClient;
 import kbasesearchengine.common.FileUtil;
 //END_HEADER
@@ -71,6 +82,166 @@ public class KBaseSearchEngineServer extends JsonServerServlet {
     private static final GitInfo GIT = new GitInfo();
     
     private final SearchInterface search;
+    private final NarrativeInfoDecorator narrativeInfoDecorator;
+    private final ConfigurableAuthService authService;
+    
+    /* Exporting is a plain HTTP endpoint rather than a JSON-RPC method, since RPC responses
+     * must be built in memory.
+     */
+    private static final String EXPORT_PATH = "/export";
+    
+    /** Handles requests to export objects, and passes all other requests to the JSON-RPC
+     * handler.
+     *
+     * An export request is a POST to /export with a SearchObjectsInput JSON body and an
+     * auth token in the Authorization header. The matching objects are streamed in the
+     * response as newline delimited ObjectData JSON. If an error occurs after the response has
+     * started, the final line is {"error": "<message>"}.
+     */
+    @Override
+    protected void doPost(final HttpServletRequest request, final HttpServletResponse response)
+            throws ServletException, IOException {
+        if (EXPORT_PATH.equals(request.getPathInfo())) {
+            exportObjects(request, response);
+        } else {
+            super.doPost(request, response);
+        }
+    }
+    
+    private void exportObjects(
+            final HttpServletRequest request,
+            final HttpServletResponse response)
+            throws IOException {
+        final String token = request.getHeader("Authorization");
+        if (token == null || token.trim().isEmpty()) {
+            sendExportError(response, HttpServletResponse.SC_UNAUTHORIZED,
+                    "Authorization header is required");
+            return;
+        }
+        final AuthToken user;
+        try {
+            user = authService.validateToken(token.trim());
+        } catch (AuthException e) {
+            sendExportError(response, HttpServletResponse.SC_UNAUTHORIZED, e.getMessage());
+            return;
+        }
+        final SearchObjectsInput params;
+        try {
+            params = UObject.getMapper().readValue(
+                    request.getInputStream(), SearchObjectsInput.class);
+        } catch (IOException e) {
+            sendExportError(response, HttpServletResponse.SC_BAD_REQUEST,
+                    "Invalid SearchObjectsInput: " + e.getMessage());
+            return;
+        }
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        final PrintWriter writer = response.getWriter();
+        try {
+            search.exportObjects(params, user.getUserName(), od -> {
+                writer.write(UObject.getMapper().writeValueAsString(od));
+                writer.write('\n');
+            });
+        } catch (Exception e) {
+            if (!response.isCommitted()) {
+                response.reset();
+                sendExportError(response, e instanceof IllegalArgumentException ?
+                        HttpServletResponse.SC_BAD_REQUEST :
+                        HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+                return;
+            }
+            writer.write(UObject.getMapper().writeValueAsString(
+                    ImmutableMap.of("error", String.valueOf(e.getMessage()))));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+    
+    private void sendExportError(
+            final HttpServletResponse response,
+            final int status,
+            final String message)
+            throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        final PrintWriter writer = response.getWriter();
+        writer.write(UObject.getMapper().writeValueAsString(
+                ImmutableMap.of("error", String.valueOf(message))));
+        writer.flush();
+    }
+    
+    private static final String SEARCH_CACHE_SIZE = "search-cache-size";
+    private static final String SEARCH_CACHE_LIFETIME_SEC = "search-cache-lifetime-sec";
+    private static final String SEARCH_CACHE_POLL_SEC = "search-cache-write-poll-sec";
+    private static final int CACHE_STATS_LOG_SEC = 10 * 60;
+    
+    private static int getInt(
+            final Map<String, String> config,
+            final String key,
+            final int defaultValue,
+            final int min) {
+        final String value = config.get(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        final int ret;
+        try {
+            ret = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format(
+                    "Parameter %s must be an integer: %s", key, value));
+        }
+        if (ret < min) {
+            throw new IllegalArgumentException(String.format(
+                    "Parameter %s must be at least %s: %s", key, min, value));
+        }
+        return ret;
+    }
+    
+    private void startWriteGenerationPoller(
+            final ElasticIndexingStorage esStorage,
+            final int pollSec,
+            final LineLogger logger) {
+        final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "ElasticIndexingStorage-stats");
+            // don't keep the server alive just for this thread
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                esStorage.updateWriteGenerationsFromStats();
+            } catch (Exception e) {
+                // uncaught exceptions cancel the schedule
+                logger.logError(e);
+            }
+        }, 0, pollSec, TimeUnit.SECONDS);
+    }
+    
+    private void startCacheStatsLogger(
+            final AccessGroupCache accessGroupCache,
+            final CachingAuth2Client authClient,
+            final LineLogger logger) {
+        final ScheduledExecutorService statsLogger = Executors.newSingleThreadScheduledExecutor(
+                r -> {
+                    final Thread t = new Thread(r, "KBaseSearchEngineServer-cachestats");
+                    // don't keep the server alive just for this thread
+                    t.setDaemon(true);
+                    return t;
+                });
+        statsLogger.scheduleWithFixedDelay(() -> {
+            logger.logInfo("Access group cache statistics: " +
+                    accessGroupCache.getStatistics());
+            logger.logInfo("Auth display name cache statistics: " + authClient.getStats());
+        }, CACHE_STATS_LOG_SEC, CACHE_STATS_LOG_SEC, TimeUnit.SECONDS);
+    }
+    
+    @Override
+    public void destroy() {
+        narrativeInfoDecorator.close();
+        super.destroy();
+    }
     
     private void quietLoggers() {
         ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME))
@@ -90,8 +261,8 @@ public class KBaseSearchEngineServer extends JsonServerServlet {
             c.withAllowInsecureURLs(true);
         }
         c.withKBaseAuthServerURL(new URL(authURL));
-        ConfigurableAuthService auth = new ConfigurableAuthService(c);
-        AuthToken kbaseIndexerToken = auth.validateToken(tokenStr);
+        authService = new ConfigurableAuthService(c);
+        AuthToken kbaseIndexerToken = authService.validateToken(tokenStr);
         String elasticHost = config.get("elastic-host");
         int elasticPort = Integer.parseInt(config.get("elastic-port"));
         String esUser = config.get("elastic-user");
@@ -143,8 +314,9 @@ public class KBaseSearchEngineServer extends JsonServerServlet {
         wsClient.setIsInsecureHttpConnectionAllowed(true); //TODO SEC only do if http
         
         // 50k simultaneous users * 1000 group ids each seems like plenty = 50M ints in memory
-        final AccessGroupProvider accessGroupProvider = new AccessGroupCache(
-                new WorkspaceAccessGroupProvider(wsClient), 30, 50000 * 1000);
+        // entries are reloaded in the background after 20s, and are never more than 30s old
+        final AccessGroupCache accessGroupProvider = new AccessGroupCache(
+                new WorkspaceAccessGroupProvider(wsClient), 30, 50000 * 1000, 20, 10);
         
         final ElasticIndexingStorage esStorage = new ElasticIndexingStorage(esHostPort,
                 FileUtil.getOrCreateSubDir(tempDir, "esbulk"));
@@ -153,17 +325,32 @@ public class KBaseSearchEngineServer extends JsonServerServlet {
             esStorage.setEsPassword(esPassword);
         }
         esStorage.setIndexNamePrefix(esIndexPrefix);
+        // results are discarded as soon as a write to the searched indexes is detected.
+        // Workers run in other processes, so their writes are detected by polling the index
+        // stats, and the cache lifetime bounds any remaining staleness.
+        final int searchCacheSize = getInt(config, SEARCH_CACHE_SIZE, 10000, 0);
+        if (searchCacheSize > 0) {
+            esStorage.setSearchResultCache(new SearchResultCache(
+                    getInt(config, SEARCH_CACHE_LIFETIME_SEC, 30, 1), searchCacheSize));
+            startWriteGenerationPoller(
+                    esStorage, getInt(config, SEARCH_CACHE_POLL_SEC, 2, 1), logger);
+        }
         
         // this is a dirty hack so we don't have to provide 2 auth urls in the config
         // update if we ever update the SDK to use the non-legacy endpoints
         final String auth2URL = authURL.split("api")[0];
         
-        search = new TemporaryNarrativePruner(
-                new NarrativeInfoDecorator(
-                        new SearchMethods(accessGroupProvider, esStorage, ss, admins),
-                        new WorkspaceEventHandler(new CloneableWorkspaceClientImpl(wsClient)),
-                        new TemporaryAuth2Client(new URL(auth2URL)),
-                        kbaseIndexerToken.getToken()));
+        // display names rarely change; 10k users * 1h seems reasonable
+        final CachingAuth2Client authClient = new CachingAuth2Client(
+                new TemporaryAuth2Client(new URL(auth2URL)), 60 * 60, 10000);
+        startCacheStatsLogger(accessGroupProvider, authClient, logger);
+        
+        narrativeInfoDecorator = new NarrativeInfoDecorator(
+                new SearchMethods(accessGroupProvider, esStorage, ss, admins),
+                new WorkspaceEventHandler(new CloneableWorkspaceClientImpl(wsClient)),
+                authClient,
+                kbaseIndexerToken.getToken());
+        search = new TemporaryNarrativePruner(narrativeInfoDecorator);
         //END_CONSTRUCTOR
     }
 
@@ -201,6 +388,25 @@ public class KBaseSearchEngineServer extends JsonServerServlet {
         return returnVal;
     }
 
+    /**
+     * <p>Original spec-file function name: multi_search</p>
+     * <pre>
+     * Run several object and type searches in one request. This is equivalent to calling
+     * search_objects and search_types for each search, but the user's permissions are only
+     * looked up once and the searches are sent to the search engine together.
+     * </pre>
+     * @param   params   instance of type {@link kbasesearchengine.MultiSearchInput MultiSearchInput}
+     * @return   instance of type {@link kbasesearchengine.MultiSearchOutput MultiSearchOutput}
+     */
+    @JsonServerMethod(rpc = "KBaseSearchEngine.multi_search", async=true)
+    public MultiSearchOutput multiSearch(MultiSearchInput params, AuthToken authPart, RpcContext jsonRpcContext) throws Exception {
+        MultiSearchOutput returnVal = null;
+        //BEGIN multi_search
+        returnVal = search.multiSearch(params, authPart.getUserName());
+        //END multi_search
+        return returnVal;
+    }
+
     /**
      * <p>Original spec-file function name: get_objects</p>
      * <pre>
@@ -230,7 +436,12 @@ public class KBaseSearchEngineServer extends JsonServerServlet {
     public ListTypesOutput listTypes(ListTypesInput params, RpcContext jsonRpcContext) throws Exception {
         ListTypesOutput returnVal = null;
         //BEGIN list_types
-        returnVal = new ListTypesOutput().withTypes(search.listTypes(params.getTypeName()));
+        final String typesVersion = search.getTypesVersion();
+        returnVal = new ListTypesOutput().withTypesVersion(typesVersion);
+        // the client already has the current descriptions
+        if (!typesVersion.equals(params.getTypesVersion())) {
+            returnVal.withTypes(search.listTypes(params.getTypeName()));
+        }
         //END list_types
         return returnVal;
     }
@@ -16,18 +16,24 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
  * <pre>
  * Input parameters for list_types method.
  * type_name - optional parameter; if not specified all types are described.
+ * types_version - optional parameter; the types_version returned by a previous call. If
+ *     the type descriptions have not changed since that call, types is omitted from the
+ *     output and the client may reuse its copy of the descriptions.
  * </pre>
  * 
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Generated("com.googlecode.jsonschema2pojo")
 @JsonPropertyOrder({
-    "type_name"
+    "type_name",
+    "types_version"
 })
 public class ListTypesInput {
 
     @JsonProperty("type_name")
     private String typeName;
+    @JsonProperty("types_version")
+    private String typesVersion;
     private Map<String, Object> additionalProperties = new HashMap<String, Object>();
 
     @JsonProperty("type_name")
@@ -45,6 +51,21 @@ public class ListTypesInput {
         return this;
     }
 
+    @JsonProperty("types_version")
+    public String getTypesVersion() {
+        return typesVersion;
+    }
+
+    @JsonProperty("types_version")
+    public void setTypesVersion(String typesVersion) {
+        this.typesVersion = typesVersion;
+    }
+
+    public ListTypesInput withTypesVersion(String typesVersion) {
+        this.typesVersion = typesVersion;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -57,7 +78,7 @@ public class ListTypesInput {
 
     @Override
     public String toString() {
-        return ((((("ListTypesInput"+" [typeName=")+ typeName)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((("ListTypesInput"+" [typeName=")+ typeName)+", typesVersion=")+ typesVersion)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
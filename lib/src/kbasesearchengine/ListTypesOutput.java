@@ -15,18 +15,25 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
  * <p>Original spec-file type: ListTypesOutput</p>
  * <pre>
  * Output results of list_types method.
+ * types - the type descriptions. Omitted if types_version was provided in the input and
+ *     matches the current version.
+ * types_version - the current version of the type descriptions. The version changes if
+ *     and only if the descriptions change.
  * </pre>
  * 
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Generated("com.googlecode.jsonschema2pojo")
 @JsonPropertyOrder({
-    "types"
+    "types",
+    "types_version"
 })
 public class ListTypesOutput {
 
     @JsonProperty("types")
     private Map<String, TypeDescriptor> types;
+    @JsonProperty("types_version")
+    private java.lang.String typesVersion;
     private Map<java.lang.String, Object> additionalProperties = new HashMap<java.lang.String, Object>();
 
     @JsonProperty("types")
@@ -44,6 +51,21 @@ public class ListTypesOutput {
         return this;
     }
 
+    @JsonProperty("types_version")
+    public java.lang.String getTypesVersion() {
+        return typesVersion;
+    }
+
+    @JsonProperty("types_version")
+    public void setTypesVersion(java.lang.String typesVersion) {
+        this.typesVersion = typesVersion;
+    }
+
+    public ListTypesOutput withTypesVersion(java.lang.String typesVersion) {
+        this.typesVersion = typesVersion;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<java.lang.String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -56,7 +78,7 @@ public class ListTypesOutput {
 
     @Override
     public java.lang.String toString() {
-        return ((((("ListTypesOutput"+" [types=")+ types)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((("ListTypesOutput"+" [types=")+ types)+", typesVersion=")+ typesVersion)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
@@ -15,6 +15,12 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
  * <p>Original spec-file type: Pagination</p>
  * <pre>
  * Pagination rules. Default values are: start = 0, count = 50.
+ * continuation_token - the continuation_token from a previous search_objects result
+ *     (optional). The search resumes after the last object returned in that result, and
+ *     start must be 0 or omitted. The other search parameters should be the same as in the
+ *     previous search. Unlike start, the cost of fetching a page does not increase with
+ *     the number of objects skipped, so this should be used to walk through large result
+ *     sets.
  * </pre>
  * 
  */
@@ -22,7 +28,8 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 @Generated("com.googlecode.jsonschema2pojo")
 @JsonPropertyOrder({
     "start",
-    "count"
+    "count",
+    "continuation_token"
 })
 public class Pagination {
 
@@ -30,6 +37,8 @@ public class Pagination {
     private Long start;
     @JsonProperty("count")
     private Long count;
+    @JsonProperty("continuation_token")
+    private String continuationToken;
     private Map<String, Object> additionalProperties = new HashMap<String, Object>();
 
     @JsonProperty("start")
@@ -62,6 +71,21 @@ public class Pagination {
         return this;
     }
 
+    @JsonProperty("continuation_token")
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    @JsonProperty("continuation_token")
+    public void setContinuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
+
+    public Pagination withContinuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -74,7 +98,7 @@ public class Pagination {
 
     @Override
     public String toString() {
-        return ((((((("Pagination"+" [start=")+ start)+", count=")+ count)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((((("Pagination"+" [start=")+ start)+", count=")+ count)+", continuationToken=")+ continuationToken)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
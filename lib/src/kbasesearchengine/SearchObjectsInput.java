@@ -85,6 +85,12 @@ public class SearchObjectsInput {
      * <p>Original spec-file type: Pagination</p>
      * <pre>
      * Pagination rules. Default values are: start = 0, count = 50.
+     * continuation_token - the continuation_token from a previous search_objects result
+     *     (optional). The search resumes after the last object returned in that result, and
+     *     start must be 0 or omitted. The other search parameters should be the same as in the
+     *     previous search. Unlike start, the cost of fetching a page does not increase with
+     *     the number of objects skipped, so this should be used to walk through large result
+     *     sets.
      * </pre>
      * 
      */
@@ -244,6 +250,12 @@ public class SearchObjectsInput {
      * <p>Original spec-file type: Pagination</p>
      * <pre>
      * Pagination rules. Default values are: start = 0, count = 50.
+     * continuation_token - the continuation_token from a previous search_objects result
+     *     (optional). The search resumes after the last object returned in that result, and
+     *     start must be 0 or omitted. The other search parameters should be the same as in the
+     *     previous search. Unlike start, the cost of fetching a page does not increase with
+     *     the number of objects skipped, so this should be used to walk through large result
+     *     sets.
      * </pre>
      * 
      */
@@ -256,6 +268,12 @@ public class SearchObjectsInput {
      * <p>Original spec-file type: Pagination</p>
      * <pre>
      * Pagination rules. Default values are: start = 0, count = 50.
+     * continuation_token - the continuation_token from a previous search_objects result
+     *     (optional). The search resumes after the last object returned in that result, and
+     *     start must be 0 or omitted. The other search parameters should be the same as in the
+     *     previous search. Unlike start, the cost of fetching a page does not increase with
+     *     the number of objects skipped, so this should be used to walk through large result
+     *     sets.
      * </pre>
      * 
      */
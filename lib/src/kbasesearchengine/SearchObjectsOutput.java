@@ -21,6 +21,8 @@ import us.kbase.common.service.Tuple5;
  *     pagination and sorting.
  * total - total number of found objects.
  * search_time - common time in milliseconds spent.
+ * continuation_token - a token that can be provided in Pagination to fetch the next page
+ *     of results. Absent if there are no more results.
  * mapping<access_group_id, narrative_info> access_group_narrative_info - information about
  *    the workspaces in which the objects in the results reside. This data only applies to
  *    workspace objects.
@@ -35,7 +37,8 @@ import us.kbase.common.service.Tuple5;
     "objects",
     "total",
     "search_time",
-    "access_group_narrative_info"
+    "access_group_narrative_info",
+    "continuation_token"
 })
 public class SearchObjectsOutput {
 
@@ -43,6 +46,12 @@ public class SearchObjectsOutput {
      * <p>Original spec-file type: Pagination</p>
      * <pre>
      * Pagination rules. Default values are: start = 0, count = 50.
+     * continuation_token - the continuation_token from a previous search_objects result
+     *     (optional). The search resumes after the last object returned in that result, and
+     *     start must be 0 or omitted. The other search parameters should be the same as in the
+     *     previous search. Unlike start, the cost of fetching a page does not increase with
+     *     the number of objects skipped, so this should be used to walk through large result
+     *     sets.
      * </pre>
      * 
      */
@@ -58,12 +67,20 @@ public class SearchObjectsOutput {
     private java.lang.Long searchTime;
     @JsonProperty("access_group_narrative_info")
     private Map<Long, Tuple5 <String, Long, Long, String, String>> accessGroupNarrativeInfo;
+    @JsonProperty("continuation_token")
+    private java.lang.String continuationToken;
     private Map<java.lang.String, Object> additionalProperties = new HashMap<java.lang.String, Object>();
 
     /**
      * <p>Original spec-file type: Pagination</p>
      * <pre>
      * Pagination rules. Default values are: start = 0, count = 50.
+     * continuation_token - the continuation_token from a previous search_objects result
+     *     (optional). The search resumes after the last object returned in that result, and
+     *     start must be 0 or omitted. The other search parameters should be the same as in the
+     *     previous search. Unlike start, the cost of fetching a page does not increase with
+     *     the number of objects skipped, so this should be used to walk through large result
+     *     sets.
      * </pre>
      * 
      */
@@ -76,6 +93,12 @@ public class SearchObjectsOutput {
      * <p>Original spec-file type: Pagination</p>
      * <pre>
      * Pagination rules. Default values are: start = 0, count = 50.
+     * continuation_token - the continuation_token from a previous search_objects result
+     *     (optional). The search resumes after the last object returned in that result, and
+     *     start must be 0 or omitted. The other search parameters should be the same as in the
+     *     previous search. Unlike start, the cost of fetching a page does not increase with
+     *     the number of objects skipped, so this should be used to walk through large result
+     *     sets.
      * </pre>
      * 
      */
@@ -164,6 +187,21 @@ public class SearchObjectsOutput {
         return this;
     }
 
+    @JsonProperty("continuation_token")
+    public java.lang.String getContinuationToken() {
+        return continuationToken;
+    }
+
+    @JsonProperty("continuation_token")
+    public void setContinuationToken(java.lang.String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
+
+    public SearchObjectsOutput withContinuationToken(java.lang.String continuationToken) {
+        this.continuationToken = continuationToken;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<java.lang.String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -176,7 +214,7 @@ public class SearchObjectsOutput {
 
     @Override
     public java.lang.String toString() {
-        return ((((((((((((((("SearchObjectsOutput"+" [pagination=")+ pagination)+", sortingRules=")+ sortingRules)+", objects=")+ objects)+", total=")+ total)+", searchTime=")+ searchTime)+", accessGroupNarrativeInfo=")+ accessGroupNarrativeInfo)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((((((((((((("SearchObjectsOutput"+" [pagination=")+ pagination)+", sortingRules=")+ sortingRules)+", objects=")+ objects)+", total=")+ total)+", searchTime=")+ searchTime)+", accessGroupNarrativeInfo=")+ accessGroupNarrativeInfo)+", continuationToken=")+ continuationToken)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
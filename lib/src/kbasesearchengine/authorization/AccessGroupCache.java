@@ -1,24 +1,39 @@
 package kbasesearchengine.authorization;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Ticker;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.Weigher;
 
 /** A caching layer for access groups. Caches the results from the wrapped
- * {@link AccessGroupProvider} in memory for quick access.
+ * {@link AccessGroupProvider} in memory for quick access. Access groups are stored as
+ * {@link AccessGroupSet}s and are returned in ascending order.
+ * 
+ * Optionally, the cache can refresh entries ahead of their expiration. In this mode, once an
+ * entry is older than the refresh time, the next request for the entry starts a reload of the
+ * entry in the background and returns the stale entry rather than waiting for the reload.
+ * Entries that are not requested before the cache lifetime expires are removed as usual.
  * @author gaprice@lbl.gov
  *
  */
 public class AccessGroupCache implements AccessGroupProvider {
     
-    private final LoadingCache<String, List<Integer>> cache;
+    private final LoadingCache<String, AccessGroups> cache;
+    private final Ticker ticker;
+    private final long refreshNanos;
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong maxStalenessNanos = new AtomicLong();
 
     /** Create a cache.
      * @param provider the {@link AccessGroupProvider} whose results will be cached.
@@ -49,46 +64,183 @@ public class AccessGroupCache implements AccessGroupProvider {
             final int cacheLifeTimeInSec,
             final int cacheSizeInAccessGroups,
             final Ticker ticker) {
+        this(provider, cacheLifeTimeInSec, cacheSizeInAccessGroups, null, 1, ticker);
+    }
+    
+    /** Create a cache that refreshes entries ahead of their expiration.
+     * @param provider the {@link AccessGroupProvider} whose results will be cached.
+     * @param cacheLifeTimeInSec the number of seconds a set of access groups for a user should
+     * remain in the cache. This is the maximum age of an entry returned from the cache.
+     * @param cacheSizeInAccessGroups the maximum number of access groups, across all users, to
+     * store in the cache.
+     * @param refreshAfterSec the number of seconds after which a set of access groups for a user
+     * will be reloaded in the background the next time it is requested. Must be less than the
+     * cache lifetime.
+     * @param maxConcurrentRefreshes the maximum number of entries to reload at the same time.
+     */
+    public AccessGroupCache(
+            final AccessGroupProvider provider,
+            final int cacheLifeTimeInSec,
+            final int cacheSizeInAccessGroups,
+            final int refreshAfterSec,
+            final int maxConcurrentRefreshes) {
+        this(provider, cacheLifeTimeInSec, cacheSizeInAccessGroups, refreshAfterSec,
+                maxConcurrentRefreshes, Ticker.systemTicker());
+    }
+    
+    /** Create a cache that refreshes entries ahead of their expiration for testing purposes.
+     * @param provider the {@link AccessGroupProvider} whose results will be cached.
+     * @param cacheLifeTimeInSec the number of seconds a set of access groups for a user should
+     * remain in the cache. This is the maximum age of an entry returned from the cache.
+     * @param cacheSizeInAccessGroups the maximum number of access groups, across all users, to
+     * store in the cache.
+     * @param refreshAfterSec the number of seconds after which a set of access groups for a user
+     * will be reloaded in the background the next time it is requested. Must be less than the
+     * cache lifetime.
+     * @param maxConcurrentRefreshes the maximum number of entries to reload at the same time.
+     * @param ticker a ticker implementation that allows controlling cache expiration with the
+     * provided ticker rather than waiting for the system clock. This is exposed for testing
+     * purposes.
+     */
+    public AccessGroupCache(
+            final AccessGroupProvider provider,
+            final int cacheLifeTimeInSec,
+            final int cacheSizeInAccessGroups,
+            final int refreshAfterSec,
+            final int maxConcurrentRefreshes,
+            final Ticker ticker) {
+        this(provider, cacheLifeTimeInSec, cacheSizeInAccessGroups, (Integer) refreshAfterSec,
+                maxConcurrentRefreshes, ticker);
+    }
+    
+    private AccessGroupCache(
+            final AccessGroupProvider provider,
+            final int cacheLifeTimeInSec,
+            final int cacheSizeInAccessGroups,
+            final Integer refreshAfterSec,
+            final int maxConcurrentRefreshes,
+            final Ticker ticker) {
         if (provider == null) {
             throw new NullPointerException("provider");
         }
-
+        if (ticker == null) {
+            throw new NullPointerException("ticker");
+        }
         if (cacheLifeTimeInSec < 1) {
             throw new IllegalArgumentException("cache lifetime must be at least one second");
         }
         if (cacheSizeInAccessGroups < 1) {
             throw new IllegalArgumentException("cache size must be at least one");
         }
-        cache = CacheBuilder.newBuilder()
+        if (refreshAfterSec != null) {
+            if (refreshAfterSec < 1 || refreshAfterSec >= cacheLifeTimeInSec) {
+                throw new IllegalArgumentException("refresh time must be at least one second " +
+                        "and less than the cache lifetime");
+            }
+            if (maxConcurrentRefreshes < 1) {
+                throw new IllegalArgumentException(
+                        "maximum concurrent refreshes must be at least one");
+            }
+        }
+        this.ticker = ticker;
+        this.refreshNanos = refreshAfterSec == null ? 0 :
+                TimeUnit.SECONDS.toNanos(refreshAfterSec);
+        final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
                 .ticker(ticker)
                 .expireAfterWrite(cacheLifeTimeInSec, TimeUnit.SECONDS)
+                .recordStats();
+        final CacheLoader<String, AccessGroups> loader = new CacheLoader<String, AccessGroups>() {
+
+            @Override
+            public AccessGroups load(String user) throws Exception {
+                // only read the ticker when needed to keep the ticker reads predictable
+                return new AccessGroups(AccessGroupSet.of(provider.findAccessGroupIds(user)),
+                        refreshAfterSec == null ? 0 : ticker.read());
+            }
+
+        };
+        if (refreshAfterSec != null) {
+            builder.refreshAfterWrite(refreshAfterSec, TimeUnit.SECONDS);
+        }
+        cache = builder
                 .maximumWeight(cacheSizeInAccessGroups)
-                .weigher(new Weigher<String, List<Integer>>() {
+                .weigher(new Weigher<String, AccessGroups>() {
 
                     @Override
-                    public int weigh(String user, List<Integer> accessGroups) {
-                        return accessGroups.size();
+                    public int weigh(String user, AccessGroups accessGroups) {
+                        return accessGroups.accessGroups.size();
                     }
                     
                 })
-                .build(new CacheLoader<String, List<Integer>>() {
-
-                    @Override
-                    public List<Integer> load(String user) throws Exception {
-                        return provider.findAccessGroupIds(user);
-                    }
-
-                });
+                .build(refreshAfterSec == null ? loader : CacheLoader.asyncReloading(
+                        loader, Executors.newFixedThreadPool(maxConcurrentRefreshes, r -> {
+                            final Thread t = new Thread(r, "AccessGroupCache-refresh");
+                            // don't keep the server alive just for this pool
+                            t.setDaemon(true);
+                            return t;
+                        })));
     }
 
     @Override
     public List<Integer> findAccessGroupIds(final String user) throws IOException {
+        return findAccessGroups(user).asList();
+    }
+    
+    @Override
+    public AccessGroupSet findAccessGroups(final String user) throws IOException {
+        final AccessGroups ag;
         try {
-            return cache.get(user);
+            ag = cache.get(user);
         } catch (ExecutionException e) {
             throw (IOException) e.getCause(); // IOE is the only checked exception
             // unchecked exceptions are wrapped in UncheckedExcecutionException
         }
+        if (refreshNanos > 0) {
+            final long age = ticker.read() - ag.loadTimeNanos;
+            if (age > refreshNanos) {
+                staleHits.incrementAndGet();
+                maxStalenessNanos.accumulateAndGet(age, Math::max);
+            }
+        }
+        return ag.accessGroups;
+    }
+    
+    /** Get the hit, miss, and load statistics for the cache.
+     * @return the statistics.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+    
+    /** Get the statistics for the cache as a map of statistic name to value, suitable for
+     * logging or export to a monitoring system. In addition to the standard cache statistics,
+     * the number of stale entries returned while a refresh was pending and the maximum age of
+     * those entries are included.
+     * @return the statistics.
+     */
+    public Map<String, Long> getStatistics() {
+        final CacheStats stats = cache.stats();
+        final Map<String, Long> ret = new LinkedHashMap<>();
+        ret.put("hits", stats.hitCount());
+        ret.put("misses", stats.missCount());
+        ret.put("loads", stats.loadCount());
+        ret.put("loadexceptions", stats.loadExceptionCount());
+        ret.put("totalloadtimems", TimeUnit.NANOSECONDS.toMillis(stats.totalLoadTime()));
+        ret.put("evictions", stats.evictionCount());
+        ret.put("stalehits", staleHits.get());
+        ret.put("maxstalenessms", TimeUnit.NANOSECONDS.toMillis(maxStalenessNanos.get()));
+        return ret;
+    }
+    
+    private static class AccessGroups {
+        
+        private final AccessGroupSet accessGroups;
+        private final long loadTimeNanos;
+        
+        private AccessGroups(final AccessGroupSet accessGroups, final long loadTimeNanos) {
+            this.accessGroups = accessGroups;
+            this.loadTimeNanos = loadTimeNanos;
+        }
     }
 
 }
@@ -6,4 +6,14 @@ import java.util.List;
 public interface AccessGroupProvider {
 	public List<Integer> findAccessGroupIds(String user) throws IOException;
 
+	/** Get the access groups for a user as a compact, immutable set. By default, this
+	 * copies the results of {@link #findAccessGroupIds(String)}.
+	 * @param user the user.
+	 * @return the user's access groups.
+	 * @throws IOException if an IO error occurs.
+	 */
+	public default AccessGroupSet findAccessGroups(final String user) throws IOException {
+		return AccessGroupSet.of(findAccessGroupIds(user));
+	}
+
 }
@@ -0,0 +1,173 @@
+package kbasesearchengine.authorization;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import kbasesearchengine.tools.Utils;
+
+/** An immutable set of access group IDs. The IDs are stored as a sorted primitive array, which
+ * takes a fraction of the memory of a collection of boxed integers and allows for fast
+ * membership checks without copying the IDs into a new set.
+ */
+public class AccessGroupSet {
+
+    private static final AccessGroupSet EMPTY = new AccessGroupSet(new int[0]);
+
+    // sorted, no duplicates
+    private final int[] ids;
+    private final int hash;
+
+    private AccessGroupSet(final int[] ids) {
+        this.ids = ids;
+        this.hash = Arrays.hashCode(ids);
+    }
+
+    /** Create a set of access group IDs. If the IDs are a view returned by {@link #asSet()},
+     * the set backing the view is returned rather than a copy.
+     * @param accessGroupIDs the IDs. Duplicate IDs are ignored.
+     * @return the new set.
+     */
+    public static AccessGroupSet of(final Collection<Integer> accessGroupIDs) {
+        Utils.nonNull(accessGroupIDs, "accessGroupIDs");
+        if (accessGroupIDs instanceof SetView) {
+            return ((SetView) accessGroupIDs).getAccessGroupSet();
+        }
+        if (accessGroupIDs.isEmpty()) {
+            return EMPTY;
+        }
+        final int[] ids = new int[accessGroupIDs.size()];
+        int i = 0;
+        for (final Integer id: accessGroupIDs) {
+            if (id == null) {
+                throw new NullPointerException("Null ID in accessGroupIDs");
+            }
+            ids[i++] = id;
+        }
+        Arrays.sort(ids);
+        int unique = 0;
+        for (i = 0; i < ids.length; i++) {
+            if (unique == 0 || ids[unique - 1] != ids[i]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return new AccessGroupSet(unique == ids.length ? ids : Arrays.copyOf(ids, unique));
+    }
+
+    /** Get an empty set of access group IDs.
+     * @return the empty set.
+     */
+    public static AccessGroupSet empty() {
+        return EMPTY;
+    }
+
+    /** Check whether this set contains an access group ID.
+     * @param accessGroupID the ID to check.
+     * @return true if the ID is in this set.
+     */
+    public boolean contains(final int accessGroupID) {
+        return Arrays.binarySearch(ids, accessGroupID) >= 0;
+    }
+
+    /** Get the number of IDs in this set.
+     * @return the size of the set.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /** Get an unmodifiable view of this set as a {@link Set}. The IDs are not copied, and
+     * iteration proceeds in ascending order.
+     * @return the set view.
+     */
+    public Set<Integer> asSet() {
+        return new SetView();
+    }
+
+    private class SetView extends AbstractSet<Integer> {
+
+        private AccessGroupSet getAccessGroupSet() {
+            return AccessGroupSet.this;
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return o instanceof Integer && AccessGroupSet.this.contains((Integer) o);
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+
+                private int pos = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return pos < ids.length;
+                }
+
+                @Override
+                public Integer next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return ids[pos++];
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    /** Get an unmodifiable view of this set as a {@link List} in ascending order. The IDs are
+     * not copied.
+     * @return the list view.
+     */
+    public List<Integer> asList() {
+        return new AbstractList<Integer>() {
+
+            @Override
+            public Integer get(final int index) {
+                return ids[index];
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final AccessGroupSet other = (AccessGroupSet) obj;
+        return hash == other.hash && Arrays.equals(ids, other.ids);
+    }
+
+    @Override
+    public String toString() {
+        return "AccessGroupSet " + Arrays.toString(ids);
+    }
+}
@@ -0,0 +1,127 @@
+package kbasesearchengine.authorization;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import kbasesearchengine.tools.Utils;
+
+/** A caching layer for a {@link TemporaryAuth2Client}. Caches user display names in memory
+ * so that only users that are not in the cache are requested from the auth service, in a single
+ * request.
+ *
+ * Users that do not exist in the auth service are also cached, and are not shown in the
+ * results.
+ */
+public class CachingAuth2Client extends TemporaryAuth2Client {
+
+    private final TemporaryAuth2Client client;
+    // absent means the user does not exist
+    private final Cache<String, Optional<String>> cache;
+
+    /** Create a cache.
+     * @param client the client whose results will be cached.
+     * @param cacheLifeTimeInSec the number of seconds a display name should remain in the cache.
+     * @param cacheSize the maximum number of display names to store in the cache.
+     */
+    public CachingAuth2Client(
+            final TemporaryAuth2Client client,
+            final int cacheLifeTimeInSec,
+            final int cacheSize) {
+        this(client, cacheLifeTimeInSec, cacheSize, Ticker.systemTicker());
+    }
+
+    /** Create a cache for testing purposes.
+     * @param client the client whose results will be cached.
+     * @param cacheLifeTimeInSec the number of seconds a display name should remain in the cache.
+     * @param cacheSize the maximum number of display names to store in the cache.
+     * @param ticker a ticker implementation that allows controlling cache expiration with the
+     * provided ticker rather than waiting for the system clock. This is exposed for testing
+     * purposes.
+     */
+    public CachingAuth2Client(
+            final TemporaryAuth2Client client,
+            final int cacheLifeTimeInSec,
+            final int cacheSize,
+            final Ticker ticker) {
+        super(getURL(client));
+        Utils.nonNull(ticker, "ticker");
+        if (cacheLifeTimeInSec < 1) {
+            throw new IllegalArgumentException("cache lifetime must be at least one second");
+        }
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("cache size must be at least one");
+        }
+        this.client = client;
+        cache = CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .expireAfterWrite(cacheLifeTimeInSec, TimeUnit.SECONDS)
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+    }
+
+    private static URL getURL(final TemporaryAuth2Client client) {
+        Utils.nonNull(client, "client");
+        return client.getURL();
+    }
+
+    /** Get display names for a set of users. Users that do not exist in the auth service
+     * will not be shown in the results. Only users that are not in the cache are requested from
+     * the auth service.
+     * @param token an auth token.
+     * @param userNames the set of usernames to process.
+     * @return a mapping of username to display name for each user.
+     * @throws IOException if an IO error occurs.
+     * @throws Auth2Exception if the auth service returns an exception.
+     */
+    @Override
+    public Map<String, String> getUserDisplayNames(
+            final String token,
+            final Set<String> userNames)
+            throws IOException, Auth2Exception {
+        Utils.notNullOrEmpty(token, "token cannot be null or whitespace only");
+        Utils.nonNull(userNames, "userNames");
+        final Map<String, String> ret = new HashMap<>();
+        final Set<String> misses = new HashSet<>();
+        for (final String name: userNames) {
+            if (Utils.isNullOrEmpty(name)) {
+                throw new IllegalArgumentException("Null or whitespace only entry in userNames");
+            }
+            final Optional<String> displayName = cache.getIfPresent(name);
+            if (displayName == null) {
+                misses.add(name);
+            } else if (displayName.isPresent()) {
+                ret.put(name, displayName.get());
+            }
+        }
+        if (!misses.isEmpty()) {
+            final Map<String, String> fetched = client.getUserDisplayNames(token, misses);
+            for (final String name: misses) {
+                final Optional<String> displayName = Optional.fromNullable(fetched.get(name));
+                cache.put(name, displayName);
+                if (displayName.isPresent()) {
+                    ret.put(name, displayName.get());
+                }
+            }
+        }
+        return ret;
+    }
+
+    /** Get the hit and miss statistics for the cache. Each user counts as a separate request.
+     * @return the statistics.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+}
@@ -2,7 +2,6 @@ package kbasesearchengine.authorization;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Collections;
@@ -10,6 +9,13 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -20,6 +26,8 @@ import kbasesearchengine.tools.Utils;
 
 /** A temporary client for the KBase auth2 service. At some point this will be replaced with
  * a real client. Only supports methods that are needed right now.
+ * 
+ * All clients share a pool of keep-alive connections to the auth service.
  * @author gaprice@lbl.gov
  *
  */
@@ -32,6 +40,18 @@ public class TemporaryAuth2Client {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
     
+    private static final int MAX_CONNECTIONS = 100;
+    private static final int MAX_CONNECTIONS_PER_HOST = 20;
+    
+    private static final CloseableHttpClient HTTP_CLIENT = buildHttpClient();
+    
+    private static CloseableHttpClient buildHttpClient() {
+        final PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
+        cm.setMaxTotal(MAX_CONNECTIONS);
+        cm.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_HOST);
+        return HttpClients.custom().setConnectionManager(cm).build();
+    }
+    
     private final URL authURL;
     
     public TemporaryAuth2Client(URL authURL) {
@@ -76,27 +96,29 @@ public class TemporaryAuth2Client {
         }
         final String users = String.join(",", userNames);
         
-        final URL target;
-        try {
-            target = new URL(authURL.toString() + "api/V2/users?list=" + users);
-        } catch (MalformedURLException e) {
-            throw new RuntimeException("this should never happen", e); 
-        }
-        final HttpURLConnection conn = (HttpURLConnection) target.openConnection();
-        conn.setRequestMethod("GET");
-        conn.setRequestProperty("accept", "application/json");
-        conn.setRequestProperty("authorization", token);
-        conn.setDoOutput(true);
+        final HttpGet get = new HttpGet(authURL.toString() + "api/V2/users?list=" + users);
+        get.setHeader("accept", "application/json");
+        get.setHeader("authorization", token);
         
-        if (conn.getResponseCode() != 200) {
-            try (final InputStream error = conn.getErrorStream()) {
-                throw toException(error, conn.getResponseCode());
+        try (final CloseableHttpResponse resp = HTTP_CLIENT.execute(get)) {
+            final int code = resp.getStatusLine().getStatusCode();
+            final HttpEntity entity = resp.getEntity();
+            if (entity == null) {
+                throw new Auth2Exception(String.format(
+                        "Auth service responded with code %s and no content", code));
+            }
+            try (final InputStream input = entity.getContent()) {
+                if (code != 200) {
+                    throw toException(input, code);
+                }
+                // really we should translate to a string and catch json exceptions in case the
+                // url points to a non-auth service. Getting a 200 in that case seems pretty
+                // unlikely though.
+                return MAPPER.readValue(input, MAP_STRING_TYPE_REFERENCE);
+            } finally {
+                // read any remaining content so the connection can be reused
+                EntityUtils.consumeQuietly(entity);
             }
-        }
-        // really we should translate to a string and catch json exceptions in case the url
-        // points to a non-auth service. Getting a 200 in that case seems pretty unlikely though.
-        try (final InputStream input = conn.getInputStream()) {
-            return MAPPER.readValue(input, MAP_STRING_TYPE_REFERENCE);
         }
     }
 
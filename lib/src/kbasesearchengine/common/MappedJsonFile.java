@@ -0,0 +1,214 @@
+package kbasesearchengine.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import kbasesearchengine.tools.Utils;
+import us.kbase.common.service.UObject;
+
+/** A memory mapped JSON file, from which parsers placed at a location in the JSON may be
+ * created.
+ *
+ * Each parser reads the file from the mapped pages rather than through buffered file streams,
+ * so repeatedly parsing the file reads from the page cache without read system calls. The bytes
+ * are still copied from the mapped pages into each parser's buffer.
+ * Files larger than 2GB are mapped in multiple segments.
+ *
+ * The mappings are released when the file is {@link #close() closed}. Otherwise they are
+ * released when the mapped buffers are garbage collected, which may be long after the file is
+ * deleted.
+ */
+public class MappedJsonFile implements Closeable {
+
+    private static final long SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    private final Path file;
+    private final ObjectJsonPath dataPath;
+    private final List<MappedByteBuffer> segments;
+    private boolean closed = false;
+
+    /** Map a JSON file into memory. The file is not parsed until a parser is requested.
+     * @param file the file to map.
+     * @param dataPath the path to the location in the JSON at which parsers will be placed.
+     * Array indexes are specified as integers.
+     * @throws IOException if the file could not be mapped.
+     */
+    public MappedJsonFile(final Path file, final ObjectJsonPath dataPath) throws IOException {
+        Utils.nonNull(file, "file");
+        Utils.nonNull(dataPath, "dataPath");
+        this.file = file;
+        this.dataPath = dataPath;
+        final List<MappedByteBuffer> segs = new ArrayList<>();
+        try (final FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = fc.size();
+            for (long pos = 0; pos < size; pos += SEGMENT_SIZE) {
+                segs.add(fc.map(MapMode.READ_ONLY, pos, Math.min(SEGMENT_SIZE, size - pos)));
+            }
+        }
+        segments = Collections.unmodifiableList(segs);
+    }
+
+    /** Get the mapped file.
+     * @return the file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /** Get the path to the location in the JSON at which parsers are placed.
+     * @return the path.
+     */
+    public ObjectJsonPath getDataPath() {
+        return dataPath;
+    }
+
+    /** Get a parser placed at the start of the JSON value at the data path. The next token
+     * returned from the parser is the first token of the value.
+     * @return a new parser.
+     * @throws IOException if the JSON could not be parsed, the path does not exist in
+     * the JSON, or the file has been closed.
+     */
+    public JsonParser getPlacedStream() throws IOException {
+        final JsonParser p = UObject.getMapper().getFactory().createParser(getInputStream());
+        try {
+            for (final String item: dataPath.getPathItems()) {
+                placeParser(p, item);
+            }
+        } catch (IOException | RuntimeException e) {
+            p.close();
+            throw e;
+        }
+        return p;
+    }
+
+    /** Get a stream of the entire file, read from the mapped pages.
+     * @return a new stream.
+     * @throws IOException if the file has been closed.
+     */
+    public synchronized InputStream getInputStream() throws IOException {
+        if (closed) {
+            throw new IOException("Mapped file " + file + " is closed");
+        }
+        return new SegmentInputStream(segments);
+    }
+
+    /** Release the memory mappings. Any parsers or streams obtained from this instance must be
+     * closed before closing the file, as reading unmapped memory may crash the JVM. Further
+     * calls to {@link #getPlacedStream()} or {@link #getInputStream()} will fail. Closing a
+     * closed file has no effect.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (final MappedByteBuffer seg: segments) {
+            unmap(seg);
+        }
+    }
+
+    /* Java 8 has no public API for unmapping a buffer. Use the buffer's cleaner, and if it's
+     * not available, leave the mapping to the garbage collector.
+     */
+    private static void unmap(final MappedByteBuffer buffer) {
+        try {
+            final Method getCleaner = buffer.getClass().getMethod("cleaner");
+            getCleaner.setAccessible(true);
+            final Object cleaner = getCleaner.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // nothing to do, the mapping is released when the buffer is collected
+        }
+    }
+
+    private void placeParser(final JsonParser p, final String pathItem) throws IOException {
+        final JsonToken t = p.nextToken();
+        if (t == JsonToken.START_OBJECT) {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                if (pathItem.equals(p.getCurrentName())) {
+                    return;
+                }
+                p.nextToken();
+                p.skipChildren();
+            }
+        } else if (t == JsonToken.START_ARRAY) {
+            final int index;
+            try {
+                index = Integer.parseInt(pathItem);
+            } catch (NumberFormatException e) {
+                throw pathNotFound();
+            }
+            for (int i = 0; i < index; i++) {
+                final JsonToken elem = p.nextToken();
+                if (elem == null || elem == JsonToken.END_ARRAY) {
+                    throw pathNotFound();
+                }
+                p.skipChildren();
+            }
+            return;
+        }
+        throw pathNotFound();
+    }
+
+    private IOException pathNotFound() {
+        return new IOException(String.format("Path %s does not exist in JSON file %s",
+                dataPath, file));
+    }
+
+    private static class SegmentInputStream extends InputStream {
+
+        private final Iterator<MappedByteBuffer> segments;
+        private ByteBuffer current = ByteBuffer.allocate(0);
+
+        private SegmentInputStream(final List<MappedByteBuffer> segments) {
+            this.segments = segments.iterator();
+        }
+
+        private boolean hasRemaining() {
+            while (!current.hasRemaining()) {
+                if (!segments.hasNext()) {
+                    return false;
+                }
+                // duplicate so parsers don't share buffer positions
+                current = segments.next().duplicate();
+            }
+            return true;
+        }
+
+        @Override
+        public int read() {
+            return hasRemaining() ? current.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(len, current.remaining());
+            current.get(b, off, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package kbasesearchengine.events;
+
+import kbasesearchengine.tools.Utils;
+
+/** A {@link ChildStatusEvent} that failed processing, along with the error that caused the
+ * failure.
+ */
+public class FailedChildStatusEvent {
+
+    private final ChildStatusEvent event;
+    private final String errorCode;
+    private final Throwable error;
+    private final boolean omitStackTrace;
+
+    /** Create a failed child event.
+     * @param event the child event.
+     * @param errorCode a 20 character or less string identifying the error type.
+     * @param error the error.
+     * @param omitStackTrace true to not store the stack trace of the error, e.g. when many
+     * child events of the same parent fail for the same reason.
+     */
+    public FailedChildStatusEvent(
+            final ChildStatusEvent event,
+            final String errorCode,
+            final Throwable error,
+            final boolean omitStackTrace) {
+        Utils.nonNull(event, "event");
+        Utils.notNullOrEmpty(errorCode, "errorCode cannot be null or whitespace only");
+        Utils.nonNull(error, "error");
+        this.event = event;
+        this.errorCode = errorCode;
+        this.error = error;
+        this.omitStackTrace = omitStackTrace;
+    }
+
+    /** Get the child event.
+     * @return the child event.
+     */
+    public ChildStatusEvent getEvent() {
+        return event;
+    }
+
+    /** Get the code for the error.
+     * @return the error code.
+     */
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    /** Get the error.
+     * @return the error.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /** Check whether the stack trace of the error should be omitted from storage.
+     * @return true if the stack trace should not be stored.
+     */
+    public boolean isStackTraceOmitted() {
+        return omitStackTrace;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((error == null) ? 0 : error.hashCode());
+        result = prime * result + ((errorCode == null) ? 0 : errorCode.hashCode());
+        result = prime * result + ((event == null) ? 0 : event.hashCode());
+        result = prime * result + (omitStackTrace ? 1231 : 1237);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        FailedChildStatusEvent other = (FailedChildStatusEvent) obj;
+        if (error == null) {
+            if (other.error != null) {
+                return false;
+            }
+        } else if (!error.equals(other.error)) {
+            return false;
+        }
+        if (errorCode == null) {
+            if (other.errorCode != null) {
+                return false;
+            }
+        } else if (!errorCode.equals(other.errorCode)) {
+            return false;
+        }
+        if (event == null) {
+            if (other.event != null) {
+                return false;
+            }
+        } else if (!event.equals(other.event)) {
+            return false;
+        }
+        if (omitStackTrace != other.omitStackTrace) {
+            return false;
+        }
+        return true;
+    }
+}
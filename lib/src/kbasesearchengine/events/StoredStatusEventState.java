@@ -0,0 +1,122 @@
+package kbasesearchengine.events;
+
+import java.time.Instant;
+
+import com.google.common.base.Optional;
+
+import kbasesearchengine.tools.Utils;
+
+/** The processing state of a {@link StoredStatusEvent}, without the event itself or any
+ * error information. Reading only the state is much cheaper than reading the entire stored
+ * event and is sufficient for tracking the progress of events that are already known.
+ */
+public class StoredStatusEventState {
+
+    private final StatusEventID id;
+    private final StatusEventProcessingState state;
+    private final Optional<Instant> updateTime;
+    private final Optional<String> updater;
+
+    /** Create the event state.
+     * @param id the ID of the event.
+     * @param state the processing state of the event.
+     * @param updateTime the time the processing state was last updated, or null if the state
+     * has never been updated.
+     * @param updater the ID of the entity that last updated the processing state, or null.
+     * Ignored if updateTime is null.
+     */
+    public StoredStatusEventState(
+            final StatusEventID id,
+            final StatusEventProcessingState state,
+            final Instant updateTime,
+            final String updater) {
+        Utils.nonNull(id, "id");
+        Utils.nonNull(state, "state");
+        this.id = id;
+        this.state = state;
+        this.updateTime = Optional.fromNullable(updateTime);
+        if (updateTime == null || Utils.isNullOrEmpty(updater)) {
+            this.updater = Optional.absent();
+        } else {
+            this.updater = Optional.of(updater);
+        }
+    }
+
+    /** Get the ID of the event.
+     * @return the ID.
+     */
+    public StatusEventID getID() {
+        return id;
+    }
+
+    /** Get the processing state of the event.
+     * @return the state.
+     */
+    public StatusEventProcessingState getState() {
+        return state;
+    }
+
+    /** Get the time the processing state was last updated, if any.
+     * @return the update time.
+     */
+    public Optional<Instant> getUpdateTime() {
+        return updateTime;
+    }
+
+    /** Get the ID of the entity that last updated the processing state, if any.
+     * @return the updater.
+     */
+    public Optional<String> getUpdater() {
+        return updater;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((id == null) ? 0 : id.hashCode());
+        result = prime * result + ((state == null) ? 0 : state.hashCode());
+        result = prime * result + ((updateTime == null) ? 0 : updateTime.hashCode());
+        result = prime * result + ((updater == null) ? 0 : updater.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        StoredStatusEventState other = (StoredStatusEventState) obj;
+        if (id == null) {
+            if (other.id != null) {
+                return false;
+            }
+        } else if (!id.equals(other.id)) {
+            return false;
+        }
+        if (state != other.state) {
+            return false;
+        }
+        if (updateTime == null) {
+            if (other.updateTime != null) {
+                return false;
+            }
+        } else if (!updateTime.equals(other.updateTime)) {
+            return false;
+        }
+        if (updater == null) {
+            if (other.updater != null) {
+                return false;
+            }
+        } else if (!updater.equals(other.updater)) {
+            return false;
+        }
+        return true;
+    }
+}
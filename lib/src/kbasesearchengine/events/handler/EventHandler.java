@@ -44,7 +44,8 @@ public interface EventHandler {
     
     /** The equivalent of {@link #load(List, Path) load(Arrays.asList(guid), tempfile)}
      * @param guid the globally unique ID of the source object to load.
-     * @param file a file in which to store the object's data, which is expected to exist.
+     * @param file a file in which to store the object's data. Implementations may hold small
+     * objects in memory, in which case the file may not exist after loading.
      * @return the source data.
      * @throws IndexingException if an error occurred loading the data.
      * @throws RetriableIndexingException if a retriable error occurred loading the data.
@@ -56,7 +57,9 @@ public interface EventHandler {
      * expected in the guids field.
      * @param guids the path to the object from an accessible object, or only the object's guid
      * if it is accessible.
-     * @param file a file in which to store the object's data, which is expected to exist.
+     * @param file a file in which to store the object's data. Implementations may hold small
+     * objects in memory, in which case the file may not exist after loading. In either case the
+     * data is available via {@link SourceData#getDataParser()}.
      * @return the object's source data.
      * @throws IndexingException if an error occurred loading the data.
      * @throws RetriableIndexingException if a retriable error occurred loading the data.
@@ -64,6 +67,17 @@ public interface EventHandler {
     SourceData load(List<GUID> guids, Path file)
             throws IndexingException, RetriableIndexingException;
 
+    /** Load an object's metadata, including the MD5 of the data if available, without loading
+     * the data. {@link SourceData#hasData()} is false for the returned instance.
+     * @param guids the path to the object from an accessible object, or only the object's guid
+     * if it is accessible.
+     * @return the object's metadata.
+     * @throws IndexingException if an error occurred loading the metadata.
+     * @throws RetriableIndexingException if a retriable error occurred loading the metadata.
+     */
+    SourceData loadMetadata(List<GUID> guids)
+            throws IndexingException, RetriableIndexingException;
+
     /** Build a set of reference paths from a path to the current object and the references found
      * in the current object.
      * @param refpath a reference path to the current object.
@@ -0,0 +1,446 @@
+package kbasesearchengine.events.handler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.common.MappedJsonFile;
+import kbasesearchengine.common.ObjectJsonPath;
+import kbasesearchengine.events.ChildStatusEvent;
+import kbasesearchengine.events.StatusEvent;
+import kbasesearchengine.events.StatusEventType;
+import kbasesearchengine.events.StoredStatusEvent;
+import kbasesearchengine.events.exceptions.ErrorType;
+import kbasesearchengine.events.exceptions.IndexingException;
+import kbasesearchengine.events.exceptions.RetriableIndexingException;
+import kbasesearchengine.events.exceptions.UnprocessableEventIndexingException;
+import kbasesearchengine.system.StorageObjectType;
+import kbasesearchengine.tools.Utils;
+import us.kbase.common.service.UObject;
+
+/** A handler that serves objects from a directory of JSON files rather than an external
+ * service. Along with an in memory event storage system, this allows running the indexer in a
+ * single process with no external dependencies other than the search storage, e.g. for
+ * benchmarking the indexing pipeline.
+ *
+ * Each version of an object is stored in the file
+ * &lt;root directory&gt;/&lt;access group ID&gt;/&lt;object ID&gt;/&lt;version&gt;.json.
+ * The file contains a JSON object with the keys:
+ * <ul>
+ * <li>name - the name of the object. Required.</li>
+ * <li>creator - the user that created the object. Required.</li>
+ * <li>type - the type of the object, without a version. Required.</li>
+ * <li>typever - the integer version of the type. Optional.</li>
+ * <li>timestamp - the ISO8601 timestamp of the object version, e.g.
+ * 2018-02-25T21:08:04.123Z. Required.</li>
+ * <li>copier, module, method, commit, version, and md5 - optional strings; see
+ * {@link SourceData}.</li>
+ * <li>tags - an optional list of search tags.</li>
+ * <li>data - the object data. Required.</li>
+ * </ul>
+ * When the data is loaded, the file is memory mapped and both the metadata and the data are
+ * read from the mapping, and so the file passed to the {@link #load(List, Path)} methods is
+ * never created.
+ *
+ * {@link StatusEventType#COPY_ACCESS_GROUP} events expand to
+ * {@link StatusEventType#NEW_VERSION} events for every object version in the access group
+ * directory, and {@link StatusEventType#NEW_ALL_VERSIONS} events expand to
+ * {@link StatusEventType#NEW_VERSION} events for every version of the object.
+ */
+public class FileEventHandler implements EventHandler {
+
+    private static final String FILE_EXT = ".json";
+
+    private static final String KEY_NAME = "name";
+    private static final String KEY_CREATOR = "creator";
+    private static final String KEY_TYPE = "type";
+    private static final String KEY_TYPE_VER = "typever";
+    private static final String KEY_TIMESTAMP = "timestamp";
+    private static final String KEY_COPIER = "copier";
+    private static final String KEY_MODULE = "module";
+    private static final String KEY_METHOD = "method";
+    private static final String KEY_COMMIT = "commit";
+    private static final String KEY_VERSION = "version";
+    private static final String KEY_MD5 = "md5";
+    private static final String KEY_TAGS = "tags";
+    private static final String KEY_DATA = "data";
+
+    private static final ObjectJsonPath DATA_PATH = new ObjectJsonPath(new String[] {KEY_DATA});
+
+    private static final Set<StatusEventType> EXPANDABLES = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList(
+                    StatusEventType.NEW_ALL_VERSIONS,
+                    StatusEventType.COPY_ACCESS_GROUP)));
+
+    // sorts numeric names numerically and falls back to lexical order for other names
+    private static final Comparator<String> NAME_ORDER = Comparator
+            .comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+
+    private final String storageCode;
+    private final Path rootDirectory;
+
+    /** Create the handler.
+     * @param storageCode the storage code for the events this handler processes.
+     * @param rootDirectory the directory containing the object files.
+     */
+    public FileEventHandler(final String storageCode, final Path rootDirectory) {
+        Utils.notNullOrEmpty(storageCode, "storageCode cannot be null or whitespace only");
+        Utils.nonNull(rootDirectory, "rootDirectory");
+        if (!Files.isDirectory(rootDirectory)) {
+            throw new IllegalArgumentException(rootDirectory + " is not a directory");
+        }
+        this.storageCode = storageCode;
+        this.rootDirectory = rootDirectory;
+    }
+
+    @Override
+    public String getStorageCode() {
+        return storageCode;
+    }
+
+    // the object metadata, without the data
+    private static class ObjectInfo {
+
+        private final Path file;
+        private final GUID guid;
+        private final StorageObjectType type;
+        private final Instant timestamp;
+        private final Map<String, Object> meta;
+        private final boolean hasData;
+
+        private ObjectInfo(
+                final Path file,
+                final GUID guid,
+                final StorageObjectType type,
+                final Instant timestamp,
+                final Map<String, Object> meta,
+                final boolean hasData) {
+            this.file = file;
+            this.guid = guid;
+            this.type = type;
+            this.timestamp = timestamp;
+            this.meta = meta;
+            this.hasData = hasData;
+        }
+
+        private String getString(final String key) {
+            final Object value = meta.get(key);
+            return value == null ? null : value.toString();
+        }
+    }
+
+    @Override
+    public SourceData load(final GUID guid, final Path file)
+            throws IndexingException, RetriableIndexingException {
+        Utils.nonNull(guid, "guid");
+        return load(Arrays.asList(guid), file);
+    }
+
+    @Override
+    public SourceData load(final List<GUID> guids, final Path file)
+            throws IndexingException, RetriableIndexingException {
+        Utils.nonNull(guids, "guids");
+        Utils.noNulls(guids, "null item in guids");
+        Utils.nonNull(file, "file");
+        if (guids.isEmpty()) {
+            throw new IllegalArgumentException("guids cannot be empty");
+        }
+        // there are no permissions to traverse, so the reference path is ignored
+        final GUID guid = resolveVersion(guids.get(guids.size() - 1));
+        final Path objectFile = getObjectFile(guid);
+        // the metadata is read from the mapping so the file is only read once
+        final MappedJsonFile mapped;
+        try {
+            mapped = new MappedJsonFile(objectFile, DATA_PATH);
+        } catch (IOException e) {
+            throw handleException(objectFile, e);
+        }
+        try {
+            final ObjectInfo info = readObjectInfo(objectFile, guid, mapped);
+            if (!info.hasData) {
+                throw new UnprocessableEventIndexingException(ErrorType.OTHER,
+                        "No data in object file " + info.file);
+            }
+            return buildSourceData(info, SourceData.getMappedBuilder(
+                    mapped, info.getString(KEY_NAME), info.getString(KEY_CREATOR)));
+        } catch (IndexingException | RetriableIndexingException | RuntimeException e) {
+            mapped.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public SourceData loadMetadata(final List<GUID> guids)
+            throws IndexingException, RetriableIndexingException {
+        Utils.nonNull(guids, "guids");
+        Utils.noNulls(guids, "null item in guids");
+        if (guids.isEmpty()) {
+            throw new IllegalArgumentException("guids cannot be empty");
+        }
+        final ObjectInfo info = getObjectInfo(guids.get(guids.size() - 1));
+        return buildSourceData(info, SourceData.getMetadataBuilder(
+                info.getString(KEY_NAME), info.getString(KEY_CREATOR)));
+    }
+
+    private SourceData buildSourceData(final ObjectInfo info, final SourceData.Builder b) {
+        b.withNullableCopier(info.getString(KEY_COPIER))
+                .withNullableModule(info.getString(KEY_MODULE))
+                .withNullableMethod(info.getString(KEY_METHOD))
+                .withNullableCommitHash(info.getString(KEY_COMMIT))
+                .withNullableVersion(info.getString(KEY_VERSION))
+                .withNullableMD5(info.getString(KEY_MD5));
+        final Object tags = info.meta.get(KEY_TAGS);
+        if (tags instanceof List) {
+            for (final Object tag: (List<?>) tags) {
+                if (tag != null && !Utils.isNullOrEmpty(tag.toString())) {
+                    b.withSourceTag(tag.toString().trim());
+                }
+            }
+        }
+        return b.build();
+    }
+
+    private ObjectInfo getObjectInfo(final GUID guid)
+            throws IndexingException, RetriableIndexingException {
+        final GUID resolved = resolveVersion(guid);
+        return readObjectInfo(getObjectFile(resolved), resolved, null);
+    }
+
+    // returns the guid of the object version, using the latest version if none is specified
+    private GUID resolveVersion(final GUID guid)
+            throws IndexingException, RetriableIndexingException {
+        checkStorageCode(guid.getStorageCode());
+        final int version;
+        if (guid.getVersion() == null) {
+            final List<Integer> versions = getVersions(getObjectDirectory(
+                    guid.getAccessGroupId(), guid.getAccessGroupObjectId()));
+            if (versions.isEmpty()) {
+                throw new UnprocessableEventIndexingException(
+                        ErrorType.GUID_NOT_FOUND, "No such object: " + guid);
+            }
+            version = versions.get(versions.size() - 1);
+        } else {
+            version = guid.getVersion();
+        }
+        return new GUID(storageCode, guid.getAccessGroupId(),
+                guid.getAccessGroupObjectId(), version, null, null);
+    }
+
+    private Path getObjectFile(final GUID guid) throws UnprocessableEventIndexingException {
+        return getObjectDirectory(guid.getAccessGroupId(), guid.getAccessGroupObjectId())
+                .resolve(guid.getVersion() + FILE_EXT);
+    }
+
+    private Path getObjectDirectory(final Integer accessGroupID, final String objectID)
+            throws UnprocessableEventIndexingException {
+        if (accessGroupID == null || Utils.isNullOrEmpty(objectID) ||
+                objectID.contains("/") || objectID.contains("\\") || objectID.startsWith(".")) {
+            throw new UnprocessableEventIndexingException(ErrorType.OTHER, String.format(
+                    "Illegal object address: %s/%s", accessGroupID, objectID));
+        }
+        return rootDirectory.resolve(accessGroupID.toString()).resolve(objectID);
+    }
+
+    // returns the sorted versions of an object, or an empty list if the object doesn't exist
+    private List<Integer> getVersions(final Path objectDir) throws RetriableIndexingException {
+        final List<Integer> versions = new ArrayList<>();
+        for (final String name: listDirectory(objectDir)) {
+            if (name.endsWith(FILE_EXT)) {
+                try {
+                    versions.add(Integer.parseInt(
+                            name.substring(0, name.length() - FILE_EXT.length())));
+                } catch (NumberFormatException e) {
+                    // not an object version, ignore
+                }
+            }
+        }
+        Collections.sort(versions);
+        return versions;
+    }
+
+    // returns the sorted file names in the directory, or an empty list if it doesn't exist
+    private List<String> listDirectory(final Path dir) throws RetriableIndexingException {
+        if (!Files.isDirectory(dir)) {
+            return Collections.emptyList();
+        }
+        final List<String> names = new ArrayList<>();
+        try (final DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (final Path p: ds) {
+                names.add(p.getFileName().toString());
+            }
+        } catch (IOException e) {
+            throw new RetriableIndexingException(ErrorType.OTHER,
+                    "Error listing directory " + dir + ": " + e.getMessage(), e);
+        }
+        Collections.sort(names, NAME_ORDER);
+        return names;
+    }
+
+    // mapped is the mapped file if available, or null to read the file directly
+    private ObjectInfo readObjectInfo(
+            final Path file,
+            final GUID guid,
+            final MappedJsonFile mapped)
+            throws IndexingException, RetriableIndexingException {
+        final Map<String, Object> meta;
+        try {
+            meta = readMetadata(mapped == null ? Files.newInputStream(file) :
+                    mapped.getInputStream());
+        } catch (IOException e) {
+            throw handleException(file, e);
+        }
+        final Object name = meta.get(KEY_NAME);
+        final Object creator = meta.get(KEY_CREATOR);
+        final Object type = meta.get(KEY_TYPE);
+        final Object timestamp = meta.get(KEY_TIMESTAMP);
+        final Object typever = meta.get(KEY_TYPE_VER);
+        if (!(name instanceof String) || !(creator instanceof String) ||
+                !(type instanceof String) || !(timestamp instanceof String) ||
+                (typever != null && !(typever instanceof Integer))) {
+            throw new UnprocessableEventIndexingException(ErrorType.OTHER,
+                    "Missing or illegal object metadata in file " + file);
+        }
+        try {
+            return new ObjectInfo(
+                    file,
+                    guid,
+                    StorageObjectType.fromNullableVersion(
+                            storageCode, (String) type, (Integer) typever),
+                    Instant.parse((String) timestamp),
+                    meta,
+                    meta.remove(KEY_DATA) != null);
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new UnprocessableEventIndexingException(ErrorType.OTHER,
+                    "Illegal object metadata in file " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /* reads all the top level keys other than the data. If the data key is present it maps to
+     * true.
+     */
+    private Map<String, Object> readMetadata(final InputStream is) throws IOException {
+        try (final JsonParser p = UObject.getMapper().getFactory().createParser(is)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException("Expected a JSON object", p.getCurrentLocation());
+            }
+            final Map<String, Object> meta = new HashMap<>();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                final String key = p.getCurrentName();
+                p.nextToken();
+                if (KEY_DATA.equals(key)) {
+                    meta.put(KEY_DATA, true);
+                    p.skipChildren();
+                } else {
+                    meta.put(key, p.readValueAs(Object.class));
+                }
+            }
+            return meta;
+        }
+    }
+
+    // throws unprocessable exceptions for missing or bad files, returns retriable exceptions
+    private RetriableIndexingException handleException(final Path file, final IOException e)
+            throws UnprocessableEventIndexingException {
+        if (e instanceof NoSuchFileException) {
+            throw new UnprocessableEventIndexingException(ErrorType.GUID_NOT_FOUND,
+                    "No such object file: " + file, e);
+        }
+        if (e instanceof JsonProcessingException) {
+            throw new UnprocessableEventIndexingException(ErrorType.OTHER,
+                    "Illegal object file " + file + ": " + e.getMessage(), e);
+        }
+        return new RetriableIndexingException(ErrorType.OTHER,
+                "Error reading object file " + file + ": " + e.getMessage(), e);
+    }
+
+    @Override
+    public Map<GUID, String> buildReferencePaths(
+            final List<GUID> refpath,
+            final Set<GUID> refs) {
+        final String refPrefix = refpath == null || refpath.isEmpty() ? "" :
+            refpath.stream().map(g -> g.toRefString()).collect(Collectors.joining(";")) + ";";
+        return refs.stream().collect(Collectors.toMap(r -> r, r -> refPrefix + r.toRefString()));
+    }
+
+    @Override
+    public Set<ResolvedReference> resolveReferences(
+            final List<GUID> refpath,
+            final Set<GUID> refsToResolve)
+            throws IndexingException, RetriableIndexingException {
+        final Set<ResolvedReference> ret = new HashSet<>();
+        for (final GUID ref: refsToResolve) {
+            final ObjectInfo info = getObjectInfo(ref);
+            ret.add(new ResolvedReference(ref, info.guid, info.type, info.timestamp));
+        }
+        return ret;
+    }
+
+    @Override
+    public boolean isExpandable(final StoredStatusEvent parentEvent) {
+        checkStorageCode(parentEvent.getEvent().getStorageCode());
+        return EXPANDABLES.contains(parentEvent.getEvent().getEventType());
+    }
+
+    @Override
+    public Iterable<ChildStatusEvent> expand(final StoredStatusEvent event)
+            throws IndexingException, RetriableIndexingException {
+        checkStorageCode(event.getEvent().getStorageCode());
+        final StatusEvent ev = event.getEvent();
+        final int accessGroupID = ev.getAccessGroupId().get();
+        final List<String> objectIDs;
+        if (StatusEventType.COPY_ACCESS_GROUP.equals(ev.getEventType())) {
+            objectIDs = listDirectory(rootDirectory.resolve(Integer.toString(accessGroupID)));
+        } else if (StatusEventType.NEW_ALL_VERSIONS.equals(ev.getEventType())) {
+            objectIDs = Arrays.asList(ev.getAccessGroupObjectId().get());
+        } else {
+            throw new IllegalArgumentException("Unexpandable event type: " + ev.getEventType());
+        }
+        final List<ChildStatusEvent> children = new ArrayList<>();
+        for (final String objectID: objectIDs) {
+            final Path objectDir = getObjectDirectory(accessGroupID, objectID);
+            for (final int version: getVersions(objectDir)) {
+                final ObjectInfo info = readObjectInfo(objectDir.resolve(version + FILE_EXT),
+                        new GUID(storageCode, accessGroupID, objectID, version, null, null),
+                        null);
+                children.add(new ChildStatusEvent(
+                        StatusEvent.getBuilder(info.type, info.timestamp,
+                                StatusEventType.NEW_VERSION)
+                                .withNullableAccessGroupID(accessGroupID)
+                                .withNullableObjectID(objectID)
+                                .withNullableVersion(version)
+                                .withNullableisPublic(ev.isPublic().orNull())
+                                .build(),
+                        event.getID()));
+            }
+        }
+        return children;
+    }
+
+    private void checkStorageCode(final String storageCode) {
+        if (!this.storageCode.equals(storageCode)) {
+            throw new IllegalArgumentException("This handler only accepts "
+                    + this.storageCode + " events");
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package kbasesearchengine.events.handler;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.google.common.base.Optional;
 
+import kbasesearchengine.common.MappedJsonFile;
 import kbasesearchengine.tools.Utils;
 import us.kbase.common.service.UObject;
 
@@ -25,6 +28,7 @@ public class SourceData {
     private final Optional<String> version;
     private final Optional<String> md5;
     private final Set<String> sourceTags;
+    private final Optional<MappedJsonFile> mappedData;
     
     private SourceData(
             final UObject data,
@@ -36,7 +40,8 @@ public class SourceData {
             final Optional<String> commitHash,
             final Optional<String> version,
             final Optional<String> md5,
-            final Set<String> sourceTags) {
+            final Set<String> sourceTags,
+            final Optional<MappedJsonFile> mappedData) {
         this.data = data;
         this.name = name;
         this.creator = creator;
@@ -47,14 +52,57 @@ public class SourceData {
         this.version = version;
         this.md5 = md5;
         this.sourceTags = Collections.unmodifiableSet(sourceTags);
+        this.mappedData = mappedData;
+    }
+    
+    /** Check whether the data was loaded, or only the metadata.
+     * @return true if the data is available.
+     */
+    public boolean hasData() {
+        return data != null || mappedData.isPresent();
     }
     
     /** Get the data.
      * @return the data.
+     * @throws IllegalStateException if only the metadata was loaded, or if the data is only
+     * available from the {@link #getMappedData() mapped file}.
      */
     public UObject getData() {
+        checkData();
+        if (data == null) {
+            throw new IllegalStateException(
+                    "The data for " + name + " is only available from the mapped file");
+        }
         return data;
     }
+    
+    private void checkData() {
+        if (!hasData()) {
+            throw new IllegalStateException("Only the metadata for " + name + " was loaded");
+        }
+    }
+
+    /** Get the memory mapped file containing the data, if the data is memory mapped.
+     * @return the mapped data or absent.
+     */
+    public Optional<MappedJsonFile> getMappedData() {
+        return mappedData;
+    }
+    
+    /** Get a parser placed at the start of the data. If the data is memory mapped, the parser
+     * reads from the mapped file. Otherwise this is equivalent to
+     * {@link UObject#getPlacedStream()} for the {@link #getData() data}.
+     * @return a new parser.
+     * @throws IOException if the parser could not be created.
+     * @throws IllegalStateException if only the metadata was loaded.
+     */
+    public JsonParser getDataParser() throws IOException {
+        checkData();
+        if (mappedData.isPresent()) {
+            return mappedData.get().getPlacedStream();
+        }
+        return data.getPlacedStream();
+    }
 
     /** Get the name of the data.
      * @return the data name.
@@ -126,9 +174,36 @@ public class SourceData {
      * @return a builder.
      */
     public static Builder getBuilder(final UObject data, final String name, final String creator) {
+        Utils.nonNull(data, "data");
         return new Builder(data, name, creator);
     }
     
+    /** Get a builder for a SourceData instance where the data is only available from a memory
+     * mapped file, which avoids creating a {@link UObject} that would never be read.
+     * {@link #getDataParser()} must be used to read the data.
+     * @param mappedData the mapped data.
+     * @param name the name of the data.
+     * @param creator the creator of the data.
+     * @return a builder.
+     */
+    public static Builder getMappedBuilder(
+            final MappedJsonFile mappedData,
+            final String name,
+            final String creator) {
+        Utils.nonNull(mappedData, "mappedData");
+        return new Builder(null, name, creator).withNullableMappedData(mappedData);
+    }
+    
+    /** Get a builder for a SourceData instance that contains only the metadata for the data,
+     * for example to decide whether the data needs to be loaded.
+     * @param name the name of the data.
+     * @param creator the creator of the data.
+     * @return a builder.
+     */
+    public static Builder getMetadataBuilder(final String name, final String creator) {
+        return new Builder(null, name, creator);
+    }
+    
     /** A builder for SourceData instances.
      * @author gaprice@lbl.gov
      *
@@ -145,9 +220,10 @@ public class SourceData {
         private Optional<String> version = Optional.absent();
         private Optional<String> md5 = Optional.absent();
         private final Set<String> sourceTags = new HashSet<>();
+        private Optional<MappedJsonFile> mappedData = Optional.absent();
         
+        // data is null for a metadata only or mapped instance
         private Builder(final UObject data, final String name, final String creator) {
-            Utils.nonNull(data, "data");
             Utils.notNullOrEmpty(name, "name cannot be null or the empty string");
             Utils.notNullOrEmpty(creator, "creator cannot be null or the empty string");
             this.data = data;
@@ -227,12 +303,22 @@ public class SourceData {
             return this;
         }
         
+        /** Add a memory mapped copy of the data. If present, parsers returned by
+         * {@link SourceData#getDataParser()} read the data from the mapped file.
+         * @param mappedData the mapped data.
+         * @return this builder.
+         */
+        public Builder withNullableMappedData(final MappedJsonFile mappedData) {
+            this.mappedData = Optional.fromNullable(mappedData);
+            return this;
+        }
+        
         /** Build the SourceData instance.
          * @return the SourceData.
          */
         public SourceData build() {
             return new SourceData(data, name, creator, copier, module, method, commitHash,
-                    version, md5, sourceTags);
+                    version, md5, sourceTags, mappedData);
         }
     }
     
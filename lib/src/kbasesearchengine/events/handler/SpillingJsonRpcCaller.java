@@ -0,0 +1,199 @@
+package kbasesearchengine.events.handler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.base.Optional;
+
+import kbasesearchengine.tools.Utils;
+import us.kbase.auth.AuthToken;
+import us.kbase.common.service.JsonClientException;
+import us.kbase.common.service.JsonTokenStream;
+import us.kbase.common.service.ServerException;
+import us.kbase.common.service.UObject;
+import us.kbase.common.service.UnauthorizedException;
+
+/** Makes JSON-RPC 1.1 calls to a KBase service and keeps the response in memory if it is small
+ * enough, writing it to a file otherwise.
+ *
+ * The KBase service clients can only stream a response to a file or deserialize all of it into
+ * a tree, so a response that is to be parsed lazily always pays for creating, writing and
+ * deleting a file. This caller instead reads the response into memory until it exceeds the
+ * maximum in memory size, and only then writes it, including the bytes already read, to the
+ * file. A response that declares a length larger than the maximum is written directly to the
+ * file.
+ */
+public class SpillingJsonRpcCaller {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final URL url;
+    private final Optional<AuthToken> token;
+    private final boolean allowInsecureHttp;
+    private final long maxInMemorySize;
+
+    /** Create a caller.
+     * @param url the url of the service.
+     * @param token the token with which to authenticate calls, or null to make unauthenticated
+     * calls.
+     * @param allowInsecureHttp true to allow sending the token over an http, rather than https,
+     * connection.
+     * @param maxInMemorySize the maximum size, in bytes, of a response that will be held in
+     * memory.
+     */
+    public SpillingJsonRpcCaller(
+            final URL url,
+            final AuthToken token,
+            final boolean allowInsecureHttp,
+            final long maxInMemorySize) {
+        Utils.nonNull(url, "url");
+        if (maxInMemorySize < 0) {
+            throw new IllegalArgumentException("maxInMemorySize must be at least 0");
+        }
+        this.url = url;
+        this.token = Optional.fromNullable(token);
+        this.allowInsecureHttp = allowInsecureHttp;
+        this.maxInMemorySize = maxInMemorySize;
+    }
+
+    /** Call a method.
+     * @param method the name of the method, including the module, e.g. Workspace.administer.
+     * @param params the parameters of the method.
+     * @param file the file in which to store the response if it is too large to hold in memory.
+     * The file is not created if the response is held in memory.
+     * @return the response.
+     * @throws IOException if the service could not be contacted or the response could not be
+     * stored.
+     * @throws JsonClientException if the service returned an error.
+     */
+    public Response call(final String method, final List<?> params, final Path file)
+            throws IOException, JsonClientException {
+        Utils.notNullOrEmpty(method, "method cannot be null or whitespace only");
+        Utils.nonNull(params, "params");
+        Utils.nonNull(file, "file");
+        if (token.isPresent() && !"https".equals(url.getProtocol()) && !allowInsecureHttp) {
+            throw new UnauthorizedException(
+                    "Refusing to send a token over the insecure connection to " + url);
+        }
+        final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", "application/json");
+        if (token.isPresent()) {
+            conn.setRequestProperty("Authorization", token.get().getToken());
+        }
+        final Map<String, Object> request = new HashMap<>();
+        request.put("version", "1.1");
+        request.put("method", method);
+        request.put("params", params);
+        request.put("id", UUID.randomUUID().toString());
+        try (final OutputStream os = conn.getOutputStream()) {
+            UObject.getMapper().writeValue(os, request);
+        }
+        final int code = conn.getResponseCode();
+        if (code != HttpURLConnection.HTTP_OK) {
+            throwError(conn, code);
+        }
+        try (final InputStream is = conn.getInputStream()) {
+            return read(is, conn.getContentLengthLong(), file);
+        }
+    }
+
+    private void throwError(final HttpURLConnection conn, final int code)
+            throws IOException, ServerException {
+        final String httpError = String.format("%s returned HTTP code %s: %s",
+                url, code, conn.getResponseMessage());
+        final Object response;
+        try (final InputStream es = conn.getErrorStream()) {
+            if (es == null) {
+                throw new IOException(httpError);
+            }
+            response = UObject.getMapper().readValue(es, Object.class);
+        } catch (JsonProcessingException e) {
+            throw new IOException(httpError, e);
+        }
+        if (!(response instanceof Map) ||
+                !(((Map<?, ?>) response).get("error") instanceof Map)) {
+            throw new IOException(httpError);
+        }
+        final Map<?, ?> error = (Map<?, ?>) ((Map<?, ?>) response).get("error");
+        final Object errCode = error.get("code");
+        throw new ServerException(
+                (String) error.get("message"),
+                errCode instanceof Number ? ((Number) errCode).intValue() : 0,
+                (String) error.get("name"),
+                (String) error.get("error"));
+    }
+
+    private Response read(final InputStream is, final long length, final Path file)
+            throws IOException {
+        if (length > maxInMemorySize) {
+            Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+            return new Response(null, file);
+        }
+        final ByteArrayOutputStream mem = new ByteArrayOutputStream(
+                length < 0 ? BUFFER_SIZE : (int) length);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = is.read(buffer)) >= 0) {
+            if (mem.size() + read > maxInMemorySize) {
+                try (final OutputStream os = Files.newOutputStream(file)) {
+                    mem.writeTo(os);
+                    do {
+                        os.write(buffer, 0, read);
+                    } while ((read = is.read(buffer)) >= 0);
+                }
+                return new Response(null, file);
+            }
+            mem.write(buffer, 0, read);
+        }
+        return new Response(mem.toByteArray(), null);
+    }
+
+    /** The response to a call, held either in memory or in a file. */
+    public static class Response {
+
+        private final Optional<byte[]> bytes;
+        private final Optional<Path> file;
+
+        private Response(final byte[] bytes, final Path file) {
+            this.bytes = Optional.fromNullable(bytes);
+            this.file = Optional.fromNullable(file);
+        }
+
+        /** Get the response if it is held in memory.
+         * @return the bytes of the response, or absent if the response is in a file.
+         */
+        public Optional<byte[]> getBytes() {
+            return bytes;
+        }
+
+        /** Get the file containing the response if it is not held in memory.
+         * @return the file, or absent if the response is held in memory.
+         */
+        public Optional<Path> getFile() {
+            return file;
+        }
+
+        /** Get the response as a token stream. The returned stream must be placed at a location
+         * in the response with {@link JsonTokenStream#setRoot(List)} before it is read.
+         * @return a token stream over the response.
+         * @throws IOException if the stream could not be created.
+         */
+        public JsonTokenStream getTokenStream() throws IOException {
+            return new JsonTokenStream(bytes.isPresent() ? bytes.get() : file.get().toFile());
+        }
+    }
+}
@@ -20,9 +20,14 @@ import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.DateTimeFormatterBuilder;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import kbasesearchengine.common.GUID;
+import kbasesearchengine.common.MappedJsonFile;
+import kbasesearchengine.common.ObjectJsonPath;
 import kbasesearchengine.events.ChildStatusEvent;
 import kbasesearchengine.events.StatusEvent;
 import kbasesearchengine.events.StatusEventType;
@@ -35,6 +40,7 @@ import kbasesearchengine.events.exceptions.IndexingExceptionUncheckedWrapper;
 import kbasesearchengine.events.exceptions.RetriableIndexingException;
 import kbasesearchengine.events.exceptions.RetriableIndexingExceptionUncheckedWrapper;
 import kbasesearchengine.events.exceptions.UnprocessableEventIndexingException;
+import kbasesearchengine.main.LineLogger;
 import kbasesearchengine.system.StorageObjectType;
 import kbasesearchengine.tools.Utils;
 import us.kbase.common.service.JsonClientException;
@@ -77,6 +83,13 @@ public class WorkspaceEventHandler implements EventHandler {
     
     private static final String META_SEARCH_TAGS = "searchtags";
     
+    // the location of the object in a getObjects response
+    private static final List<String> RESPONSE_OBJECT_PATH = Arrays.asList(
+            "result", "0", "data", "0");
+    // the location of the object data in a getObjects response
+    private static final ObjectJsonPath RESPONSE_DATA_PATH = new ObjectJsonPath(
+            new String[] {"result", "0", "data", "0", "data"});
+    
     private static final TypeReference<List<Tuple11<Long, String, String, String,
             Long, String, Long, String, String, Long, Map<String, String>>>> OBJ_TYPEREF =
                     new TypeReference<List<Tuple11<Long, String, String, String,
@@ -88,14 +101,55 @@ public class WorkspaceEventHandler implements EventHandler {
                             String,Map<String,String>>>() {};
     
     private final CloneableWorkspaceClient ws;
+    private final long maxInMemoryObjectSize;
+    private final boolean memoryMap;
+    private final LineLogger logger;
     
-    /** Create a handler.
+    /** Create a handler. Object data is always stored in the file provided to the
+     * {@link #load(List, Path)} methods and is read from the file as a stream.
      * @param clonableWorkspaceClient a workspace client to use when contacting the workspace
      * service.
      */
     public WorkspaceEventHandler(final CloneableWorkspaceClient clonableWorkspaceClient) {
         Utils.nonNull(clonableWorkspaceClient, "clonableWorkspaceClient");
         ws = clonableWorkspaceClient;
+        maxInMemoryObjectSize = 0;
+        memoryMap = false;
+        logger = null;
+    }
+    
+    /** Create a handler that keeps small objects in memory.
+     * 
+     * When in memory storage is enabled objects are downloaded with a
+     * {@link SpillingJsonRpcCaller} rather than the workspace client. If the workspace response
+     * containing the object is no larger than the maximum in memory size, the raw bytes of the
+     * response are held in memory, the file provided to the {@link #load(List, Path)} methods is
+     * never created, and the data is parsed lazily from the bytes. Otherwise the response is
+     * written to and read from the file.
+     * @param clonableWorkspaceClient a workspace client to use when contacting the workspace
+     * service.
+     * @param maxInMemoryObjectSize the maximum size, in bytes, of a workspace response for which
+     * the object data will be held in memory rather than in the file provided to the
+     * {@link #load(List, Path)} methods. 0 disables in memory storage.
+     * @param memoryMap true to memory map the files in which object data is stored, rather than
+     * reading them as streams. If a file cannot be mapped an error is logged and the file is read
+     * as a stream.
+     * @param logger a logger for errors that do not prevent loading an object.
+     */
+    public WorkspaceEventHandler(
+            final CloneableWorkspaceClient clonableWorkspaceClient,
+            final long maxInMemoryObjectSize,
+            final boolean memoryMap,
+            final LineLogger logger) {
+        Utils.nonNull(clonableWorkspaceClient, "clonableWorkspaceClient");
+        Utils.nonNull(logger, "logger");
+        if (maxInMemoryObjectSize < 0) {
+            throw new IllegalArgumentException("maxInMemoryObjectSize must be at least 0");
+        }
+        ws = clonableWorkspaceClient;
+        this.maxInMemoryObjectSize = maxInMemoryObjectSize;
+        this.memoryMap = memoryMap;
+        this.logger = logger;
     }
     
     @Override
@@ -116,7 +170,79 @@ public class WorkspaceEventHandler implements EventHandler {
         Utils.nonNull(guids, "guids");
         Utils.noNulls(guids, "null item in guids");
         Utils.nonNull(file, "file");
+        if (maxInMemoryObjectSize > 0) {
+            return loadSizeAdaptive(guids, file);
+        }
         final ObjectData ret = getObjectData(guids, file);
+        return buildSourceData(ret, SourceData.getBuilder(
+                ret.getData(), ret.getInfo().getE2(), ret.getCreator())
+                .withNullableMappedData(mapData(file)));
+    }
+    
+    // keeps the raw bytes rather than a deserialized tree, which is several times larger
+    private SourceData loadSizeAdaptive(final List<GUID> guids, final Path file)
+            throws RetriableIndexingException, IndexingException {
+        final WorkspaceClient wc = ws.getClient();
+        final ObjectData ret;
+        final SourceData.Builder b;
+        try {
+            final SpillingJsonRpcCaller.Response res = new SpillingJsonRpcCaller(
+                    wc.getURL(), wc.getToken(), wc.isInsecureHttpConnectionAllowed(),
+                    maxInMemoryObjectSize)
+                    .call("Workspace.administer", Arrays.asList(getObjectsCommand(
+                            new GetObjects2Params().withObjects(Arrays.asList(
+                                    new ObjectSpecification().withRef(toWSRefPath(guids)))))),
+                            file);
+            ret = readObjectInfo(res);
+            final MappedJsonFile mapped = res.getFile().isPresent() ? mapData(file) : null;
+            if (mapped == null) {
+                b = SourceData.getBuilder(new UObject(res.getTokenStream().setRoot(
+                        Arrays.asList(RESPONSE_DATA_PATH.getPathItems()))),
+                        ret.getInfo().getE2(), ret.getCreator());
+            } else {
+                b = SourceData.getMappedBuilder(mapped, ret.getInfo().getE2(), ret.getCreator());
+            }
+        } catch (IOException e) {
+            throw handleException(e);
+        } catch (JsonClientException e) {
+            throw handleException(e);
+        }
+        return buildSourceData(ret, b);
+    }
+    
+    // reads everything in the response other than the object data
+    private static ObjectData readObjectInfo(final SpillingJsonRpcCaller.Response response)
+            throws IOException {
+        final ObjectNode info = UObject.getMapper().createObjectNode();
+        try (final JsonParser p = response.getTokenStream().setRoot(RESPONSE_OBJECT_PATH)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("No object found in workspace response");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = p.getCurrentName();
+                p.nextToken();
+                if ("data".equals(field)) {
+                    p.skipChildren();
+                } else {
+                    info.set(field, UObject.getMapper().readTree(p));
+                }
+            }
+        }
+        return UObject.getMapper().treeToValue(info, ObjectData.class);
+    }
+    
+    @Override
+    public SourceData loadMetadata(final List<GUID> guids)
+            throws IndexingException, RetriableIndexingException {
+        Utils.nonNull(guids, "guids");
+        Utils.noNulls(guids, "null item in guids");
+        final ObjectData ret = getObjectMetadata(guids);
+        return buildSourceData(ret, SourceData.getMetadataBuilder(
+                ret.getInfo().getE2(), ret.getCreator()));
+    }
+
+    private SourceData buildSourceData(final ObjectData ret, final SourceData.Builder b)
+            throws RetriableIndexingException, IndexingException {
         final List<String> tags = getTags(ret);
         // we'll assume here that there's only one provenance action. This may need more thought
         // if that's not true.
@@ -126,9 +252,7 @@ public class WorkspaceEventHandler implements EventHandler {
         if (ret.getCopied() == null && ret.getCopySourceInaccessible() == 0) {
             copier = null;
         }
-        final SourceData.Builder b = SourceData.getBuilder(
-                ret.getData(), ret.getInfo().getE2(), ret.getCreator())
-                .withNullableCopier(copier)
+        b.withNullableCopier(copier)
                 .withNullableMD5(ret.getInfo().getE9());
                 //TODO CODE get the timestamp from ret rather than using event timestamp
         for (final String tag: tags) {
@@ -213,6 +337,21 @@ public class WorkspaceEventHandler implements EventHandler {
     }
     
     
+    // returns null if the data is to be read as a stream
+    private MappedJsonFile mapData(final Path file) {
+        if (!memoryMap) {
+            return null;
+        }
+        try {
+            return new MappedJsonFile(file, RESPONSE_DATA_PATH);
+        } catch (IOException e) {
+            logger.logError(String.format(
+                    "[WorkspaceEventHandler] Could not memory map %s, reading it as a stream: %s",
+                    file, e.getMessage()));
+            return null;
+        }
+    }
+    
     private ObjectData getObjectData(final List<GUID> guids, final Path file)
             throws RetriableIndexingException, IndexingException {
         // create a new client since we're setting a file for the next response
@@ -221,12 +360,27 @@ public class WorkspaceEventHandler implements EventHandler {
         final WorkspaceClient wc = ws.getClientClone();
         wc.setStreamingModeOn(true);
         wc._setFileForNextRpcResponse(file.toFile());
+        return getObjects(wc, new GetObjects2Params().withObjects(
+                Arrays.asList(new ObjectSpecification().withRef(toWSRefPath(guids)))));
+    }
+    
+    private ObjectData getObjectMetadata(final List<GUID> guids)
+            throws RetriableIndexingException, IndexingException {
+        return getObjects(ws.getClient(), new GetObjects2Params().withNoData(1L).withObjects(
+                Arrays.asList(new ObjectSpecification().withRef(toWSRefPath(guids)))));
+    }
+    
+    private static Map<String, Object> getObjectsCommand(final GetObjects2Params params) {
         final Map<String, Object> command = new HashMap<>();
         command.put("command", "getObjects");
-        command.put("params", new GetObjects2Params().withObjects(
-                Arrays.asList(new ObjectSpecification().withRef(toWSRefPath(guids)))));
+        command.put("params", params);
+        return command;
+    }
+    
+    private ObjectData getObjects(final WorkspaceClient wc, final GetObjects2Params params)
+            throws RetriableIndexingException, IndexingException {
         try {
-            return wc.administer(new UObject(command))
+            return wc.administer(new UObject(getObjectsCommand(params)))
                     .asClassInstance(GetObjects2Results.class)
                     .getData().get(0);
         } catch (IOException e) {
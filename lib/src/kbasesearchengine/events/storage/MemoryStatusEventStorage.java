@@ -0,0 +1,380 @@
+package kbasesearchengine.events.storage;
+
+import static kbasesearchengine.events.storage.StatusEventStorageUtils.DEFAULT_WORKER_CODES_SET;
+import static kbasesearchengine.events.storage.StatusEventStorageUtils.MAX_RETURNED_EVENTS;
+import static kbasesearchengine.events.storage.StatusEventStorageUtils.OMITTED_TRACE;
+import static kbasesearchengine.events.storage.StatusEventStorageUtils.checkErrorCode;
+import static kbasesearchengine.events.storage.StatusEventStorageUtils.getErrorMessage;
+import static kbasesearchengine.events.storage.StatusEventStorageUtils.getStackTrace;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.google.common.base.Optional;
+
+import kbasesearchengine.events.ChildStatusEvent;
+import kbasesearchengine.events.FailedChildStatusEvent;
+import kbasesearchengine.events.StatusEvent;
+import kbasesearchengine.events.StatusEventID;
+import kbasesearchengine.events.StatusEventProcessingState;
+import kbasesearchengine.events.StoredChildStatusEvent;
+import kbasesearchengine.events.StoredStatusEvent;
+import kbasesearchengine.events.StoredStatusEventState;
+import kbasesearchengine.tools.Utils;
+
+/** An implementation of {@link StatusEventStorage} that keeps events in memory. The
+ * implementation is thread safe and follows the same state and claim semantics as
+ * {@link MongoDBStatusEventStorage}, including truncation of error information, and so is
+ * suitable for running the indexer in a single process without a database or for benchmarking
+ * the indexing pipeline without the overhead of the storage system.
+ *
+ * Events are lost when the process exits. Errors are never thrown by the storage system.
+ */
+public class MemoryStatusEventStorage implements StatusEventStorage {
+
+    // orders events by timestamp, and then by storage order for events with the same timestamp
+    private static final Comparator<Event> EVENT_ORDER = Comparator
+            .comparing((Event e) -> e.event.getTimestamp())
+            .thenComparingLong(e -> e.sequence);
+
+    private final Clock clock;
+
+    // all fields below are guarded by this
+    private final Map<StatusEventID, Event> events = new HashMap<>();
+    private final Map<StatusEventProcessingState, TreeSet<Event>> byState = new HashMap<>();
+    private final Map<StatusEventID, StoredChildStatusEvent> children = new HashMap<>();
+    private long sequence = 0;
+
+    private static class Event {
+
+        private final StatusEvent event;
+        private final StatusEventID id;
+        private final long sequence;
+        private final Set<String> workerCodes;
+        private final String storedBy;
+        private final Instant storeTime;
+        private StatusEventProcessingState state;
+        private Instant updateTime = null;
+        private String updater = null;
+        private String errorCode = null;
+        private String errorMessage = null;
+        private String errorStackTrace = null;
+
+        private Event(
+                final StatusEvent event,
+                final StatusEventID id,
+                final long sequence,
+                final StatusEventProcessingState state,
+                final Set<String> workerCodes,
+                final String storedBy,
+                final Instant storeTime) {
+            this.event = event;
+            this.id = id;
+            this.sequence = sequence;
+            this.state = state;
+            this.workerCodes = Collections.unmodifiableSet(new HashSet<>(workerCodes));
+            this.storedBy = storedBy;
+            this.storeTime = storeTime;
+        }
+
+        private StoredStatusEvent toStoredStatusEvent() {
+            final StoredStatusEvent.Builder b = StoredStatusEvent.getBuilder(event, id, state)
+                    .withNullableUpdate(updateTime, updater)
+                    .withNullableStoredBy(storedBy)
+                    .withNullableStoreTime(storeTime)
+                    .withNullableError(errorCode, errorMessage, errorStackTrace);
+            for (final String code: workerCodes) {
+                b.withWorkerCode(code);
+            }
+            return b.build();
+        }
+    }
+
+    /** Create the storage system. */
+    public MemoryStatusEventStorage() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /** Create the storage system with a clock for determining the current time. This
+     * constructor is intended for testing purposes.
+     * @param clock the clock.
+     */
+    public MemoryStatusEventStorage(final Clock clock) {
+        Utils.nonNull(clock, "clock");
+        this.clock = clock;
+        for (final StatusEventProcessingState state: StatusEventProcessingState.values()) {
+            byState.put(state, new TreeSet<>(EVENT_ORDER));
+        }
+    }
+
+    @Override
+    public StoredStatusEvent store(
+            final StatusEvent newEvent,
+            final StatusEventProcessingState state,
+            Set<String> workerCodes,
+            final String storedBy) {
+        Utils.nonNull(newEvent, "newEvent");
+        Utils.nonNull(state, "state");
+        Utils.notNullOrEmpty(storedBy, "storedBy cannot be null or whitespace only");
+        workerCodes = checkWorkerCodes(workerCodes);
+        final Instant now = clock.instant();
+        synchronized (this) {
+            return add(newEvent, state, workerCodes, storedBy, now).toStoredStatusEvent();
+        }
+    }
+
+    @Override
+    public List<StoredStatusEvent> storeAll(
+            final List<StatusEvent> newEvents,
+            final StatusEventProcessingState state,
+            Set<String> workerCodes,
+            final String storedBy) {
+        Utils.nonNull(newEvents, "newEvents");
+        Utils.noNulls(newEvents, "null item in newEvents");
+        Utils.nonNull(state, "state");
+        Utils.notNullOrEmpty(storedBy, "storedBy cannot be null or whitespace only");
+        workerCodes = checkWorkerCodes(workerCodes);
+        if (newEvents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final Instant now = clock.instant();
+        final List<StoredStatusEvent> ret = new ArrayList<>(newEvents.size());
+        synchronized (this) {
+            for (final StatusEvent event: newEvents) {
+                ret.add(add(event, state, workerCodes, storedBy, now).toStoredStatusEvent());
+            }
+        }
+        return ret;
+    }
+
+    // must hold the lock
+    private Event add(
+            final StatusEvent newEvent,
+            final StatusEventProcessingState state,
+            final Set<String> workerCodes,
+            final String storedBy,
+            final Instant now) {
+        final StatusEventID id = nextID();
+        final Event event = new Event(newEvent, id, sequence, state, workerCodes, storedBy, now);
+        events.put(event.id, event);
+        byState.get(state).add(event);
+        return event;
+    }
+
+    // must hold the lock
+    private StatusEventID nextID() {
+        return new StatusEventID(String.valueOf(++sequence));
+    }
+
+    private Set<String> checkWorkerCodes(final Set<String> workerCodes) {
+        if (workerCodes == null || workerCodes.isEmpty()) {
+            return DEFAULT_WORKER_CODES_SET;
+        }
+        for (final String code: workerCodes) {
+            if (Utils.isNullOrEmpty(code)) {
+                throw new IllegalArgumentException("null or whitespace only item in workerCodes");
+            }
+        }
+        return workerCodes;
+    }
+
+    @Override
+    public StoredChildStatusEvent store(
+            final ChildStatusEvent newEvent,
+            final String errorCode,
+            final Throwable error) {
+        Utils.nonNull(newEvent, "newEvent");
+        checkErrorCode(errorCode);
+        Utils.nonNull(error, "error");
+        final Instant now = clock.instant();
+        synchronized (this) {
+            return addChild(newEvent, errorCode, error, false, now);
+        }
+    }
+
+    @Override
+    public List<StoredChildStatusEvent> storeChildren(
+            final List<FailedChildStatusEvent> newEvents) {
+        Utils.nonNull(newEvents, "newEvents");
+        Utils.noNulls(newEvents, "null item in newEvents");
+        if (newEvents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final Instant now = clock.instant();
+        final List<StoredChildStatusEvent> ret = new ArrayList<>(newEvents.size());
+        synchronized (this) {
+            for (final FailedChildStatusEvent failed: newEvents) {
+                ret.add(addChild(failed.getEvent(), failed.getErrorCode(), failed.getError(),
+                        failed.isStackTraceOmitted(), now));
+            }
+        }
+        return ret;
+    }
+
+    // must hold the lock
+    private StoredChildStatusEvent addChild(
+            final ChildStatusEvent newEvent,
+            final String errorCode,
+            final Throwable error,
+            final boolean omitStackTrace,
+            final Instant now) {
+        final StoredChildStatusEvent child = StoredChildStatusEvent.getBuilder(
+                newEvent, nextID(), now)
+                .withNullableError(errorCode, getErrorMessage(error),
+                        omitStackTrace ? OMITTED_TRACE : getStackTrace(error))
+                .build();
+        children.put(child.getID(), child);
+        return child;
+    }
+
+    @Override
+    public synchronized Optional<StoredStatusEvent> get(final StatusEventID id) {
+        Utils.nonNull(id, "id");
+        final Event event = events.get(id);
+        return event == null ? Optional.absent() : Optional.of(event.toStoredStatusEvent());
+    }
+
+    @Override
+    public synchronized Optional<StoredChildStatusEvent> getChild(final StatusEventID id) {
+        Utils.nonNull(id, "id");
+        return Optional.fromNullable(children.get(id));
+    }
+
+    @Override
+    public synchronized Map<StatusEventID, StoredStatusEventState> getStates(
+            final Set<StatusEventID> ids) {
+        Utils.nonNull(ids, "ids");
+        Utils.noNulls(ids, "null item in ids");
+        final Map<StatusEventID, StoredStatusEventState> ret = new HashMap<>();
+        for (final StatusEventID id: ids) {
+            final Event event = events.get(id);
+            if (event != null) {
+                ret.put(id, new StoredStatusEventState(
+                        id, event.state, event.updateTime, event.updater));
+            }
+        }
+        return ret;
+    }
+
+    // note returns in order of time stamp, oldest first (e.g FIFO)
+    @Override
+    public synchronized List<StoredStatusEvent> get(
+            final StatusEventProcessingState state,
+            int limit) {
+        Utils.nonNull(state, "state");
+        if (limit < 1 || limit > MAX_RETURNED_EVENTS) {
+            limit = MAX_RETURNED_EVENTS;
+        }
+        final List<StoredStatusEvent> ret = new ArrayList<>();
+        for (final Event event: byState.get(state)) {
+            if (ret.size() >= limit) {
+                break;
+            }
+            ret.add(event.toStoredStatusEvent());
+        }
+        return ret;
+    }
+
+    @Override
+    public Optional<StoredStatusEvent> setAndGetProcessingState(
+            final StatusEventProcessingState oldState,
+            final Set<String> workerCodes,
+            final StatusEventProcessingState newState,
+            final String updater) {
+        Utils.nonNull(oldState, "oldState");
+        Utils.nonNull(newState, "newState");
+        Utils.notNullOrEmpty(updater, "updater cannot be null or whitespace");
+        final Set<String> codeSet = new HashSet<>();
+        if (workerCodes == null || workerCodes.isEmpty() ||
+                workerCodes.contains(StatusEventStorage.DEFAULT_WORKER_CODE)) {
+            codeSet.add(StatusEventStorage.DEFAULT_WORKER_CODE);
+        }
+        if (workerCodes != null) {
+            Utils.noNulls(workerCodes, "null item in workerCodes");
+            codeSet.addAll(workerCodes);
+        }
+        final Instant now = clock.instant();
+        synchronized (this) {
+            for (final Event event: byState.get(oldState)) {
+                if (!Collections.disjoint(event.workerCodes, codeSet)) {
+                    setState(event, newState, now);
+                    event.updater = updater;
+                    return Optional.of(event.toStoredStatusEvent());
+                }
+            }
+        }
+        return Optional.absent();
+    }
+
+    @Override
+    public boolean setProcessingState(
+            final StatusEventID id,
+            final StatusEventProcessingState oldState,
+            final StatusEventProcessingState newState) {
+        Utils.nonNull(id, "id");
+        Utils.nonNull(newState, "newState");
+        final Instant now = clock.instant();
+        synchronized (this) {
+            final Event event = getEvent(id, oldState);
+            if (event == null) {
+                return false;
+            }
+            setState(event, newState, now);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean setProcessingState(
+            final StatusEventID id,
+            final StatusEventProcessingState oldState,
+            final String errorCode,
+            final Throwable error) {
+        Utils.nonNull(error, "error");
+        Utils.nonNull(id, "id");
+        checkErrorCode(errorCode);
+        final Instant now = clock.instant();
+        final String message = getErrorMessage(error);
+        final String trace = getStackTrace(error);
+        synchronized (this) {
+            final Event event = getEvent(id, oldState);
+            if (event == null) {
+                return false;
+            }
+            setState(event, StatusEventProcessingState.FAIL, now);
+            event.errorCode = errorCode;
+            event.errorMessage = message;
+            event.errorStackTrace = trace;
+            return true;
+        }
+    }
+
+    // must hold the lock. Returns null if the event doesn't exist or isn't in oldState.
+    private Event getEvent(final StatusEventID id, final StatusEventProcessingState oldState) {
+        final Event event = events.get(id);
+        if (event == null || (oldState != null && !oldState.equals(event.state))) {
+            return null;
+        }
+        return event;
+    }
+
+    // must hold the lock
+    private void setState(
+            final Event event,
+            final StatusEventProcessingState newState,
+            final Instant now) {
+        byState.get(event.state).remove(event);
+        event.state = newState;
+        event.updateTime = now;
+        byState.get(newState).add(event);
+    }
+}
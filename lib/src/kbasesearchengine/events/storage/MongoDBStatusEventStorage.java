@@ -1,10 +1,19 @@
 package kbasesearchengine.events.storage;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import static kbasesearchengine.events.storage.StatusEventStorageUtils.DEFAULT_WORKER_CODES_SET;
+import static kbasesearchengine.events.storage.StatusEventStorageUtils.MAX_RETURNED_EVENTS;
+import static kbasesearchengine.events.storage.StatusEventStorageUtils.OMITTED_TRACE;
+import static kbasesearchengine.events.storage.StatusEventStorageUtils.checkErrorCode;
+import static kbasesearchengine.events.storage.StatusEventStorageUtils.getErrorMessage;
+import static kbasesearchengine.events.storage.StatusEventStorageUtils.getStackTrace;
+
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -12,7 +21,11 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import org.bson.Document;
 import org.bson.types.ObjectId;
@@ -22,18 +35,26 @@ import com.mongodb.MongoException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.UpdateResult;
 
 import kbasesearchengine.events.ChildStatusEvent;
+import kbasesearchengine.events.FailedChildStatusEvent;
 import kbasesearchengine.events.StatusEvent;
 import kbasesearchengine.events.StatusEventID;
 import kbasesearchengine.events.StatusEventProcessingState;
 import kbasesearchengine.events.StatusEventType;
 import kbasesearchengine.events.StoredChildStatusEvent;
 import kbasesearchengine.events.StoredStatusEvent;
+import kbasesearchengine.events.StoredStatusEventState;
 import kbasesearchengine.events.StatusEvent.Builder;
 import kbasesearchengine.events.exceptions.ErrorType;
 import kbasesearchengine.events.exceptions.FatalRetriableIndexingException;
@@ -48,23 +69,31 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
     
     /* Note that general mongoexceptions are more or less impossible to test. */
     
-    /* No need for a worker code index at the moment I think. The query for
-     * setAndGetProcessingState should run down all the events in the target state in order of
-     * timestamp until it finds one with an appropriate code.
-     * Look into adding one if we start seeing long queries.
+    /* setAndGetProcessingState matches the worker codes with an $in rather than an $or, so
+     * that MongoDB can merge the index scans for each code in timestamp order. An $or over
+     * the codes would run down all the events in the target state in order of timestamp
+     * until it found one with an appropriate code.
+     */
+    
+    /* Error stack traces can be up to 100,000 characters and are rarely read, so
+     * they're stored in a separate collection and referenced from the event documents by ID.
+     * That keeps the event documents small, which matters when the coordinator reads large
+     * numbers of events every cycle and failures accumulate.
+     * Traces that were omitted, or that were stored in the event document before traces were
+     * moved, are read from the event document.
      */
     
     //TODO DB add schema ver code
     
     private static final List<String> DEFAULT_WORKER_CODES_LIST = Collections.unmodifiableList(
             Arrays.asList(StatusEventStorage.DEFAULT_WORKER_CODE));
-    private static final Set<String> DEFAULT_WORKER_CODES_SET = Collections.unmodifiableSet(
-            new HashSet<>(DEFAULT_WORKER_CODES_LIST));
     
-    private static final int MAX_RETURNED_EVENTS = 10000;
-    private static final int MAX_ERR_CODE_LEN = 20;
-    private static final int TRUNC_ERR_MSG_LEN = 1000;
-    private static final int TRUNC_ERR_TRACE_LEN = 100_000;
+    private static final List<String> COMPLETED_STATES = Collections.unmodifiableList(
+            Arrays.asList(StatusEventProcessingState.INDX.toString(),
+                    StatusEventProcessingState.UNINDX.toString()));
+    
+    private static final int ARCHIVE_BATCH_SIZE = 1000;
+    private static final String MISSING_TRACE = "Stack trace not found";
     
     private static final String FLD_STATUS = "status";
     private static final String FLD_STORAGE_CODE = "strcde";
@@ -90,9 +119,21 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
     private static final String FLD_ERR_CODE = "errcde";
     private static final String FLD_ERR_MSG = "errmsg";
     private static final String FLD_ERR_TRACE = "errtrce";
+    private static final String FLD_ERR_TRACE_ID = "errtrceid";
+    
+    private static final String FLD_TRACE = "trace";
+    
+    // the time after which an archived event is deleted
+    private static final String FLD_EXPIRES = "expires";
+    
+    private static final String FLD_DAY = "day";
+    private static final String FLD_COUNT = "count";
     
     private static final String COL_EVENT = "searchEvents";
     private static final String COL_CHILD = "childEvents";
+    private static final String COL_TRACE = "errorTraces";
+    private static final String COL_ARCHIVE = "searchEventsArchive";
+    private static final String COL_ARCHIVE_DAILY = "searchEventsArchiveDaily";
     
     private Map<String, List<IndexSpecification>> getIndexSpecs() {
         // should probably rework this and the index spec class
@@ -103,8 +144,12 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
         final LinkedList<IndexSpecification> event = new LinkedList<>();
         //find events by status and time stamp
         event.add(idxSpec(FLD_STATUS, 1, FLD_TIMESTAMP, 1, null));
+        // claim the earliest event with a status and worker code
+        event.add(idxSpec(FLD_STATUS, 1, FLD_WORKER_CODES, 1, FLD_TIMESTAMP, 1, null));
         // find events by status and store time
         event.add(idxSpec(FLD_STORED_TIME, 1, FLD_STATUS, 1, null));
+        // find completed events to archive by status and update time
+        event.add(idxSpec(FLD_STATUS, 1, FLD_UPDATE_TIME, 1, null));
         indexes.put(COL_EVENT, event);
         
         // child event indexes
@@ -113,6 +158,19 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
         child.add(idxSpec(FLD_STORED_TIME, 1, FLD_STATUS, 1, null));
         indexes.put(COL_CHILD, child);
         
+        // archived event indexes
+        final LinkedList<IndexSpecification> archive = new LinkedList<>();
+        // expire archived events
+        archive.add(idxSpec(FLD_EXPIRES, 1,
+                new IndexOptions().expireAfter(0L, TimeUnit.SECONDS)));
+        indexes.put(COL_ARCHIVE, archive);
+        
+        // archived event daily count indexes
+        final LinkedList<IndexSpecification> daily = new LinkedList<>();
+        // one count per day and state
+        daily.add(idxSpec(FLD_DAY, 1, FLD_STATUS, 1, new IndexOptions().unique(true)));
+        indexes.put(COL_ARCHIVE_DAILY, daily);
+        
         return indexes;
     }
     
@@ -127,7 +185,6 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
     }
     
     // 1 for ascending sort, -1 for descending
-    @SuppressWarnings("unused")
     private static IndexSpecification idxSpec(
             final String field, final int ascendingSort,
             final IndexOptions options) {
@@ -143,7 +200,6 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
                 new Document(field1, ascendingSort1).append(field2, ascendingSort2), options);
     }
 
-    @SuppressWarnings("unused")
     private static IndexSpecification idxSpec(
             final String field1, final int ascendingSort1,
             final String field2, final int ascendingSort2,
@@ -213,28 +269,74 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
         Utils.nonNull(newEvent, "newEvent");
         Utils.nonNull(state, "state");
         Utils.notNullOrEmpty(storedBy, "storedBy cannot be null or whitespace only");
+        workerCodes = checkWorkerCodes(workerCodes);
+        final Instant now = clock.instant();
+        final Document doc = toStorageDocument(newEvent, state, now)
+                .append(FLD_WORKER_CODES, workerCodes)
+                .append(FLD_STORED_BY, storedBy);
+        final StatusEventID newID = insertOne(COL_EVENT, doc);
+        return toStoredStatusEvent(newEvent, newID, state, workerCodes, storedBy, now);
+    }
+
+    @Override
+    public List<StoredStatusEvent> storeAll(
+            final List<StatusEvent> newEvents,
+            final StatusEventProcessingState state,
+            Set<String> workerCodes,
+            final String storedBy)
+            throws FatalRetriableIndexingException {
+        Utils.nonNull(newEvents, "newEvents");
+        Utils.noNulls(newEvents, "null item in newEvents");
+        Utils.nonNull(state, "state");
+        Utils.notNullOrEmpty(storedBy, "storedBy cannot be null or whitespace only");
+        workerCodes = checkWorkerCodes(workerCodes);
+        if (newEvents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final Instant now = clock.instant();
+        final List<Document> docs = new ArrayList<>(newEvents.size());
+        for (final StatusEvent event: newEvents) {
+            docs.add(toStorageDocument(event, state, now)
+                    .append(FLD_WORKER_CODES, workerCodes)
+                    .append(FLD_STORED_BY, storedBy));
+        }
+        final List<StatusEventID> ids = insertMany(COL_EVENT, docs);
+        final List<StoredStatusEvent> ret = new ArrayList<>(newEvents.size());
+        for (int i = 0; i < docs.size(); i++) {
+            ret.add(toStoredStatusEvent(newEvents.get(i), ids.get(i), state, workerCodes,
+                    storedBy, now));
+        }
+        return ret;
+    }
+
+    private Set<String> checkWorkerCodes(final Set<String> workerCodes) {
         if (workerCodes == null || workerCodes.isEmpty()) {
-            workerCodes = DEFAULT_WORKER_CODES_SET;
+            return DEFAULT_WORKER_CODES_SET;
         }
         for (final String code: workerCodes) {
             if (Utils.isNullOrEmpty(code)) {
                 throw new IllegalArgumentException("null or whitespace only item in workerCodes");
             }
         }
-        final Instant now = clock.instant();
-        final Document doc = toStorageDocument(newEvent, state, now)
-                .append(FLD_WORKER_CODES, workerCodes)
-                .append(FLD_STORED_BY, storedBy);
-        final StatusEventID newID = insertOne(COL_EVENT, doc);
-        final StoredStatusEvent.Builder b = StoredStatusEvent.getBuilder(newEvent, newID, state)
+        return workerCodes;
+    }
+
+    private StoredStatusEvent toStoredStatusEvent(
+            final StatusEvent event,
+            final StatusEventID id,
+            final StatusEventProcessingState state,
+            final Set<String> workerCodes,
+            final String storedBy,
+            final Instant storeTime) {
+        final StoredStatusEvent.Builder b = StoredStatusEvent.getBuilder(event, id, state)
                 .withNullableStoredBy(storedBy)
-                .withNullableStoreTime(now);
+                .withNullableStoreTime(storeTime);
         for (final String code: workerCodes) {
             b.withWorkerCode(code);
         }
         return b.build();
     }
-    
+
     @Override
     public StoredChildStatusEvent store(
             final ChildStatusEvent newEvent,
@@ -247,38 +349,124 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
                 // TODO NNOW store exception
                 newEvent.getEvent(), StatusEventProcessingState.FAIL, now)
                 .append(FLD_PARENT_ID, newEvent.getID().getId());
-        addError(doc, errorCode, error);
+        final Document trace = addError(doc, errorCode, error, false);
+        // store the trace first so events never reference a missing trace
+        insertOne(COL_TRACE, trace);
         final StatusEventID newID = insertOne(COL_CHILD, doc);
         return StoredChildStatusEvent.getBuilder(newEvent, newID, now)
-                .withNullableError(errorCode, doc.getString(FLD_ERR_MSG),
-                        doc.getString(FLD_ERR_TRACE))
+                .withNullableError(errorCode, doc.getString(FLD_ERR_MSG), getTrace(doc, trace))
                 .build();
     }
 
-    // modifies doc in place
-    private void addError(final Document doc, final String errorCode, final Throwable error) {
+    @Override
+    public List<StoredChildStatusEvent> storeChildren(final List<FailedChildStatusEvent> newEvents)
+            throws FatalRetriableIndexingException {
+        Utils.nonNull(newEvents, "newEvents");
+        Utils.noNulls(newEvents, "null item in newEvents");
+        if (newEvents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final Instant now = clock.instant();
+        final List<Document> docs = new ArrayList<>(newEvents.size());
+        // may contain nulls for omitted traces
+        final List<Document> traces = new ArrayList<>(newEvents.size());
+        for (final FailedChildStatusEvent failed: newEvents) {
+            final Document doc = toStorageDocument(
+                    failed.getEvent().getEvent(), StatusEventProcessingState.FAIL, now)
+                    .append(FLD_PARENT_ID, failed.getEvent().getID().getId());
+            traces.add(addError(doc, failed.getErrorCode(), failed.getError(),
+                    failed.isStackTraceOmitted()));
+            docs.add(doc);
+        }
+        final List<Document> tracesToStore = traces.stream().filter(t -> t != null)
+                .collect(Collectors.toList());
+        if (!tracesToStore.isEmpty()) {
+            insertMany(COL_TRACE, tracesToStore);
+        }
+        final List<StatusEventID> ids = insertMany(COL_CHILD, docs);
+        final List<StoredChildStatusEvent> ret = new ArrayList<>(newEvents.size());
+        for (int i = 0; i < docs.size(); i++) {
+            final Document doc = docs.get(i);
+            ret.add(StoredChildStatusEvent.getBuilder(newEvents.get(i).getEvent(), ids.get(i), now)
+                    .withNullableError(doc.getString(FLD_ERR_CODE), doc.getString(FLD_ERR_MSG),
+                            getTrace(doc, traces.get(i)))
+                    .build());
+        }
+        return ret;
+    }
+
+    /* modifies doc in place. Returns the document to store in the trace collection, or null if
+     * the stack trace is omitted.
+     */
+    private Document addError(
+            final Document doc,
+            final String errorCode,
+            final Throwable error,
+            final boolean omitStackTrace) {
         checkErrorCode(errorCode);
         Utils.nonNull(error, "error");
-        final StringWriter sw = new StringWriter();
-        error.printStackTrace(new PrintWriter(sw));
         doc.append(FLD_ERR_CODE, errorCode)
-                .append(FLD_ERR_MSG, truncate(error.getMessage(), TRUNC_ERR_MSG_LEN))
-                .append(FLD_ERR_TRACE, truncate(sw.toString(), TRUNC_ERR_TRACE_LEN));
+                .append(FLD_ERR_MSG, getErrorMessage(error));
+        if (omitStackTrace) {
+            doc.append(FLD_ERR_TRACE, OMITTED_TRACE);
+            return null;
+        }
+        final ObjectId traceID = new ObjectId();
+        doc.append(FLD_ERR_TRACE_ID, traceID);
+        return new Document("_id", traceID).append(FLD_TRACE, getStackTrace(error));
     }
-
-    // assumes length > 3
-    private Object truncate(final String string, final int length) {
-        if (string.length() > length) {
-            return string.substring(0, length - 3) + "...";
+    
+    // trace is nullable
+    private String getTrace(final Document event, final Document trace) {
+        if (trace == null) {
+            return event.getString(FLD_ERR_TRACE);
         }
-        return string;
+        return trace.getString(FLD_TRACE);
     }
-
-    private void checkErrorCode(final String errorCode) {
-        Utils.notNullOrEmpty(errorCode, "errorCode cannot be null or whitespace only");
-        if (errorCode.length() > MAX_ERR_CODE_LEN) {
-            throw new IllegalArgumentException("errorCode exceeds max length of " +
-                    MAX_ERR_CODE_LEN);
+    
+    // gets the stack traces referenced by the events, if any, in one query
+    private Map<ObjectId, String> getTraces(final Collection<Document> events)
+            throws FatalRetriableIndexingException {
+        final Set<ObjectId> ids = new HashSet<>();
+        for (final Document event: events) {
+            final ObjectId traceID = event.getObjectId(FLD_ERR_TRACE_ID);
+            if (traceID != null) {
+                ids.add(traceID);
+            }
+        }
+        final Map<ObjectId, String> ret = new HashMap<>();
+        if (ids.isEmpty()) {
+            return ret;
+        }
+        try {
+            for (final Document trace: db.getCollection(COL_TRACE)
+                    .find(new Document("_id", new Document("$in", ids)))) {
+                ret.put(trace.getObjectId("_id"), trace.getString(FLD_TRACE));
+            }
+        } catch (MongoException e) {
+            throw new FatalRetriableIndexingException(
+                    ErrorType.OTHER, "Failed getting error traces: " + e.getMessage(), e);
+        }
+        return ret;
+    }
+    
+    private String getTrace(final Document event, final Map<ObjectId, String> traces) {
+        final ObjectId traceID = event.getObjectId(FLD_ERR_TRACE_ID);
+        if (traceID == null) {
+            return event.getString(FLD_ERR_TRACE);
+        }
+        final String trace = traces.get(traceID);
+        // the event document is updated after the trace is stored, so this should only
+        // happen if someone deletes the trace manually
+        return trace == null ? MISSING_TRACE : trace;
+    }
+    
+    private void deleteTrace(final ObjectId traceID) {
+        try {
+            db.getCollection(COL_TRACE).deleteOne(new Document("_id", traceID));
+        } catch (MongoException e) {
+            // an orphaned trace is harmless other than the space it takes, so don't fail the
+            // operation
         }
     }
 
@@ -293,6 +481,24 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
         return new StatusEventID(doc.getObjectId("_id").toString());
     }
     
+    private List<StatusEventID> insertMany(final String collection, final List<Document> docs)
+            throws FatalRetriableIndexingException {
+        try {
+            // unordered so the server can continue past a failed document and apply the writes
+            // in parallel
+            db.getCollection(collection).insertMany(docs, new InsertManyOptions().ordered(false));
+        } catch (MongoException e) {
+            throw new FatalRetriableIndexingException(
+                    ErrorType.OTHER, "Failed event storage: " + e.getMessage(), e);
+        }
+        final List<StatusEventID> ret = new ArrayList<>(docs.size());
+        for (final Document doc: docs) {
+            // the driver adds the ids to the documents prior to sending them to the server
+            ret.add(new StatusEventID(doc.getObjectId("_id").toString()));
+        }
+        return ret;
+    }
+    
     private Document toStorageDocument(
             final StatusEvent newEvent,
             final StatusEventProcessingState state,
@@ -322,7 +528,7 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
         if (event == null) {
             return Optional.absent();
         }
-        return Optional.of(toStoredStatusEvent(event));
+        return Optional.of(toStoredStatusEvent(event, getTraces(Arrays.asList(event))));
     }
 
     @Override
@@ -342,7 +548,7 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
                 .withNullableError(
                         event.getString(FLD_ERR_CODE),
                         event.getString(FLD_ERR_MSG),
-                        event.getString(FLD_ERR_TRACE))
+                        getTrace(event, getTraces(Arrays.asList(event))))
                 .build());
     }
 
@@ -358,7 +564,9 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
         }
     }
 
-    private StoredStatusEvent toStoredStatusEvent(final Document event) {
+    private StoredStatusEvent toStoredStatusEvent(
+            final Document event,
+            final Map<ObjectId, String> traces) {
         final Date updateTime = event.getDate(FLD_UPDATE_TIME);
         final Date storeTime = event.getDate(FLD_STORED_TIME);
         @SuppressWarnings("unchecked")
@@ -377,7 +585,7 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
                 .withNullableError(
                         event.getString(FLD_ERR_CODE),
                         event.getString(FLD_ERR_MSG),
-                        event.getString(FLD_ERR_TRACE));
+                        getTrace(event, traces));
         for (final String code: workerCodes) {
             b2.withWorkerCode(code);
         }
@@ -415,7 +623,7 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
         if (limit < 1 || limit > MAX_RETURNED_EVENTS) {
             limit = MAX_RETURNED_EVENTS;
         }
-        final List<StoredStatusEvent> ret = new LinkedList<>();
+        final List<Document> events = new LinkedList<>();
         try {
             // tested query in mongo & ensured it uses indexes - e.g. no in memory sort
             final FindIterable<Document> iter = db.getCollection(COL_EVENT)
@@ -423,15 +631,155 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
                     .sort(new Document(FLD_TIMESTAMP, 1))
                     .limit(limit);
             for (final Document event: iter) {
-                ret.add(toStoredStatusEvent(event));
+                events.add(event);
             }
         } catch (MongoException e) {
             throw new FatalRetriableIndexingException(
                     ErrorType.OTHER, "Failed getting events: " + e.getMessage(), e);
         }
+        final Map<ObjectId, String> traces = getTraces(events);
+        final List<StoredStatusEvent> ret = new LinkedList<>();
+        for (final Document event: events) {
+            ret.add(toStoredStatusEvent(event, traces));
+        }
         return ret;
     }
     
+    @Override
+    public Map<StatusEventID, StoredStatusEventState> getStates(final Set<StatusEventID> ids)
+            throws FatalRetriableIndexingException {
+        Utils.nonNull(ids, "ids");
+        Utils.noNulls(ids, "null item in ids");
+        final Map<StatusEventID, StoredStatusEventState> ret = new HashMap<>();
+        if (ids.isEmpty()) {
+            return ret;
+        }
+        final List<ObjectId> oids = ids.stream().map(id -> new ObjectId(id.getId()))
+                .collect(Collectors.toList());
+        try {
+            final FindIterable<Document> iter = db.getCollection(COL_EVENT)
+                    .find(new Document("_id", new Document("$in", oids)))
+                    .projection(new Document(FLD_STATUS, 1)
+                            .append(FLD_UPDATE_TIME, 1)
+                            .append(FLD_UPDATER, 1));
+            for (final Document event: iter) {
+                final StatusEventID id = new StatusEventID(event.getObjectId("_id").toString());
+                final Date updateTime = event.getDate(FLD_UPDATE_TIME);
+                ret.put(id, new StoredStatusEventState(
+                        id,
+                        StatusEventProcessingState.valueOf(event.getString(FLD_STATUS)),
+                        updateTime == null ? null : updateTime.toInstant(),
+                        event.getString(FLD_UPDATER)));
+            }
+        } catch (MongoException e) {
+            throw new FatalRetriableIndexingException(
+                    ErrorType.OTHER, "Failed getting event states: " + e.getMessage(), e);
+        }
+        return ret;
+    }
+    
+    /** Move events that completed processing - e.g. events in the
+     * {@link StatusEventProcessingState#INDX} or {@link StatusEventProcessingState#UNINDX}
+     * states - from the live event collection to an archive collection. This keeps the live
+     * collection and its indexes small, which speeds up the queries used to process events.
+     * 
+     * Archived events are deleted by MongoDB once the retention period passes. The number of
+     * archived events per day of completion and state are kept indefinitely.
+     * 
+     * Archived events are no longer returned by any of the event retrieval methods.
+     * @param completedBefore events that completed processing before this time are archived.
+     * @param retention the length of time to keep archived events.
+     * @return the number of events archived.
+     * @throws FatalRetriableIndexingException if an error occurs while archiving the events.
+     * Some events may have been archived.
+     */
+    public long archiveCompletedEvents(final Instant completedBefore, final Duration retention)
+            throws FatalRetriableIndexingException {
+        Utils.nonNull(completedBefore, "completedBefore");
+        Utils.nonNull(retention, "retention");
+        if (retention.isNegative()) {
+            throw new IllegalArgumentException("retention cannot be negative");
+        }
+        final Document query = new Document(FLD_STATUS, new Document("$in", COMPLETED_STATES))
+                .append(FLD_UPDATE_TIME, new Document("$lt", Date.from(completedBefore)));
+        long count = 0;
+        try {
+            while (true) {
+                final List<Document> events = db.getCollection(COL_EVENT).find(query)
+                        .limit(ARCHIVE_BATCH_SIZE).into(new ArrayList<>());
+                if (events.isEmpty()) {
+                    return count;
+                }
+                count += archive(events, query, Date.from(clock.instant().plus(retention)));
+            }
+        } catch (MongoException e) {
+            throw new FatalRetriableIndexingException(
+                    ErrorType.OTHER, "Failed archiving events: " + e.getMessage(), e);
+        }
+    }
+    
+    private long archive(final List<Document> events, final Document query, final Date expires) {
+        final List<ObjectId> ids = new ArrayList<>();
+        final Map<ObjectId, ObjectId> traceIDs = new HashMap<>();
+        final Map<ObjectId, Document> days = new HashMap<>();
+        final List<WriteModel<Document>> archive = new ArrayList<>();
+        for (final Document event: events) {
+            final ObjectId id = event.getObjectId("_id");
+            ids.add(id);
+            // completed events don't need the trace from a previous failure
+            final ObjectId traceID = (ObjectId) event.remove(FLD_ERR_TRACE_ID);
+            if (traceID != null) {
+                traceIDs.put(id, traceID);
+            }
+            event.append(FLD_EXPIRES, expires);
+            // upsert so archiving a batch again after a failure is harmless
+            archive.add(new ReplaceOneModel<>(new Document("_id", id), event,
+                    new UpdateOptions().upsert(true)));
+            final String day = event.getDate(FLD_UPDATE_TIME).toInstant()
+                    .atOffset(ZoneOffset.UTC).toLocalDate().toString();
+            days.put(id, new Document(FLD_DAY, day)
+                    .append(FLD_STATUS, event.getString(FLD_STATUS)));
+        }
+        db.getCollection(COL_ARCHIVE).bulkWrite(archive, new BulkWriteOptions().ordered(false));
+        // include the query in case the event was reset for reprocessing in the meantime
+        final long deleted = db.getCollection(COL_EVENT).deleteMany(new Document(query)
+                .append("_id", new Document("$in", ids))).getDeletedCount();
+        if (deleted < ids.size()) {
+            // the events that weren't deleted are live again, so remove their archive copies
+            // and leave them out of the counts
+            final List<ObjectId> live = db.getCollection(COL_EVENT)
+                    .find(new Document("_id", new Document("$in", ids)))
+                    .projection(new Document("_id", 1))
+                    .map(d -> d.getObjectId("_id"))
+                    .into(new ArrayList<>());
+            if (!live.isEmpty()) {
+                db.getCollection(COL_ARCHIVE).deleteMany(
+                        new Document("_id", new Document("$in", live)));
+            }
+            days.keySet().removeAll(live);
+            traceIDs.keySet().removeAll(live);
+        }
+        final Map<Document, Integer> dailyCounts = new HashMap<>();
+        for (final Document day: days.values()) {
+            dailyCounts.merge(day, 1, Integer::sum);
+        }
+        final List<WriteModel<Document>> counts = new ArrayList<>();
+        for (final Entry<Document, Integer> count: dailyCounts.entrySet()) {
+            counts.add(new UpdateOneModel<>(
+                    count.getKey(),
+                    new Document("$inc", new Document(FLD_COUNT, count.getValue())),
+                    new UpdateOptions().upsert(true)));
+        }
+        if (!counts.isEmpty()) {
+            db.getCollection(COL_ARCHIVE_DAILY).bulkWrite(counts);
+        }
+        if (!traceIDs.isEmpty()) {
+            db.getCollection(COL_TRACE).deleteMany(
+                    new Document("_id", new Document("$in", new ArrayList<>(traceIDs.values()))));
+        }
+        return deleted;
+    }
+    
     @Override
     public boolean setProcessingState(
             final StatusEventID id,
@@ -463,21 +811,46 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
         Utils.nonNull(newState, "newState");
         final Document update = new Document(FLD_STATUS, newState.toString())
                 .append(FLD_UPDATE_TIME, Date.from(clock.instant()));
-        if (error != null) {
-            addError(update, errorCode, error);
-        }
         final Document query = new Document("_id", new ObjectId(id.getId()));
         if (oldState != null) {
             query.append(FLD_STATUS, oldState.toString());
         }
+        if (error == null) {
+            try {
+                final UpdateResult res = db.getCollection(COL_EVENT).updateOne(query, 
+                        new Document("$set", update));
+                return res.getMatchedCount() == 1;
+            } catch (MongoException e) {
+                throw new FatalRetriableIndexingException(
+                        ErrorType.OTHER, "Failed setting event state: " + e.getMessage(), e);
+            }
+        }
+        final Document trace = addError(update, errorCode, error, false);
+        insertOne(COL_TRACE, trace);
+        final Document old;
         try {
-            final UpdateResult res = db.getCollection(COL_EVENT).updateOne(query, 
-                    new Document("$set", update));
-            return res.getMatchedCount() == 1;
+            old = db.getCollection(COL_EVENT).findOneAndUpdate(
+                    query,
+                    new Document("$set", update)
+                            // remove any trace stored in the event document
+                            .append("$unset", new Document(FLD_ERR_TRACE, "")),
+                    new FindOneAndUpdateOptions()
+                            .projection(new Document(FLD_ERR_TRACE_ID, 1))
+                            .returnDocument(ReturnDocument.BEFORE));
         } catch (MongoException e) {
+            // the update may have been applied, so the trace can't safely be deleted
             throw new FatalRetriableIndexingException(
                     ErrorType.OTHER, "Failed setting event state: " + e.getMessage(), e);
         }
+        if (old == null) {
+            deleteTrace(trace.getObjectId("_id"));
+            return false;
+        }
+        if (old.getObjectId(FLD_ERR_TRACE_ID) != null) {
+            // the event failed previously, and that trace is no longer referenced
+            deleteTrace(old.getObjectId(FLD_ERR_TRACE_ID));
+        }
+        return true;
     }
 
     @Override
@@ -490,31 +863,17 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
         Utils.nonNull(oldState, "oldState");
         Utils.nonNull(newState, "newState");
         Utils.notNullOrEmpty(updater, "updater cannot be null or whitespace");
-        final List<Document> codeQuery = new LinkedList<>();
-        final Set<String> codeSet = new HashSet<>();
-        if (workerCodes == null || workerCodes.isEmpty() ||
-                workerCodes.contains(StatusEventStorage.DEFAULT_WORKER_CODE)) {
-            // next line matches missing field & null fields
-            codeQuery.add(new Document(FLD_WORKER_CODES, null));
-            codeQuery.add(new Document(FLD_WORKER_CODES, Collections.emptyList()));
-            codeSet.add(StatusEventStorage.DEFAULT_WORKER_CODE);
-        }
-        if (workerCodes != null) {
-            Utils.noNulls(workerCodes, "null item in workerCodes");
-            codeSet.addAll(workerCodes);
-        }
-        codeQuery.add(new Document(FLD_WORKER_CODES, new Document("$in", codeSet)));
-        
+        final ClaimQuery query = getClaimQuery(oldState, workerCodes);
         final Document innerUpdate = new Document(FLD_STATUS, newState.toString())
                 .append(FLD_UPDATE_TIME, Date.from(clock.instant()))
                 .append(FLD_UPDATER, updater);
         final Document ret;
         try {
             ret = db.getCollection(COL_EVENT).findOneAndUpdate(
-                     new Document(FLD_STATUS, oldState.toString()).append("$or", codeQuery),
+                     query.getFilter(),
                      new Document("$set", innerUpdate),
                      new FindOneAndUpdateOptions()
-                             .sort(new Document(FLD_TIMESTAMP, 1))
+                             .sort(query.getSort())
                              .returnDocument(ReturnDocument.AFTER));
         } catch (MongoException e) {
             throw new FatalRetriableIndexingException(
@@ -523,7 +882,72 @@ public class MongoDBStatusEventStorage implements StatusEventStorage {
         if (ret == null) {
             return Optional.absent();
         }
-        return Optional.of(toStoredStatusEvent(ret));
+        return Optional.of(toStoredStatusEvent(ret, getTraces(Arrays.asList(ret))));
+    }
+    
+    /** Get the query used by
+     * {@link #setAndGetProcessingState(StatusEventProcessingState, Set,
+     * StatusEventProcessingState, String)} to find the event to claim. This is exposed for
+     * testing purposes so that the query plan can be checked.
+     * @param state the state of the events to search.
+     * @param workerCodes the worker codes of the events to search, or null for the default
+     * code.
+     * @return the query.
+     */
+    public static ClaimQuery getClaimQuery(
+            final StatusEventProcessingState state,
+            final Set<String> workerCodes) {
+        Utils.nonNull(state, "oldState");
+        final List<Object> codeValues = new LinkedList<>();
+        if (workerCodes == null || workerCodes.isEmpty() ||
+                workerCodes.contains(StatusEventStorage.DEFAULT_WORKER_CODE)) {
+            // next line matches missing field & null fields
+            codeValues.add(null);
+            codeValues.add(Collections.emptyList());
+            codeValues.add(StatusEventStorage.DEFAULT_WORKER_CODE);
+        }
+        if (workerCodes != null) {
+            Utils.noNulls(workerCodes, "null item in workerCodes");
+            for (final String code: new TreeSet<>(workerCodes)) {
+                if (!code.equals(StatusEventStorage.DEFAULT_WORKER_CODE)) {
+                    codeValues.add(code);
+                }
+            }
+        }
+        return new ClaimQuery(state, codeValues);
+    }
+    
+    /** The query that finds the earliest event in a state with one of a set of worker codes.
+     * The $in over the worker codes is a set of equality matches on the status / worker code /
+     * timestamp index, so MongoDB merges the per code index scans in timestamp order rather
+     * than sorting every event in the state.
+     */
+    public static class ClaimQuery {
+        
+        private final StatusEventProcessingState state;
+        private final List<Object> codeValues;
+        
+        private ClaimQuery(
+                final StatusEventProcessingState state,
+                final List<Object> codeValues) {
+            this.state = state;
+            this.codeValues = Collections.unmodifiableList(codeValues);
+        }
+        
+        /** Get the query filter.
+         * @return the filter.
+         */
+        public Document getFilter() {
+            return new Document(FLD_STATUS, state.toString())
+                    .append(FLD_WORKER_CODES, new Document("$in", new ArrayList<>(codeValues)));
+        }
+        
+        /** Get the query sort.
+         * @return the sort.
+         */
+        public Document getSort() {
+            return new Document(FLD_TIMESTAMP, 1);
+        }
     }
 
 }
@@ -1,16 +1,19 @@
 package kbasesearchengine.events.storage;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.google.common.base.Optional;
 
 import kbasesearchengine.events.ChildStatusEvent;
+import kbasesearchengine.events.FailedChildStatusEvent;
 import kbasesearchengine.events.StatusEvent;
 import kbasesearchengine.events.StatusEventID;
 import kbasesearchengine.events.StatusEventProcessingState;
 import kbasesearchengine.events.StoredChildStatusEvent;
 import kbasesearchengine.events.StoredStatusEvent;
+import kbasesearchengine.events.StoredStatusEventState;
 import kbasesearchengine.events.exceptions.FatalRetriableIndexingException;
 
 /** A storage system for status events generated by an external service.
@@ -41,7 +44,29 @@ public interface StatusEventStorage {
             Set<String> workerCodes,
             String storedBy)
             throws FatalRetriableIndexingException;
-    
+
+    /** Store multiple new events in one operation. The events share the processing state,
+     * worker codes, and storing entity. Storing events in bulk is much faster than storing them
+     * one at a time, and should be preferred when large numbers of events are generated, e.g.
+     * when backfilling events for an existing data store.
+     *
+     * If an error occurs, some of the events may have been stored.
+     * @param newEvents the events.
+     * @param state the current processing state of the events.
+     * @param workerCodes a set of codes for the events that designate the workers that may
+     * process the events. If the list is null or empty the events will get the
+     * {@link #DEFAULT_WORKER_CODE} code.
+     * @param storedBy an arbitrary string indicating the entity that stored the events.
+     * @return the stored status events, in the same order as the input events.
+     * @throws FatalRetriableIndexingException if an error occurs while storing the events.
+     */
+    List<StoredStatusEvent> storeAll(
+            List<StatusEvent> newEvents,
+            StatusEventProcessingState state,
+            Set<String> workerCodes,
+            String storedBy)
+            throws FatalRetriableIndexingException;
+
     /** Store a status event that resulted in an error and that is a child of another status event.
      * Child status events are immutable once stored. Note that no checking is done on the
      * validity of the parent event's ID.
@@ -57,6 +82,19 @@ public interface StatusEventStorage {
             final Throwable error)
             throws FatalRetriableIndexingException;
 
+    /** Store multiple status events that resulted in an error and that are children of other
+     * status events in one operation. Otherwise identical to
+     * {@link #store(ChildStatusEvent, String, Throwable)}, except that the stack trace of an
+     * error is not stored if {@link FailedChildStatusEvent#isStackTraceOmitted()} is true.
+     *
+     * If an error occurs, some of the events may have been stored.
+     * @param newEvents the failed child events to store.
+     * @return the stored child events, in the same order as the input events.
+     * @throws FatalRetriableIndexingException if an error occurs while storing the events.
+     */
+    List<StoredChildStatusEvent> storeChildren(List<FailedChildStatusEvent> newEvents)
+            throws FatalRetriableIndexingException;
+
     /** Get an event by its ID.
      * @param id the id.
      * @return the event or absent if the id does not exist in the storage system.
@@ -72,6 +110,17 @@ public interface StatusEventStorage {
     Optional<StoredChildStatusEvent> getChild(StatusEventID id)
             throws FatalRetriableIndexingException;
 
+    /** Get the processing states of a set of events. Only the state information is read from
+     * the storage system, and so this method is much cheaper than getting the events
+     * themselves when only the progress of the events is required.
+     * @param ids the ids of the events.
+     * @return a mapping of event ID to the state of the event. IDs that do not exist in the
+     * storage system are not included.
+     * @throws FatalRetriableIndexingException if an error occurs while getting the states.
+     */
+    Map<StatusEventID, StoredStatusEventState> getStates(Set<StatusEventID> ids)
+            throws FatalRetriableIndexingException;
+
     /** Get list of events, by processing state, ordered by the event timestamp such that the
      * events with the earliest timestamp are first in the list.
      * @param state the processing state of the events to be returned.
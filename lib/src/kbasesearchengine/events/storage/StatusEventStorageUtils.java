@@ -0,0 +1,69 @@
+package kbasesearchengine.events.storage;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import kbasesearchengine.tools.Utils;
+
+/** Limits and error handling shared by the {@link StatusEventStorage} implementations, so
+ * that they return the same number of events and check and truncate error information
+ * identically.
+ */
+final class StatusEventStorageUtils {
+
+    /** The worker codes of an event stored without worker codes. */
+    static final Set<String> DEFAULT_WORKER_CODES_SET = Collections.unmodifiableSet(
+            new HashSet<>(Collections.singletonList(StatusEventStorage.DEFAULT_WORKER_CODE)));
+
+    /** The maximum number of events returned by a query. */
+    static final int MAX_RETURNED_EVENTS = 10000;
+
+    /** The stack trace stored when the caller requests the trace be omitted. */
+    static final String OMITTED_TRACE = "Stack trace omitted";
+
+    private static final int MAX_ERR_CODE_LEN = 20;
+    private static final int TRUNC_ERR_MSG_LEN = 1000;
+    private static final int TRUNC_ERR_TRACE_LEN = 100_000;
+
+    private StatusEventStorageUtils() {}
+
+    /** Check that an error code is valid.
+     * @param errorCode the error code.
+     */
+    static void checkErrorCode(final String errorCode) {
+        Utils.notNullOrEmpty(errorCode, "errorCode cannot be null or whitespace only");
+        if (errorCode.length() > MAX_ERR_CODE_LEN) {
+            throw new IllegalArgumentException("errorCode exceeds max length of " +
+                    MAX_ERR_CODE_LEN);
+        }
+    }
+
+    /** Get the error message to store for an error.
+     * @param error the error.
+     * @return the message, truncated if necessary.
+     */
+    static String getErrorMessage(final Throwable error) {
+        return truncate(error.getMessage(), TRUNC_ERR_MSG_LEN);
+    }
+
+    /** Get the stack trace to store for an error.
+     * @param error the error.
+     * @return the stack trace, truncated if necessary.
+     */
+    static String getStackTrace(final Throwable error) {
+        final StringWriter sw = new StringWriter();
+        error.printStackTrace(new PrintWriter(sw));
+        return truncate(sw.toString(), TRUNC_ERR_TRACE_LEN);
+    }
+
+    // assumes length > 3
+    private static String truncate(final String string, final int length) {
+        if (string.length() > length) {
+            return string.substring(0, length - 3) + "...";
+        }
+        return string;
+    }
+}
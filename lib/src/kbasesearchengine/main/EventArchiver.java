@@ -0,0 +1,120 @@
+package kbasesearchengine.main;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import kbasesearchengine.events.exceptions.FatalRetriableIndexingException;
+import kbasesearchengine.events.storage.MongoDBStatusEventStorage;
+import kbasesearchengine.tools.Utils;
+
+/** Periodically archives events that have completed processing via
+ * {@link MongoDBStatusEventStorage#archiveCompletedEvents(java.time.Instant, Duration)}.
+ *
+ * Errors are logged and the archiver tries again at the next interval.
+ *
+ * Only one archiver should run at one time, and usually runs alongside the
+ * {@link IndexerCoordinator}.
+ */
+public class EventArchiver implements Stoppable {
+
+    private static final long INTERVAL_MINUTES = 60;
+
+    private final MongoDBStatusEventStorage storage;
+    private final Duration age;
+    private final Duration retention;
+    private final LineLogger logger;
+    private final ScheduledExecutorService executor;
+    private final Clock clock;
+
+    /** Create the archiver.
+     * @param storage the storage system containing events.
+     * @param age the minimum time since an event completed processing before it is archived.
+     * @param retention the length of time to keep archived events.
+     * @param logger a logger.
+     */
+    public EventArchiver(
+            final MongoDBStatusEventStorage storage,
+            final Duration age,
+            final Duration retention,
+            final LineLogger logger) {
+        this(storage, age, retention, logger, Executors.newSingleThreadScheduledExecutor(),
+                Clock.systemDefaultZone());
+    }
+
+    /** Create an archiver solely for the purposes of testing. This constructor should
+     * not be used for any other purpose.
+     * @param storage the storage system containing events.
+     * @param age the minimum time since an event completed processing before it is archived.
+     * @param retention the length of time to keep archived events.
+     * @param logger a logger.
+     * @param testExecutor a single thread executor for testing purposes, usually a mock.
+     * @param clock a clock for determining the current time.
+     */
+    public EventArchiver(
+            final MongoDBStatusEventStorage storage,
+            final Duration age,
+            final Duration retention,
+            final LineLogger logger,
+            final ScheduledExecutorService testExecutor,
+            final Clock clock) {
+        Utils.nonNull(storage, "storage");
+        Utils.nonNull(age, "age");
+        Utils.nonNull(retention, "retention");
+        Utils.nonNull(logger, "logger");
+        if (age.isNegative() || age.isZero()) {
+            throw new IllegalArgumentException("age must be positive");
+        }
+        if (retention.isNegative()) {
+            throw new IllegalArgumentException("retention cannot be negative");
+        }
+        this.storage = storage;
+        this.age = age;
+        this.retention = retention;
+        this.logger = logger;
+        this.executor = testExecutor;
+        this.clock = clock;
+    }
+
+    /** Start the archiver. */
+    public void startArchiver() {
+        executor.scheduleWithFixedDelay(
+                () -> archive(), 0, INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private void archive() {
+        try {
+            final long count = storage.archiveCompletedEvents(
+                    clock.instant().minus(age), retention);
+            if (count > 0) {
+                logger.logInfo(String.format("Archived %s completed events", count));
+            }
+        } catch (FatalRetriableIndexingException e) {
+            logError("Error archiving events", e);
+        } catch (Throwable e) {
+            // if the exception escapes the executor will stop running the archiver
+            logError("Unexpected error archiving events", e);
+        }
+    }
+
+    private void logError(final String msg, final Throwable e) {
+        logger.logError(msg + ": " + e);
+        logger.logError(e);
+    }
+
+    @Override
+    public void stop(long millisToWait) throws InterruptedException {
+        if (millisToWait < 0) {
+            millisToWait = 0;
+        }
+        executor.shutdown();
+        executor.awaitTermination(millisToWait, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void awaitShutdown() throws InterruptedException {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,17 @@
+package kbasesearchengine.main;
+
+import java.io.IOException;
+
+import kbasesearchengine.ObjectData;
+
+/** A consumer of objects exported from the search service. Used to stream exported objects to
+ * a client rather than collecting them in memory.
+ */
+public interface ExportConsumer {
+
+    /** Accept an exported object.
+     * @param data the object.
+     * @throws IOException if an IO error occurs, e.g. when writing the object to a stream.
+     */
+    void accept(ObjectData data) throws IOException;
+}
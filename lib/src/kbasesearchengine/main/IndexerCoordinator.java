@@ -7,9 +7,12 @@ import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Ticker;
@@ -21,6 +24,7 @@ import kbasesearchengine.events.StatusEventID;
 import kbasesearchengine.events.StatusEventProcessingState;
 import kbasesearchengine.events.StatusEventWithId;
 import kbasesearchengine.events.StoredStatusEvent;
+import kbasesearchengine.events.StoredStatusEventState;
 import kbasesearchengine.events.exceptions.FatalIndexingException;
 import kbasesearchengine.events.exceptions.IndexingException;
 import kbasesearchengine.events.exceptions.RetriableIndexingException;
@@ -281,21 +285,28 @@ public class IndexerCoordinator implements Stoppable {
     }
     
     private void checkOnEventsInProcess() throws InterruptedException, IndexingException {
-        for (final StoredStatusEvent sse: queue.getProcessing()) {
-            final Optional<StoredStatusEvent> fromStorage =
-                    retrier.retryFunc(s -> s.get(sse.getID()), storage, sse);
-            if (fromStorage.isPresent()) {
-                final StoredStatusEvent e = fromStorage.get();
+        final Set<StoredStatusEvent> processing = queue.getProcessing();
+        if (processing.isEmpty()) {
+            return;
+        }
+        final Set<StatusEventID> ids = processing.stream().map(e -> e.getID())
+                .collect(Collectors.toSet());
+        // only the states are needed, so don't pull the entire events from storage
+        final Map<StatusEventID, StoredStatusEventState> states =
+                retrier.retryFunc(s -> s.getStates(ids), storage, null);
+        for (final StoredStatusEvent sse: processing) {
+            final StoredStatusEventState e = states.get(sse.getID());
+            if (e != null) {
                 final StatusEventProcessingState state = e.getState();
                 if (!state.equals(StatusEventProcessingState.PROC) &&
                         !state.equals(StatusEventProcessingState.READY)) {
-                    queue.setProcessingComplete(e);
+                    queue.setProcessingComplete(sse);
                     logger.logInfo(String.format(
                             "Event %s %s %s completed processing with state %s on worker %s",
-                            e.getID().getId(), e.getEvent().getEventType(),
-                            e.getEvent().toGUID(), state, e.getUpdater().orNull()));
+                            e.getID().getId(), sse.getEvent().getEventType(),
+                            sse.getEvent().toGUID(), state, e.getUpdater().orNull()));
                 } else {
-                    logDelayedEvent(e);
+                    logDelayedEvent(sse, e);
                 }
             } else {
                 logger.logError(String.format("Event %s is in the in-memory queue but not " +
@@ -305,7 +316,7 @@ public class IndexerCoordinator implements Stoppable {
         }
     }
 
-    private void logDelayedEvent(final StoredStatusEvent e) {
+    private void logDelayedEvent(final StoredStatusEvent sse, final StoredStatusEventState e) {
         // this method should only be called on events that are READY or PROC and so will
         // always have an updateTime().
         final Instant lastStateChange = e.getUpdateTime().get();
@@ -318,8 +329,9 @@ public class IndexerCoordinator implements Stoppable {
                 logger.logInfo(String.format(
                             "Event %s %s %s in state %s has been processing for %s hours " + 
                             "on worker %s",
-                            e.getID().getId(), e.getEvent().getEventType(),
-                            e.getEvent().toGUID(), e.getState(), hours, e.getUpdater().orNull()));
+                            e.getID().getId(), sse.getEvent().getEventType(),
+                            sse.getEvent().toGUID(), e.getState(), hours,
+                            e.getUpdater().orNull()));
             }
         }
     }
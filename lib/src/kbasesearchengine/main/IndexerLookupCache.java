@@ -0,0 +1,270 @@
+package kbasesearchengine.main;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.events.handler.ResolvedReference;
+import kbasesearchengine.system.SearchObjectType;
+import kbasesearchengine.tools.Utils;
+
+/** A cache for the results of looking up objects referenced by an object that is being indexed.
+ * Caches resolved references and the search types of objects so that popular
+ * referenced objects (e.g. reference genomes or media) are only resolved once rather than once
+ * per indexed object.
+ *
+ * Resolved references are keyed by the reference as it appears in the referencing object's data,
+ * which includes the storage code, so that every object that references the same object shares
+ * one entry regardless of the path by which the referencing object was reached. References
+ * in stored data are expected to be absolute, e.g. workspace UPAs including the version.
+ *
+ * Entries are evicted, least recently used first, when the cache is full and when their
+ * lifetime expires. The size of an entry is its weight, the number of characters in the string
+ * forms of the GUIDs and type names it contains, so that entries for subobjects with long IDs
+ * count for more than entries for plain workspace objects.
+ *
+ * The cache keeps an index from each object to the entries that refer to the object, so that
+ * all the entries for an object can be removed when it is deleted or renamed without scanning
+ * the whole cache.
+ */
+public class IndexerLookupCache {
+
+    /** The default number of seconds an entry remains in the cache after it was last accessed. */
+    public static final int DEFAULT_LIFETIME_SEC = 10 * 60;
+    
+    /** The default maximum weight of each of the reference and type caches. A resolved
+     * reference to a workspace object weighs about 50.
+     */
+    public static final int DEFAULT_MAX_WEIGHT = 5_000_000;
+
+    // reference as found in the data -> resolved reference
+    private final Cache<GUID, ResolvedReference> refCache;
+    private final Cache<GUID, SearchObjectType> typeCache;
+    // object -> keys of the entries that refer to the object. Guarded by the index itself.
+    private final Map<GUID, Set<GUID>> refIndex = new HashMap<>();
+    private final Map<GUID, Set<GUID>> typeIndex = new HashMap<>();
+
+    /** Create a cache.
+     * @param cacheLifeTimeInSec the number of seconds an entry should remain in the cache.
+     * @param maxWeight the maximum total weight of the resolved references and of the object
+     * types in the cache.
+     */
+    public IndexerLookupCache(final int cacheLifeTimeInSec, final int maxWeight) {
+        this(cacheLifeTimeInSec, maxWeight, Ticker.systemTicker());
+    }
+
+    /** Create a cache for testing purposes.
+     * @param cacheLifeTimeInSec the number of seconds an entry should remain in the cache.
+     * @param maxWeight the maximum total weight of the resolved references and of the object
+     * types in the cache.
+     * @param ticker a ticker implementation that allows controlling cache expiration with the
+     * provided ticker rather than waiting for the system clock. This is exposed for testing
+     * purposes.
+     */
+    public IndexerLookupCache(
+            final int cacheLifeTimeInSec,
+            final int maxWeight,
+            final Ticker ticker) {
+        Utils.nonNull(ticker, "ticker");
+        if (cacheLifeTimeInSec < 1) {
+            throw new IllegalArgumentException("cache lifetime must be at least one second");
+        }
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("cache weight must be at least one");
+        }
+        // the cache is used by a single indexer thread, so a single segment costs nothing and
+        // makes eviction least recently used across the whole cache
+        refCache = CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .concurrencyLevel(1)
+                .expireAfterAccess(cacheLifeTimeInSec, TimeUnit.SECONDS)
+                .maximumWeight(maxWeight)
+                .weigher(new Weigher<GUID, ResolvedReference>() {
+
+                    @Override
+                    public int weigh(final GUID ref, final ResolvedReference rr) {
+                        return ref.toString().length() +
+                                rr.getResolvedReference().toString().length() +
+                                rr.getType().getType().length();
+                    }
+                })
+                .removalListener(new RemovalListener<GUID, ResolvedReference>() {
+
+                    @Override
+                    public void onRemoval(
+                            final RemovalNotification<GUID, ResolvedReference> n) {
+                        if (n.getCause() != RemovalCause.REPLACED) {
+                            unindex(refIndex, n.getKey(), n.getKey(),
+                                    n.getValue().getResolvedReference());
+                        }
+                    }
+                })
+                .recordStats()
+                .build();
+        typeCache = CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .concurrencyLevel(1)
+                .expireAfterAccess(cacheLifeTimeInSec, TimeUnit.SECONDS)
+                .maximumWeight(maxWeight)
+                .weigher(new Weigher<GUID, SearchObjectType>() {
+
+                    @Override
+                    public int weigh(final GUID guid, final SearchObjectType type) {
+                        return guid.toString().length() + type.getType().length();
+                    }
+                })
+                .removalListener(new RemovalListener<GUID, SearchObjectType>() {
+
+                    @Override
+                    public void onRemoval(final RemovalNotification<GUID, SearchObjectType> n) {
+                        if (n.getCause() != RemovalCause.REPLACED) {
+                            unindex(typeIndex, n.getKey(), n.getKey());
+                        }
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    // the object, without the version or subobject
+    private static GUID toObject(final GUID guid) {
+        return new GUID(guid.getStorageCode(), guid.getAccessGroupId(),
+                guid.getAccessGroupObjectId(), null, null, null);
+    }
+
+    private static void index(
+            final Map<GUID, Set<GUID>> index,
+            final GUID key,
+            final GUID... objects) {
+        synchronized (index) {
+            for (final GUID o: objects) {
+                index.computeIfAbsent(toObject(o), k -> new HashSet<>()).add(key);
+            }
+        }
+    }
+
+    private static void unindex(
+            final Map<GUID, Set<GUID>> index,
+            final GUID key,
+            final GUID... objects) {
+        synchronized (index) {
+            for (final GUID o: objects) {
+                final GUID obj = toObject(o);
+                final Set<GUID> keys = index.get(obj);
+                if (keys != null) {
+                    keys.remove(key);
+                    if (keys.isEmpty()) {
+                        index.remove(obj);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Set<GUID> removeIndex(final Map<GUID, Set<GUID>> index, final GUID object) {
+        synchronized (index) {
+            final Set<GUID> keys = index.remove(toObject(object));
+            return keys == null ? Collections.emptySet() : keys;
+        }
+    }
+
+    /** Get a resolved reference from the cache.
+     * @param reference the reference as it appears in the referencing object's data.
+     * @return the resolved reference, or absent if the reference is not in the cache.
+     */
+    public Optional<ResolvedReference> getResolvedReference(final GUID reference) {
+        Utils.nonNull(reference, "reference");
+        return Optional.fromNullable(refCache.getIfPresent(reference));
+    }
+
+    /** Add a resolved reference to the cache, keyed by its original reference.
+     * @param resolvedReference the resolved reference.
+     */
+    public void putResolvedReference(final ResolvedReference resolvedReference) {
+        Utils.nonNull(resolvedReference, "resolvedReference");
+        final GUID ref = resolvedReference.getReference();
+        // a replaced entry stays indexed under its old objects, which at worst causes an extra
+        // invalidation of the entry
+        refCache.put(ref, resolvedReference);
+        index(refIndex, ref, ref, resolvedReference.getResolvedReference());
+    }
+
+    /** Get the search type of an object from the cache.
+     * @param guid the object's GUID.
+     * @return the object's type, or absent if the object is not in the cache.
+     */
+    public Optional<SearchObjectType> getType(final GUID guid) {
+        Utils.nonNull(guid, "guid");
+        return Optional.fromNullable(typeCache.getIfPresent(guid));
+    }
+
+    /** Add the search type of an object to the cache.
+     * @param guid the object's GUID.
+     * @param type the object's type.
+     */
+    public void putType(final GUID guid, final SearchObjectType type) {
+        Utils.nonNull(guid, "guid");
+        Utils.nonNull(type, "type");
+        typeCache.put(guid, type);
+        index(typeIndex, guid, guid);
+    }
+
+    /** Remove all the entries for an object from the cache, regardless of version or
+     * subobject. Used when the object is deleted or renamed.
+     * @param guid the object's GUID. Any version or subobject information is ignored.
+     */
+    public void invalidate(final GUID guid) {
+        Utils.nonNull(guid, "guid");
+        refCache.invalidateAll(removeIndex(refIndex, guid));
+        typeCache.invalidateAll(removeIndex(typeIndex, guid));
+    }
+
+    /** Get the hit and miss statistics for the resolved reference cache.
+     * @return the statistics.
+     */
+    public CacheStats getResolvedReferenceStats() {
+        return refCache.stats();
+    }
+
+    /** Get the hit and miss statistics for the object type cache.
+     * @return the statistics.
+     */
+    public CacheStats getTypeStats() {
+        return typeCache.stats();
+    }
+
+    /** Get the statistics for the cache as a map of statistic name to value, suitable for
+     * logging or export to a monitoring system.
+     * @return the statistics.
+     */
+    public Map<String, Long> getStatistics() {
+        final CacheStats refs = refCache.stats();
+        final CacheStats types = typeCache.stats();
+        final Map<String, Long> ret = new LinkedHashMap<>();
+        ret.put("refhits", refs.hitCount());
+        ret.put("refmisses", refs.missCount());
+        ret.put("refevictions", refs.evictionCount());
+        ret.put("refsize", refCache.size());
+        ret.put("typehits", types.hitCount());
+        ret.put("typemisses", types.missCount());
+        ret.put("typeevictions", types.evictionCount());
+        ret.put("typesize", typeCache.size());
+        return ret;
+    }
+
+}
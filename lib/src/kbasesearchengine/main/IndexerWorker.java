@@ -7,7 +7,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -19,6 +18,7 @@ import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.google.common.base.Optional;
@@ -26,6 +26,7 @@ import com.google.common.base.Optional;
 import kbasesearchengine.common.FileUtil;
 import kbasesearchengine.common.GUID;
 import kbasesearchengine.events.ChildStatusEvent;
+import kbasesearchengine.events.FailedChildStatusEvent;
 import kbasesearchengine.events.StatusEvent;
 import kbasesearchengine.events.StatusEventProcessingState;
 import kbasesearchengine.events.StatusEventWithId;
@@ -48,6 +49,8 @@ import kbasesearchengine.parse.GUIDNotFoundException;
 import kbasesearchengine.parse.KeywordParser;
 import kbasesearchengine.parse.ObjectParseException;
 import kbasesearchengine.parse.ObjectParser;
+import kbasesearchengine.parse.ParseResultCache;
+import kbasesearchengine.parse.ParseResultCache.ParseResult;
 import kbasesearchengine.parse.ParsedObject;
 import kbasesearchengine.parse.KeywordParser.ObjectLookupProvider;
 import kbasesearchengine.search.IndexingConflictException;
@@ -71,6 +74,9 @@ public class IndexerWorker implements Stoppable {
     private static final int RETRY_SLEEP_MS = 1000;
     private static final List<Integer> RETRY_FATAL_BACKOFF_MS = Arrays.asList(
             1000, 2000, 4000, 8000, 16000);
+    private static final long CACHE_STATS_LOG_INTERVAL_MS = 10 * 60 * 1000;
+    private static final int CHILD_BATCH_SIZE = 100;
+    private static final int MAX_CHILD_TRACES = 10;
 
     private final String id;
     private final File rootTempDir;
@@ -84,6 +90,9 @@ public class IndexerWorker implements Stoppable {
     private final SignalMonitor signalMonitor = new SignalMonitor();
     private boolean stopRunner = false;
     private final int maxObjectsPerLoad;
+    private final IndexerLookupCache lookupCache;
+    private final Optional<ParseResultCache> parseCache;
+    private long lastCacheStatsLog = System.currentTimeMillis();
     
     private final Retrier retrier = new Retrier(RETRY_COUNT, RETRY_SLEEP_MS,
             RETRY_FATAL_BACKOFF_MS,
@@ -101,9 +110,32 @@ public class IndexerWorker implements Stoppable {
             final Set<String> workerCodes,
             final int maxObjectsPerLoad)
             throws IOException {
+        this(id, eventHandlers, storage, indexingStorage, typeStorage, tempDir, logger,
+                workerCodes, maxObjectsPerLoad, new IndexerLookupCache(
+                        IndexerLookupCache.DEFAULT_LIFETIME_SEC,
+                        IndexerLookupCache.DEFAULT_MAX_WEIGHT),
+                null);
+    }
+    
+    public IndexerWorker(
+            final String id,
+            final List<EventHandler> eventHandlers,
+            final StatusEventStorage storage,
+            final IndexingStorage indexingStorage,
+            final TypeStorage typeStorage,
+            final File tempDir,
+            final LineLogger logger,
+            final Set<String> workerCodes,
+            final int maxObjectsPerLoad,
+            final IndexerLookupCache lookupCache,
+            final ParseResultCache parseCache)
+            throws IOException {
         Utils.notNullOrEmpty("id", "id cannot be null or the empty string");
         Utils.nonNull(logger, "logger");
         Utils.nonNull(indexingStorage, "indexingStorage");
+        Utils.nonNull(lookupCache, "lookupCache");
+        this.lookupCache = lookupCache;
+        this.parseCache = Optional.fromNullable(parseCache);
         this.maxObjectsPerLoad = maxObjectsPerLoad;
         this.workerCodes = workerCodes;
         logger.logInfo("Worker codes: " + workerCodes);
@@ -143,6 +175,7 @@ public class IndexerWorker implements Stoppable {
                 try {
                     // keep processing events until there are none left
                     processedEvent = runCycle();
+                    logCacheStatsPeriodically();
                 } catch (InterruptedException | FatalIndexingException e) {
                     logError(LogPrefix.FATAL, e);
                     executor.shutdown();
@@ -160,8 +193,12 @@ public class IndexerWorker implements Stoppable {
             millisToWait = 0;
         }
         stopRunner = true;
-        executor.shutdown();
-        executor.awaitTermination(millisToWait, TimeUnit.MILLISECONDS);
+        // the executor is null if the worker was only used to process events directly
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(millisToWait, TimeUnit.MILLISECONDS);
+        }
+        logCacheStats();
 
         try {
             FileUtils.deleteDirectory(rootTempDir);
@@ -172,6 +209,21 @@ public class IndexerWorker implements Stoppable {
         }
     }
     
+    private void logCacheStatsPeriodically() {
+        final long now = System.currentTimeMillis();
+        if (now - lastCacheStatsLog >= CACHE_STATS_LOG_INTERVAL_MS) {
+            lastCacheStatsLog = now;
+            logCacheStats();
+        }
+    }
+    
+    private void logCacheStats() {
+        logger.logInfo("[Indexer] lookup cache statistics: " + lookupCache.getStatistics());
+        if (parseCache.isPresent()) {
+            logger.logInfo("[Indexer] parse cache statistics: " + parseCache.get().getStats());
+        }
+    }
+    
     private enum LogPrefix {
         STD, FATAL, UNEXPECTED;
     }
@@ -283,20 +335,26 @@ public class IndexerWorker implements Stoppable {
         } catch (InterruptedException e) {
             throw e;
         }
+        final FailedChildBuffer failed = new FailedChildBuffer(parentEvent);
         StatusEventProcessingState parentResult = StatusEventProcessingState.INDX;
         while (childIter.hasNext()) {
             ChildStatusEvent subev = null;
             try {
                 subev = retrier.retryFunc(i -> getNextSubEvent(i), childIter, parentEvent);
             } catch (IndexingException e) {
+                if (e instanceof FatalIndexingException) {
+                    failed.flush();
+                }
                 handleException("Error getting event information from data storage",
                         parentEvent, e);
                 parentResult = StatusEventProcessingState.FAIL;
             }
-            if (subev != null && StatusEventProcessingState.FAIL.equals(processEvent(subev))) {
+            if (subev != null &&
+                    StatusEventProcessingState.FAIL.equals(processEvent(subev, failed))) {
                 parentResult = StatusEventProcessingState.FAIL;
             }
         }
+        failed.flush();
         markEventProcessed(parentEvent, parentResult);
     }
     
@@ -323,6 +381,15 @@ public class IndexerWorker implements Stoppable {
      */
     public StatusEventProcessingState processEvent(final StatusEventWithId ev)
             throws InterruptedException, FatalIndexingException {
+        return processEvent(ev, null);
+    }
+    
+    // failed is nullable. If present, failed child events are buffered rather than stored
+    // immediately.
+    private StatusEventProcessingState processEvent(
+            final StatusEventWithId ev,
+            final FailedChildBuffer failed)
+            throws InterruptedException, FatalIndexingException {
         final Optional<StorageObjectType> type = ev.getEvent().getStorageObjectType();
         if (type.isPresent() && !isStorageTypeSupported(type.get())) {
             logger.logInfo("[Indexer] skipping " + ev.getEvent().getEventType() + ", " + 
@@ -335,13 +402,38 @@ public class IndexerWorker implements Stoppable {
         try {
             retrier.retryCons(e -> processEvent(e), ev.getEvent(), ev);
         } catch (IndexingException e) {
-            handleException("Error processing event", ev, e);
+            handleException("Error processing event", ev, e, failed);
             return StatusEventProcessingState.FAIL;
         }
         logger.logInfo("[Indexer]   (total time: " + (System.currentTimeMillis() - time) + "ms.)");
         return StatusEventProcessingState.INDX;
     }
     
+    /** Process an event that is not stored in the event storage system, e.g. when loading data
+     * directly from a data source. Unlike {@link #processEvent(StatusEventWithId)}, errors are
+     * not recorded in the storage system but are thrown to the caller.
+     * Events which call for indexing new data for which a set of parsing rules is not present
+     * are skipped.
+     * This method may be called concurrently from multiple threads as long as the events for
+     * any one object are processed in order by a single thread.
+     * @param ev the event to process. Expandable events are not supported.
+     * @return {@link StatusEventProcessingState#INDX} if the event was processed, or
+     * {@link StatusEventProcessingState#UNINDX} if it was skipped.
+     * @throws InterruptedException if the thread is interrupted.
+     * @throws IndexingException if the event could not be processed. A
+     * {@link FatalIndexingException} indicates that further events are unlikely to succeed.
+     */
+    public StatusEventProcessingState processUnstoredEvent(final StatusEvent ev)
+            throws InterruptedException, IndexingException {
+        Utils.nonNull(ev, "ev");
+        final Optional<StorageObjectType> type = ev.getStorageObjectType();
+        if (type.isPresent() && !isStorageTypeSupported(type.get())) {
+            return StatusEventProcessingState.UNINDX;
+        }
+        retrier.retryCons(e -> processEvent(e), ev, null);
+        return StatusEventProcessingState.INDX;
+    }
+    
     private boolean isStorageTypeSupported(final StorageObjectType storageObjectType) {
         return !typeStorage.listObjectTypeParsingRules(storageObjectType).isEmpty();
     }
@@ -362,8 +454,24 @@ public class IndexerWorker implements Stoppable {
             final StatusEventWithId event,
             final IndexingException exception)
             throws FatalIndexingException, InterruptedException {
+        handleException(error, event, exception, null);
+    }
+    
+    // failed is nullable
+    private void handleException(
+            final String error,
+            final StatusEventWithId event,
+            final IndexingException exception,
+            final FailedChildBuffer failed)
+            throws FatalIndexingException, InterruptedException {
         try {
-            if (event.isParentId()) { // child event
+            if (event.isParentId() && failed != null) {
+                failed.add((ChildStatusEvent) event, exception);
+                if (exception instanceof FatalIndexingException) {
+                    // the worker is about to stop, so don't lose the buffered events
+                    failed.flush();
+                }
+            } else if (event.isParentId()) { // child event
                 retrier.retryCons(s -> s.store((ChildStatusEvent) event,
                                 exception.getErrorType().toString(), exception),
                         storage, event);
@@ -391,6 +499,50 @@ public class IndexerWorker implements Stoppable {
         }
     }
 
+    /* Buffers failed child events of a single parent event so they can be stored in bulk, and
+     * limits the number of stack traces stored per parent event, since the children of a
+     * parent commonly fail for the same reason and the traces can be large.
+     */
+    private class FailedChildBuffer {
+        
+        private final StoredStatusEvent parentEvent;
+        private final List<FailedChildStatusEvent> buffer = new ArrayList<>();
+        private int traces = 0;
+        
+        private FailedChildBuffer(final StoredStatusEvent parentEvent) {
+            this.parentEvent = parentEvent;
+        }
+        
+        private void add(final ChildStatusEvent event, final IndexingException exception)
+                throws FatalIndexingException, InterruptedException {
+            final boolean omitTrace = traces >= MAX_CHILD_TRACES;
+            if (!omitTrace) {
+                traces++;
+            }
+            buffer.add(new FailedChildStatusEvent(
+                    event, exception.getErrorType().toString(), exception, omitTrace));
+            if (buffer.size() >= CHILD_BATCH_SIZE) {
+                flush();
+            }
+        }
+        
+        private void flush() throws FatalIndexingException, InterruptedException {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            final List<FailedChildStatusEvent> batch = new ArrayList<>(buffer);
+            try {
+                retrier.retryCons(s -> s.storeChildren(batch), storage, parentEvent);
+            } catch (FatalIndexingException | InterruptedException e) {
+                throw e;
+            } catch (IndexingException e) { // untestable
+                throw new RuntimeException(
+                        "non-fatal indexing exceptions should not be thrown here", e);
+            }
+            buffer.clear();
+        }
+    }
+
     private String toLogString(final Optional<StorageObjectType> type) {
         if (!type.isPresent()) {
             return "";
@@ -454,6 +606,7 @@ public class IndexerWorker implements Stoppable {
 //                break;
             case DELETE_ALL_VERSIONS:
                 deleteAllVersions(ev.toGUID());
+                lookupCache.invalidate(ev.toGUID());
                 break;
             case UNDELETE_ALL_VERSIONS:
                 undeleteAllVersions(ev.toGUID());
@@ -468,6 +621,7 @@ public class IndexerWorker implements Stoppable {
 //                break;
             case RENAME_ALL_VERSIONS:
                 renameAllVersions(ev.toGUID(), ev.getNewName().get());
+                lookupCache.invalidate(ev.toGUID());
                 break;
             case PUBLISH_ALL_VERSIONS:
                 publishAllVersions(ev.toGUID());
@@ -521,32 +675,49 @@ public class IndexerWorker implements Stoppable {
          * 
          */
         long t1 = System.currentTimeMillis();
-        final File tempFile;
-        try {
-            FileUtil.getOrCreateSubDir(rootTempDir, guid.getStorageCode());
-            tempFile = File.createTempFile("ws_srv_response_", ".json");
-        } catch (IOException e) {
-            throw new FatalRetriableIndexingException(ErrorType.OTHER, e.getMessage(), e);
-        }
+        // the file is not created here since the event handler may keep the data in memory
+        final File tempFile = new File(
+                FileUtil.getOrCreateSubDir(rootTempDir, guid.getStorageCode()),
+                "ws_srv_response_" + UUID.randomUUID() + ".json");
         if (indexLookup == null) {
             indexLookup = new MOPLookupProvider();
         }
+        SourceData obj = null;
         try {
             // make a copy to avoid mutating the caller's path
             final LinkedList<GUID> newRefPath = new LinkedList<>(objectRefPath);
             newRefPath.add(guid);
             final EventHandler handler = getEventHandler(guid);
-            final SourceData obj = handler.load(newRefPath, tempFile.toPath());
-            long loadTime = System.currentTimeMillis() - t1;
-            logger.logInfo("[Indexer]   " + guid + ", loading time: " + loadTime + " ms.");
-            logger.timeStat(guid, loadTime, 0, 0);
             final List<ObjectTypeParsingRules> parsingRules = new ArrayList<>( 
                     typeStorage.listObjectTypeParsingRules(storageObjectType));
             Collections.sort(parsingRules, new ParsingRulesSubtypeFirstComparator());
+            final Map<ObjectTypeParsingRules, ParseResult> cached = new HashMap<>();
+            if (parseCache.isPresent() && !parsingRules.isEmpty()) {
+                // check the cache before downloading the data, which may not be needed
+                final SourceData meta = handler.loadMetadata(newRefPath);
+                if (meta.getMD5().isPresent()) {
+                    for (final ObjectTypeParsingRules rule: parsingRules) {
+                        final Optional<ParseResult> res = parseCache.get().get(
+                                meta.getMD5().get(), rule);
+                        if (res.isPresent()) {
+                            cached.put(rule, res.get());
+                        }
+                    }
+                }
+                if (cached.size() == parsingRules.size()) {
+                    obj = meta;
+                }
+            }
+            if (obj == null) {
+                obj = handler.load(newRefPath, tempFile.toPath());
+            }
+            long loadTime = System.currentTimeMillis() - t1;
+            logger.logInfo("[Indexer]   " + guid + ", loading time: " + loadTime + " ms.");
+            logger.timeStat(guid, loadTime, 0, 0);
             for (final ObjectTypeParsingRules rule : parsingRules) {
                 final long t2 = System.currentTimeMillis();
                 final ParseObjectsRet parsedRet = parseObjects(guid, indexLookup,
-                        newRefPath, obj, rule);
+                        newRefPath, obj, rule, cached.get(rule));
                 long parsingTime = System.currentTimeMillis() - t2;
                 logger.logInfo("[Indexer]   " + toVerRep(rule.getGlobalObjectType()) +
                         ", parsing time: " + parsingTime + " ms.");
@@ -559,6 +730,10 @@ public class IndexerWorker implements Stoppable {
                 logger.timeStat(guid, 0, parsingTime, indexTime);
             }
         } finally {
+            // all parsers are closed at this point, so the mapping can be released
+            if (obj != null && obj.getMappedData().isPresent()) {
+                obj.getMappedData().get().close();
+            }
             tempFile.delete();
         }
     }
@@ -611,14 +786,16 @@ public class IndexerWorker implements Stoppable {
         }
     }
     
+    // cached is null if the object's JSON isn't in the parse cache
     private ParseObjectsRet parseObjects(
             final GUID guid,
             final ObjectLookupProvider indexLookup,
             final LinkedList<GUID> newRefPath,
             final SourceData obj,
-            final ObjectTypeParsingRules rule)
+            final ObjectTypeParsingRules rule,
+            final ParseResult cached)
             throws IndexingException, InterruptedException {
-        final List<?> inputs = Arrays.asList(guid, indexLookup, newRefPath, obj, rule);
+        final List<?> inputs = Arrays.asList(guid, indexLookup, newRefPath, obj, rule, cached);
         return retrier.retryFunc(i -> parseObjects(i), inputs, null);
     }
     
@@ -631,19 +808,35 @@ public class IndexerWorker implements Stoppable {
         final List<GUID> newRefPath = (List<GUID>) inputs.get(2);
         final SourceData obj = (SourceData) inputs.get(3);
         final ObjectTypeParsingRules rule = (ObjectTypeParsingRules) inputs.get(4);
+        final ParseResult cached = (ParseResult) inputs.get(5);
 
         final Map<GUID, ParsedObject> guidToObj = new HashMap<>();
         final String parentJson;
         try {
-            try (JsonParser jts = obj.getData().getPlacedStream()) {
-                parentJson = ObjectParser.extractParentFragment(rule, jts);
+            final Map<GUID, String> guidToJson;
+            if (cached != null) {
+                logger.logInfo("[Indexer]   " + toVerRep(rule.getGlobalObjectType()) +
+                        ", using cached parse results for MD5 " + obj.getMD5().get());
+                parentJson = cached.getParentJson().orNull();
+                guidToJson = cached.getJson(guid);
+            } else {
+                try (JsonParser jts = obj.getDataParser()) {
+                    parentJson = ObjectParser.extractParentFragment(rule, jts);
+                }
+                guidToJson = ObjectParser.parseSubObjects(obj, guid, rule);
+                if (parseCache.isPresent() && obj.getMD5().isPresent()) {
+                    parseCache.get().put(obj.getMD5().get(), rule, parentJson, guidToJson);
+                }
             }
-            final Map<GUID, String> guidToJson = ObjectParser.parseSubObjects(obj, guid, rule);
             if (guidToJson.size() > maxObjectsPerLoad) {
                 throw new UnprocessableEventIndexingException(ErrorType.SUBOBJECT_COUNT,
                         String.format("Object %s has %s subobjects, exceeding the limit of %s",
                         guid, guidToJson.size(), maxObjectsPerLoad));
             }
+            // the references are resolved, checked, and indexed even if the JSON is cached
+            // resolve the references for all the subobjects at once rather than per subobject
+            KeywordParser.resolveReferences(guidToJson.values(), parentJson,
+                    rule.getIndexingRules(), indexLookup, newRefPath);
             for (final GUID subGuid : guidToJson.keySet()) {
                 final String json = guidToJson.get(subGuid);
                 guidToObj.put(subGuid, KeywordParser.extractKeywords(
@@ -717,10 +910,10 @@ public class IndexerWorker implements Stoppable {
      *
      */
     private class MOPLookupProvider implements ObjectLookupProvider {
-        // storage code -> full ref path -> resolved guid
-        private Map<String, Map<String, GUID>> refResolvingCache = new LinkedHashMap<>();
+        // resolved references and types are cached across objects in the worker's lookup cache
         private Map<GUID, ObjectData> objLookupCache = new LinkedHashMap<>();
-        private Map<GUID, SearchObjectType> guidToTypeCache = new LinkedHashMap<>();
+        // references already resolved and checked while indexing the current object
+        private final Map<GUID, GUID> checkedRefs = new HashMap<>();
         
         @Override
         public Set<GUID> resolveRefs(List<GUID> callerRefPath, Set<GUID> refs)
@@ -730,48 +923,59 @@ public class IndexerWorker implements Stoppable {
              * in the case of the workspace
              */
             
-            // there may be a way to cache more of this info and call the workspace less
-            // by checking the ref against the refs in the parent object.
-            // doing it the dumb way for now.
             final EventHandler eh = getEventHandler(callerRefPath.get(0));
-            final String storageCode = eh.getStorageCode();
-            if (!refResolvingCache.containsKey(storageCode)) {
-                refResolvingCache.put(storageCode, new HashMap<>());
-            }
-            final Map<GUID, String> refToRefPath = eh.buildReferencePaths(callerRefPath, refs);
-            Set<GUID> ret = new LinkedHashSet<>();
-            Set<GUID> refsToResolve = new LinkedHashSet<>();
+            // the references are cached as they appear in the data, so objects reached by
+            // different paths share entries
+            final Set<GUID> ret = new LinkedHashSet<>();
+            final List<ResolvedReference> resrefs = new LinkedList<>();
+            final Set<GUID> refsToResolve = new LinkedHashSet<>();
             for (final GUID ref : refs) {
-                final String refpath = refToRefPath.get(ref);
-                if (refResolvingCache.get(storageCode).containsKey(refpath)) {
-                    ret.add(refResolvingCache.get(storageCode).get(refpath));
+                if (checkedRefs.containsKey(ref)) {
+                    ret.add(checkedRefs.get(ref));
+                    continue;
+                }
+                final Optional<ResolvedReference> cached = lookupCache.getResolvedReference(ref);
+                if (cached.isPresent()) {
+                    resrefs.add(cached.get());
                 } else {
                     refsToResolve.add(ref);
                 }
             }
             if (refsToResolve.size() > 0) {
-                final Set<ResolvedReference> resrefs =
-                        resolveReferences(eh, callerRefPath, refsToResolve);
-                for (final ResolvedReference rr: resrefs) {
-                    final GUID guid = rr.getResolvedReference();
-                    final boolean indexed = retrier.retryFunc(
-                            g -> checkParentGuidExists(g), guid, null);
-                    if (!indexed) {
-                        indexObjectWrapperFn(guid, rr.getType(), rr.getTimestamp(), false,
-                                this, callerRefPath);
-                    }
-                    ret.add(guid);
-                    refResolvingCache.get(storageCode)
-                            .put(refToRefPath.get(rr.getReference()), guid);
+                for (final ResolvedReference rr:
+                        resolveReferences(eh, callerRefPath, refsToResolve)) {
+                    resrefs.add(rr);
+                    lookupCache.putResolvedReference(rr);
                 }
             }
+            if (resrefs.isEmpty()) {
+                return ret;
+            }
+            // cached references are checked as well, since the referenced object may have been
+            // removed from the index since it was cached
+            final Set<GUID> resolved = resrefs.stream()
+                    .map(rr -> rr.getResolvedReference()).collect(Collectors.toSet());
+            final Map<GUID, Boolean> indexed = retrier.retryFunc(
+                    g -> checkParentGuidsExist(g), resolved, null);
+            for (final ResolvedReference rr: resrefs) {
+                final GUID guid = rr.getResolvedReference();
+                // more than one reference may resolve to the same object
+                if (!indexed.get(guid)) {
+                    indexObjectWrapperFn(guid, rr.getType(), rr.getTimestamp(), false,
+                            this, callerRefPath);
+                    indexed.put(guid, true);
+                }
+                ret.add(guid);
+                checkedRefs.put(rr.getReference(), guid);
+            }
             return ret;
         }
         
-        private boolean checkParentGuidExists(final GUID guid) throws RetriableIndexingException {
+        private Map<GUID, Boolean> checkParentGuidsExist(final Set<GUID> guids)
+                throws RetriableIndexingException {
             try {
-                return indexingStorage.checkParentGuidsExist(new HashSet<>(Arrays.asList(guid)))
-                        .get(guid);
+                // copy, since the caller updates the map as objects are indexed
+                return new HashMap<>(indexingStorage.checkParentGuidsExist(guids));
             } catch (IOException e) {
                 throw new RetriableIndexingException(ErrorType.OTHER, e.getMessage(), e);
             }
@@ -876,8 +1080,9 @@ public class IndexerWorker implements Stoppable {
             Map<GUID, SearchObjectType> ret = new LinkedHashMap<>();
             Set<GUID> guidsToLoad = new LinkedHashSet<>();
             for (GUID guid : guids) {
-                if (guidToTypeCache.containsKey(guid)) {
-                    ret.put(guid, guidToTypeCache.get(guid));
+                final Optional<SearchObjectType> cached = lookupCache.getType(guid);
+                if (cached.isPresent()) {
+                    ret.put(guid, cached.get());
                 } else {
                     guidsToLoad.add(guid);
                 }
@@ -891,7 +1096,7 @@ public class IndexerWorker implements Stoppable {
                 for (final ObjectData od: data) {
                     loaded.put(od.getGUID(), od.getType().get());
                 }
-                guidToTypeCache.putAll(loaded);
+                loaded.forEach((g, t) -> lookupCache.putType(g, t));
                 ret.putAll(loaded);
             }
             return ret;
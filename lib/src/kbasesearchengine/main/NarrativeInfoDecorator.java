@@ -1,14 +1,30 @@
 package kbasesearchengine.main;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import kbasesearchengine.GetObjectsInput;
 import kbasesearchengine.GetObjectsOutput;
+import kbasesearchengine.MultiSearchInput;
+import kbasesearchengine.MultiSearchOutput;
 import kbasesearchengine.ObjectData;
 import kbasesearchengine.SearchObjectsInput;
 import kbasesearchengine.SearchObjectsOutput;
@@ -35,16 +51,29 @@ import us.kbase.common.service.Tuple9;
  * narrative information, it will be overwritten if any workspace IDs in the {@link ObjectData}
  * match with the IDs in the narrative information.
  * 
+ * Workspace information is cached for a limited time. A cached entry is refreshed early if an
+ * object in the results is newer than the workspace modification date in the entry, since
+ * the workspace must have changed since the entry was cached. Workspace information that is not
+ * in the cache is fetched from the workspace in parallel. Call {@link #close()} to stop the
+ * threads that fetch the information when the decorator is no longer needed.
+ * 
  * @author Uma Ganapathy
  * @author gaprice@lbl.gov
  *
  */
-public class NarrativeInfoDecorator implements SearchInterface {
+public class NarrativeInfoDecorator implements SearchInterface, Closeable {
+
+    private static final int DEFAULT_CACHE_LIFETIME_SEC = 60;
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final int DEFAULT_MAX_CONCURRENT_FETCHES = 10;
 
     private final WorkspaceEventHandler weh;
     private final SearchInterface searchInterface;
     private final TemporaryAuth2Client authClient;
     private final String token;
+    // the display name, e5, is never set in the cached info
+    private final Cache<Long, Tuple5<String, Long, Long, String, String>> wsInfoCache;
+    private final ExecutorService fetchExecutor;
 
     /** Create a decorator.
      * @param searchInterface the search interface to decorate. This may be a root interface that
@@ -61,14 +90,102 @@ public class NarrativeInfoDecorator implements SearchInterface {
             final WorkspaceEventHandler wsHandler,
             final TemporaryAuth2Client authClient,
             final String token) {
+        this(searchInterface, wsHandler, authClient, token, DEFAULT_CACHE_LIFETIME_SEC,
+                DEFAULT_CACHE_SIZE, DEFAULT_MAX_CONCURRENT_FETCHES);
+    }
+    
+    /** Create a decorator.
+     * @param searchInterface the search interface to decorate. This may be a root interface that
+     * produces data from a search storage system or another decorator.
+     * @param wsHandler a workspace event handler pointing at the workspace from which
+     * data should be retrieved. This should be the same workspace as that from which the data
+     * is indexed.
+     * @param authClient a client for the KBase authentication system.
+     * @param token a token to be used with the auth client. The token needs no particular
+     * privileges.
+     * @param cacheLifeTimeInSec the number of seconds workspace information should remain in
+     * the cache.
+     * @param cacheSize the maximum number of workspaces for which to cache information.
+     * @param maxConcurrentFetches the maximum number of workspaces for which information will
+     * be fetched from the workspace at the same time.
+     */
+    public NarrativeInfoDecorator(
+            final SearchInterface searchInterface,
+            final WorkspaceEventHandler wsHandler,
+            final TemporaryAuth2Client authClient,
+            final String token,
+            final int cacheLifeTimeInSec,
+            final int cacheSize,
+            final int maxConcurrentFetches) {
+        this(searchInterface, wsHandler, authClient, token, cacheLifeTimeInSec, cacheSize,
+                maxConcurrentFetches, Ticker.systemTicker());
+    }
+    
+    /** Create a decorator for testing purposes.
+     * @param searchInterface the search interface to decorate. This may be a root interface that
+     * produces data from a search storage system or another decorator.
+     * @param wsHandler a workspace event handler pointing at the workspace from which
+     * data should be retrieved. This should be the same workspace as that from which the data
+     * is indexed.
+     * @param authClient a client for the KBase authentication system.
+     * @param token a token to be used with the auth client. The token needs no particular
+     * privileges.
+     * @param cacheLifeTimeInSec the number of seconds workspace information should remain in
+     * the cache.
+     * @param cacheSize the maximum number of workspaces for which to cache information.
+     * @param maxConcurrentFetches the maximum number of workspaces for which information will
+     * be fetched from the workspace at the same time.
+     * @param ticker a ticker implementation that allows controlling cache expiration with the
+     * provided ticker rather than waiting for the system clock. This is exposed for testing
+     * purposes.
+     */
+    public NarrativeInfoDecorator(
+            final SearchInterface searchInterface,
+            final WorkspaceEventHandler wsHandler,
+            final TemporaryAuth2Client authClient,
+            final String token,
+            final int cacheLifeTimeInSec,
+            final int cacheSize,
+            final int maxConcurrentFetches,
+            final Ticker ticker) {
         Utils.nonNull(searchInterface, "searchInterface");
         Utils.nonNull(wsHandler, "wsHandler");
         Utils.nonNull(authClient, "authClient");
         Utils.notNullOrEmpty(token, "token cannot be null or whitespace only");
+        Utils.nonNull(ticker, "ticker");
+        if (cacheLifeTimeInSec < 1) {
+            throw new IllegalArgumentException("cache lifetime must be at least one second");
+        }
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("cache size must be at least one");
+        }
+        if (maxConcurrentFetches < 1) {
+            throw new IllegalArgumentException("maxConcurrentFetches must be at least one");
+        }
         this.searchInterface = searchInterface;
         this.weh = wsHandler;
         this.authClient = authClient;
         this.token = token;
+        this.wsInfoCache = CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .expireAfterWrite(cacheLifeTimeInSec, TimeUnit.SECONDS)
+                .maximumSize(cacheSize)
+                .build();
+        this.fetchExecutor = Executors.newFixedThreadPool(maxConcurrentFetches, r -> {
+            final Thread t = new Thread(r, "NarrativeInfoDecorator-fetch");
+            // don't keep the server alive just for this pool
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Stop the threads that fetch workspace information. Fetches in progress are interrupted.
+     * The decorator cannot be used to decorate search results after it is closed. Calling this
+     * method more than once has no effect.
+     */
+    @Override
+    public void close() {
+        fetchExecutor.shutdownNow();
     }
 
     @Override
@@ -82,6 +199,11 @@ public class NarrativeInfoDecorator implements SearchInterface {
         return searchInterface.listTypes(uniqueType);
     }
 
+    @Override
+    public String getTypesVersion() throws Exception {
+        return searchInterface.getTypesVersion();
+    }
+
     @Override
     public SearchObjectsOutput searchObjects(final SearchObjectsInput params, final String user)
             throws Exception {
@@ -91,6 +213,36 @@ public class NarrativeInfoDecorator implements SearchInterface {
                 searchObjsOutput.getAccessGroupNarrativeInfo()));
     }
 
+    @Override
+    public void exportObjects(
+            final SearchObjectsInput params,
+            final String user,
+            final ExportConsumer consumer)
+            throws Exception {
+        // there's no output structure to hold the narrative info mapping for streamed objects
+        searchInterface.exportObjects(params, user, consumer);
+    }
+
+    @Override
+    public MultiSearchOutput multiSearch(final MultiSearchInput params, final String user)
+            throws Exception {
+        final MultiSearchOutput output = searchInterface.multiSearch(params, user);
+        // look up the workspaces and users for all the searches at once
+        final List<List<ObjectData>> objects = new LinkedList<>();
+        final List<Map<Long, Tuple5<String, Long, Long, String, String>>> narrInfo =
+                new LinkedList<>();
+        for (final SearchObjectsOutput searchObjsOutput: output.getObjectResults()) {
+            objects.add(searchObjsOutput.getObjects());
+            narrInfo.add(searchObjsOutput.getAccessGroupNarrativeInfo());
+        }
+        final Iterator<Map<Long, Tuple5<String, Long, Long, String, String>>> decorated =
+                addNarrativeInfo(objects, narrInfo).iterator();
+        for (final SearchObjectsOutput searchObjsOutput: output.getObjectResults()) {
+            searchObjsOutput.withAccessGroupNarrativeInfo(decorated.next());
+        }
+        return output;
+    }
+
     @Override
     public GetObjectsOutput getObjects(final GetObjectsInput params, final String user)
             throws Exception {
@@ -104,33 +256,147 @@ public class NarrativeInfoDecorator implements SearchInterface {
             final List<ObjectData> objects,
             final Map<Long, Tuple5 <String, Long, Long, String, String>> accessGroupNarrInfo)
             throws IOException, JsonClientException, Auth2Exception {
+        return addNarrativeInfo(Collections.singletonList(objects),
+                Collections.singletonList(accessGroupNarrInfo)).get(0);
+    }
 
-        final Map<Long, Tuple5 <String, Long, Long, String, String>> retVal = new HashMap<>();
-
-        if (accessGroupNarrInfo != null) {
-            retVal.putAll(accessGroupNarrInfo);
+    /* Decorates several lists of objects at once, so that each workspace and user is only
+     * looked up once across all the lists. Returns the narrative info for each list of objects,
+     * in the same order.
+     */
+    private List<Map<Long, Tuple5 <String, Long, Long, String, String>>> addNarrativeInfo(
+            final List<List<ObjectData>> objectLists,
+            final List<Map<Long, Tuple5 <String, Long, Long, String, String>>> narrInfos)
+            throws IOException, JsonClientException, Auth2Exception {
+        if (fetchExecutor.isShutdown()) {
+            throw new IllegalStateException("The decorator is closed");
         }
-        final Set<Long> wsIdsSet = new HashSet<>();
-
-        for (final ObjectData objData: objects) {
-            final GUID guid = new GUID(objData.getGuid());
-            if (WorkspaceEventHandler.STORAGE_CODE.equals(guid.getStorageCode())) {
-                wsIdsSet.add((long) guid.getAccessGroupId());
+        // workspace ID -> the timestamp of the newest object in the workspace, or null
+        final Map<Long, Long> wsIdToNewestObj = new HashMap<>();
+        final List<Set<Long>> wsIds = new LinkedList<>();
+        for (final List<ObjectData> objects: objectLists) {
+            final Set<Long> ids = new HashSet<>();
+            for (final ObjectData objData: objects) {
+                final GUID guid = new GUID(objData.getGuid());
+                if (WorkspaceEventHandler.STORAGE_CODE.equals(guid.getStorageCode())) {
+                    final long wsid = (long) guid.getAccessGroupId();
+                    ids.add(wsid);
+                    final Long prev = wsIdToNewestObj.get(wsid);
+                    final Long ts = objData.getTimestamp();
+                    wsIdToNewestObj.put(wsid,
+                            prev == null || (ts != null && ts > prev) ? ts : prev);
+                }
             }
+            wsIds.add(ids);
         }
+        final Map<Long, Tuple5<String, Long, Long, String, String>> info =
+                getNarrativeInfo(wsIdToNewestObj);
         final Set<String> userNames = new HashSet<>();
-        for (final long workspaceId: wsIdsSet) {
-            final Tuple5<String, Long, Long, String, String> tempNarrInfo =
-                    getNarrativeInfo(workspaceId);
-            userNames.add(tempNarrInfo.getE4());
-            retVal.put(workspaceId, tempNarrInfo);
+        for (final Tuple5<String, Long, Long, String, String> t: info.values()) {
+            userNames.add(t.getE4());
         }
         final Map<String, String> displayNames = authClient.getUserDisplayNames(token, userNames);
-        // e5 is the full / display name, e4 is the user name
-        // defaults to the existing name so names from previous decorator layers aren't set to null
-        retVal.values().stream().forEach(t -> t.withE5(
-                displayNames.getOrDefault(t.getE4(), t.getE5())));
-        return retVal;
+
+        final List<Map<Long, Tuple5 <String, Long, Long, String, String>>> ret =
+                new LinkedList<>();
+        final Iterator<Map<Long, Tuple5 <String, Long, Long, String, String>>> narrInfoIter =
+                narrInfos.iterator();
+        for (final Set<Long> ids: wsIds) {
+            final Map<Long, Tuple5 <String, Long, Long, String, String>> accessGroupNarrInfo =
+                    narrInfoIter.next();
+            final Map<Long, Tuple5 <String, Long, Long, String, String>> retVal =
+                    new HashMap<>();
+            if (accessGroupNarrInfo != null) {
+                retVal.putAll(accessGroupNarrInfo);
+            }
+            for (final long wsid: ids) {
+                // the results may not share tuples
+                retVal.put(wsid, copy(info.get(wsid)));
+            }
+            // e5 is the full / display name, e4 is the user name
+            // defaults to the existing name so names from previous decorator layers aren't set
+            // to null
+            retVal.values().stream().forEach(t -> t.withE5(
+                    displayNames.getOrDefault(t.getE4(), t.getE5())));
+            ret.add(retVal);
+        }
+        return ret;
+    }
+    
+    private Map<Long, Tuple5<String, Long, Long, String, String>> getNarrativeInfo(
+            final Map<Long, Long> wsIdToNewestObj)
+            throws IOException, JsonClientException {
+        final Map<Long, Tuple5<String, Long, Long, String, String>> ret = new HashMap<>();
+        final List<Long> misses = new LinkedList<>();
+        for (final Entry<Long, Long> e: wsIdToNewestObj.entrySet()) {
+            final Tuple5<String, Long, Long, String, String> cached =
+                    wsInfoCache.getIfPresent(e.getKey());
+            // if an object is newer than the workspace mod date, the cached info is stale
+            if (cached == null || (e.getValue() != null && e.getValue() > cached.getE3())) {
+                misses.add(e.getKey());
+            } else {
+                ret.put(e.getKey(), copy(cached));
+            }
+        }
+        if (misses.size() == 1) {
+            // no need for a thread hop
+            ret.put(misses.get(0), cacheNarrativeInfo(misses.get(0)));
+        } else if (!misses.isEmpty()) {
+            final Map<Long, Future<Tuple5<String, Long, Long, String, String>>> futures =
+                    new HashMap<>();
+            try {
+                for (final long wsid: misses) {
+                    futures.put(wsid, fetchExecutor.submit(() -> cacheNarrativeInfo(wsid)));
+                }
+                for (final Entry<Long, Future<Tuple5<String, Long, Long, String, String>>> e:
+                        futures.entrySet()) {
+                    ret.put(e.getKey(), getFuture(e.getValue()));
+                }
+            } finally {
+                futures.values().stream().forEach(f -> f.cancel(true));
+            }
+        }
+        return ret;
+    }
+    
+    private Tuple5<String, Long, Long, String, String> getFuture(
+            final Future<Tuple5<String, Long, Long, String, String>> future)
+            throws IOException, JsonClientException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while retrieving workspace info", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof JsonClientException) {
+                throw (JsonClientException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Unexpected exception", cause);
+        }
+    }
+    
+    private Tuple5<String, Long, Long, String, String> copy(
+            final Tuple5<String, Long, Long, String, String> info) {
+        return new Tuple5<String, Long, Long, String, String>()
+                .withE1(info.getE1())
+                .withE2(info.getE2())
+                .withE3(info.getE3())
+                .withE4(info.getE4())
+                .withE5(info.getE5());
+    }
+    
+    private Tuple5<String, Long, Long, String, String> cacheNarrativeInfo(final long wsid)
+            throws IOException, JsonClientException {
+        final Tuple5<String, Long, Long, String, String> info = getNarrativeInfo(wsid);
+        wsInfoCache.put(wsid, info);
+        return copy(info);
     }
     
     private Tuple5<String, Long, Long, String, String> getNarrativeInfo(final long wsid)
@@ -1,5 +1,7 @@
 package kbasesearchengine.main;
 
+import kbasesearchengine.MultiSearchInput;
+import kbasesearchengine.MultiSearchOutput;
 import kbasesearchengine.SearchTypesInput;
 import kbasesearchengine.SearchTypesOutput;
 import kbasesearchengine.SearchObjectsInput;
@@ -19,8 +21,36 @@ public interface SearchInterface {
     SearchObjectsOutput searchObjects(SearchObjectsInput params, String user)
             throws Exception;
 
+    /** Stream all the objects matching a search to a consumer without collecting the results
+     * in memory. The search parameters have the same semantics as for
+     * {@link #searchObjects(SearchObjectsInput, String)}, except that pagination is ignored.
+     * @param params the search parameters.
+     * @param user the user performing the search.
+     * @param consumer the consumer of the objects.
+     * @throws Exception if an error occurs.
+     */
+    void exportObjects(SearchObjectsInput params, String user, ExportConsumer consumer)
+            throws Exception;
+
+    /** Run several object and type searches at once. Each search has the same semantics as
+     * {@link #searchObjects(SearchObjectsInput, String)} or
+     * {@link #searchTypes(SearchTypesInput, String)}.
+     * @param params the searches.
+     * @param user the user performing the searches.
+     * @return the results of the searches, in the same order as the searches.
+     * @throws Exception if an error occurs.
+     */
+    MultiSearchOutput multiSearch(MultiSearchInput params, String user) throws Exception;
+
     GetObjectsOutput getObjects(GetObjectsInput params, String user)
                     throws Exception;
 
     Map<String, TypeDescriptor> listTypes(String uniqueType) throws Exception;
+
+    /** Get the version of the type descriptions returned by {@link #listTypes(String)}. The
+     * version changes if and only if the descriptions change.
+     * @return the version.
+     * @throws Exception if an error occurs.
+     */
+    String getTypesVersion() throws Exception;
 }
@@ -4,23 +4,25 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import kbasesearchengine.AccessFilter;
 import kbasesearchengine.GetObjectsInput;
 import kbasesearchengine.GetObjectsOutput;
-import kbasesearchengine.KeyDescription;
 import kbasesearchengine.MatchFilter;
 import kbasesearchengine.MatchValue;
+import kbasesearchengine.MultiSearchInput;
+import kbasesearchengine.MultiSearchOutput;
 import kbasesearchengine.ObjectData;
 import kbasesearchengine.Pagination;
 import kbasesearchengine.PostProcessing;
@@ -31,22 +33,25 @@ import kbasesearchengine.SearchTypesOutput;
 import kbasesearchengine.SortingRule;
 import kbasesearchengine.TypeDescriptor;
 import kbasesearchengine.authorization.AccessGroupProvider;
+import kbasesearchengine.authorization.AccessGroupSet;
 import kbasesearchengine.common.GUID;
 import kbasesearchengine.search.FoundHits;
 import kbasesearchengine.search.IndexingStorage;
 import kbasesearchengine.search.MatchFilter.Builder;
-import kbasesearchengine.system.IndexingRules;
-import kbasesearchengine.system.ObjectTypeParsingRules;
+import kbasesearchengine.search.MultiSearchResult;
+import kbasesearchengine.search.ObjectSearchQuery;
+import kbasesearchengine.search.TypeSearchQuery;
 import kbasesearchengine.system.SearchObjectType;
 import kbasesearchengine.system.TypeStorage;
+import kbasesearchengine.tools.Utils;
 import us.kbase.common.service.UObject;
 
 public class SearchMethods implements SearchInterface {
     
     private final AccessGroupProvider accessGroupProvider;
-    private final TypeStorage typeStorage;
     private final IndexingStorage indexingStorage;
     private final Set<String> admins;
+    private final Supplier<TypeCatalogue> typeCatalogue;
     
     public SearchMethods(
             final AccessGroupProvider accessGroupProvider,
@@ -55,8 +60,10 @@ public class SearchMethods implements SearchInterface {
             final Set<String> admins) {
         this.admins = admins == null ? Collections.emptySet() : admins;
         this.accessGroupProvider = accessGroupProvider;
-        this.typeStorage = typeStorage;
         this.indexingStorage = indexingStorage;
+        // the type storage contents are fixed once it's loaded, so build the catalogue once
+        this.typeCatalogue = Suppliers.memoize(
+                () -> TypeCatalogue.build(typeStorage.listObjectTypeParsingRules()));
     }
     
     private static boolean toBool(Long value) {
@@ -127,16 +134,26 @@ public class SearchMethods implements SearchInterface {
 
     private kbasesearchengine.search.AccessFilter toSearch(AccessFilter af, String user)
             throws IOException {
-        List<Integer> accessGroupIds;
+        final AccessGroupSet accessGroupIds;
         if (toBool(af.getWithPrivate(), true)) {
-            accessGroupIds = accessGroupProvider.findAccessGroupIds(user);
+            accessGroupIds = accessGroupProvider.findAccessGroups(user);
         } else {
-            accessGroupIds = Collections.emptyList();
+            accessGroupIds = AccessGroupSet.empty();
         }
+        return toSearch(af, user, accessGroupIds);
+    }
+
+    // userAccessGroupIds is ignored if the filter excludes private data
+    private kbasesearchengine.search.AccessFilter toSearch(
+            final AccessFilter af,
+            final String user,
+            final AccessGroupSet userAccessGroupIds) {
+        final AccessGroupSet accessGroupIds = toBool(af.getWithPrivate(), true) ?
+                userAccessGroupIds : AccessGroupSet.empty();
         return new kbasesearchengine.search.AccessFilter()
                 .withPublic(toBool(af.getWithPublic()))
                 .withAllHistory(toBool(af.getWithAllHistory()))
-                .withAccessGroups(new LinkedHashSet<>(accessGroupIds))
+                .withAccessGroups(accessGroupIds.asSet())
                 .withAdmin(admins.contains(user));
     }
     
@@ -172,12 +189,12 @@ public class SearchMethods implements SearchInterface {
 
     private kbasesearchengine.search.Pagination toSearch(Pagination pg) {
         return pg == null ? null : new kbasesearchengine.search.Pagination(
-                toInteger(pg.getStart()), toInteger(pg.getCount()));
+                toInteger(pg.getStart()), toInteger(pg.getCount()), pg.getContinuationToken());
     }
 
     private Pagination fromSearch(kbasesearchengine.search.Pagination pg) {
         return pg == null ? null : new Pagination().withStart((long)pg.start)
-                .withCount((long)pg.count);
+                .withCount((long)pg.count).withContinuationToken(pg.continuationToken);
     }
 
     private kbasesearchengine.search.PostProcessing toSearch(PostProcessing pp) {
@@ -248,9 +265,7 @@ public class SearchMethods implements SearchInterface {
         kbasesearchengine.search.AccessFilter accessFilter = toSearch(params.getAccessFilter(),
                 user);
         Map<String, Integer> ret = indexingStorage.searchTypes(matchFilter, accessFilter);
-        return new SearchTypesOutput().withTypeToCount(ret.keySet().stream().collect(
-                Collectors.toMap(Function.identity(), c -> (long)(int)ret.get(c))))
-                .withSearchTime(System.currentTimeMillis() - t1);
+        return fromSearch(ret).withSearchTime(System.currentTimeMillis() - t1);
     }
     
     @Override
@@ -259,6 +274,19 @@ public class SearchMethods implements SearchInterface {
 
         long t1 = System.currentTimeMillis();
 
+        final ObjectSearchQuery query = toSearch(params,
+                toSearch(params.getAccessFilter(), user));
+        FoundHits hits = indexingStorage.searchObjects(query.getObjectTypes(),
+                query.getMatchFilter(), query.getSorting().orNull(), query.getAccessFilter(),
+                query.getPagination().orNull(), query.getPostProcessing().orNull());
+        SearchObjectsOutput ret = fromSearch(hits);
+        ret.withSearchTime(System.currentTimeMillis() - t1);
+        return ret;
+    }
+
+    private ObjectSearchQuery toSearch(
+            final SearchObjectsInput params,
+            final kbasesearchengine.search.AccessFilter accessFilter) {
         // validate input
         if (params.getObjectTypes() == null) {
             params.setObjectTypes(ImmutableList.of());
@@ -270,13 +298,14 @@ public class SearchMethods implements SearchInterface {
             sorting = params.getSortingRules().stream().map(this::toSearch).collect(
                     Collectors.toList());
         }
-        kbasesearchengine.search.AccessFilter accessFilter = toSearch(params.getAccessFilter(),
-                user);
         kbasesearchengine.search.Pagination pagination = toSearch(params.getPagination());
         kbasesearchengine.search.PostProcessing postProcessing = 
                 toSearch(params.getPostProcessing());
-        FoundHits hits = indexingStorage.searchObjects(params.getObjectTypes(),
-                matchFilter, sorting, accessFilter, pagination, postProcessing);
+        return new ObjectSearchQuery(params.getObjectTypes(), matchFilter, sorting,
+                accessFilter, pagination, postProcessing);
+    }
+
+    private SearchObjectsOutput fromSearch(final FoundHits hits) {
         SearchObjectsOutput ret = new SearchObjectsOutput();
         ret.withPagination(fromSearch(hits.pagination));
         ret.withSortingRules(hits.sortingRules.stream().map(this::fromSearch).collect(
@@ -289,17 +318,89 @@ public class SearchMethods implements SearchInterface {
                     Collectors.toList()));
         }
         ret.withTotal((long)hits.total);
-        ret.withSearchTime(System.currentTimeMillis() - t1);
+        ret.withContinuationToken(hits.continuationToken);
         return ret;
     }
 
+    private SearchTypesOutput fromSearch(final Map<String, Integer> typeCounts) {
+        return new SearchTypesOutput().withTypeToCount(typeCounts.keySet().stream().collect(
+                Collectors.toMap(Function.identity(), c -> (long)(int)typeCounts.get(c))));
+    }
+
+    @Override
+    public MultiSearchOutput multiSearch(final MultiSearchInput params, final String user)
+            throws Exception {
+        final long t1 = System.currentTimeMillis();
+        final List<SearchObjectsInput> objectSearches = params.getObjectSearches() == null ?
+                Collections.emptyList() : params.getObjectSearches();
+        final List<SearchTypesInput> typeSearches = params.getTypeSearches() == null ?
+                Collections.emptyList() : params.getTypeSearches();
+        // only look up the user's access groups once for all the searches
+        final boolean withPrivate = Stream.concat(
+                objectSearches.stream().map(s -> s.getAccessFilter()),
+                typeSearches.stream().map(s -> s.getAccessFilter()))
+                .anyMatch(af -> toBool(af.getWithPrivate(), true));
+        final AccessGroupSet accessGroupIds = withPrivate ?
+                accessGroupProvider.findAccessGroups(user) : AccessGroupSet.empty();
+        final List<ObjectSearchQuery> objectQueries = new ArrayList<>();
+        for (final SearchObjectsInput osi: objectSearches) {
+            objectQueries.add(toSearch(osi, toSearch(osi.getAccessFilter(), user, accessGroupIds)));
+        }
+        final List<TypeSearchQuery> typeQueries = new ArrayList<>();
+        for (final SearchTypesInput sti: typeSearches) {
+            typeQueries.add(new TypeSearchQuery(toSearch(sti.getMatchFilter()),
+                    toSearch(sti.getAccessFilter(), user, accessGroupIds)));
+        }
+        final MultiSearchResult res = indexingStorage.multiSearch(objectQueries, typeQueries);
+        final List<SearchObjectsOutput> objectResults = new ArrayList<>();
+        for (int i = 0; i < res.getObjectResults().size(); i++) {
+            objectResults.add(fromSearch(res.getObjectResults().get(i))
+                    .withSearchTime(res.getObjectSearchTimes().get(i)));
+        }
+        final List<SearchTypesOutput> typeResults = new ArrayList<>();
+        for (int i = 0; i < res.getTypeResults().size(); i++) {
+            typeResults.add(fromSearch(res.getTypeResults().get(i))
+                    .withSearchTime(res.getTypeSearchTimes().get(i)));
+        }
+        return new MultiSearchOutput()
+                .withObjectResults(objectResults)
+                .withTypeResults(typeResults)
+                .withSearchTime(System.currentTimeMillis() - t1);
+    }
+
+    @Override
+    public void exportObjects(
+            final SearchObjectsInput params,
+            final String user,
+            final ExportConsumer consumer)
+            throws Exception {
+        Utils.nonNull(consumer, "consumer");
+        final List<String> objectTypes = params.getObjectTypes() == null ?
+                ImmutableList.of() : params.getObjectTypes();
+        final kbasesearchengine.search.MatchFilter matchFilter =
+                toSearch(params.getMatchFilter());
+        List<kbasesearchengine.search.SortingRule> sorting = null;
+        if (params.getSortingRules() != null) {
+            sorting = params.getSortingRules().stream().map(this::toSearch).collect(
+                    Collectors.toList());
+        }
+        final kbasesearchengine.search.AccessFilter accessFilter =
+                toSearch(params.getAccessFilter(), user);
+        final kbasesearchengine.search.PostProcessing pp = toSearch(params.getPostProcessing());
+        // match the output of searchObjects when no object data is requested
+        final boolean idsOnly = !(pp.objectInfo || pp.objectData || pp.objectKeys ||
+                pp.objectHighlight);
+        indexingStorage.exportObjects(objectTypes, matchFilter, sorting, accessFilter, pp,
+                od -> consumer.accept(idsOnly ?
+                        new ObjectData().withGuid(od.getGUID().toString()) : fromSearch(od)));
+    }
+
     @Override
     public GetObjectsOutput getObjects(final GetObjectsInput params, final String user)
             throws Exception {
 
         final long t1 = System.currentTimeMillis();
-        final Set<Integer> accessGroupIDs =
-                new HashSet<>(accessGroupProvider.findAccessGroupIds(user));
+        final AccessGroupSet accessGroupIDs = accessGroupProvider.findAccessGroups(user);
         final Set<GUID> guids = new LinkedHashSet<>();
         for (final String guid : params.getGuids()) {
             final GUID g = new GUID(guid);
@@ -323,43 +424,12 @@ public class SearchMethods implements SearchInterface {
 
     @Override
     public Map<String, TypeDescriptor> listTypes(String uniqueType) throws Exception {
-        //TODO VERS remove keys from TypeDescriptor, document that listObjectTypes only returns the most recent version of each type
-        Map<String, TypeDescriptor> ret = new LinkedHashMap<>();
-        for (ObjectTypeParsingRules otpr : typeStorage.listObjectTypeParsingRules()) {
-            String typeName = otpr.getGlobalObjectType().getType();
-            if (uniqueType != null && !uniqueType.equals(typeName)) {
-                continue;
-            }
-            String uiTypeName = otpr.getUiTypeName();
-            if (uiTypeName == null) {
-                uiTypeName = guessUIName(typeName);
-            }
-            List<KeyDescription> keys = new ArrayList<>();
-            for (IndexingRules ir : otpr.getIndexingRules()) {
-                if (ir.isNotIndexed()) {
-                    continue;
-                }
-                String keyName = ir.getKeyName();
-                String uiKeyName = ir.getUiName();
-                String keyValueType = ir.getKeywordType().orNull();
-                if (keyValueType == null) {
-                    keyValueType = "string"; //TODO CODE this seems wrong for fulltext, which is the only case where keyWordtype is null
-                }
-                long hidden = ir.isUiHidden() ? 1L : 0L;
-                KeyDescription kd = new KeyDescription().withKeyName(keyName)
-                        .withKeyUiTitle(uiKeyName).withKeyValueType(keyValueType)
-                        .withKeyValueType(keyValueType).withHidden(hidden)
-                        .withLinkKey(ir.getUiLinkKey().orNull());
-                keys.add(kd);
-            }
-            TypeDescriptor td = new TypeDescriptor().withTypeName(typeName)
-                    .withTypeUiTitle(uiTypeName).withKeys(keys);
-            ret.put(typeName, td);
-        }
-        return ret;
+        final TypeCatalogue catalogue = typeCatalogue.get();
+        return uniqueType == null ? catalogue.getTypes() : catalogue.getType(uniqueType);
     }
 
-    private static String guessUIName(String id) {
-        return id.substring(0, 1).toUpperCase() + id.substring(1);
+    @Override
+    public String getTypesVersion() throws Exception {
+        return typeCatalogue.get().getVersion();
     }
 }
@@ -7,6 +7,8 @@ import java.util.Map;
 
 import kbasesearchengine.GetObjectsInput;
 import kbasesearchengine.GetObjectsOutput;
+import kbasesearchengine.MultiSearchInput;
+import kbasesearchengine.MultiSearchOutput;
 import kbasesearchengine.ObjectData;
 import kbasesearchengine.SearchObjectsInput;
 import kbasesearchengine.SearchObjectsOutput;
@@ -57,6 +59,27 @@ public class TemporaryNarrativePruner implements SearchInterface {
         return searchObjects.withObjects(clean(searchObjects.getObjects()));
     }
 
+    @Override
+    public void exportObjects(
+            final SearchObjectsInput params,
+            final String user,
+            final ExportConsumer consumer)
+            throws Exception {
+        Utils.nonNull(consumer, "consumer");
+        source.exportObjects(params, user,
+                od -> consumer.accept(clean(Arrays.asList(od)).get(0)));
+    }
+
+    @Override
+    public MultiSearchOutput multiSearch(final MultiSearchInput params, final String user)
+            throws Exception {
+        final MultiSearchOutput output = source.multiSearch(params, user);
+        for (final SearchObjectsOutput searchObjects: output.getObjectResults()) {
+            searchObjects.withObjects(clean(searchObjects.getObjects()));
+        }
+        return output;
+    }
+
     @Override
     public GetObjectsOutput getObjects(GetObjectsInput params, String user) throws Exception {
         final GetObjectsOutput getObjects = source.getObjects(params, user);
@@ -68,6 +91,11 @@ public class TemporaryNarrativePruner implements SearchInterface {
         return source.listTypes(uniqueType);
     }
 
+    @Override
+    public String getTypesVersion() throws Exception {
+        return source.getTypesVersion();
+    }
+
     // this method modifies the input in place
     private List<ObjectData> clean(final List<ObjectData> objectData) {
         for (final ObjectData od: objectData) {
@@ -0,0 +1,125 @@
+package kbasesearchengine.main;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.common.hash.Hashing;
+
+import kbasesearchengine.KeyDescription;
+import kbasesearchengine.TypeDescriptor;
+import kbasesearchengine.system.IndexingRules;
+import kbasesearchengine.system.ObjectTypeParsingRules;
+import kbasesearchengine.tools.Utils;
+import us.kbase.common.service.UObject;
+
+/** An immutable catalogue of {@link TypeDescriptor}s, built once from a set of search
+ * transformation specifications so that the descriptors don't need to be rebuilt for every
+ * request.
+ *
+ * The catalogue has a version, which is a hash of the contents of the catalogue. The version
+ * changes if and only if the contents change, and so may be used as a strong validator (e.g.
+ * an HTTP ETag) by clients that cache the catalogue.
+ *
+ * The maps and descriptors returned by the catalogue are built once and shared between
+ * callers. The {@link TypeDescriptor} class is mutable, and so the descriptors must not be
+ * modified.
+ */
+public class TypeCatalogue {
+
+    private final Map<String, TypeDescriptor> types;
+    private final Map<String, Map<String, TypeDescriptor>> singleTypes = new HashMap<>();
+    private final String version;
+
+    private TypeCatalogue(final Map<String, TypeDescriptor> types) {
+        this.types = Collections.unmodifiableMap(types);
+        for (final Map.Entry<String, TypeDescriptor> e: types.entrySet()) {
+            singleTypes.put(e.getKey(), Collections.singletonMap(e.getKey(), e.getValue()));
+        }
+        // the sorted map and the descriptors serialize in a fixed order, so the JSON is
+        // stable for identical contents regardless of the order of the types
+        this.version = Hashing.sha256().hashString(
+                UObject.transformObjectToString(new TreeMap<>(types)), StandardCharsets.UTF_8)
+                .toString();
+    }
+
+    /** Build a catalogue.
+     * @param rules the search transformation specifications to describe. Only one version of
+     * each search type should be provided. The catalogue lists the types in the iteration
+     * order of the specifications.
+     * @return the new catalogue.
+     */
+    public static TypeCatalogue build(final Collection<ObjectTypeParsingRules> rules) {
+        Utils.nonNull(rules, "rules");
+        final Map<String, TypeDescriptor> types = new LinkedHashMap<>();
+        for (final ObjectTypeParsingRules otpr: rules) {
+            final String typeName = otpr.getGlobalObjectType().getType();
+            types.put(typeName, toDescriptor(typeName, otpr));
+        }
+        return new TypeCatalogue(types);
+    }
+
+    //TODO VERS remove keys from TypeDescriptor, document that listObjectTypes only returns the most recent version of each type
+    private static TypeDescriptor toDescriptor(
+            final String typeName,
+            final ObjectTypeParsingRules otpr) {
+        String uiTypeName = otpr.getUiTypeName();
+        if (uiTypeName == null) {
+            uiTypeName = guessUIName(typeName);
+        }
+        List<KeyDescription> keys = new ArrayList<>();
+        for (IndexingRules ir : otpr.getIndexingRules()) {
+            if (ir.isNotIndexed()) {
+                continue;
+            }
+            String keyName = ir.getKeyName();
+            String uiKeyName = ir.getUiName();
+            String keyValueType = ir.getKeywordType().orNull();
+            if (keyValueType == null) {
+                keyValueType = "string"; //TODO CODE this seems wrong for fulltext, which is the only case where keyWordtype is null
+            }
+            long hidden = ir.isUiHidden() ? 1L : 0L;
+            KeyDescription kd = new KeyDescription().withKeyName(keyName)
+                    .withKeyUiTitle(uiKeyName).withKeyValueType(keyValueType)
+                    .withKeyValueType(keyValueType).withHidden(hidden)
+                    .withLinkKey(ir.getUiLinkKey().orNull());
+            keys.add(kd);
+        }
+        return new TypeDescriptor().withTypeName(typeName)
+                .withTypeUiTitle(uiTypeName).withKeys(Collections.unmodifiableList(keys));
+    }
+
+    private static String guessUIName(String id) {
+        return id.substring(0, 1).toUpperCase() + id.substring(1);
+    }
+
+    /** Get the type descriptors.
+     * @return an unmodifiable mapping of search type name to the shared descriptor.
+     */
+    public Map<String, TypeDescriptor> getTypes() {
+        return types;
+    }
+
+    /** Get the type descriptor for a single type.
+     * @param typeName the name of the search type.
+     * @return an unmodifiable mapping of the type name to the shared descriptor, or an empty
+     * map if the type does not exist.
+     */
+    public Map<String, TypeDescriptor> getType(final String typeName) {
+        final Map<String, TypeDescriptor> ret = singleTypes.get(typeName);
+        return ret == null ? Collections.emptyMap() : ret;
+    }
+
+    /** Get the version of the catalogue.
+     * @return the version.
+     */
+    public String getVersion() {
+        return version;
+    }
+}
@@ -2,6 +2,7 @@ package kbasesearchengine.parse;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -23,6 +24,7 @@ import kbasesearchengine.system.NoSuchTypeException;
 import kbasesearchengine.system.ObjectTypeParsingRules;
 import kbasesearchengine.system.SearchObjectType;
 import kbasesearchengine.system.Transform;
+import kbasesearchengine.system.TransformType;
 import kbasesearchengine.tools.Utils;
 import us.kbase.common.service.UObject;
 
@@ -93,6 +95,79 @@ public class KeywordParser {
                         .collect(Collectors.toMap(kv -> kv.getKey(), kv -> kv.getValue().values)));
     }
 
+    /** Resolve all the references in an object that will be transformed into GUIDs during
+     * keyword extraction in one batch.
+     * 
+     * {@link #extractKeywords(GUID, SearchObjectType, String, String, List,
+     * ObjectLookupProvider, List)} resolves the references in each subobject separately, which
+     * for objects with many subobjects means many calls to the lookup provider. Calling this
+     * method with all the subobjects of an object prior to extracting the keywords allows the
+     * lookup provider to resolve, check, and cache all the references with one call to
+     * {@link ObjectLookupProvider#resolveRefs(List, Set)} and one call to
+     * {@link ObjectLookupProvider#getTypesForGuids(Set)}. The subsequent calls to
+     * extractKeywords can then be served from the lookup provider's cache.
+     * 
+     * Only references extracted directly from the object via the path of an indexing rule
+     * are collected. References in derived keys are still resolved during keyword extraction.
+     * @param subObjectJsons the JSON of each of the subobjects of the object.
+     * @param parentJson the JSON of the parent object fragment, or null if there is none.
+     * @param indexingRules the indexing rules for the object.
+     * @param lookup the lookup provider that will be used to extract the keywords.
+     * @param objectRefPath the reference path to the object.
+     * @throws IOException if an IO error occurs reading the JSON.
+     * @throws ObjectParseException if a reference cannot be parsed.
+     * @throws IndexingException if an error occurs resolving the references.
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    public static void resolveReferences(
+            final Collection<String> subObjectJsons,
+            final String parentJson,
+            final List<IndexingRules> indexingRules,
+            final ObjectLookupProvider lookup,
+            final List<GUID> objectRefPath)
+            throws IOException, ObjectParseException, IndexingException, InterruptedException {
+        Utils.nonNull(subObjectJsons, "subObjectJsons");
+        Utils.nonNull(indexingRules, "indexingRules is a required parameter");
+        final List<IndexingRules> guidRules = indexingRules.stream()
+                .filter(r -> !r.isDerivedKey() && r.getTransform().isPresent() &&
+                        TransformType.guid.equals(r.getTransform().get().getType()))
+                .collect(Collectors.toList());
+        if (guidRules.isEmpty()) {
+            return;
+        }
+        final Set<GUID> refs = new LinkedHashSet<>();
+        final ValueConsumer<List<IndexingRules>> consumer =
+                new ValueConsumer<List<IndexingRules>>() {
+            @Override
+            public void addValue(final List<IndexingRules> rulesList, final Object value)
+                    throws ObjectParseException {
+                if (value == null) {
+                    return;
+                }
+                for (final IndexingRules rule: rulesList) {
+                    refs.addAll(toUnresolvedGUIDs(getTypeDescriptor(
+                            lookup, rule.getTransform().get().getTargetObjectType().get()),
+                            value));
+                }
+            }
+        };
+        for (final String json: subObjectJsons) {
+            extractIndexingPart(json, false, guidRules, consumer);
+        }
+        if (parentJson != null) {
+            extractIndexingPart(parentJson, true, guidRules, consumer);
+        }
+        if (refs.isEmpty()) {
+            return;
+        }
+        final Set<GUID> guids = lookup.resolveRefs(objectRefPath, refs);
+        // subobject GUID transforms check the types of the subobjects, not the parents
+        if (guidRules.stream().anyMatch(
+                r -> !r.getTransform().get().getSubobjectIdKey().isPresent())) {
+            lookup.getTypesForGuids(guids);
+        }
+    }
+
     private static List<Object> processDerivedRule(
             final GUID subObjectGUID,
             final SearchObjectType searchObjectType, 
@@ -253,21 +328,8 @@ public class KeywordParser {
             return Integer.parseInt(String.valueOf(value));
         case guid:
             final SearchObjectType type = transform.getTargetObjectType().get();
-            final ObjectTypeParsingRules typeDescr;
-            try {
-                typeDescr = lookup.getTypeDescriptor(type);
-            } catch (NoSuchTypeException e) {
-                throw new ObjectParseException(e.getMessage(), e);
-            }
-            final String storageCode = typeDescr.getStorageObjectType().getStorageCode();
-            final Set<String> refs = toStringSet(value);
-            final Set<GUID> unresolvedGUIDs;
-            try {
-                unresolvedGUIDs = refs.stream().map(r -> GUID.fromRef(storageCode, r))
-                        .collect(Collectors.toSet());
-            } catch (IllegalArgumentException e) {
-                throw new ObjectParseException(e.getMessage(), e);
-            }
+            final ObjectTypeParsingRules typeDescr = getTypeDescriptor(lookup, type);
+            final Set<GUID> unresolvedGUIDs = toUnresolvedGUIDs(typeDescr, value);
             Set<GUID> guids = lookup.resolveRefs(objectRefPath, unresolvedGUIDs);
             Set<String> subIds = null;
             if (transform.getSubobjectIdKey().isPresent()) {
@@ -325,6 +387,30 @@ public class KeywordParser {
         }
     }
 
+    private static ObjectTypeParsingRules getTypeDescriptor(
+            final ObjectLookupProvider lookup,
+            final SearchObjectType type)
+            throws ObjectParseException {
+        try {
+            return lookup.getTypeDescriptor(type);
+        } catch (NoSuchTypeException e) {
+            throw new ObjectParseException(e.getMessage(), e);
+        }
+    }
+
+    private static Set<GUID> toUnresolvedGUIDs(
+            final ObjectTypeParsingRules typeDescr,
+            final Object value)
+            throws ObjectParseException {
+        final String storageCode = typeDescr.getStorageObjectType().getStorageCode();
+        try {
+            return toStringSet(value).stream().map(r -> GUID.fromRef(storageCode, r))
+                    .collect(Collectors.toSet());
+        } catch (IllegalArgumentException e) {
+            throw new ObjectParseException(e.getMessage(), e);
+        }
+    }
+
     private static Object locationTransform(
             final GUID subObjectGuid,
             final Object value,
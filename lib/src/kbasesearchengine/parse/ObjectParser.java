@@ -42,7 +42,7 @@ public class ObjectParser {
          * this method.
          */
         Map<ObjectJsonPath, String> pathToJson = new LinkedHashMap<>();
-        try (JsonParser jts = obj.getData().getPlacedStream()) {
+        try (JsonParser jts = obj.getDataParser()) {
             extractSubObjects(parsingRules, new SimpleSubObjectConsumer(pathToJson), jts);
         }
         Map<GUID, String> guidToJson = new LinkedHashMap<>();
@@ -0,0 +1,175 @@
+package kbasesearchengine.parse;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.system.ObjectTypeParsingRules;
+import kbasesearchengine.system.SearchObjectType;
+import kbasesearchengine.system.StorageObjectType;
+import kbasesearchengine.tools.Utils;
+
+/** A cache for the results of parsing objects with a set of parsing rules. Results are keyed
+ * by the MD5 of the object data and the version of the parsing rules, so that objects with
+ * identical content, such as copies or identical versions of an object, only need to be read
+ * and split into subobjects once.
+ *
+ * Only the JSON extracted from an object is cached, as the JSON depends only on the object
+ * content. Keywords are not cached since extracting them resolves the references in the object,
+ * which must be checked for every object. The cached strings are immutable and so may be shared
+ * between objects.
+ *
+ * The cache is bounded by the approximate size of the cached strings and evicts the least
+ * recently used results first.
+ */
+public class ParseResultCache {
+
+    private final Cache<Key, ParseResult> cache;
+
+    /** Create a cache.
+     * @param cacheSizeInChars the maximum size of the cache, measured as the sum of the lengths
+     * of the cached JSON strings and subobject IDs.
+     */
+    public ParseResultCache(final long cacheSizeInChars) {
+        if (cacheSizeInChars < 1) {
+            throw new IllegalArgumentException("cache size must be at least one");
+        }
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(cacheSizeInChars)
+                .weigher(new Weigher<Key, ParseResult>() {
+
+                    @Override
+                    public int weigh(final Key key, final ParseResult result) {
+                        return result.size;
+                    }
+
+                })
+                .recordStats()
+                .build();
+    }
+
+    /** Get the results of parsing an object from the cache.
+     * @param md5 the MD5 of the object data.
+     * @param rules the parsing rules used to parse the object.
+     * @return the parse results or absent if the results are not in the cache.
+     */
+    public Optional<ParseResult> get(final String md5, final ObjectTypeParsingRules rules) {
+        return Optional.fromNullable(cache.getIfPresent(new Key(md5, rules)));
+    }
+
+    /** Add the results of parsing an object to the cache.
+     * @param md5 the MD5 of the object data.
+     * @param rules the parsing rules used to parse the object.
+     * @param parentJson the JSON extracted from the parent object for use in subobjects,
+     * if any.
+     * @param guidToJson the JSON of the object or its subobjects, mapped by their GUIDs.
+     */
+    public void put(
+            final String md5,
+            final ObjectTypeParsingRules rules,
+            final String parentJson,
+            final Map<GUID, String> guidToJson) {
+        Utils.nonNull(guidToJson, "guidToJson");
+        cache.put(new Key(md5, rules), new ParseResult(parentJson, guidToJson));
+    }
+
+    /** Get the hit and miss statistics for the cache.
+     * @return the statistics.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /** The results of parsing an object. */
+    public static class ParseResult {
+
+        private final Optional<String> parentJson;
+        private final Map<GUID, String> guidToJson;
+        private final int size;
+
+        private ParseResult(final String parentJson, final Map<GUID, String> guidToJson) {
+            this.parentJson = Optional.fromNullable(parentJson);
+            this.guidToJson = Collections.unmodifiableMap(new HashMap<>(guidToJson));
+            long size = parentJson == null ? 1 : parentJson.length() + 1;
+            for (final Entry<GUID, String> e: guidToJson.entrySet()) {
+                size += e.getValue() == null ? 0 : e.getValue().length();
+                final GUID g = e.getKey();
+                size += g.getSubObjectId() == null ? 0 : g.getSubObjectId().length();
+            }
+            this.size = (int) Math.min(size, Integer.MAX_VALUE);
+        }
+
+        /** Get the JSON extracted from the parent object for use in subobjects, if any.
+         * @return the parent JSON or absent.
+         */
+        public Optional<String> getParentJson() {
+            return parentJson;
+        }
+
+        /** Get the JSON of the object or its subobjects for an object with the same content as
+         * the object from which the parse results were created. The GUIDs are updated to match
+         * the object.
+         * @param guid the GUID of the object.
+         * @return the JSON, mapped by GUID.
+         */
+        public Map<GUID, String> getJson(final GUID guid) {
+            Utils.nonNull(guid, "guid");
+            final Map<GUID, String> ret = new HashMap<>();
+            for (final Entry<GUID, String> e: guidToJson.entrySet()) {
+                ret.put(new GUID(guid, e.getKey().getSubObjectType(),
+                        e.getKey().getSubObjectId()), e.getValue());
+            }
+            return ret;
+        }
+    }
+
+    private static class Key {
+
+        private final String md5;
+        private final SearchObjectType searchType;
+        private final StorageObjectType storageType;
+
+        private Key(final String md5, final ObjectTypeParsingRules rules) {
+            Utils.notNullOrEmpty(md5, "md5 cannot be null or whitespace only");
+            Utils.nonNull(rules, "rules");
+            this.md5 = md5;
+            // the search type includes the parsing rules version
+            this.searchType = rules.getGlobalObjectType();
+            this.storageType = rules.getStorageObjectType();
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + md5.hashCode();
+            result = prime * result + searchType.hashCode();
+            result = prime * result + storageType.hashCode();
+            return result;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return md5.equals(other.md5) && searchType.equals(other.searchType) &&
+                    storageType.equals(other.storageType);
+        }
+    }
+}
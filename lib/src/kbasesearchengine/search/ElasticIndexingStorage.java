@@ -6,20 +6,25 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.LinkedList;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -41,9 +46,12 @@ import org.elasticsearch.client.ResponseException;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 import kbasesearchengine.common.GUID;
 import kbasesearchengine.events.handler.SourceData;
@@ -84,6 +92,15 @@ public class ElasticIndexingStorage implements IndexingStorage {
     private static final String SEARCH_OBJ_TYPE = "otype";
     private static final String SEARCH_OBJ_TYPE_VER = "otypever";
 
+    private static final String OBJ_JSON = "ojson";
+    private static final String OBJ_PARENT_JSON = "pjson";
+
+    // the source fields needed to build the object info in search results
+    private static final Set<String> OBJ_INFO_FIELDS = ImmutableSet.of(
+            OBJ_NAME, OBJ_CREATOR, OBJ_COPIER, OBJ_PROV_MODULE, OBJ_PROV_METHOD,
+            OBJ_PROV_MODULE_VERSION, OBJ_PROV_COMMIT_HASH, OBJ_MD5, SEARCH_OBJ_TYPE,
+            SEARCH_OBJ_TYPE_VER, OBJ_TIMESTAMP, SOURCE_TAGS);
+
     //readable names
     private static final String R_OBJ_GUID = "guid";
     private static final String R_OBJ_TIMESTAMP = "timestamp";
@@ -137,10 +154,18 @@ public class ElasticIndexingStorage implements IndexingStorage {
     private String esUser;
     private String esPassword;
     private String indexNamePrefix;
-    private Map<ObjectTypeParsingRules, String> ruleToIndex = new LinkedHashMap<>();
-    private Map<String, String> typeToIndex = new LinkedHashMap<>();
+    private Map<ObjectTypeParsingRules, String> ruleToIndex = new ConcurrentHashMap<>();
+    private Map<String, String> typeToIndex = new ConcurrentHashMap<>();
     private RestClient restClient = null;
     private File tempDir;
+    private SearchResultCache resultCache = null;
+    // incremented on writes that can't be attributed to a single index
+    private final AtomicLong globalWriteGeneration = new AtomicLong();
+    private final Map<String, AtomicLong> indexWriteGenerations = new ConcurrentHashMap<>();
+    private final Map<String, List<Object>> indexStatsFingerprints = new ConcurrentHashMap<>();
+    // index name -> settings to restore when the current bulk load finishes, or null if no
+    // bulk load is in progress
+    private Map<String, Map<String, Object>> preBulkLoadSettings = null;
     
     public static final int PUBLIC_ACCESS_GROUP = -1;
     public static final int ADMIN_ACCESS_GROUP = -2;
@@ -156,6 +181,14 @@ public class ElasticIndexingStorage implements IndexingStorage {
      */
     public static final int MAX_OBJECT_TYPES_SIZE = 50;
 
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
+    private static final String SETTING_REPLICAS = "index.number_of_replicas";
+    private static final String SETTING_REFRESH = "index.refresh_interval";
+    private static final Map<String, Object> BULK_LOAD_SETTINGS = ImmutableMap.of(
+            SETTING_REPLICAS, 0,
+            SETTING_REFRESH, "-1");
+
     public ElasticIndexingStorage(HttpHost esHost, File tempDir) throws IOException {
         this.esHost = esHost;
         this.indexNamePrefix = "";
@@ -190,10 +223,160 @@ public class ElasticIndexingStorage implements IndexingStorage {
         this.indexNamePrefix = indexNamePrefix;
     }
 
+    /** Set a cache for search results. Cached results are discarded when the indexes they were
+     * drawn from are written to, either by this storage instance or, if
+     * {@link #updateWriteGenerationsFromStats()} is called periodically, by other processes.
+     * @param resultCache the cache, or null to disable caching.
+     */
+    public void setSearchResultCache(final SearchResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /** Get the current write generation for a set of object types. The generation changes
+     * whenever any index containing one of the types is written to or refreshed.
+     * @param objectTypes the object types, or an empty list for all indexes.
+     * @return the write generation.
+     */
+    public long getWriteGeneration(final List<String> objectTypes) {
+        Utils.nonNull(objectTypes, "objectTypes");
+        final List<String> prefixes = new LinkedList<>();
+        for (final String type: objectTypes) {
+            prefixes.add((indexNamePrefix + type + "_").toLowerCase());
+        }
+        long gen = globalWriteGeneration.get();
+        for (final Entry<String, AtomicLong> e: indexWriteGenerations.entrySet()) {
+            if (prefixes.isEmpty() || prefixes.stream().anyMatch(p -> e.getKey().startsWith(p))) {
+                gen += e.getValue().get();
+            }
+        }
+        return gen;
+    }
+
+    /** Check the indexing and refresh statistics for all the indexes and update the write
+     * generation for any index that has changed since the last check. This allows detecting
+     * writes by other processes, e.g. indexer workers, as well as documents becoming visible
+     * to searches after an automatic index refresh.
+     * @throws IOException if an IO error occurs.
+     */
+    public void updateWriteGenerationsFromStats() throws IOException {
+        final Response resp = makeRequestNoConflict(
+                "GET", "/" + getAnyIndexPattern() + "/_stats/indexing,refresh", null);
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> data = UObject.getMapper().readValue(
+                resp.getEntity().getContent(), Map.class);
+        @SuppressWarnings("unchecked")
+        final Map<String, Map<String, Object>> indices =
+                (Map<String, Map<String, Object>>) data.get("indices");
+        if (indices == null) {
+            return;
+        }
+        for (final Entry<String, Map<String, Object>> index: indices.entrySet()) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Map<String, Object>> primaries =
+                    (Map<String, Map<String, Object>>) index.getValue().get("primaries");
+            final Map<String, Object> indexing = primaries.get("indexing");
+            final Map<String, Object> refresh = primaries.get("refresh");
+            final List<Object> fingerprint = Arrays.asList(
+                    indexing == null ? null : indexing.get("index_total"),
+                    indexing == null ? null : indexing.get("delete_total"),
+                    refresh == null ? null : refresh.get("total"));
+            final List<Object> old = indexStatsFingerprints.put(index.getKey(), fingerprint);
+            if (old != null && !old.equals(fingerprint)) {
+                incrementWriteGeneration(index.getKey());
+            }
+        }
+    }
+
+    private void recordWrite(final String urlPath) {
+        final String[] parts = urlPath.split("/");
+        final String index = parts.length > 1 ? parts[1] : "";
+        if (index.isEmpty() || index.startsWith("_") || index.contains("*") ||
+                index.contains(",")) {
+            globalWriteGeneration.incrementAndGet();
+        } else {
+            incrementWriteGeneration(index);
+        }
+    }
+
+    private void incrementWriteGeneration(final String index) {
+        indexWriteGenerations.computeIfAbsent(index, k -> new AtomicLong()).incrementAndGet();
+    }
+
     private String getAnyIndexPattern() {
         return indexNamePrefix + "*";
     }
     
+    /** Start a bulk load. Removes the replicas from and disables periodic refreshes for all
+     * the indexes with the index name prefix, as well as any indexes created before
+     * {@link #finishBulkLoad()} is called, which greatly speeds up indexing large amounts of
+     * data. Indexed objects are not refreshed individually, so data may not be visible to
+     * searches until the load is finished.
+     *
+     * If the load is interrupted before {@link #finishBulkLoad()} is called, the indexes are
+     * left without replicas or refreshes. A subsequent bulk load restores the default refresh
+     * interval, but the number of replicas must be restored manually.
+     * @throws IOException if an IO error occurs.
+     */
+    public synchronized void startBulkLoad() throws IOException {
+        if (preBulkLoadSettings != null) {
+            throw new IllegalStateException("A bulk load is already in progress");
+        }
+        final Response resp;
+        try {
+            resp = makeRequest("GET", "/" + getAnyIndexPattern() + "/_settings", null,
+                    ImmutableMap.of("flat_settings", "true"));
+        } catch (IndexingConflictException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        @SuppressWarnings("unchecked")
+        final Map<String, Map<String, Map<String, Object>>> data = UObject.getMapper()
+                .readValue(resp.getEntity().getContent(), Map.class);
+        final Map<String, Map<String, Object>> saved = new HashMap<>();
+        for (final Entry<String, Map<String, Map<String, Object>>> index: data.entrySet()) {
+            final Map<String, Object> settings = index.getValue().get("settings");
+            // nulls restore the defaults. Disabled refreshes are assumed to be left over from
+            // an interrupted bulk load.
+            final Object refresh = settings.get(SETTING_REFRESH);
+            final Map<String, Object> restore = new HashMap<>();
+            restore.put(SETTING_REPLICAS, settings.get(SETTING_REPLICAS));
+            restore.put(SETTING_REFRESH, "-1".equals(refresh) ? null : refresh);
+            saved.put(index.getKey(), restore);
+        }
+        if (!saved.isEmpty()) {
+            makeRequestNoConflict("PUT", "/" + getAnyIndexPattern() + "/_settings",
+                    BULK_LOAD_SETTINGS);
+        }
+        preBulkLoadSettings = saved;
+    }
+
+    /** Finish a bulk load started with {@link #startBulkLoad()}. Restores the replica and
+     * refresh settings for the indexes that existed when the load started, sets the default
+     * settings for indexes created during the load, and refreshes the indexes.
+     * @throws IOException if an IO error occurs.
+     */
+    public synchronized void finishBulkLoad() throws IOException {
+        if (preBulkLoadSettings == null) {
+            throw new IllegalStateException("No bulk load is in progress");
+        }
+        for (final String index: listIndeces()) {
+            if (index.startsWith(indexNamePrefix)) {
+                final Map<String, Object> restore = new HashMap<>();
+                restore.put(SETTING_REPLICAS, null);
+                restore.put(SETTING_REFRESH, null);
+                if (preBulkLoadSettings.containsKey(index)) {
+                    restore.putAll(preBulkLoadSettings.get(index));
+                }
+                makeRequestNoConflict("PUT", "/" + index + "/_settings", restore);
+            }
+        }
+        preBulkLoadSettings = null;
+        refreshIndex(getAnyIndexPattern());
+    }
+
+    private synchronized boolean isBulkLoading() {
+        return preBulkLoadSettings != null;
+    }
+
     public void dropData() throws IOException {
         for (String indexName : listIndeces()) {
             if (indexName.startsWith(indexNamePrefix)) {
@@ -272,10 +455,11 @@ public class ElasticIndexingStorage implements IndexingStorage {
 
     /* checks that an index exists for a specific version of a type. If the index
      * does not exist and noCreate is false, creates the index.
+     * Synchronized so that concurrent indexing threads don't race to create the same index.
      *
      * Returns the elastic search index name.
      */ 
-    private String checkIndex(
+    private synchronized String checkIndex(
             final ObjectTypeParsingRules rule,
             final boolean noCreate)
             throws IOException {
@@ -372,7 +556,11 @@ public class ElasticIndexingStorage implements IndexingStorage {
         } finally {
             tempFile.delete();
         }
-        refreshIndex(indexName);
+        // during a bulk load the indexes are refreshed when the load is finished. The parent
+        // documents are still refreshed so the last version lookups see earlier objects.
+        if (!isBulkLoading()) {
+            refreshIndex(indexName);
+        }
     }
     
     private Map<String, Object> convertObject(
@@ -415,8 +603,8 @@ public class ElasticIndexingStorage implements IndexingStorage {
         doc.put(OBJ_PUBLIC, isPublic);
         doc.put(OBJ_SHARED, false);
         if (obj != null) {
-            doc.put("ojson", obj.getJson());
-            doc.put("pjson", parentJson);
+            doc.put(OBJ_JSON, obj.getJson());
+            doc.put(OBJ_PARENT_JSON, parentJson);
         }
         return doc;
     }
@@ -1139,6 +1327,7 @@ public class ElasticIndexingStorage implements IndexingStorage {
 
         final Map<String, Object> doc = new LinkedHashMap<>();
         doc.put("query", query);
+        doc.put("_source", createSourceFilter(pp));
 
         if (Objects.nonNull(pp) && pp.objectHighlight) {
             doc.put("highlight", createHighlightQuery());
@@ -1146,90 +1335,282 @@ public class ElasticIndexingStorage implements IndexingStorage {
 
         final String urlPath = "/" + indexNamePrefix + "*/" + getDataTableName() + "/_search";
         final Response resp = makeRequestNoConflict("GET", urlPath, doc);
-        @SuppressWarnings("unchecked")
-        final Map<String, Object> data = UObject.getMapper().readValue(
-                resp.getEntity().getContent(), Map.class);
+        final SearchResponse sr;
+        try (final JsonParser p = createParser(resp.getEntity().getContent())) {
+            p.nextToken();
+            sr = parseSearchResponse(p, pp);
+        }
         final List<ObjectData> ret = new ArrayList<>();
-        @SuppressWarnings("unchecked")
-        final Map<String, Object> hitMap = (Map<String, Object>) data.get("hits");
-        @SuppressWarnings("unchecked")
-        final List<Map<String, Object>> hitList = (List<Map<String, Object>>) hitMap.get("hits");
-        for (Map<String, Object> hit : hitList) {
-            @SuppressWarnings("unchecked")
-            final Map<String, Object> obj = (Map<String, Object>) hit.get("_source");
-            @SuppressWarnings("unchecked")
-            final Map<String, List<String>> highlightRes =
-                    (Map<String, List<String>>) hit.get("highlight");
-            final ObjectData item = buildObjectData(obj, highlightRes, pp);
-            ret.add(item);
+        for (final Hit hit: sr.hits) {
+            ret.add(toObjectData(hit, pp));
         }
         return ret;
     }
 
-    private ObjectData buildObjectData(
-            final Map<String, Object> obj,
-            final Map<String, List<String>> highlight,
-            final PostProcessing pp) {
+    /* Only fetch the parts of the source document that are needed to build the results. In
+     * particular, the object and parent data JSON strings may be very large.
+     */
+    private List<String> createSourceFilter(final PostProcessing pp) {
+        final List<String> fields = new ArrayList<>();
+        fields.add(OBJ_GUID);
+        if (pp != null) {
+            if (pp.objectInfo) {
+                fields.addAll(OBJ_INFO_FIELDS);
+            }
+            if (pp.objectData) {
+                fields.add(OBJ_JSON);
+                fields.add(OBJ_PARENT_JSON);
+            }
+            if (pp.objectKeys) {
+                fields.add(getKeyProperty("*"));
+            }
+        }
+        return fields;
+    }
+
+    private JsonParser createParser(final InputStream is) throws IOException {
+        return UObject.getMapper().getFactory().createParser(is);
+    }
+
+    // moves the parser to the value of the field in the current object
+    private void findField(final JsonParser p, final String field) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object in search response");
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            if (field.equals(p.getCurrentName())) {
+                return;
+            }
+            p.nextToken();
+            p.skipChildren();
+        }
+        throw new IOException("No " + field + " field in search response");
+    }
+
+    /* A search response decoded with a streaming parser. Hits are decoded straight into
+     * their fields rather than into intermediate maps, and fields that are not needed are
+     * skipped without being decoded.
+     */
+    private static class SearchResponse {
+
+        private long took = 0;
+        private int total = 0;
+        private final List<Hit> hits = new ArrayList<>();
+    }
+
+    /* A single search hit. The GUID isn't necessarily the first field in the source document,
+     * so the fields are collected here until the hit is complete and an ObjectData can be
+     * built.
+     */
+    private static class Hit {
+
+        private String guid;
+        private String name;
+        private String creator;
+        private String copier;
+        private String module;
+        private String method;
+        private String moduleVersion;
+        private String commitHash;
+        private String md5;
+        private String type;
+        private Integer typeVersion;
+        private Long timestamp;
+        private final List<String> sourceTags = new ArrayList<>();
+        private String data;
+        private String parentData;
+        private final Map<String, String> keys = new LinkedHashMap<>();
+        private Map<String, List<String>> highlight;
+        private List<Object> sort;
+    }
+
+    // the parser must be positioned at the start of the response object
+    private SearchResponse parseSearchResponse(final JsonParser p, final PostProcessing pp)
+            throws IOException {
+        if (p.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object in search response");
+        }
+        final SearchResponse ret = new SearchResponse();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = p.getCurrentName();
+            p.nextToken();
+            if ("took".equals(field)) {
+                ret.took = p.getLongValue();
+            } else if ("error".equals(field)) {
+                // failures of individual searches in a multiple search are returned in place
+                throw searchFailed(p.readValueAs(Object.class));
+            } else if ("hits".equals(field)) {
+                parseHitsObject(p, pp, ret);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    private void parseHitsObject(
+            final JsonParser p,
+            final PostProcessing pp,
+            final SearchResponse ret)
+            throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = p.getCurrentName();
+            p.nextToken();
+            if ("total".equals(field)) {
+                ret.total = p.getIntValue();
+            } else if ("hits".equals(field)) {
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    ret.hits.add(parseHit(p, pp));
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Hit parseHit(final JsonParser p, final PostProcessing pp) throws IOException {
+        final Hit hit = new Hit();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = p.getCurrentName();
+            p.nextToken();
+            if ("_source".equals(field)) {
+                parseSource(p, pp, hit);
+            } else if ("highlight".equals(field)) {
+                hit.highlight = p.readValueAs(Map.class);
+            } else if ("sort".equals(field)) {
+                hit.sort = p.readValueAs(List.class);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return hit;
+    }
+
+    private void parseSource(final JsonParser p, final PostProcessing pp, final Hit hit)
+            throws IOException {
+        final boolean info = pp != null && pp.objectInfo;
+        final boolean data = pp != null && pp.objectData;
+        final boolean keys = pp != null && pp.objectKeys;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = p.getCurrentName();
+            p.nextToken();
+            if (OBJ_GUID.equals(field)) {
+                hit.guid = p.getValueAsString();
+            } else if (info && OBJ_INFO_FIELDS.contains(field)) {
+                parseInfoField(p, field, hit);
+            } else if (data && OBJ_JSON.equals(field)) {
+                // the JSON string is only decoded when the ObjectData is built
+                hit.data = p.getValueAsString();
+            } else if (data && OBJ_PARENT_JSON.equals(field)) {
+                hit.parentData = p.getValueAsString();
+            } else if (keys && field.startsWith("key.")) {
+                final Object value = p.readValueAs(Object.class);
+                final String textValue;
+                if (value instanceof List) {
+                    @SuppressWarnings("unchecked")
+                    final List<Object> values = (List<Object>) value;
+                    textValue = values.stream().map(Object::toString)
+                            .collect(Collectors.joining(", "));
+                } else {
+                    textValue = String.valueOf(value);
+                }
+                hit.keys.put(stripKeyPrefix(field), textValue);
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private void parseInfoField(final JsonParser p, final String field, final Hit hit)
+            throws IOException {
+        final boolean isNull = p.getCurrentToken() == JsonToken.VALUE_NULL;
+        switch (field) {
+            case OBJ_NAME:
+                hit.name = p.getValueAsString();
+                break;
+            case OBJ_CREATOR:
+                hit.creator = p.getValueAsString();
+                break;
+            case OBJ_COPIER:
+                hit.copier = p.getValueAsString();
+                break;
+            case OBJ_PROV_MODULE:
+                hit.module = p.getValueAsString();
+                break;
+            case OBJ_PROV_METHOD:
+                hit.method = p.getValueAsString();
+                break;
+            case OBJ_PROV_MODULE_VERSION:
+                hit.moduleVersion = p.getValueAsString();
+                break;
+            case OBJ_PROV_COMMIT_HASH:
+                hit.commitHash = p.getValueAsString();
+                break;
+            case OBJ_MD5:
+                hit.md5 = p.getValueAsString();
+                break;
+            case SEARCH_OBJ_TYPE:
+                hit.type = p.getValueAsString();
+                break;
+            case SEARCH_OBJ_TYPE_VER:
+                hit.typeVersion = isNull ? null : p.getIntValue();
+                break;
+            case OBJ_TIMESTAMP:
+                // sometimes this is a long, sometimes it's an int
+                hit.timestamp = isNull ? null : p.getLongValue();
+                break;
+            case SOURCE_TAGS:
+                if (p.getCurrentToken() == JsonToken.START_ARRAY) {
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        hit.sourceTags.add(p.getValueAsString());
+                    }
+                }
+                break;
+            default:
+                p.skipChildren();
+        }
+    }
+
+    private ObjectData toObjectData(final Hit hit, final PostProcessing pp) {
         // TODO: support sub-data selection based on objectDataIncludes (acts on parent json or sub object json)
 
-        GUID guid = new GUID((String) obj.get("guid"));
+        final GUID guid = new GUID(hit.guid);
         final ObjectData.Builder b = ObjectData.getBuilder(guid);
         if (pp.objectInfo) {
-            b.withNullableObjectName((String) obj.get(OBJ_NAME));
-            b.withNullableCreator((String) obj.get(OBJ_CREATOR));
-            b.withNullableCopier((String) obj.get(OBJ_COPIER));
-            b.withNullableModule((String) obj.get(OBJ_PROV_MODULE));
-            b.withNullableMethod((String) obj.get(OBJ_PROV_METHOD));
-            b.withNullableModuleVersion((String) obj.get(OBJ_PROV_MODULE_VERSION));
-            b.withNullableCommitHash((String) obj.get(OBJ_PROV_COMMIT_HASH));
-            b.withNullableMD5((String) obj.get(OBJ_MD5));
-            b.withNullableType(new SearchObjectType(
-                    (String) obj.get(SEARCH_OBJ_TYPE),
-                    (Integer) obj.get(SEARCH_OBJ_TYPE_VER)));
-            // sometimes this is a long, sometimes it's an int
-            b.withNullableTimestamp(Instant.ofEpochMilli(
-                    ((Number) obj.get(OBJ_TIMESTAMP)).longValue()));
-            @SuppressWarnings("unchecked")
-            final List<String> sourceTags = (List<String>) obj.get(SOURCE_TAGS);
-            if (sourceTags != null) {
-                for (final String tag: sourceTags) {
-                    b.withSourceTag(tag);
-                }
+            b.withNullableObjectName(hit.name);
+            b.withNullableCreator(hit.creator);
+            b.withNullableCopier(hit.copier);
+            b.withNullableModule(hit.module);
+            b.withNullableMethod(hit.method);
+            b.withNullableModuleVersion(hit.moduleVersion);
+            b.withNullableCommitHash(hit.commitHash);
+            b.withNullableMD5(hit.md5);
+            b.withNullableType(new SearchObjectType(hit.type, hit.typeVersion));
+            b.withNullableTimestamp(Instant.ofEpochMilli(hit.timestamp));
+            for (final String tag: hit.sourceTags) {
+                b.withSourceTag(tag);
             }
         }
         if (pp.objectData) {
-            final String ojson = (String) obj.get("ojson");
-            if (ojson != null) {
-                b.withNullableData(UObject.transformStringToObject(
-                        ojson, Object.class));
+            if (hit.data != null) {
+                b.withNullableData(UObject.transformStringToObject(hit.data, Object.class));
             }
-            final String pjson = (String) obj.get("pjson");
-            if (pjson != null) {
-                b.withNullableParentData(UObject.transformStringToObject(pjson, Object.class));
+            if (hit.parentData != null) {
+                b.withNullableParentData(UObject.transformStringToObject(
+                        hit.parentData, Object.class));
             }
         }
         if (pp.objectKeys) {
-            for (final String key : obj.keySet()) {
-                if (key.startsWith("key.")) {
-                    final Object objValue = obj.get(key);
-                    String textValue;
-                    if (objValue instanceof List) {
-                        @SuppressWarnings("unchecked")
-                        final List<Object> objValue2 = (List<Object>) objValue;
-                        textValue = objValue2.stream().map(Object::toString)
-                                .collect(Collectors.joining(", "));
-                    } else {
-                        textValue = String.valueOf(objValue);
-                    }
-                    b.withKeyProperty(stripKeyPrefix(key), textValue);
-                }
+            for (final Entry<String, String> key: hit.keys.entrySet()) {
+                b.withKeyProperty(key.getKey(), key.getValue());
             }
         }
 
         //because elastic sometimes returns highlight as null instead of empty map.
-        if (pp.objectHighlight && highlight != null) {
-            for(final String key : highlight.keySet()) {
-                b.withHighlight(getReadableKeyNames(key, guid), highlight.get(key));
+        if (pp.objectHighlight && hit.highlight != null) {
+            for(final String key : hit.highlight.keySet()) {
+                b.withHighlight(getReadableKeyNames(key, guid), hit.highlight.get(key));
             }    
         }
 
@@ -1298,27 +1679,61 @@ public class ElasticIndexingStorage implements IndexingStorage {
             final MatchFilter matchFilter,
             final AccessFilter accessFilter)
             throws IOException {
+        final SearchResultCache cache = resultCache;
+        if (cache == null) {
+            return searchTypesUncached(matchFilter, accessFilter);
+        }
+        // fetch the generation before searching so that writes during the search invalidate
+        // the result
+        final long generation = getWriteGeneration(Collections.emptyList());
+        final Optional<Map<String, Integer>> cached =
+                cache.getTypeCounts(matchFilter, accessFilter, generation);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        final Map<String, Integer> ret = searchTypesUncached(matchFilter, accessFilter);
+        cache.putTypeCounts(matchFilter, accessFilter, generation, ret);
+        return ret;
+    }
+
+    private Map<String, Integer> searchTypesUncached(
+            final MatchFilter matchFilter,
+            final AccessFilter accessFilter)
+            throws IOException {
         Map<String, Object> mustForShared = createAccessMustBlock(accessFilter);
         if (mustForShared == null) {
             return Collections.emptyMap();
         }
+        final String urlPath = "/" + getTypesSearchIndices(matchFilter) + "/" +
+                getDataTableName() + "/_search";
+        Response resp = makeRequestNoConflict("GET", urlPath,
+                createTypesSearchDoc(matchFilter, accessFilter));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> data = UObject.getMapper().readValue(
+                resp.getEntity().getContent(), Map.class);
+        return parseTypeCounts(data);
+    }
+
+    private String getTypesSearchIndices(final MatchFilter matchFilter) {
+        return indexNamePrefix + "*" +
+                (matchFilter.isExcludeSubObjects() ? EXCLUDE_SUB_OJBS_URL_SUFFIX : "");
+    }
+
+    private Map<String, Object> createTypesSearchDoc(
+            final MatchFilter matchFilter,
+            final AccessFilter accessFilter) {
         //TODO VERS if this aggregates by type version, need to add the version field to the terms
         Map<String, Object> aggs = ImmutableMap.of("types",
                                       ImmutableMap.of("terms",
                                          ImmutableMap.of("field", SEARCH_OBJ_TYPE)));
 
-        Map<String, Object> doc = ImmutableMap.of(
+        return ImmutableMap.of(
                 "query", createObjectQuery(matchFilter, accessFilter),
                 "aggregations", aggs,
                 "size", 0);
+    }
 
-        String urlPath = "/" + indexNamePrefix + "*" +
-                (matchFilter.isExcludeSubObjects() ? EXCLUDE_SUB_OJBS_URL_SUFFIX : "") +
-                "/" + getDataTableName() + "/_search";
-        Response resp = makeRequestNoConflict("GET", urlPath, doc);
-        @SuppressWarnings("unchecked")
-        Map<String, Object> data = UObject.getMapper().readValue(
-                resp.getEntity().getContent(), Map.class);
+    private Map<String, Integer> parseTypeCounts(final Map<String, Object> data) {
         @SuppressWarnings("unchecked")
         Map<String, Object> aggMap = (Map<String, Object>) data.get("aggregations");
         @SuppressWarnings("unchecked")
@@ -1381,6 +1796,156 @@ public class ElasticIndexingStorage implements IndexingStorage {
         return queryHits(objectTypes, matchFilter, sorting, accessFilter, pagination,
                 postProcessing);
     }
+
+    @Override
+    public MultiSearchResult multiSearch(
+            final List<ObjectSearchQuery> objectSearches,
+            final List<TypeSearchQuery> typeSearches)
+            throws IOException {
+        Utils.noNulls(objectSearches, "null item in objectSearches");
+        Utils.noNulls(typeSearches, "null item in typeSearches");
+        final SearchResultCache cache = resultCache;
+        final int objCount = objectSearches.size();
+        final int typeCount = typeSearches.size();
+        final List<FoundHits> objectResults = new ArrayList<>(Collections.nCopies(objCount, null));
+        final List<Long> objectTimes = new ArrayList<>(Collections.nCopies(objCount, 0L));
+        final List<Map<String, Integer>> typeResults =
+                new ArrayList<>(Collections.nCopies(typeCount, null));
+        final List<Long> typeTimes = new ArrayList<>(Collections.nCopies(typeCount, 0L));
+        final List<Pagination> paginations = new ArrayList<>();
+        final List<List<SortingRule>> sortings = new ArrayList<>();
+        final long[] objectGenerations = new long[objCount];
+        final long[] typeGenerations = new long[typeCount];
+        // the indexes of the searches that need to be sent to elasticsearch
+        final List<Integer> pendingObjects = new ArrayList<>();
+        final List<Integer> pendingTypes = new ArrayList<>();
+        final StringBuilder body = new StringBuilder();
+
+        for (int i = 0; i < objCount; i++) {
+            final ObjectSearchQuery q = objectSearches.get(i);
+            final Pagination pagination = normalizePagination(q.getPagination().orNull());
+            final List<SortingRule> sorting = normalizeSorting(q.getSorting().orNull());
+            final PostProcessing pp = q.getPostProcessing().orNull();
+            paginations.add(pagination);
+            sortings.add(sorting);
+            if (createAccessMustBlock(q.getAccessFilter()) == null) {
+                objectResults.set(i, emptyHits(pagination, sorting));
+                continue;
+            }
+            final String indices = getHitsSearchIndices(q.getObjectTypes(), q.getMatchFilter());
+            if (cache != null) {
+                // fetch the generation before searching so that writes during the search
+                // invalidate the result
+                objectGenerations[i] = getWriteGeneration(q.getObjectTypes());
+                final Optional<FoundHits> cached = cache.getHits(q.getObjectTypes(),
+                        q.getMatchFilter(), sorting, q.getAccessFilter(), pagination, pp,
+                        objectGenerations[i]);
+                if (cached.isPresent()) {
+                    objectResults.set(i, cached.get());
+                    continue;
+                }
+            }
+            appendMultiSearch(body, indices, createHitsSearchDoc(
+                    q.getMatchFilter(), sorting, q.getAccessFilter(), pagination, pp));
+            pendingObjects.add(i);
+        }
+        for (int i = 0; i < typeCount; i++) {
+            final TypeSearchQuery q = typeSearches.get(i);
+            if (createAccessMustBlock(q.getAccessFilter()) == null) {
+                typeResults.set(i, Collections.emptyMap());
+                continue;
+            }
+            if (cache != null) {
+                typeGenerations[i] = getWriteGeneration(Collections.emptyList());
+                final Optional<Map<String, Integer>> cached = cache.getTypeCounts(
+                        q.getMatchFilter(), q.getAccessFilter(), typeGenerations[i]);
+                if (cached.isPresent()) {
+                    typeResults.set(i, cached.get());
+                    continue;
+                }
+            }
+            appendMultiSearch(body, getTypesSearchIndices(q.getMatchFilter()),
+                    createTypesSearchDoc(q.getMatchFilter(), q.getAccessFilter()));
+            pendingTypes.add(i);
+        }
+
+        if (body.length() > 0) {
+            try (final JsonParser p = createParser(runMultiSearch(body.toString()))) {
+                findField(p, "responses");
+                if (p.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IOException("Unexpected multiple search response format");
+                }
+                // results are streamed so hits are decoded straight into ObjectData
+                for (final int i: pendingObjects) {
+                    final ObjectSearchQuery q = objectSearches.get(i);
+                    final PostProcessing pp = q.getPostProcessing().orNull();
+                    p.nextToken();
+                    final SearchResponse sr = parseSearchResponse(p, pp);
+                    final FoundHits hits = toFoundHits(sr, paginations.get(i), sortings.get(i),
+                            pp);
+                    objectResults.set(i, hits);
+                    objectTimes.set(i, sr.took);
+                    if (cache != null) {
+                        cache.putHits(q.getObjectTypes(), q.getMatchFilter(), sortings.get(i),
+                                q.getAccessFilter(), paginations.get(i), pp,
+                                objectGenerations[i], hits);
+                    }
+                }
+                for (final int i: pendingTypes) {
+                    final TypeSearchQuery q = typeSearches.get(i);
+                    p.nextToken();
+                    // aggregation results are small, so there's no benefit to streaming them
+                    @SuppressWarnings("unchecked")
+                    final Map<String, Object> data = p.readValueAs(Map.class);
+                    if (data.containsKey("error")) {
+                        throw searchFailed(data.get("error"));
+                    }
+                    final Map<String, Integer> counts = parseTypeCounts(data);
+                    typeResults.set(i, counts);
+                    typeTimes.set(i, getSearchTime(data));
+                    if (cache != null) {
+                        cache.putTypeCounts(q.getMatchFilter(), q.getAccessFilter(),
+                                typeGenerations[i], counts);
+                    }
+                }
+            }
+        }
+        return new MultiSearchResult(objectResults, objectTimes, typeResults, typeTimes);
+    }
+
+    private IOException searchFailed(final Object error) {
+        return new IOException("Search failed: " + UObject.transformObjectToString(error));
+    }
+
+    private void appendMultiSearch(
+            final StringBuilder body,
+            final String indices,
+            final Map<String, Object> doc) {
+        body.append(UObject.transformObjectToString(ImmutableMap.of(
+                "index", indices, "type", getDataTableName())));
+        body.append("\n");
+        body.append(UObject.transformObjectToString(doc));
+        body.append("\n");
+    }
+
+    private InputStream runMultiSearch(final String body) throws IOException {
+        final Response resp;
+        try {
+            // GET so the search isn't recorded as a write
+            resp = makeRequest("GET", "/_msearch", Collections.emptyMap(), stringEntity(body));
+        } catch (IndexingConflictException e) {
+            // this is very difficult to test, and so is not tested
+            throw new IOException(
+                    "This operation is not expected to result in a conflict, yet it occurred: " +
+                    e.getMessage(), e);
+        }
+        return resp.getEntity().getContent();
+    }
+
+    private long getSearchTime(final Map<String, Object> data) {
+        final Object took = data.get("took");
+        return took == null ? 0 : ((Number) took).longValue();
+    }
     
  // this is only used for tests
     public Set<GUID> searchIds(
@@ -1526,23 +2091,121 @@ public class ElasticIndexingStorage implements IndexingStorage {
             final PostProcessing pp)
             throws IOException {
         // initialize args
+        final Pagination pagination = normalizePagination(pg);
+        sorting = normalizeSorting(sorting);
+        final SearchResultCache cache = resultCache;
+        if (cache == null) {
+            return queryHitsUncached(objectTypes, matchFilter, sorting, accessFilter,
+                    pagination, pp);
+        }
+        validateObjectTypes(objectTypes);
+        // fetch the generation before searching so that writes during the search invalidate
+        // the result
+        final long generation = getWriteGeneration(objectTypes);
+        final Optional<FoundHits> cached = cache.getHits(objectTypes, matchFilter, sorting,
+                accessFilter, pagination, pp, generation);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        final FoundHits ret = queryHitsUncached(objectTypes, matchFilter, sorting, accessFilter,
+                pagination, pp);
+        cache.putHits(objectTypes, matchFilter, sorting, accessFilter, pagination, pp,
+                generation, ret);
+        return ret;
+    }
+
+    private Pagination normalizePagination(final Pagination pg) {
         int pgStart = pg == null || pg.start == null ? 0 : pg.start;
         int pgCount = pg == null || pg.count == null ? 50 : pg.count;
-        Pagination pagination = new Pagination(pgStart, pgCount);
+        Pagination pagination = new Pagination(pgStart, pgCount,
+                pg == null ? null : pg.continuationToken);
+        if (pagination.continuationToken != null && pgStart != 0) {
+            throw new IllegalArgumentException(
+                    "Pagination start must be 0 when a continuation token is provided");
+        }
+        return pagination;
+    }
+
+    private List<SortingRule> normalizeSorting(final List<SortingRule> sorting) {
         if (sorting == null || sorting.isEmpty()) {
             final SortingRule sr = SortingRule.getStandardPropertyBuilder(R_OBJ_TIMESTAMP).build();
-            sorting = Arrays.asList(sr);
+            return Arrays.asList(sr);
         }
-        FoundHits ret = new FoundHits();
-        ret.pagination = pagination;
-        ret.sortingRules = sorting;
+        return sorting;
+    }
+
+    @Override
+    public void exportObjects(
+            final List<String> objectTypes,
+            final MatchFilter matchFilter,
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final PostProcessing postProcessing,
+            final ObjectDataConsumer consumer)
+            throws IOException {
+        Utils.nonNull(consumer, "consumer");
+        final List<SortingRule> sort = normalizeSorting(sorting);
+        String token = null;
+        do {
+            /* pages are fetched with search_after rather than a scroll so there's no server
+             * side context to clean up if the consumer fails part way through. Export pages
+             * are not cached, since they're large and unlikely to be requested again.
+             */
+            final FoundHits hits = queryHitsUncached(objectTypes, matchFilter, sort,
+                    accessFilter, new Pagination(0, EXPORT_PAGE_SIZE, token), postProcessing);
+            if (hits.objects == null) {
+                for (final GUID guid: hits.guids) {
+                    consumer.accept(ObjectData.getBuilder(guid).build());
+                }
+            } else {
+                for (final ObjectData od: hits.objects) {
+                    consumer.accept(od);
+                }
+            }
+            token = hits.continuationToken;
+        } while (token != null);
+    }
 
+    private FoundHits queryHitsUncached(
+            final List<String> objectTypes,
+            final MatchFilter matchFilter, 
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final Pagination pagination,
+            final PostProcessing pp)
+            throws IOException {
         final Map<String, Object> mustForShared = createAccessMustBlock(accessFilter);
         if (mustForShared == null) {
-            ret.total = 0;
-            ret.guids = Collections.emptySet();
-            return ret;
+            return emptyHits(pagination, sorting);
+        }
+        final Map<String, Object> doc = createHitsSearchDoc(
+                matchFilter, sorting, accessFilter, pagination, pp);
+        final String indexName = getHitsSearchIndices(objectTypes, matchFilter);
+
+        final String urlPath = "/" + indexName + "/" + getDataTableName() + "/_search";
+        final Response resp = makeRequestNoConflict("GET", urlPath, doc);
+
+        try (final JsonParser p = createParser(resp.getEntity().getContent())) {
+            p.nextToken();
+            return toFoundHits(parseSearchResponse(p, pp), pagination, sorting, pp);
         }
+    }
+
+    private FoundHits emptyHits(final Pagination pagination, final List<SortingRule> sorting) {
+        final FoundHits ret = new FoundHits();
+        ret.pagination = pagination;
+        ret.sortingRules = sorting;
+        ret.total = 0;
+        ret.guids = Collections.emptySet();
+        return ret;
+    }
+
+    private Map<String, Object> createHitsSearchDoc(
+            final MatchFilter matchFilter,
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final Pagination pagination,
+            final PostProcessing pp) {
         Map<String, Object> doc = new LinkedHashMap<>();
         
         doc.put("query", createObjectQuery(matchFilter, accessFilter));
@@ -1552,13 +2215,25 @@ public class ElasticIndexingStorage implements IndexingStorage {
         doc.put("from", pagination.start);
         doc.put("size", pagination.count);
 
-        boolean loadObjects = pp != null &&
-                (pp.objectInfo || pp.objectData || pp.objectKeys || pp.objectHighlight);
-        if (!loadObjects) {
-            doc.put("_source", Arrays.asList("guid"));
-        }
+        doc.put("_source", createSourceFilter(isLoadObjects(pp) ? pp : null));
         doc.put("sort", createSortQuery(sorting));
+        if (pagination.continuationToken != null) {
+            // constant cost per page, unlike from, which has to collect all the skipped hits
+            doc.put("search_after", fromContinuationToken(
+                    pagination.continuationToken, sorting));
+        }
+        return ImmutableMap.copyOf(doc);
+    }
 
+    private boolean isLoadObjects(final PostProcessing pp) {
+        return pp != null &&
+                (pp.objectInfo || pp.objectData || pp.objectKeys || pp.objectHighlight);
+    }
+
+    private String getHitsSearchIndices(
+            final List<String> objectTypes,
+            final MatchFilter matchFilter)
+            throws IOException {
         validateObjectTypes(objectTypes);
 
         String indexName;
@@ -1579,37 +2254,61 @@ public class ElasticIndexingStorage implements IndexingStorage {
         if (matchFilter.isExcludeSubObjects()) {
             indexName += EXCLUDE_SUB_OJBS_URL_SUFFIX;
         }
+        return indexName;
+    }
 
-        final String urlPath = "/" + indexName + "/" + getDataTableName() + "/_search";
-        final Response resp = makeRequestNoConflict("GET", urlPath, ImmutableMap.copyOf(doc));
-
-        @SuppressWarnings("unchecked")
-        final Map<String, Object> data = UObject.getMapper().readValue(
-                resp.getEntity().getContent(), Map.class);
+    private FoundHits toFoundHits(
+            final SearchResponse sr,
+            final Pagination pagination,
+            final List<SortingRule> sorting,
+            final PostProcessing pp) {
+        final boolean loadObjects = isLoadObjects(pp);
+        final FoundHits ret = new FoundHits();
+        ret.pagination = pagination;
+        ret.sortingRules = sorting;
         ret.guids = new LinkedHashSet<>();
-        @SuppressWarnings("unchecked")
-        final Map<String, Object> hitMap = (Map<String, Object>) data.get("hits");
-        ret.total = (Integer)hitMap.get("total");
-        @SuppressWarnings("unchecked")
-        final List<Map<String, Object>> hitList = (List<Map<String, Object>>) hitMap.get("hits");
+        ret.total = sr.total;
         if (loadObjects) {
             ret.objects = new ArrayList<>();
         }
-        for (Map<String, Object> hit : hitList) {
-            @SuppressWarnings("unchecked")
-            final Map<String, Object> obj = (Map<String, Object>) hit.get("_source");
-            @SuppressWarnings("unchecked")
-            final Map<String, List<String>> highlightRes =
-                    (Map<String, List<String>>) hit.get("highlight");
-            final String guidText = (String)obj.get("guid");
-            ret.guids.add(new GUID(guidText));
+        Object lastSort = null;
+        for (final Hit hit: sr.hits) {
+            lastSort = hit.sort;
+            ret.guids.add(new GUID(hit.guid));
             if (loadObjects) {
-                ret.objects.add(buildObjectData(obj, highlightRes, pp));
+                ret.objects.add(toObjectData(hit, pp));
             }
         }
+        // a short page means there are no more results
+        if (!sr.hits.isEmpty() && sr.hits.size() == pagination.count) {
+            ret.continuationToken = toContinuationToken(lastSort);
+        }
         return ret;
     }
 
+    private String toContinuationToken(final Object sortValues) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                UObject.transformObjectToString(sortValues).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> fromContinuationToken(
+            final String token,
+            final List<SortingRule> sorting) {
+        final List<Object> sortValues;
+        try {
+            sortValues = UObject.getMapper().readValue(
+                    Base64.getUrlDecoder().decode(token), List.class);
+        } catch (IllegalArgumentException | IOException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token, e);
+        }
+        // one value per sorting rule, plus the guid tiebreaker
+        if (sortValues == null || sortValues.size() != sorting.size() + 1) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token);
+        }
+        return sortValues;
+    }
+
     private List<Object> createSortQuery(final List<SortingRule> sorting) {
         final List<Object> sort = new ArrayList<>();
         for (final SortingRule sr : sorting) {
@@ -1628,6 +2327,8 @@ public class ElasticIndexingStorage implements IndexingStorage {
             }
             sort.add(sortWrapper);
         }
+        // guids are unique, which makes the sort order total and so continuation tokens work
+        sort.add(ImmutableMap.of(OBJ_GUID, ImmutableMap.of("order", "asc")));
         return sort;
     }
 
@@ -1663,7 +2364,7 @@ public class ElasticIndexingStorage implements IndexingStorage {
         return refreshIndex(toIndexString(rule));
     }
 
-    private RestClient getRestClient() {
+    private synchronized RestClient getRestClient() {
         if (restClient == null) {
             RestClientBuilder restClientBld = RestClient.builder(esHost);
             restClientBld.setRequestConfigCallback(new RestClientBuilder.RequestConfigCallback() {
@@ -1750,6 +2451,11 @@ public class ElasticIndexingStorage implements IndexingStorage {
                 throw new IndexingConflictException(re.getMessage(), re);
             }
             throw new IOException(re.getMessage(), re);
+        } finally {
+            // failed writes may still have partially succeeded
+            if (!"GET".equals(reqType)) {
+                recordWrite(urlPath);
+            }
         }
     }
     
@@ -1864,12 +2570,12 @@ public class ElasticIndexingStorage implements IndexingStorage {
         props.put(OBJ_PUBLIC, bool);
         props.put(OBJ_SHARED, bool);
 
-        props.put("ojson", ImmutableMap.of(
+        props.put(OBJ_JSON, ImmutableMap.of(
                 "type", "keyword",
                 "index", false,
                 "doc_values", false));
 
-        props.put("pjson", ImmutableMap.of(
+        props.put(OBJ_PARENT_JSON, ImmutableMap.of(
                 "type", "keyword",
                 "index", false,
                 "doc_values", false));
@@ -1903,11 +2609,14 @@ public class ElasticIndexingStorage implements IndexingStorage {
 
         Map<String, Object> doc = new LinkedHashMap<>();
         doc.put("mappings", mappings);
+        if (preBulkLoadSettings != null) {
+            doc.put("settings", BULK_LOAD_SETTINGS);
+        }
 
         makeRequestNoConflict("PUT", "/" + indexName, doc);
     }
     
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
         if (restClient != null) {
             restClient.close();
             restClient = null;
@@ -14,4 +14,8 @@ public class FoundHits {
     public Set<GUID> guids;
     public List<ObjectData> objects;
     public int total;
+    /** A token that can be passed in {@link Pagination#continuationToken} to fetch the next
+     * page of results, or null if there are no more results.
+     */
+    public String continuationToken;
 }
@@ -124,6 +124,44 @@ public interface IndexingStorage {
             PostProcessing postProcessing)
             throws IOException;
 
+    /** Run several searches at once. The results are identical to those returned by
+     * {@link #searchObjects(List, MatchFilter, List, AccessFilter, Pagination, PostProcessing)}
+     * and {@link #searchTypes(MatchFilter, AccessFilter)} for each search, but the storage
+     * system may run the searches more efficiently, for example by sending them in a single
+     * request.
+     * @param objectSearches the searches for objects.
+     * @param typeSearches the searches for the number of objects of each type.
+     * @return the results of the searches.
+     * @throws IOException if an IO error occurs.
+     */
+    public MultiSearchResult multiSearch(
+            List<ObjectSearchQuery> objectSearches,
+            List<TypeSearchQuery> typeSearches)
+            throws IOException;
+
+    /** Stream all the objects matching a search to a consumer. Objects are fetched from the
+     * storage system in pages, so the number of objects held in memory is bounded no matter
+     * how many objects match the search. Objects added or modified during the export may or
+     * may not be included.
+     * @param objectTypes a non-null list of object types to constrain the search to.
+     * An empty list indicates a search that is unconstrained by object type.
+     * @param matchFilter the filter for the objects.
+     * @param sorting the order in which to return objects, or null for the default order.
+     * @param accessFilter the filter determining which objects the user can access.
+     * @param postProcessing the data to return for each object.
+     * @param consumer the consumer of the objects. If the consumer throws an exception the
+     * export is aborted.
+     * @throws IOException if an IO error occurs.
+     */
+    public void exportObjects(
+            List<String> objectTypes,
+            MatchFilter matchFilter,
+            List<SortingRule> sorting,
+            AccessFilter accessFilter,
+            PostProcessing postProcessing,
+            ObjectDataConsumer consumer)
+            throws IOException;
+
     /** Change the name of all the versions of an object.
      * @param object the GUID of the object. The version field is ignored.
      * @param newName the new name of the object.
@@ -0,0 +1,80 @@
+package kbasesearchengine.search;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import kbasesearchengine.tools.Utils;
+
+/** The results of running several searches at once with
+ * {@link IndexingStorage#multiSearch(List, List)}. Results are in the same order as the
+ * searches.
+ *
+ * Each result has an associated search time, which is the time the storage system spent
+ * running that search. Results that did not require a search, for example because they were
+ * cached, have a search time of 0.
+ */
+public class MultiSearchResult {
+
+    private final List<FoundHits> objectResults;
+    private final List<Long> objectSearchTimes;
+    private final List<Map<String, Integer>> typeResults;
+    private final List<Long> typeSearchTimes;
+
+    /** Create the results.
+     * @param objectResults the results of the object searches.
+     * @param objectSearchTimes the time in milliseconds spent on each object search.
+     * @param typeResults the results of the type searches.
+     * @param typeSearchTimes the time in milliseconds spent on each type search.
+     */
+    public MultiSearchResult(
+            final List<FoundHits> objectResults,
+            final List<Long> objectSearchTimes,
+            final List<Map<String, Integer>> typeResults,
+            final List<Long> typeSearchTimes) {
+        Utils.nonNull(objectResults, "objectResults");
+        Utils.nonNull(objectSearchTimes, "objectSearchTimes");
+        Utils.nonNull(typeResults, "typeResults");
+        Utils.nonNull(typeSearchTimes, "typeSearchTimes");
+        if (objectResults.size() != objectSearchTimes.size()) {
+            throw new IllegalArgumentException(
+                    "There must be one search time for each object result");
+        }
+        if (typeResults.size() != typeSearchTimes.size()) {
+            throw new IllegalArgumentException(
+                    "There must be one search time for each type result");
+        }
+        this.objectResults = Collections.unmodifiableList(objectResults);
+        this.objectSearchTimes = Collections.unmodifiableList(objectSearchTimes);
+        this.typeResults = Collections.unmodifiableList(typeResults);
+        this.typeSearchTimes = Collections.unmodifiableList(typeSearchTimes);
+    }
+
+    /** Get the results of the object searches.
+     * @return the results.
+     */
+    public List<FoundHits> getObjectResults() {
+        return objectResults;
+    }
+
+    /** Get the time spent on each object search.
+     * @return the search times in milliseconds.
+     */
+    public List<Long> getObjectSearchTimes() {
+        return objectSearchTimes;
+    }
+
+    /** Get the results of the type searches, as mappings of type to object count.
+     * @return the results.
+     */
+    public List<Map<String, Integer>> getTypeResults() {
+        return typeResults;
+    }
+
+    /** Get the time spent on each type search.
+     * @return the search times in milliseconds.
+     */
+    public List<Long> getTypeSearchTimes() {
+        return typeSearchTimes;
+    }
+}
@@ -0,0 +1,15 @@
+package kbasesearchengine.search;
+
+import java.io.IOException;
+
+/** A consumer of objects found by a search. Used to stream search results rather than
+ * collecting them in memory.
+ */
+public interface ObjectDataConsumer {
+
+    /** Accept an object found by a search.
+     * @param data the object.
+     * @throws IOException if an IO error occurs, e.g. when writing the object to a stream.
+     */
+    void accept(ObjectData data) throws IOException;
+}
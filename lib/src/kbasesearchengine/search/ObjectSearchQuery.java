@@ -0,0 +1,90 @@
+package kbasesearchengine.search;
+
+import java.util.List;
+
+import com.google.common.base.Optional;
+
+import kbasesearchengine.tools.Utils;
+
+/** The parameters for a search for objects, as passed to
+ * {@link IndexingStorage#searchObjects(List, MatchFilter, List, AccessFilter, Pagination,
+ * PostProcessing)}. Used to run several searches at once.
+ */
+public class ObjectSearchQuery {
+
+    private final List<String> objectTypes;
+    private final MatchFilter matchFilter;
+    private final Optional<List<SortingRule>> sorting;
+    private final AccessFilter accessFilter;
+    private final Optional<Pagination> pagination;
+    private final Optional<PostProcessing> postProcessing;
+
+    /** Create the search parameters.
+     * @param objectTypes the object types to constrain the search to. An empty list indicates
+     * a search that is unconstrained by object type.
+     * @param matchFilter the filter for the objects.
+     * @param sorting the sorting rules, or null for the default sort.
+     * @param accessFilter the filter determining which objects the user can access.
+     * @param pagination the pagination, or null for the default pagination.
+     * @param postProcessing the data to return for each object, or null to return only IDs.
+     */
+    public ObjectSearchQuery(
+            final List<String> objectTypes,
+            final MatchFilter matchFilter,
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final Pagination pagination,
+            final PostProcessing postProcessing) {
+        Utils.nonNull(objectTypes, "objectTypes");
+        Utils.nonNull(matchFilter, "matchFilter");
+        Utils.nonNull(accessFilter, "accessFilter");
+        this.objectTypes = objectTypes;
+        this.matchFilter = matchFilter;
+        this.sorting = Optional.fromNullable(sorting);
+        this.accessFilter = accessFilter;
+        this.pagination = Optional.fromNullable(pagination);
+        this.postProcessing = Optional.fromNullable(postProcessing);
+    }
+
+    /** Get the object types to which the search is constrained.
+     * @return the object types, or an empty list for all types.
+     */
+    public List<String> getObjectTypes() {
+        return objectTypes;
+    }
+
+    /** Get the filter for the objects.
+     * @return the match filter.
+     */
+    public MatchFilter getMatchFilter() {
+        return matchFilter;
+    }
+
+    /** Get the sorting rules.
+     * @return the sorting rules, or absent for the default sort.
+     */
+    public Optional<List<SortingRule>> getSorting() {
+        return sorting;
+    }
+
+    /** Get the filter determining which objects the user can access.
+     * @return the access filter.
+     */
+    public AccessFilter getAccessFilter() {
+        return accessFilter;
+    }
+
+    /** Get the pagination.
+     * @return the pagination, or absent for the default pagination.
+     */
+    public Optional<Pagination> getPagination() {
+        return pagination;
+    }
+
+    /** Get the data to return for each object.
+     * @return the post processing parameters, or absent to return only IDs.
+     */
+    public Optional<PostProcessing> getPostProcessing() {
+        return postProcessing;
+    }
+}
@@ -3,9 +3,65 @@ package kbasesearchengine.search;
 public class Pagination {
     public Integer start;
     public Integer count;
+    /** An opaque token from {@link FoundHits#continuationToken} denoting the position in the
+     * results after which this page starts, or null to start at {@link #start}.
+     */
+    public String continuationToken;
     
     public Pagination(Integer start, Integer count) {
+        this(start, count, null);
+    }
+
+    public Pagination(Integer start, Integer count, String continuationToken) {
         this.start = start;
         this.count = count;
+        this.continuationToken = continuationToken;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((continuationToken == null) ? 0 :
+                continuationToken.hashCode());
+        result = prime * result + ((count == null) ? 0 : count.hashCode());
+        result = prime * result + ((start == null) ? 0 : start.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        Pagination other = (Pagination) obj;
+        if (continuationToken == null) {
+            if (other.continuationToken != null) {
+                return false;
+            }
+        } else if (!continuationToken.equals(other.continuationToken)) {
+            return false;
+        }
+        if (count == null) {
+            if (other.count != null) {
+                return false;
+            }
+        } else if (!count.equals(other.count)) {
+            return false;
+        }
+        if (start == null) {
+            if (other.start != null) {
+                return false;
+            }
+        } else if (!start.equals(other.start)) {
+            return false;
+        }
+        return true;
     }
 }
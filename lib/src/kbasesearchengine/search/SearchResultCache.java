@@ -0,0 +1,276 @@
+package kbasesearchengine.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import kbasesearchengine.authorization.AccessGroupSet;
+import kbasesearchengine.tools.Utils;
+
+/** A cache for search results from an {@link IndexingStorage}. Results are keyed by the
+ * normalized search parameters, including the access filter and therefore the user's resolved
+ * access groups. The parameters are copied into the key, so later changes to the mutable
+ * parameter classes do not affect cached entries. The access groups are keyed as an
+ * {@link AccessGroupSet}, which is not copied if the access filter's groups are a view of an
+ * {@link AccessGroupSet}.
+ *
+ * Each result is stored with the write generation of the indexes that were searched to produce
+ * the result. A result is only returned if the current write generation of the indexes matches
+ * the stored generation - in other words, if the indexes have not been written to since the
+ * result was cached. Results also expire after a fixed lifetime, which bounds the staleness of
+ * results when writes are not detected, for example writes by other processes.
+ *
+ * Results returned from the cache are shared and must not be modified, other than by replacing
+ * the fields of a returned {@link FoundHits}.
+ */
+public class SearchResultCache {
+
+    private static final String SEARCH_OBJECTS = "searchObjects";
+    private static final String SEARCH_TYPES = "searchTypes";
+
+    private final Cache<List<Object>, Entry> cache;
+
+    /** Create a cache.
+     * @param cacheLifeTimeInSec the number of seconds a result should remain in the cache.
+     * @param cacheSize the maximum number of results to store in the cache.
+     */
+    public SearchResultCache(final int cacheLifeTimeInSec, final int cacheSize) {
+        this(cacheLifeTimeInSec, cacheSize, Ticker.systemTicker());
+    }
+
+    /** Create a cache for testing purposes.
+     * @param cacheLifeTimeInSec the number of seconds a result should remain in the cache.
+     * @param cacheSize the maximum number of results to store in the cache.
+     * @param ticker a ticker implementation that allows controlling cache expiration with the
+     * provided ticker rather than waiting for the system clock. This is exposed for testing
+     * purposes.
+     */
+    public SearchResultCache(
+            final int cacheLifeTimeInSec,
+            final int cacheSize,
+            final Ticker ticker) {
+        Utils.nonNull(ticker, "ticker");
+        if (cacheLifeTimeInSec < 1) {
+            throw new IllegalArgumentException("cache lifetime must be at least one second");
+        }
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("cache size must be at least one");
+        }
+        cache = CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .expireAfterWrite(cacheLifeTimeInSec, TimeUnit.SECONDS)
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+    }
+
+    private static class Entry {
+
+        private final long generation;
+        private final Object result;
+
+        private Entry(final long generation, final Object result) {
+            this.generation = generation;
+            this.result = result;
+        }
+    }
+
+    private Optional<Object> get(final List<Object> key, final long generation) {
+        final Entry e = cache.getIfPresent(key);
+        if (e == null) {
+            return Optional.absent();
+        }
+        if (e.generation != generation) {
+            // the indexes have been written to since the result was cached
+            cache.asMap().remove(key, e);
+            return Optional.absent();
+        }
+        return Optional.of(e.result);
+    }
+
+    private static List<Object> hitsKey(
+            final List<String> objectTypes,
+            final MatchFilter matchFilter,
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final Pagination pagination,
+            final PostProcessing postProcessing) {
+        Utils.nonNull(objectTypes, "objectTypes");
+        Utils.nonNull(matchFilter, "matchFilter");
+        Utils.nonNull(accessFilter, "accessFilter");
+        // the order of the types doesn't affect the results
+        return Arrays.asList(SEARCH_OBJECTS, new TreeSet<>(objectTypes), copy(matchFilter),
+                sorting == null ? null : new ArrayList<>(sorting), key(accessFilter),
+                copy(pagination), copy(postProcessing));
+    }
+
+    private static List<Object> typesKey(
+            final MatchFilter matchFilter,
+            final AccessFilter accessFilter) {
+        Utils.nonNull(matchFilter, "matchFilter");
+        Utils.nonNull(accessFilter, "accessFilter");
+        return Arrays.asList(SEARCH_TYPES, copy(matchFilter), key(accessFilter));
+    }
+    
+    // SortingRules are immutable, but the other parameter classes are not
+    
+    private static MatchFilter copy(final MatchFilter mf) {
+        final MatchFilter.Builder b = MatchFilter.getBuilder()
+                .withExcludeSubObjects(mf.isExcludeSubObjects())
+                .withNullableFullTextInAll(mf.getFullTextInAll().orNull())
+                .withNullableObjectName(mf.getObjectName().orNull())
+                .withNullableTimestamp(mf.getTimestamp().isPresent() ?
+                        copy(mf.getTimestamp().get()) : null)
+                .withIsSourceTagsBlackList(mf.isSourceTagsBlacklist());
+        for (final Map.Entry<String, MatchValue> e: mf.getLookupInKeys().entrySet()) {
+            b.withLookupInKey(e.getKey(), copy(e.getValue()));
+        }
+        for (final String tag: mf.getSourceTags()) {
+            b.withSourceTag(tag);
+        }
+        return b.build();
+    }
+    
+    private static MatchValue copy(final MatchValue mv) {
+        final MatchValue ret = new MatchValue(mv.value);
+        ret.minInt = mv.minInt;
+        ret.maxInt = mv.maxInt;
+        ret.minDate = mv.minDate;
+        ret.maxDate = mv.maxDate;
+        ret.minDouble = mv.minDouble;
+        ret.maxDouble = mv.maxDouble;
+        return ret;
+    }
+    
+    private static List<Object> key(final AccessFilter af) {
+        return Arrays.asList(af.isAdmin, af.withPublic, af.withAllHistory,
+                af.accessGroupIds == null ? null : AccessGroupSet.of(af.accessGroupIds));
+    }
+    
+    private static Pagination copy(final Pagination p) {
+        return p == null ? null : new Pagination(p.start, p.count, p.continuationToken);
+    }
+    
+    private static PostProcessing copy(final PostProcessing pp) {
+        if (pp == null) {
+            return null;
+        }
+        final PostProcessing ret = new PostProcessing();
+        ret.objectInfo = pp.objectInfo;
+        ret.objectKeys = pp.objectKeys;
+        ret.objectData = pp.objectData;
+        ret.objectHighlight = pp.objectHighlight;
+        ret.objectDataIncludes = pp.objectDataIncludes == null ?
+                null : new ArrayList<>(pp.objectDataIncludes);
+        return ret;
+    }
+
+    /** Get the results of an object search from the cache. The search parameters are expected
+     * to be normalized, e.g. default values filled in.
+     * @param objectTypes the object types searched.
+     * @param matchFilter the match filter.
+     * @param sorting the sorting rules.
+     * @param accessFilter the access filter.
+     * @param pagination the pagination.
+     * @param postProcessing the post processing parameters.
+     * @param generation the current write generation of the indexes to be searched.
+     * @return a copy of the search results, or absent if the results are not in the cache.
+     */
+    public Optional<FoundHits> getHits(
+            final List<String> objectTypes,
+            final MatchFilter matchFilter,
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final Pagination pagination,
+            final PostProcessing postProcessing,
+            final long generation) {
+        final Optional<Object> res = get(hitsKey(objectTypes, matchFilter, sorting, accessFilter,
+                pagination, postProcessing), generation);
+        return res.isPresent() ? Optional.of(copy((FoundHits) res.get())) : Optional.absent();
+    }
+
+    /** Add the results of an object search to the cache.
+     * @param objectTypes the object types searched.
+     * @param matchFilter the match filter.
+     * @param sorting the sorting rules.
+     * @param accessFilter the access filter.
+     * @param pagination the pagination.
+     * @param postProcessing the post processing parameters.
+     * @param generation the write generation of the searched indexes, fetched before the
+     * search was run.
+     * @param hits the search results.
+     */
+    public void putHits(
+            final List<String> objectTypes,
+            final MatchFilter matchFilter,
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final Pagination pagination,
+            final PostProcessing postProcessing,
+            final long generation,
+            final FoundHits hits) {
+        Utils.nonNull(hits, "hits");
+        cache.put(hitsKey(objectTypes, matchFilter, sorting, accessFilter, pagination,
+                postProcessing), new Entry(generation, copy(hits)));
+    }
+
+    private FoundHits copy(final FoundHits hits) {
+        final FoundHits ret = new FoundHits();
+        ret.pagination = hits.pagination;
+        ret.sortingRules = hits.sortingRules;
+        ret.guids = hits.guids;
+        ret.objects = hits.objects;
+        ret.total = hits.total;
+        ret.continuationToken = hits.continuationToken;
+        return ret;
+    }
+
+    /** Get the results of a type count search from the cache.
+     * @param matchFilter the match filter.
+     * @param accessFilter the access filter.
+     * @param generation the current write generation of all the indexes.
+     * @return the count of objects per type, or absent if the results are not in the cache.
+     */
+    public Optional<Map<String, Integer>> getTypeCounts(
+            final MatchFilter matchFilter,
+            final AccessFilter accessFilter,
+            final long generation) {
+        @SuppressWarnings("unchecked")
+        final Optional<Map<String, Integer>> res = (Optional<Map<String, Integer>>)
+                (Optional<?>) get(typesKey(matchFilter, accessFilter), generation);
+        return res;
+    }
+
+    /** Add the results of a type count search to the cache.
+     * @param matchFilter the match filter.
+     * @param accessFilter the access filter.
+     * @param generation the write generation of all the indexes, fetched before the search
+     * was run.
+     * @param typeCounts the count of objects per type. The map should be immutable.
+     */
+    public void putTypeCounts(
+            final MatchFilter matchFilter,
+            final AccessFilter accessFilter,
+            final long generation,
+            final Map<String, Integer> typeCounts) {
+        Utils.nonNull(typeCounts, "typeCounts");
+        cache.put(typesKey(matchFilter, accessFilter), new Entry(generation, typeCounts));
+    }
+
+    /** Get the hit and miss statistics for the cache. Results that are discarded because the
+     * indexes were written to count as misses.
+     * @return the statistics.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,38 @@
+package kbasesearchengine.search;
+
+import kbasesearchengine.tools.Utils;
+
+/** The parameters for a search for the number of objects of each type, as passed to
+ * {@link IndexingStorage#searchTypes(MatchFilter, AccessFilter)}. Used to run several searches
+ * at once.
+ */
+public class TypeSearchQuery {
+
+    private final MatchFilter matchFilter;
+    private final AccessFilter accessFilter;
+
+    /** Create the search parameters.
+     * @param matchFilter the filter for the objects.
+     * @param accessFilter the filter determining which objects the user can access.
+     */
+    public TypeSearchQuery(final MatchFilter matchFilter, final AccessFilter accessFilter) {
+        Utils.nonNull(matchFilter, "matchFilter");
+        Utils.nonNull(accessFilter, "accessFilter");
+        this.matchFilter = matchFilter;
+        this.accessFilter = accessFilter;
+    }
+
+    /** Get the filter for the objects.
+     * @return the match filter.
+     */
+    public MatchFilter getMatchFilter() {
+        return matchFilter;
+    }
+
+    /** Get the filter determining which objects the user can access.
+     * @return the access filter.
+     */
+    public AccessFilter getAccessFilter() {
+        return accessFilter;
+    }
+}
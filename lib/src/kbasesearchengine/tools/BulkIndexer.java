@@ -0,0 +1,113 @@
+package kbasesearchengine.tools;
+
+import static kbasesearchengine.tools.Utils.nonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import kbasesearchengine.events.StatusEvent;
+import kbasesearchengine.events.StatusEventProcessingState;
+import kbasesearchengine.events.exceptions.FatalIndexingException;
+import kbasesearchengine.events.exceptions.IndexingException;
+import kbasesearchengine.events.exceptions.RetriableIndexingException;
+import kbasesearchengine.events.storage.StatusEventStorage;
+import kbasesearchengine.main.IndexerWorker;
+import kbasesearchengine.tools.WorkspaceEventGenerator.EventGeneratorException;
+import kbasesearchengine.tools.WorkspaceEventGenerator.EventSink;
+
+/** Indexes events as they are generated rather than storing them in the search event queue,
+ * which avoids the queue round trip when loading large amounts of data into an empty or
+ * nearly empty search index.
+ *
+ * Events that fail to index are stored in the event queue in the
+ * {@link StatusEventProcessingState#UNPROC} state so that they are retried by the standard
+ * indexing process. A fatal indexing error halts event generation.
+ *
+ * Thread safe as long as the {@link IndexerWorker} is thread safe.
+ */
+public class BulkIndexer implements EventSink {
+
+    private static final String BULK_INDEXER = "BULKIDX";
+
+    private final IndexerWorker worker;
+    private final StatusEventStorage storage;
+    private final Set<String> workerCodes;
+
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /** Create the indexer.
+     * @param worker the worker with which to index events.
+     * @param storage the storage system in which to record failed events.
+     * @param workerCodes the worker codes to apply to failed events.
+     */
+    public BulkIndexer(
+            final IndexerWorker worker,
+            final StatusEventStorage storage,
+            final Collection<String> workerCodes) {
+        nonNull(worker, "worker");
+        nonNull(storage, "storage");
+        nonNull(workerCodes, "workerCodes");
+        this.worker = worker;
+        this.storage = storage;
+        this.workerCodes = Collections.unmodifiableSet(new HashSet<>(workerCodes));
+    }
+
+    @Override
+    public void accept(final List<StatusEvent> events) throws EventGeneratorException {
+        final List<StatusEvent> failedEvents = new ArrayList<>();
+        for (final StatusEvent event: events) {
+            try {
+                if (StatusEventProcessingState.INDX.equals(worker.processUnstoredEvent(event))) {
+                    indexed.incrementAndGet();
+                } else {
+                    skipped.incrementAndGet();
+                }
+            } catch (FatalIndexingException e) {
+                throw new EventGeneratorException("Fatal indexing error: " + e.getMessage(), e);
+            } catch (IndexingException e) {
+                failedEvents.add(event);
+            } catch (InterruptedException e) {
+                throw new EventGeneratorException("Interrupted", e);
+            }
+        }
+        if (!failedEvents.isEmpty()) {
+            try {
+                storage.storeAll(failedEvents, StatusEventProcessingState.UNPROC, workerCodes,
+                        BULK_INDEXER);
+            } catch (RetriableIndexingException e) {
+                throw new EventGeneratorException(e.getMessage(), e);
+            }
+            failed.addAndGet(failedEvents.size());
+        }
+    }
+
+    /** Get the number of events indexed so far.
+     * @return the number of indexed events.
+     */
+    public long getIndexedCount() {
+        return indexed.get();
+    }
+
+    /** Get the number of events skipped so far because there are no indexing rules for the
+     * data type.
+     * @return the number of skipped events.
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /** Get the number of events so far that failed to index and were stored in the event
+     * queue for retry.
+     * @return the number of failed events.
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+}
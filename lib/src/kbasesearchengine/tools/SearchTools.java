@@ -14,6 +14,7 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -51,15 +52,17 @@ import kbasesearchengine.events.handler.WorkspaceEventHandler;
 import kbasesearchengine.events.storage.MongoDBStatusEventStorage;
 import kbasesearchengine.events.storage.StatusEventStorage;
 import kbasesearchengine.events.storage.StorageInitException;
+import kbasesearchengine.main.EventArchiver;
 import kbasesearchengine.main.LineLogger;
 import kbasesearchengine.main.SearchVersion;
 import kbasesearchengine.main.Stoppable;
 import kbasesearchengine.main.GitInfo;
 import kbasesearchengine.main.IndexerCoordinator;
+import kbasesearchengine.main.IndexerLookupCache;
 import kbasesearchengine.main.IndexerWorker;
 import kbasesearchengine.parse.ObjectParseException;
+import kbasesearchengine.parse.ParseResultCache;
 import kbasesearchengine.search.ElasticIndexingStorage;
-import kbasesearchengine.search.IndexingStorage;
 import kbasesearchengine.system.FileLister;
 import kbasesearchengine.system.ObjectTypeParsingRulesFileParser;
 import kbasesearchengine.system.TypeFileStorage;
@@ -114,7 +117,7 @@ public class SearchTools {
     
     private MongoDatabase workspaceDB = null;
     private MongoDatabase searchDB = null;
-    private IndexingStorage indexStore = null;
+    private ElasticIndexingStorage indexStore = null;
 
     /** Create a new CLI instance.
      * @param args the program arguments.
@@ -166,8 +169,10 @@ public class SearchTools {
         final boolean startWorker = a.startWorker != null;
         if ((a.startCoordinator ? 1 : 0) + 
                 (a.genWSEvents ? 1 : 0) +
+                (a.bulkIndex ? 1 : 0) +
                 (startWorker ? 1 : 0) > 1) {
-            printError("Can only run one of the coordinator, event generator, or a worker.");
+            printError("Can only run one of the coordinator, event generator, bulk indexer, " +
+                    "or a worker.");
             return 1;
         }
         final SearchToolsConfig cfg;
@@ -199,8 +204,9 @@ public class SearchTools {
             }
         }
         try {
-            setUpMongoDBs(cfg, a.genWSEvents, a.dropDB || a.startCoordinator || startWorker);
-            setUpElasticSearch(cfg, a.dropDB || startWorker);
+            setUpMongoDBs(cfg, a.genWSEvents || a.bulkIndex,
+                    a.dropDB || a.startCoordinator || startWorker);
+            setUpElasticSearch(cfg, a.dropDB || startWorker || a.bulkIndex);
         } catch (MongoException | IOException e) {
             printError(e, a.verbose);
             return 1;
@@ -220,8 +226,12 @@ public class SearchTools {
             try {
                 printVer();
                 final IndexerCoordinator coord = runCoordinator(cfg, out, err);
+                final Optional<EventArchiver> archiver = runArchiver(cfg, out, err);
                 noCommand = false; 
                 waitForReturn(coord);
+                if (archiver.isPresent()) {
+                    archiver.get().stop(0);
+                }
             } catch (StorageInitException | IndexingException | InterruptedException e) {
                 printError(e, a.verbose);
                 return 1;
@@ -249,9 +259,33 @@ public class SearchTools {
                         a.lastVersionOnly,
                         getWsBlackList(a.wsBlacklist, cfg.getWorkspaceBlackList()),
                         getWsTypes(a.wsTypes, cfg.getWorkspaceTypes()),
-                        cfg.getWorkerCodes());
+                        cfg.getWorkerCodes(),
+                        a.eventThreads,
+                        a.eventCheckpoint == null ? null : Paths.get(a.eventCheckpoint));
+                noCommand = false;
+            } catch (EventGeneratorException | StorageInitException |
+                    IllegalArgumentException e) {
+                printError(e, a.verbose);
+                return 1;
+            }
+        }
+        if (a.bulkIndex) {
+            try {
+                printVer();
+                runBulkIndexer(
+                        cfg,
+                        out,
+                        err,
+                        a.ref,
+                        a.lastVersionOnly,
+                        getWsBlackList(a.wsBlacklist, cfg.getWorkspaceBlackList()),
+                        getWsTypes(a.wsTypes, cfg.getWorkspaceTypes()),
+                        a.eventThreads,
+                        a.eventCheckpoint == null ? null : Paths.get(a.eventCheckpoint));
                 noCommand = false;
-            } catch (EventGeneratorException | StorageInitException e) {
+            } catch (IOException | AuthException | ObjectParseException | TypeParseException |
+                    UnauthorizedException | StorageInitException | EventGeneratorException |
+                    IllegalArgumentException | InterruptedException e) {
                 printError(e, a.verbose);
                 return 1;
             }
@@ -340,6 +374,23 @@ public class SearchTools {
         return coord;
     }
     
+    private Optional<EventArchiver> runArchiver(
+            final SearchToolsConfig cfg,
+            final PrintStream logTarget,
+            final PrintStream errTarget)
+            throws StorageInitException {
+        if (cfg.getEventArchiveAgeDays() < 1) {
+            return Optional.absent();
+        }
+        final EventArchiver archiver = new EventArchiver(
+                new MongoDBStatusEventStorage(searchDB),
+                Duration.ofDays(cfg.getEventArchiveAgeDays()),
+                Duration.ofDays(cfg.getEventArchiveRetentionDays()),
+                buildLogger(logTarget, errTarget));
+        archiver.startArchiver();
+        return Optional.of(archiver);
+    }
+    
     private IndexerWorker runWorker(
             final SearchToolsConfig cfg,
             final String id,
@@ -347,8 +398,20 @@ public class SearchTools {
             final PrintStream errTarget)
             throws IOException, AuthException, ObjectParseException, TypeParseException,
                 UnauthorizedException, StorageInitException {
+        final IndexerWorker wrk = buildWorker(cfg, getID(id), logTarget, errTarget);
+        wrk.startIndexer();
+        return wrk;
+    }
+    
+    private IndexerWorker buildWorker(
+            final SearchToolsConfig cfg,
+            final String id,
+            final PrintStream logTarget,
+            final PrintStream errTarget)
+            throws IOException, AuthException, ObjectParseException, TypeParseException,
+                UnauthorizedException, StorageInitException {
         final AuthToken kbaseIndexerToken = getIndexerToken(cfg);
-        final File tempDir = new File(cfg.getTempDir());
+        final File tempDir = new File(cfg.getWorkerTempDir().or(cfg.getTempDir()));
         if (!tempDir.exists()) {
             tempDir.mkdirs();
         }
@@ -367,13 +430,17 @@ public class SearchTools {
                 cfg.getWorkspaceURL(), kbaseIndexerToken);
         wsClient.setIsInsecureHttpConnectionAllowed(true); //TODO SEC only do if http
         final EventHandler weh = new WorkspaceEventHandler(
-                new CloneableWorkspaceClientImpl(wsClient));
+                new CloneableWorkspaceClientImpl(wsClient), cfg.getMaxInMemoryObjectSize(),
+                cfg.isMemoryMapObjects(), logger);
         
-        final IndexerWorker wrk = new IndexerWorker(
-                getID(id), Arrays.asList(weh), storage, indexStore, ss, tempDir, logger,
-                cfg.getWorkerCodes(), MAX_OBJECTS_PER_LOAD);
-        wrk.startIndexer();
-        return wrk;
+        return new IndexerWorker(
+                id, Arrays.asList(weh), storage, indexStore, ss, tempDir, logger,
+                cfg.getWorkerCodes(), MAX_OBJECTS_PER_LOAD,
+                new IndexerLookupCache(
+                        IndexerLookupCache.DEFAULT_LIFETIME_SEC,
+                        IndexerLookupCache.DEFAULT_MAX_WEIGHT),
+                cfg.getParseCacheSize() > 0 ?
+                        new ParseResultCache(cfg.getParseCacheSize()) : null);
     }
 
     private String getID(String id) {
@@ -556,7 +623,9 @@ public class SearchTools {
             final boolean lastVersionOnly,
             final List<WorkspaceIdentifier> wsBlackList,
             final List<String> wsTypes,
-            final Set<String> workerCodes)
+            final Set<String> workerCodes,
+            final int threads,
+            final Path checkpointFile)
             throws EventGeneratorException, StorageInitException {
         final Builder gen = new WorkspaceEventGenerator.Builder(
                 new MongoDBStatusEventStorage(searchDB), workspaceDB, logtarget)
@@ -564,10 +633,63 @@ public class SearchTools {
                 .withWorkspaceBlacklist(wsBlackList)
                 .withWorkerCodes(workerCodes)
                 .withLastVersionOnly(lastVersionOnly)
-                .withWorkspaceTypes(wsTypes);
+                .withWorkspaceTypes(wsTypes)
+                .withThreads(threads)
+                .withNullableCheckpointFile(checkpointFile);
         gen.build().generateEvents();
     }
 
+    private void runBulkIndexer(
+            final SearchToolsConfig cfg,
+            final PrintStream logTarget,
+            final PrintStream errTarget,
+            final String ref,
+            final boolean lastVersionOnly,
+            final List<WorkspaceIdentifier> wsBlackList,
+            final List<String> wsTypes,
+            final int threads,
+            final Path checkpointFile)
+            throws IOException, AuthException, ObjectParseException, TypeParseException,
+                UnauthorizedException, StorageInitException, EventGeneratorException,
+                InterruptedException {
+        final IndexerWorker worker = buildWorker(cfg, "bulk_" + UUID.randomUUID().toString(),
+                logTarget, errTarget);
+        final BulkIndexer bulk = new BulkIndexer(
+                worker, new MongoDBStatusEventStorage(searchDB), cfg.getWorkerCodes());
+        final WorkspaceEventGenerator gen = new WorkspaceEventGenerator.Builder(
+                bulk, workspaceDB, logTarget)
+                .withNullableRef(ref)
+                .withWorkspaceBlacklist(wsBlackList)
+                .withLastVersionOnly(lastVersionOnly)
+                .withWorkspaceTypes(wsTypes)
+                .withThreads(threads)
+                .withNullableCheckpointFile(checkpointFile)
+                .build();
+        indexStore.startBulkLoad();
+        boolean generated = false;
+        try {
+            gen.generateEvents();
+            generated = true;
+        } finally {
+            try {
+                indexStore.finishBulkLoad();
+            } catch (IOException | RuntimeException e) {
+                if (generated) {
+                    throw e;
+                }
+                // don't mask the event generation error
+                errTarget.println("Error finishing the bulk load, the index replica and " +
+                        "refresh settings may need to be restored manually: " + e.getMessage());
+            } finally {
+                worker.stop(0);
+                logTarget.println(String.format(
+                        "Bulk indexer: %s objects indexed, %s skipped, %s failed and queued " +
+                        "for retry",
+                        bulk.getIndexedCount(), bulk.getSkippedCount(), bulk.getFailedCount()));
+            }
+        }
+    }
+
     private SearchToolsConfig getConfig(final String configPath)
             throws IOException, SearchToolsConfigException {
         final Path path = Paths.get(configPath);
@@ -665,6 +787,14 @@ public class SearchTools {
                 "Can be used with -r to specify particular workspaces, objects, or versions.")
         private boolean genWSEvents;
         
+        @Parameter(names = {"--bulk-index"}, description =
+                "Index all objects in the workspace service database directly, bypassing the " +
+                "event queue. Intended for initial loads of large amounts of data; index " +
+                "replicas and refreshes are disabled during the load. Objects that fail to " +
+                "index are added to the event queue for retry by the indexer workers. " +
+                "Accepts the same options as -w.")
+        private boolean bulkIndex;
+        
         @Parameter(names = {"--spec"}, description =
                 "Generate a minimal search transformation specification at the provided file " +
                 "location. The --storage-type, --search-type, and --storage-obj-type arguments " +
@@ -691,6 +821,17 @@ public class SearchTools {
                 "object. This parameter is ignored if a full ref including a version is " +
                 "provided in the ref argument.")
         private boolean lastVersionOnly;
+        
+        @Parameter(names = {"--event-threads"}, description =
+                "When generating events or bulk indexing for all workspaces, the number of " +
+                "workspaces to process in parallel.")
+        private int eventThreads = 1;
+        
+        @Parameter(names = {"--event-checkpoint"}, description =
+                "When generating events or bulk indexing for all workspaces, a file in which " +
+                "to record the last workspace id at or below which all workspaces have been " +
+                "processed. If the file exists, processing resumes after that workspace.")
+        private String eventCheckpoint;
                         
         @Parameter(names = {"--version"}, description = "Print the software version and exit")
         private boolean version;
@@ -26,6 +26,8 @@ public class SearchToolsConfig {
     private static final String SEARCH_MONGO_USER = "search-mongo-user";
     private static final String SEARCH_MONGO_PWD = "search-mongo-pwd";
     private static final String WORKER_CODES = "worker-codes";
+    private static final String EVENT_ARCHIVE_AGE = "event-archive-age-days";
+    private static final String EVENT_ARCHIVE_RETENTION = "event-archive-retention-days";
 
     private static final String ELASTIC_HOST = "elastic-host";
     private static final String ELASTIC_PORT = "elastic-port";
@@ -33,6 +35,10 @@ public class SearchToolsConfig {
     private static final String ELASTIC_PWD = "elastic-password";
     private static final String ELASTIC_NAMESPACE = "elastic-namespace";
     private static final String TEMP_DIR = "scratch";
+    private static final String WORKER_TEMP_DIR = "worker-temp-dir";
+    private static final String MAX_IN_MEMORY_OBJECT_SIZE = "worker-max-in-memory-object-size";
+    private static final String MEMORY_MAP_OBJECTS = "worker-memory-map-objects";
+    private static final String PARSE_CACHE_SIZE = "worker-parse-cache-size";
 
     private static final String WS_URL = "workspace-url";
     private static final String AUTH_URL = "auth-service-url";
@@ -55,6 +61,8 @@ public class SearchToolsConfig {
     private final Optional<String> searchMongoUser;
     private final Optional<char[]> searchMongoPwd;
     private final Set<String> workerCodes;
+    private final long eventArchiveAgeDays;
+    private final long eventArchiveRetentionDays;
     
     private final String elasticHost;
     private final int elasticPort;
@@ -62,6 +70,10 @@ public class SearchToolsConfig {
     private final Optional<char[]> elasticPassword;
     private final String elasticNamespace;
     private final String tempDir;
+    private final Optional<String> workerTempDir;
+    private final long maxInMemoryObjectSize;
+    private final boolean memoryMapObjects;
+    private final long parseCacheSize;
     
     private final URL workspaceURL;
     private final URL authURL;
@@ -84,12 +96,18 @@ public class SearchToolsConfig {
             final String searchMongoUser,
             String searchMongoPwd,
             final List<String> workerCodes,
+            final long eventArchiveAgeDays,
+            final long eventArchiveRetentionDays,
             final String elasticHost,
             final int elasticPort,
             final String elasticUser,
             String elasticPassword,
             final String elasticNamespace,
             final String tempDir,
+            final String workerTempDir,
+            final long maxInMemoryObjectSize,
+            final boolean memoryMapObjects,
+            final long parseCacheSize,
             final URL workspaceURL,
             final URL authURL,
             final boolean allowInsecureAuthURL,
@@ -121,6 +139,8 @@ public class SearchToolsConfig {
         searchMongoPwd = null;
         
         this.workerCodes = Collections.unmodifiableSet(new HashSet<>(workerCodes));
+        this.eventArchiveAgeDays = eventArchiveAgeDays;
+        this.eventArchiveRetentionDays = eventArchiveRetentionDays;
         
         this.elasticHost = elasticHost;
         this.elasticPort = elasticPort;
@@ -137,6 +157,10 @@ public class SearchToolsConfig {
         elasticPassword = null;
         this.elasticNamespace = elasticNamespace;
         this.tempDir = tempDir;
+        this.workerTempDir = Optional.fromNullable(workerTempDir);
+        this.maxInMemoryObjectSize = maxInMemoryObjectSize;
+        this.memoryMapObjects = memoryMapObjects;
+        this.parseCacheSize = parseCacheSize;
 
         this.workspaceURL = workspaceURL;
         this.authURL = authURL;
@@ -180,6 +204,21 @@ public class SearchToolsConfig {
     public Set<String> getWorkerCodes() {
         return workerCodes;
     }
+    
+    /** Get the number of days after an event completes processing before the indexer
+     * coordinator archives it. 0 if events are never archived.
+     * @return the archive age in days.
+     */
+    public long getEventArchiveAgeDays() {
+        return eventArchiveAgeDays;
+    }
+    
+    /** Get the number of days archived events are kept before they're deleted.
+     * @return the archive retention in days.
+     */
+    public long getEventArchiveRetentionDays() {
+        return eventArchiveRetentionDays;
+    }
 
     public String getElasticHost() {
         return elasticHost;
@@ -205,6 +244,39 @@ public class SearchToolsConfig {
         return tempDir;
     }
     
+    /** Get the directory in which the indexer workers store the data they download from the
+     * data sources, if different from the {@link #getTempDir() temporary directory}.
+     * @return the worker temporary directory or absent.
+     */
+    public Optional<String> getWorkerTempDir() {
+        return workerTempDir;
+    }
+    
+    /** Get the maximum size, in bytes, of a workspace response that the indexer workers will
+     * hold in memory rather than storing in a temporary file. 0 if objects are always stored in
+     * files.
+     * @return the maximum response size.
+     */
+    public long getMaxInMemoryObjectSize() {
+        return maxInMemoryObjectSize;
+    }
+    
+    /** Get whether the indexer workers memory map the objects they store in temporary files,
+     * rather than reading the files as streams.
+     * @return true if objects are memory mapped.
+     */
+    public boolean isMemoryMapObjects() {
+        return memoryMapObjects;
+    }
+    
+    /** Get the size, in characters of JSON, of the cache the indexer workers use to store parse
+     * results for reuse with objects with identical content. 0 if the cache is disabled.
+     * @return the parse cache size.
+     */
+    public long getParseCacheSize() {
+        return parseCacheSize;
+    }
+    
     public URL getWorkspaceURL() {
         return workspaceURL;
     }
@@ -278,12 +350,18 @@ public class SearchToolsConfig {
                 getString(SEARCH_MONGO_USER, cfg),
                 getString(SEARCH_MONGO_PWD, cfg),
                 getStringList(WORKER_CODES, cfg),
+                getLong(EVENT_ARCHIVE_AGE, cfg, 0),
+                getLong(EVENT_ARCHIVE_RETENTION, cfg, 30),
                 getString(ELASTIC_HOST, cfg, true),
                 esPort,
                 getString(ELASTIC_USER, cfg),
                 getString(ELASTIC_PWD, cfg),
                 getString(ELASTIC_NAMESPACE, cfg, true),
                 getString(TEMP_DIR, cfg, true),
+                getString(WORKER_TEMP_DIR, cfg),
+                getLong(MAX_IN_MEMORY_OBJECT_SIZE, cfg, 0),
+                !"false".equals(getString(MEMORY_MAP_OBJECTS, cfg)),
+                getLong(PARSE_CACHE_SIZE, cfg, 0),
                 getURL(WS_URL, cfg),
                 getURL(AUTH_URL, cfg),
                 "true".equals(getString(AUTH_URL_ALLOW_INSECURE, cfg)),
@@ -363,6 +441,29 @@ public class SearchToolsConfig {
         }
     }
     
+    private static long getLong(
+            final String paramName,
+            final Map<String, String> config,
+            final long defaultValue)
+            throws SearchToolsConfigException {
+        final String s = getString(paramName, config);
+        if (s == null) {
+            return defaultValue;
+        }
+        final long ret;
+        try {
+            ret = Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            throw new SearchToolsConfigException(String.format(
+                    "Invalid value for parameter %s (%s): %s", paramName, s, e.getMessage()));
+        }
+        if (ret < 0) {
+            throw new SearchToolsConfigException(String.format(
+                    "Parameter %s must be at least 0", paramName));
+        }
+        return ret;
+    }
+    
     private static URL getURL(final String key, final Map<String, String> cfg)
             throws SearchToolsConfigException {
         final String url = getString(key, cfg, true);
@@ -404,6 +505,16 @@ public class SearchToolsConfig {
         builder.append(elasticPassword);
         builder.append(", elasticNamespace=");
         builder.append(elasticNamespace);
+        builder.append(", tempDir=");
+        builder.append(tempDir);
+        builder.append(", workerTempDir=");
+        builder.append(workerTempDir);
+        builder.append(", maxInMemoryObjectSize=");
+        builder.append(maxInMemoryObjectSize);
+        builder.append(", memoryMapObjects=");
+        builder.append(memoryMapObjects);
+        builder.append(", parseCacheSize=");
+        builder.append(parseCacheSize);
         builder.append(", workspaceURL=");
         builder.append(workspaceURL);
         builder.append(", authURL=");
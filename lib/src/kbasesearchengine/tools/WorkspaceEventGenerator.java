@@ -3,8 +3,15 @@ package kbasesearchengine.tools;
 import static kbasesearchengine.tools.Utils.noNulls;
 import static kbasesearchengine.tools.Utils.nonNull;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -12,11 +19,20 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
 import org.bson.Document;
 
+import com.google.common.base.Optional;
 import com.mongodb.DBObject;
 import com.mongodb.MongoException;
 import com.mongodb.client.FindIterable;
@@ -38,6 +54,10 @@ import kbasesearchengine.system.StorageObjectType;
  * Generates events based on the search prototype event handler in the workspace, so if that
  * changes this code will likely need to change.
  * 
+ * Events are buffered per workspace and stored in batches. When generating events for all
+ * workspaces, the workspaces may be processed in parallel and the progress of the run may be
+ * recorded in a checkpoint file, which allows an interrupted run to be resumed.
+ * 
  * @author gaprice@lbl.gov
  *
  */
@@ -73,6 +93,9 @@ public class WorkspaceEventGenerator {
     
     private static final String WS_EVENT_GEN = "WSEG";
     
+    private static final int VERSION_BATCH_SIZE = 10000;
+    private static final int DEFAULT_EVENT_BATCH_SIZE = 1000;
+    
     //TODO EVENTGEN optimize by not pulling unneeded fields from db
 
     //TODO EVENTGEN handle data palettes: 1) remove all sharing for ws 2) pull DP 3) add share events for all DP objects. RC still possible.
@@ -83,16 +106,18 @@ public class WorkspaceEventGenerator {
     private final int obj;
     private final int ver;
     
-    private final StatusEventStorage storage;
+    private final EventSink sink;
     private final MongoDatabase wsDB;
     private final PrintStream logtarget;
     private final Set<WorkspaceIdentifier> wsBlackList;
     private final List<Pattern> wsTypes;
-    private final Set<String> workerCodes;
     private final boolean lastVersionOnly;
+    private final int threads;
+    private final int batchSize;
+    private final Path checkpointFile;
     
     private WorkspaceEventGenerator(
-            final StatusEventStorage storage,
+            final EventSink sink,
             final MongoDatabase workspaceDatabase,
             final int ws,
             final int obj,
@@ -100,19 +125,23 @@ public class WorkspaceEventGenerator {
             final PrintStream logtarget,
             final Collection<WorkspaceIdentifier> wsBlackList,
             final Collection<String> wsTypes,
-            final Collection<String> workerCodes,
-            final boolean lastVersionOnly)
+            final boolean lastVersionOnly,
+            final int threads,
+            final int batchSize,
+            final Path checkpointFile)
             throws EventGeneratorException {
         this.ws = ws;
         this.obj = obj;
         this.ver = ver;
-        this.storage = storage;
+        this.sink = sink;
         this.wsDB = workspaceDatabase;
         this.logtarget = logtarget;
         this.wsBlackList = Collections.unmodifiableSet(new HashSet<>(wsBlackList));
         this.wsTypes = processTypes(wsTypes);
-        this.workerCodes = Collections.unmodifiableSet(new HashSet<>(workerCodes));
         this.lastVersionOnly = lastVersionOnly;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.checkpointFile = checkpointFile;
         checkWorkspaceSchema();
     }
     
@@ -163,31 +192,335 @@ public class WorkspaceEventGenerator {
             } catch (MongoException e) {
                 throw convert(e, "workspace");
             }
-            processWorkspace(ws, tempNarr);
+            processWorkspace(ws, tempNarr, null, null);
         } else {
+            generateAllEvents();
+        }
+        log("Finished processing.");
+    }
+
+    private void generateAllEvents() throws EventGeneratorException {
+        final Progress progress = new Progress(checkpointFile);
+        if (progress.getCheckpoint() > 0) {
+            log(String.format("Resuming after workspace %s", progress.getCheckpoint()));
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // limit the number of queued workspaces so the workspace cursor isn't read far ahead
+        // of the workers
+        final Semaphore slots = new Semaphore(threads * 2);
+        final AtomicReference<EventGeneratorException> failure = new AtomicReference<>();
+        try {
+            // don't pull all workspaces at once to try and avoid race conditions
+            final FindIterable<Document> cur = wsDB.getCollection(WS_COL_WORKSPACES)
+                    .find(new Document(WS_KEY_WS_ID,
+                            new Document("$gt", progress.getCheckpoint())))
+                    .sort(new Document(WS_KEY_WS_ID, 1));
+            for (final Document ws: cur) {
+                if (failure.get() != null) {
+                    break;
+                }
+                final int id = Math.toIntExact(ws.getLong(WS_KEY_WS_ID));
+                final String wsname = ws.getString(WS_KEY_WS_NAME);
+                final boolean tempNarr = isTemporaryNarrative(ws);
+                if (progress.isDone(id)) {
+                    log(String.format("Skipping already processed workspace %s (%s)",
+                            wsname, id));
+                    progress.skip(id);
+                } else if (wsBlackList.contains(new WorkspaceIdentifier(id)) ||
+                        wsBlackList.contains(new WorkspaceIdentifier(wsname))) {
+                    log(String.format("Skipping blacklisted workspace %s (%s)",
+                            wsname, id));
+                    progress.skip(id);
+                } else if (ws.getBoolean(WS_KEY_WS_DEL)) {
+                    log(String.format("Skipping deleted workspace %s (%s)", id, wsname));
+                    progress.skip(id);
+                } else {
+                    slots.acquire();
+                    final Optional<ObjectVersion> resume = progress.getResumePoint(id);
+                    progress.start(id);
+                    executor.execute(() -> {
+                        try {
+                            processWorkspace(id, tempNarr, progress, resume.orNull());
+                            progress.finish(id);
+                        } catch (EventGeneratorException e) {
+                            failure.compareAndSet(null, e);
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, new EventGeneratorException(String.format(
+                                    "Error processing workspace %s: %s", id, e.getMessage()), e));
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                }
+            }
+        } catch (EventGeneratorException e) {
+            failure.compareAndSet(null, e);
+        } catch (MongoException e) {
+            failure.compareAndSet(null, convert(e, "workspace"));
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, new EventGeneratorException("Interrupted", e));
+        } finally {
+            executor.shutdown();
+        }
+        try {
+            // wait for in flight workspaces to finish even on failure so the checkpoint is
+            // as far along as possible
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            failure.compareAndSet(null, new EventGeneratorException("Interrupted", e));
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        progress.complete();
+    }
+    
+    /** An object version in a workspace. */
+    public static class ObjectVersion {
+        
+        private final int objectID;
+        private final int version;
+        
+        /** Create an object version.
+         * @param objectID the object ID.
+         * @param version the version.
+         */
+        public ObjectVersion(final int objectID, final int version) {
+            this.objectID = objectID;
+            this.version = version;
+        }
+        
+        /** Get the object ID.
+         * @return the object ID.
+         */
+        public int getObjectID() {
+            return objectID;
+        }
+        
+        /** Get the version.
+         * @return the version.
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + objectID;
+            result = prime * result + version;
+            return result;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final ObjectVersion other = (ObjectVersion) obj;
+            return objectID == other.objectID && version == other.version;
+        }
+    }
+    
+    /** Tracks which workspaces are complete when generating events for all workspaces, and
+     * optionally records the progress in a checkpoint file.
+     * 
+     * The checkpoint is the workspace id at or below which all workspaces have been processed.
+     * Since workspaces are started in id order, that's one less than the lowest workspace in
+     * progress, or the last workspace started if none are in progress. Failed workspaces are
+     * never finished and so hold the checkpoint back. Workspaces above the checkpoint that are
+     * complete are recorded until the checkpoint passes them, so that a resumed run can skip
+     * them rather than storing their events again.
+     * 
+     * For workspaces in progress, the last object version whose event was stored is also
+     * recorded, so that a resumed run can skip the events that were already stored rather than
+     * storing them again.
+     * 
+     * The first line of the checkpoint file is the checkpoint. Each following line is either a
+     * workspace id, object id, and version separated by spaces for a workspace in progress, or
+     * a workspace id followed by a space and "done" for a complete workspace. The file is
+     * rewritten atomically whenever the progress changes.
+     */
+    public static class Progress {
+        
+        private static final String DONE = "done";
+        
+        private final Path checkpointFile;
+        private final TreeSet<Integer> inProgress = new TreeSet<>();
+        private final Map<Integer, ObjectVersion> stored = new TreeMap<>();
+        private final TreeSet<Integer> done = new TreeSet<>();
+        private int lastStarted;
+        private int checkpoint;
+        
+        /** Create a progress tracker. If the checkpoint file exists, the progress is read
+         * from the file.
+         * @param checkpointFile the checkpoint file, or null to not record the progress.
+         * @throws EventGeneratorException if the checkpoint file could not be read.
+         */
+        public Progress(final Path checkpointFile) throws EventGeneratorException {
+            this.checkpointFile = checkpointFile;
+            this.checkpoint = readCheckpoint();
+            this.lastStarted = checkpoint;
+        }
+        
+        /** Get the workspace id at or below which all workspaces have been processed.
+         * @return the checkpoint.
+         */
+        public synchronized int getCheckpoint() {
+            return checkpoint;
+        }
+        
+        /** Get the last object version stored for a workspace that was not completely
+         * processed.
+         * @param wsid the workspace id.
+         * @return the object version, or absent if no events were stored for the workspace or
+         * the workspace is complete.
+         */
+        public synchronized Optional<ObjectVersion> getResumePoint(final int wsid) {
+            return Optional.fromNullable(stored.get(wsid));
+        }
+        
+        /** Check whether a workspace above the checkpoint is complete.
+         * @param wsid the workspace id.
+         * @return true if the workspace is above the checkpoint and was completed, in this
+         * or a previous run.
+         */
+        public synchronized boolean isDone(final int wsid) {
+            return done.contains(wsid);
+        }
+        
+        /** Record that processing a workspace has started.
+         * @param wsid the workspace id.
+         */
+        public synchronized void start(final int wsid) {
+            inProgress.add(wsid);
+            lastStarted = wsid;
+        }
+        
+        /** Record that a workspace was skipped.
+         * @param wsid the workspace id.
+         * @throws EventGeneratorException if the checkpoint file could not be written.
+         */
+        public synchronized void skip(final int wsid) throws EventGeneratorException {
+            lastStarted = wsid;
+            stored.remove(wsid);
+            update(false);
+        }
+        
+        /** Record that the events up to and including an object version in a workspace have
+         * been stored.
+         * @param wsid the workspace id.
+         * @param lastStored the last object version stored.
+         * @throws EventGeneratorException if the checkpoint file could not be written.
+         */
+        public synchronized void stored(final int wsid, final ObjectVersion lastStored)
+                throws EventGeneratorException {
+            nonNull(lastStored, "lastStored");
+            stored.put(wsid, lastStored);
+            update(true);
+        }
+        
+        /** Record that a workspace is complete.
+         * @param wsid the workspace id.
+         * @throws EventGeneratorException if the checkpoint file could not be written.
+         */
+        public synchronized void finish(final int wsid) throws EventGeneratorException {
+            inProgress.remove(wsid);
+            stored.remove(wsid);
+            done.add(wsid);
+            // the workspace is either passed by the checkpoint or recorded as done
+            update(true);
+        }
+        
+        /** Record that the run is complete.
+         * @throws EventGeneratorException if the checkpoint file could not be written.
+         */
+        public synchronized void complete() throws EventGeneratorException {
+            update(false);
+        }
+        
+        private void update(final boolean changed) throws EventGeneratorException {
+            final int cp = inProgress.isEmpty() ? lastStarted : inProgress.first() - 1;
+            if (cp > checkpoint || changed) {
+                checkpoint = Math.max(cp, checkpoint);
+                done.headSet(checkpoint, true).clear();
+                writeCheckpoint();
+            }
+        }
+        
+        private int readCheckpoint() throws EventGeneratorException {
+            if (checkpointFile == null || !Files.exists(checkpointFile)) {
+                return 0;
+            }
             try {
-                // don't pull all workspaces at once to try and avoid race conditions
-                final FindIterable<Document> cur = wsDB.getCollection(WS_COL_WORKSPACES)
-                        .find().sort(new Document(WS_KEY_WS_ID, 1));
-                for (final Document ws: cur) {
-                    final int id = Math.toIntExact(ws.getLong(WS_KEY_WS_ID));
-                    final String wsname = ws.getString(WS_KEY_WS_NAME);
-                    final boolean tempNarr = isTemporaryNarrative(ws);
-                    if (wsBlackList.contains(new WorkspaceIdentifier(id)) ||
-                            wsBlackList.contains(new WorkspaceIdentifier(wsname))) {
-                        log(String.format("Skipping blacklisted workspace %s (%s)",
-                                wsname, id));
-                    } else if (ws.getBoolean(WS_KEY_WS_DEL)) {
-                        log(String.format("Skipping deleted workspace %s (%s)", id, wsname));
-                    } else {
-                        processWorkspace(id, tempNarr);
+                final List<String> lines = Files.readAllLines(
+                        checkpointFile, StandardCharsets.UTF_8);
+                final String cp = lines.isEmpty() ? "" : lines.get(0).trim();
+                for (final String line: lines.subList(Math.min(1, lines.size()), lines.size())) {
+                    if (!line.trim().isEmpty()) {
+                        final String[] parts = line.trim().split(" ");
+                        if (parts.length == 2 && DONE.equals(parts[1])) {
+                            done.add(Integer.parseInt(parts[0]));
+                            continue;
+                        }
+                        if (parts.length != 3) {
+                            throw new NumberFormatException(
+                                    "Expected 3 space separated integers: " + line);
+                        }
+                        stored.put(Integer.parseInt(parts[0]), new ObjectVersion(
+                                Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
                     }
                 }
-            } catch (MongoException e) {
-                throw convert(e, "workspace");
+                final int ret = cp.isEmpty() ? 0 : Integer.parseInt(cp);
+                done.headSet(ret, true).clear();
+                return ret;
+            } catch (IOException e) {
+                throw new EventGeneratorException(String.format(
+                        "Couldn't read checkpoint file %s: %s", checkpointFile, e.getMessage()),
+                        e);
+            } catch (NumberFormatException e) {
+                throw new EventGeneratorException(String.format(
+                        "Couldn't parse checkpoint file %s: %s", checkpointFile, e.getMessage()),
+                        e);
+            }
+        }
+        
+        private void writeCheckpoint() throws EventGeneratorException {
+            if (checkpointFile == null) {
+                return;
+            }
+            final List<String> lines = new LinkedList<>();
+            lines.add(checkpoint + "");
+            for (final Entry<Integer, ObjectVersion> e: stored.entrySet()) {
+                lines.add(String.format("%s %s %s", e.getKey(), e.getValue().getObjectID(),
+                        e.getValue().getVersion()));
+            }
+            for (final Integer wsid: done) {
+                lines.add(wsid + " " + DONE);
+            }
+            final Path temp = checkpointFile.resolveSibling(
+                    checkpointFile.getFileName() + ".tmp");
+            try {
+                // write and move so the checkpoint is never left partially written
+                Files.write(temp, lines, StandardCharsets.UTF_8);
+                Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new EventGeneratorException(String.format(
+                        "Couldn't write checkpoint file %s: %s", checkpointFile, e.getMessage()),
+                        e);
             }
         }
-        log("Finished processing.");
     }
 
     private boolean isTemporaryNarrative(final Document doc) {
@@ -196,7 +529,12 @@ public class WorkspaceEventGenerator {
         return TRUE.equals(meta.get(IS_TEMP_NARRATIVE));
     }
     
-    private void processWorkspace(final int wsid, final boolean tempNarr)
+    // progress and resume are null if not generating events for all workspaces
+    private void processWorkspace(
+            final int wsid,
+            final boolean tempNarr,
+            final Progress progress,
+            final ObjectVersion resume)
             throws EventGeneratorException {
         final boolean pub = isPub(wsid);
         final Document query = new Document(WS_KEY_WS_ID, wsid);
@@ -209,24 +547,43 @@ public class WorkspaceEventGenerator {
         if (!wsTypes.isEmpty()) {
             query.append(WS_KEY_TYPE, new Document("$in", wsTypes));
         }
+        if (resume != null) {
+            log(String.format("Resuming workspace %s after object %s/%s/%s",
+                    wsid, wsid, resume.getObjectID(), resume.getVersion()));
+            // versions are processed in object id order, newest version first
+            final Document nextObjects = new Document(WS_KEY_OBJ_ID,
+                    new Document("$gt", resume.getObjectID()));
+            if (lastVersionOnly) {
+                // the event for the last version of the object has already been stored
+                query.putAll(nextObjects);
+            } else {
+                query.append("$or", Arrays.asList(nextObjects,
+                        new Document(WS_KEY_OBJ_ID, resume.getObjectID())
+                                .append(WS_KEY_VER, new Document("$lt", resume.getVersion()))));
+            }
+        }
         final MongoCursor<Document> vercur = wsDB.getCollection(WS_COL_VERS)
                 .find(query)
                 .sort(new Document(WS_KEY_WS_ID, 1)
                         .append(WS_KEY_OBJ_ID, 1)
                         .append(WS_KEY_VER, -1)).iterator();
 
-        Versions vers = new Versions(vercur, 10000, null);
+        final List<StatusEvent> events = new ArrayList<>(batchSize);
+        Versions vers = new Versions(vercur, VERSION_BATCH_SIZE, null);
         while (!vers.isEmpty()) {
-            processVers(wsid, vers, pub, tempNarr);
-            vers = new Versions(vercur, 10000, vers.lastObjVer);
+            processVers(wsid, vers, pub, tempNarr, events, progress);
+            vers = new Versions(vercur, VERSION_BATCH_SIZE, vers.lastObjVer);
         }
+        storeEvents(wsid, events, progress);
     }
 
     private void processVers(
             final int wsid,
             final Versions vers,
             final boolean pub,
-            final boolean tempNarr)
+            final boolean tempNarr,
+            final List<StatusEvent> events,
+            final Progress progress)
             throws EventGeneratorException {
         final Map<Integer, Document> objects = getObjects(
                 wsid, vers.minObjId, vers.lastObjVer.objid);
@@ -242,7 +599,10 @@ public class WorkspaceEventGenerator {
                     (isTemporaryNarrative(ver) || tempNarr)) {
                 log(String.format("Skipping temporary narrative %s/%s/%s", wsid, objid, version));
             } else {
-                generateEvent(wsid, pub, ver);
+                events.add(generateEvent(wsid, pub, ver));
+                if (events.size() >= batchSize) {
+                    storeEvents(wsid, events, progress);
+                }
             }
         }
     }
@@ -267,30 +627,45 @@ public class WorkspaceEventGenerator {
         return ret;
     }
     
-    private void generateEvent(final int wsid, final boolean pub, final Document ver)
-            throws EventGeneratorException {
+    private StatusEvent generateEvent(final int wsid, final boolean pub, final Document ver) {
         final int objid = Math.toIntExact(ver.getLong(WS_KEY_OBJ_ID));
         final int vernum = ver.getInteger(WS_KEY_VER);
         final String[] typeString = ver.getString(WS_KEY_TYPE).split("-");
         final String type = typeString[0];
         final int typever = Integer.parseInt(typeString[1].split("\\.")[0]);
-        try {
-            storage.store(StatusEvent.getBuilder(
-                    new StorageObjectType("WS", type, typever),
-                    ver.getDate(WS_KEY_SAVEDATE).toInstant(),
-                    StatusEventType.NEW_VERSION)
-                    .withNullableAccessGroupID(wsid)
-                    .withNullableObjectID(objid + "")
-                    .withNullableVersion(vernum)
-                    .withNullableisPublic(pub)
-                    .build(),
-                    StatusEventProcessingState.UNPROC,
-                    workerCodes,
-                    WS_EVENT_GEN);
-        } catch (RetriableIndexingException e) {
-            throw new EventGeneratorException(e.getMessage(), e); //TODO CODE retries
-        }
-        log(String.format("Generated event %s/%s/%s %s-%s", wsid, objid, vernum, type, typever));
+        return StatusEvent.getBuilder(
+                new StorageObjectType("WS", type, typever),
+                ver.getDate(WS_KEY_SAVEDATE).toInstant(),
+                StatusEventType.NEW_VERSION)
+                .withNullableAccessGroupID(wsid)
+                .withNullableObjectID(objid + "")
+                .withNullableVersion(vernum)
+                .withNullableisPublic(pub)
+                .build();
+    }
+    
+    // clears the event list. progress is null if not generating events for all workspaces
+    private void storeEvents(
+            final int wsid,
+            final List<StatusEvent> events,
+            final Progress progress)
+            throws EventGeneratorException {
+        if (events.isEmpty()) {
+            return;
+        }
+        sink.accept(events);
+        final StatusEvent first = events.get(0);
+        final StatusEvent last = events.get(events.size() - 1);
+        if (progress != null) {
+            progress.stored(wsid, new ObjectVersion(
+                    Integer.parseInt(last.getAccessGroupObjectId().get()),
+                    last.getVersion().get()));
+        }
+        log(String.format("Generated %s events in workspace %s, %s/%s to %s/%s",
+                events.size(), wsid,
+                first.getAccessGroupObjectId().get(), first.getVersion().get(),
+                last.getAccessGroupObjectId().get(), last.getVersion().get()));
+        events.clear();
     }
 
     private Map<Integer, Document> getObjects(
@@ -392,9 +767,45 @@ public class WorkspaceEventGenerator {
         logtarget.println(Instant.now().toEpochMilli() + " " + string);
     }
 
+    /** A destination for generated events. */
+    public interface EventSink {
+        
+        /** Accept a batch of events. All the events in a batch are from the same workspace, and
+         * the events for a workspace are always provided in order from the same thread. When
+         * multiple threads are in use, batches from different workspaces may be provided
+         * concurrently.
+         * @param events the events. The list may be reused after the method returns.
+         * @throws EventGeneratorException if the events could not be accepted. Event
+         * generation will halt.
+         */
+        void accept(List<StatusEvent> events) throws EventGeneratorException;
+    }
+    
+    private static class StorageSink implements EventSink {
+        
+        private final StatusEventStorage storage;
+        private final Set<String> workerCodes;
+        
+        private StorageSink(final StatusEventStorage storage, final Collection<String> workerCodes) {
+            this.storage = storage;
+            this.workerCodes = Collections.unmodifiableSet(new HashSet<>(workerCodes));
+        }
+        
+        @Override
+        public void accept(final List<StatusEvent> events) throws EventGeneratorException {
+            try {
+                storage.storeAll(
+                        events, StatusEventProcessingState.UNPROC, workerCodes, WS_EVENT_GEN);
+            } catch (RetriableIndexingException e) {
+                throw new EventGeneratorException(e.getMessage(), e); //TODO CODE retries
+            }
+        }
+    }
+
     public static class Builder {
         
         private final StatusEventStorage storage;
+        private final EventSink sink;
         private final MongoDatabase workspaceDatabase;
         private int ws = -1;
         private int obj = -1;
@@ -404,6 +815,9 @@ public class WorkspaceEventGenerator {
         private Collection<String> wsTypes = new LinkedList<>();
         private Collection<String> workerCodes = new HashSet<>();
         private boolean lastVersionOnly = false;
+        private int threads = 1;
+        private int batchSize = DEFAULT_EVENT_BATCH_SIZE;
+        private Path checkpointFile = null;
         
         public Builder(
                 final StatusEventStorage storage,
@@ -413,6 +827,26 @@ public class WorkspaceEventGenerator {
             nonNull(workspaceDatabase, "workspaceDatabase");
             nonNull(logtarget, "logtarget");
             this.storage = storage;
+            this.sink = null;
+            this.workspaceDatabase = workspaceDatabase;
+            this.logtarget = logtarget;
+        }
+        
+        /** Create a builder for a generator that sends events to an arbitrary destination
+         * rather than storing them in the search event queue. Worker codes are ignored.
+         * @param sink the destination for the events.
+         * @param workspaceDatabase the workspace database.
+         * @param logtarget the target for log messages.
+         */
+        public Builder(
+                final EventSink sink,
+                final MongoDatabase workspaceDatabase,
+                final PrintStream logtarget) {
+            nonNull(sink, "sink");
+            nonNull(workspaceDatabase, "workspaceDatabase");
+            nonNull(logtarget, "logtarget");
+            this.storage = null;
+            this.sink = sink;
             this.workspaceDatabase = workspaceDatabase;
             this.logtarget = logtarget;
         }
@@ -476,10 +910,49 @@ public class WorkspaceEventGenerator {
             return this;
         }
 
+        /** Set the number of workspaces to process in parallel when generating events for all
+         * workspaces. The default is 1. Ignored if a ref is provided.
+         * @param threads the number of threads.
+         * @return this builder.
+         */
+        public Builder withThreads(final int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be at least 1");
+            }
+            this.threads = threads;
+            return this;
+        }
+        
+        /** Set the maximum number of events to store in one batch. The default is 1000.
+         * @param batchSize the batch size.
+         * @return this builder.
+         */
+        public Builder withBatchSize(final int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize must be at least 1");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+        
+        /** Set a file in which to record the progress of a run that generates events for all
+         * workspaces. The file contains a workspace id at or below which all workspaces have
+         * been processed, and the last object version stored for each workspace in progress.
+         * If the file exists when the run starts, the processed workspaces and stored object
+         * versions are skipped. See {@link Progress}. Ignored if a ref is provided.
+         * @param checkpointFile the checkpoint file, or null for no checkpointing.
+         * @return this builder.
+         */
+        public Builder withNullableCheckpointFile(final Path checkpointFile) {
+            this.checkpointFile = checkpointFile;
+            return this;
+        }
+
         public WorkspaceEventGenerator build() throws EventGeneratorException {
             return new WorkspaceEventGenerator(
-                    storage, workspaceDatabase, ws, obj, ver, logtarget, wsBlackList, wsTypes,
-                    workerCodes, ver > 0 ? false : lastVersionOnly);
+                    sink == null ? new StorageSink(storage, workerCodes) : sink,
+                    workspaceDatabase, ws, obj, ver, logtarget, wsBlackList, wsTypes,
+                    ver > 0 ? false : lastVersionOnly, threads, batchSize, checkpointFile);
         }
 
     }
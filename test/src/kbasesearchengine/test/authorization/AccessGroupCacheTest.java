@@ -5,6 +5,11 @@ import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -16,6 +21,7 @@ import com.google.common.base.Ticker;
 
 import kbasesearchengine.authorization.AccessGroupCache;
 import kbasesearchengine.authorization.AccessGroupProvider;
+import kbasesearchengine.authorization.AccessGroupSet;
 import kbasesearchengine.test.common.TestCommon;
 
 public class AccessGroupCacheTest {
@@ -123,6 +129,110 @@ public class AccessGroupCacheTest {
                 is(Arrays.asList(20, 21)));
     }
     
+    @Test
+    public void findAccessGroups() throws Exception {
+        final AccessGroupProvider wrapped = mock(AccessGroupProvider.class);
+        final AccessGroupCache cache = new AccessGroupCache(wrapped, 10, 10000);
+        
+        when(wrapped.findAccessGroupIds("foo")).thenReturn(Arrays.asList(6, 2, 4, 2));
+        
+        assertThat("incorrect access groups", cache.findAccessGroups("foo"),
+                is(AccessGroupSet.of(Arrays.asList(2, 4, 6))));
+        assertThat("incorrect access groups", cache.findAccessGroupIds("foo"),
+                is(Arrays.asList(2, 4, 6)));
+        assertThat("incorrect loads", cache.getStats().loadCount(), is(1L));
+    }
+    
+    @Test
+    public void refreshAhead() throws Exception {
+        final AccessGroupProvider wrapped = mock(AccessGroupProvider.class);
+        final Ticker ticker = mock(Ticker.class);
+        final AccessGroupCache cache = new AccessGroupCache(wrapped, 10, 10000, 5, 1, ticker);
+        
+        final AtomicLong time = new AtomicLong();
+        when(ticker.read()).thenAnswer(inv -> time.get());
+        
+        final CountDownLatch reloadStarted = new CountDownLatch(1);
+        final CountDownLatch finishReload = new CountDownLatch(1);
+        when(wrapped.findAccessGroupIds("foo")).thenReturn(Arrays.asList(1))
+                .thenAnswer(inv -> {
+                    reloadStarted.countDown();
+                    finishReload.await();
+                    return Arrays.asList(2, 3);
+                })
+                .thenReturn(Arrays.asList(4));
+        
+        assertThat("incorrect access groups", cache.findAccessGroupIds("foo"),
+                is(Arrays.asList(1)));
+        time.set(4000000000L);
+        assertThat("incorrect access groups", cache.findAccessGroupIds("foo"),
+                is(Arrays.asList(1)));
+        
+        // the stale entry is returned while the reload runs
+        time.set(6000000000L);
+        assertThat("incorrect access groups", cache.findAccessGroupIds("foo"),
+                is(Arrays.asList(1)));
+        assertThat("reload not started", reloadStarted.await(10, TimeUnit.SECONDS), is(true));
+        assertThat("incorrect access groups", cache.findAccessGroupIds("foo"),
+                is(Arrays.asList(1)));
+        finishReload.countDown();
+        
+        assertThat("incorrect access groups", waitForChange(cache, Arrays.asList(1)),
+                is(Arrays.asList(2, 3)));
+        assertThat("incorrect stale hits", cache.getStatistics().get("stalehits") >= 2,
+                is(true));
+        assertThat("incorrect staleness", cache.getStatistics().get("maxstalenessms"),
+                is(6000L));
+        assertThat("incorrect loads", cache.getStatistics().get("loads"), is(2L));
+        assertThat("incorrect misses", cache.getStats().missCount(), is(1L));
+        
+        // entries that aren't accessed before the lifetime is up are reloaded synchronously
+        time.set(16000000001L);
+        assertThat("incorrect access groups", cache.findAccessGroupIds("foo"),
+                is(Arrays.asList(4)));
+    }
+    
+    private List<Integer> waitForChange(final AccessGroupCache cache, final List<Integer> old)
+            throws Exception {
+        for (int i = 0; i < 100; i++) {
+            final List<Integer> ag = cache.findAccessGroupIds("foo");
+            if (!ag.equals(old)) {
+                return ag;
+            }
+            Thread.sleep(100);
+        }
+        return Collections.emptyList();
+    }
+    
+    @Test
+    public void refreshFail() throws Exception {
+        // a failed reload leaves the stale entry in place
+        final AccessGroupProvider wrapped = mock(AccessGroupProvider.class);
+        final Ticker ticker = mock(Ticker.class);
+        final AccessGroupCache cache = new AccessGroupCache(wrapped, 10, 10000, 5, 1, ticker);
+        
+        final AtomicLong time = new AtomicLong();
+        when(ticker.read()).thenAnswer(inv -> time.get());
+        
+        when(wrapped.findAccessGroupIds("foo")).thenReturn(Arrays.asList(1))
+                .thenThrow(new IOException("well poop"))
+                .thenReturn(Arrays.asList(2));
+        
+        assertThat("incorrect access groups", cache.findAccessGroupIds("foo"),
+                is(Arrays.asList(1)));
+        time.set(6000000000L);
+        assertThat("incorrect access groups", cache.findAccessGroupIds("foo"),
+                is(Arrays.asList(1)));
+        for (int i = 0; i < 100 && cache.getStats().loadExceptionCount() < 1; i++) {
+            Thread.sleep(100);
+        }
+        assertThat("incorrect load exceptions",
+                cache.getStatistics().get("loadexceptions"), is(1L));
+        // the next request after the failure starts another reload
+        assertThat("incorrect access groups", waitForChange(cache, Arrays.asList(1)),
+                is(Arrays.asList(2)));
+    }
+    
     @Test
     public void constructFail() throws Exception {
         final AccessGroupProvider wrapped = mock(AccessGroupProvider.class);
@@ -131,6 +241,36 @@ public class AccessGroupCacheTest {
                 new IllegalArgumentException("cache lifetime must be at least one second"));
         failConstruct(wrapped, 10, 0,
                 new IllegalArgumentException("cache size must be at least one"));
+        
+        final Ticker t = Ticker.systemTicker();
+        failConstruct(null, 10, 10, 5, 1, t, new NullPointerException("provider"));
+        failConstruct(wrapped, 10, 10, 5, 1, null, new NullPointerException("ticker"));
+        failConstruct(wrapped, 0, 10, 5, 1, t,
+                new IllegalArgumentException("cache lifetime must be at least one second"));
+        failConstruct(wrapped, 10, 0, 5, 1, t,
+                new IllegalArgumentException("cache size must be at least one"));
+        final String refresh = "refresh time must be at least one second and less than the " +
+                "cache lifetime";
+        failConstruct(wrapped, 10, 10, 0, 1, t, new IllegalArgumentException(refresh));
+        failConstruct(wrapped, 10, 10, 10, 1, t, new IllegalArgumentException(refresh));
+        failConstruct(wrapped, 10, 10, 5, 0, t, new IllegalArgumentException(
+                "maximum concurrent refreshes must be at least one"));
+    }
+    
+    private void failConstruct(
+            final AccessGroupProvider provider,
+            final int lifetimeSec,
+            final int size,
+            final int refreshSec,
+            final int maxRefreshes,
+            final Ticker ticker,
+            final Exception exception) {
+        try {
+            new AccessGroupCache(provider, lifetimeSec, size, refreshSec, maxRefreshes, ticker);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, exception);
+        }
     }
 
     private void failConstruct(
@@ -0,0 +1,118 @@
+package kbasesearchengine.test.authorization;
+
+import static kbasesearchengine.test.common.TestCommon.set;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+import kbasesearchengine.authorization.AccessGroupSet;
+import kbasesearchengine.test.common.TestCommon;
+
+public class AccessGroupSetTest {
+
+    @Test
+    public void empty() throws Exception {
+        final AccessGroupSet s = AccessGroupSet.of(Collections.emptyList());
+        assertThat("incorrect set", s, is(AccessGroupSet.empty()));
+        assertThat("incorrect size", s.size(), is(0));
+        assertThat("incorrect contains", s.contains(0), is(false));
+        assertThat("incorrect set", s.asSet(), is(set()));
+        assertThat("incorrect list", s.asList(), is(Collections.emptyList()));
+    }
+
+    @Test
+    public void sortAndDeduplicate() throws Exception {
+        final AccessGroupSet s = AccessGroupSet.of(Arrays.asList(7, 3, 42, 3, -1, 7, 100000));
+
+        assertThat("incorrect size", s.size(), is(5));
+        assertThat("incorrect list", s.asList(), is(Arrays.asList(-1, 3, 7, 42, 100000)));
+        assertThat("incorrect set", s.asSet(), is(set(-1, 3, 7, 42, 100000)));
+        assertThat("incorrect set", set(-1, 3, 7, 42, 100000).equals(s.asSet()), is(true));
+        assertThat("incorrect hash", s.asSet().hashCode(),
+                is(set(-1, 3, 7, 42, 100000).hashCode()));
+        assertThat("incorrect toString", s.toString(),
+                is("AccessGroupSet [-1, 3, 7, 42, 100000]"));
+        assertThat("incorrect equals", s, is(AccessGroupSet.of(
+                Arrays.asList(100000, 42, 7, 3, -1))));
+    }
+
+    @Test
+    public void contains() throws Exception {
+        final AccessGroupSet s = AccessGroupSet.of(Arrays.asList(7, 3, 42));
+
+        for (final int i: Arrays.asList(3, 7, 42)) {
+            assertThat("incorrect contains " + i, s.contains(i), is(true));
+            assertThat("incorrect contains " + i, s.asSet().contains(i), is(true));
+        }
+        for (final int i: Arrays.asList(-3, 0, 2, 4, 8, 41, 43)) {
+            assertThat("incorrect contains " + i, s.contains(i), is(false));
+            assertThat("incorrect contains " + i, s.asSet().contains(i), is(false));
+        }
+        assertThat("incorrect contains", s.asSet().contains("3"), is(false));
+        assertThat("incorrect contains", s.asSet().contains(null), is(false));
+    }
+
+    @Test
+    public void immutable() throws Exception {
+        final AccessGroupSet s = AccessGroupSet.of(Arrays.asList(1, 2));
+        try {
+            s.asSet().add(3);
+            fail("expected exception");
+        } catch (UnsupportedOperationException e) {
+            // pass
+        }
+        try {
+            s.asList().set(0, 3);
+            fail("expected exception");
+        } catch (UnsupportedOperationException e) {
+            // pass
+        }
+        final Iterator<Integer> i = s.asSet().iterator();
+        i.next();
+        i.next();
+        try {
+            i.next();
+            fail("expected exception");
+        } catch (NoSuchElementException e) {
+            // pass
+        }
+        assertThat("incorrect list", s.asList(), is(Arrays.asList(1, 2)));
+    }
+
+    @Test
+    public void ofView() throws Exception {
+        final AccessGroupSet s = AccessGroupSet.of(Arrays.asList(3, 1, 2));
+        assertThat("view copied", AccessGroupSet.of(s.asSet()), sameInstance(s));
+        // other sets are copied
+        final AccessGroupSet copy = AccessGroupSet.of(new HashSet<>(s.asSet()));
+        assertThat("set not copied", copy, not(sameInstance(s)));
+        assertThat("incorrect copy", copy, is(s));
+        assertThat("incorrect hash", copy.hashCode(), is(s.hashCode()));
+    }
+
+    @Test
+    public void ofFail() throws Exception {
+        failOf(null, new NullPointerException("accessGroupIDs"));
+        failOf(Arrays.asList(1, null), new NullPointerException("Null ID in accessGroupIDs"));
+    }
+
+    private void failOf(final Collection<Integer> ids, final Exception expected) {
+        try {
+            AccessGroupSet.of(ids);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package kbasesearchengine.test.authorization;
+
+import static kbasesearchengine.test.common.TestCommon.set;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.authorization.CachingAuth2Client;
+import kbasesearchengine.authorization.TemporaryAuth2Client;
+import kbasesearchengine.test.common.TestCommon;
+
+public class CachingAuth2ClientTest {
+
+    private static TemporaryAuth2Client mockClient() throws Exception {
+        final TemporaryAuth2Client wrapped = mock(TemporaryAuth2Client.class);
+        when(wrapped.getURL()).thenReturn(new URL("http://auth.com/"));
+        return wrapped;
+    }
+
+    @Test
+    public void getURL() throws Exception {
+        final CachingAuth2Client cli = new CachingAuth2Client(mockClient(), 10, 100);
+        assertThat("incorrect url", cli.getURL(), is(new URL("http://auth.com/")));
+    }
+
+    @Test
+    public void fetchOnlyMisses() throws Exception {
+        final TemporaryAuth2Client wrapped = mockClient();
+        final CachingAuth2Client cli = new CachingAuth2Client(wrapped, 10, 100);
+
+        when(wrapped.getUserDisplayNames("tok", set("u1", "u2", "u3"))).thenReturn(
+                ImmutableMap.of("u1", "d1", "u2", "d2")); // u3 doesn't exist
+        when(wrapped.getUserDisplayNames("tok2", set("u4"))).thenReturn(
+                ImmutableMap.of("u4", "d4"));
+
+        assertThat("incorrect names", cli.getUserDisplayNames("tok", set("u1", "u2", "u3")),
+                is(ImmutableMap.of("u1", "d1", "u2", "d2")));
+        assertThat("incorrect names", cli.getUserDisplayNames("tok2", set("u1", "u3", "u4")),
+                is(ImmutableMap.of("u1", "d1", "u4", "d4")));
+        assertThat("incorrect names", cli.getUserDisplayNames("tok", set("u2", "u3", "u4")),
+                is(ImmutableMap.of("u2", "d2", "u4", "d4")));
+        assertThat("incorrect names", cli.getUserDisplayNames("tok", set()),
+                is(Collections.emptyMap()));
+
+        verify(wrapped).getUserDisplayNames("tok", set("u1", "u2", "u3"));
+        verify(wrapped).getUserDisplayNames("tok2", set("u4"));
+        verify(wrapped).getURL();
+        verifyNoMoreInteractions(wrapped);
+
+        assertThat("incorrect hits", cli.getStats().hitCount(), is(5L));
+        assertThat("incorrect misses", cli.getStats().missCount(), is(4L));
+    }
+
+    @Test
+    public void expires() throws Exception {
+        final TemporaryAuth2Client wrapped = mockClient();
+        final Ticker ticker = mock(Ticker.class);
+        final CachingAuth2Client cli = new CachingAuth2Client(wrapped, 10, 100, ticker);
+
+        final AtomicLong time = new AtomicLong();
+        when(ticker.read()).thenAnswer(inv -> time.get());
+
+        when(wrapped.getUserDisplayNames("tok", set("u1")))
+                .thenReturn(ImmutableMap.of("u1", "d1"))
+                .thenReturn(ImmutableMap.of("u1", "d2"));
+
+        assertThat("incorrect names", cli.getUserDisplayNames("tok", set("u1")),
+                is(ImmutableMap.of("u1", "d1")));
+        time.set(9000000000L);
+        assertThat("incorrect names", cli.getUserDisplayNames("tok", set("u1")),
+                is(ImmutableMap.of("u1", "d1")));
+        time.set(10000000001L);
+        assertThat("incorrect names", cli.getUserDisplayNames("tok", set("u1")),
+                is(ImmutableMap.of("u1", "d2")));
+    }
+
+    @Test
+    public void expiresOnSize() throws Exception {
+        final TemporaryAuth2Client wrapped = mockClient();
+        final CachingAuth2Client cli = new CachingAuth2Client(wrapped, 10, 2);
+
+        when(wrapped.getUserDisplayNames("tok", set("u1", "u2"))).thenReturn(
+                ImmutableMap.of("u1", "d1", "u2", "d2"));
+        when(wrapped.getUserDisplayNames("tok", set("u3"))).thenReturn(
+                ImmutableMap.of("u3", "d3"));
+
+        cli.getUserDisplayNames("tok", set("u1", "u2"));
+        cli.getUserDisplayNames("tok", set("u3"));
+
+        assertThat("incorrect evictions", cli.getStats().evictionCount(), is(1L));
+    }
+
+    @Test
+    public void fetchFail() throws Exception {
+        final TemporaryAuth2Client wrapped = mockClient();
+        final CachingAuth2Client cli = new CachingAuth2Client(wrapped, 10, 100);
+
+        when(wrapped.getUserDisplayNames("tok", set("u1"))).thenThrow(new IOException("ow"))
+                .thenReturn(ImmutableMap.of("u1", "d1"));
+
+        failGet(cli, "tok", set("u1"), new IOException("ow"));
+        // failures are not cached
+        assertThat("incorrect names", cli.getUserDisplayNames("tok", set("u1")),
+                is(ImmutableMap.of("u1", "d1")));
+    }
+
+    @Test
+    public void getFail() throws Exception {
+        final CachingAuth2Client cli = new CachingAuth2Client(mockClient(), 10, 100);
+
+        failGet(cli, null, set("u"), new IllegalArgumentException(
+                "token cannot be null or whitespace only"));
+        failGet(cli, "  \t  ", set("u"), new IllegalArgumentException(
+                "token cannot be null or whitespace only"));
+        failGet(cli, "t", null, new NullPointerException("userNames"));
+
+        final Set<String> nullName = new HashSet<>();
+        nullName.add("u");
+        nullName.add(null);
+        failGet(cli, "t", nullName, new IllegalArgumentException(
+                "Null or whitespace only entry in userNames"));
+        failGet(cli, "t", set("u", "  \t  "), new IllegalArgumentException(
+                "Null or whitespace only entry in userNames"));
+    }
+
+    private void failGet(
+            final CachingAuth2Client cli,
+            final String token,
+            final Set<String> userNames,
+            final Exception expected) {
+        try {
+            cli.getUserDisplayNames(token, userNames);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+
+    @Test
+    public void constructFail() throws Exception {
+        final TemporaryAuth2Client c = mockClient();
+        final Ticker t = Ticker.systemTicker();
+        failConstruct(null, 10, 10, t, new NullPointerException("client"));
+        failConstruct(c, 0, 10, t,
+                new IllegalArgumentException("cache lifetime must be at least one second"));
+        failConstruct(c, 10, 0, t,
+                new IllegalArgumentException("cache size must be at least one"));
+        failConstruct(c, 10, 10, null, new NullPointerException("ticker"));
+    }
+
+    private void failConstruct(
+            final TemporaryAuth2Client client,
+            final int lifetimeSec,
+            final int size,
+            final Ticker ticker,
+            final Exception expected) {
+        try {
+            new CachingAuth2Client(client, lifetimeSec, size, ticker);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package kbasesearchengine.test.common;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.common.MappedJsonFile;
+import kbasesearchengine.common.ObjectJsonPath;
+
+public class MappedJsonFileTest {
+
+    private static Path tempDir;
+    private static Path file;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        tempDir = Paths.get(TestCommon.getTempDir()).resolve("MappedJsonFileTest")
+                .toAbsolutePath();
+        tempDir.toFile().mkdirs();
+        file = tempDir.resolve("response.json");
+        new ObjectMapper().writeValue(file.toFile(), ImmutableMap.of(
+                "version", "1.1",
+                "result", Arrays.asList(ImmutableMap.of("data", Arrays.asList(
+                        ImmutableMap.of(
+                                "info", Arrays.asList(1, "foo", ImmutableMap.of("a", "b")),
+                                "data", ImmutableMap.of("genome", "data", "x", Arrays.asList(1)),
+                                "provenance", Arrays.asList())
+                        )))));
+    }
+
+    @AfterClass
+    public static void teardown() throws Exception {
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    private static ObjectJsonPath path(final String... items) {
+        return new ObjectJsonPath(items);
+    }
+
+    @Test
+    public void placedStream() throws Exception {
+        final MappedJsonFile mf = new MappedJsonFile(
+                file, path("result", "0", "data", "0", "data"));
+
+        assertThat("incorrect file", mf.getFile(), is(file));
+        assertThat("incorrect path", mf.getDataPath(),
+                is(path("result", "0", "data", "0", "data")));
+        // check repeated parses are correct
+        for (int i = 0; i < 2; i++) {
+            try (final JsonParser p = mf.getPlacedStream()) {
+                p.nextToken();
+                assertThat("incorrect data", new ObjectMapper().readValue(p, Map.class),
+                        is(ImmutableMap.of("genome", "data", "x", Arrays.asList(1))));
+            }
+        }
+    }
+
+    @Test
+    public void placedStreamArrayElement() throws Exception {
+        final MappedJsonFile mf = new MappedJsonFile(
+                file, path("result", "0", "data", "0", "info", "2"));
+        try (final JsonParser p = mf.getPlacedStream()) {
+            p.nextToken();
+            assertThat("incorrect data", new ObjectMapper().readValue(p, Map.class),
+                    is(ImmutableMap.of("a", "b")));
+        }
+    }
+
+    @Test
+    public void placedStreamRoot() throws Exception {
+        final MappedJsonFile mf = new MappedJsonFile(file, path());
+        try (final JsonParser p = mf.getPlacedStream()) {
+            p.nextToken();
+            assertThat("incorrect data", new ObjectMapper().readValue(p, Map.class)
+                    .get("version"), is("1.1"));
+        }
+    }
+
+    @Test
+    public void inputStream() throws Exception {
+        final MappedJsonFile mf = new MappedJsonFile(file, path("version"));
+        try (final InputStream is = mf.getInputStream()) {
+            assertThat("incorrect contents", IOUtils.toByteArray(is),
+                    is(Files.readAllBytes(file)));
+        }
+    }
+
+    @Test
+    public void close() throws Exception {
+        final MappedJsonFile mf = new MappedJsonFile(file, path("version"));
+        mf.close();
+        // closing twice has no effect
+        mf.close();
+        try {
+            mf.getPlacedStream();
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new IOException(
+                    "Mapped file " + file + " is closed"));
+        }
+        try {
+            mf.getInputStream();
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new IOException(
+                    "Mapped file " + file + " is closed"));
+        }
+    }
+
+    @Test
+    public void constructFail() throws Exception {
+        failConstruct(null, path(), new NullPointerException("file"));
+        failConstruct(file, null, new NullPointerException("dataPath"));
+    }
+
+    private void failConstruct(
+            final Path file,
+            final ObjectJsonPath path,
+            final Exception expected) {
+        try {
+            new MappedJsonFile(file, path);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+
+    @Test
+    public void placedStreamFail() throws Exception {
+        failPlacedStream(file, path("result", "0", "data", "0", "dat"),
+                new IOException("Path /result/0/data/0/dat does not exist in " +
+                        "JSON file " + file));
+        failPlacedStream(file, path("result", "1", "data"),
+                new IOException("Path /result/1/data does not exist in JSON file " + file));
+        failPlacedStream(file, path("result", "foo"),
+                new IOException("Path /result/foo does not exist in JSON file " + file));
+        failPlacedStream(file, path("version", "foo"),
+                new IOException("Path /version/foo does not exist in JSON file " +
+                        file));
+
+        final Path empty = tempDir.resolve("empty.json");
+        Files.write(empty, new byte[0]);
+        failPlacedStream(empty, path("result"),
+                new IOException("Path /result does not exist in JSON file " + empty));
+    }
+
+    private void failPlacedStream(
+            final Path file,
+            final ObjectJsonPath path,
+            final Exception expected)
+            throws Exception {
+        // the JSON is not parsed until a parser is requested
+        try (final MappedJsonFile mf = new MappedJsonFile(file, path)) {
+            mf.getPlacedStream();
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+}
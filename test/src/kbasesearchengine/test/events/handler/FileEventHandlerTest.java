@@ -0,0 +1,275 @@
+package kbasesearchengine.test.events.handler;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static kbasesearchengine.test.common.TestCommon.set;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.events.ChildStatusEvent;
+import kbasesearchengine.events.StatusEvent;
+import kbasesearchengine.events.StatusEventID;
+import kbasesearchengine.events.StatusEventProcessingState;
+import kbasesearchengine.events.StatusEventType;
+import kbasesearchengine.events.StoredStatusEvent;
+import kbasesearchengine.events.exceptions.ErrorType;
+import kbasesearchengine.events.exceptions.UnprocessableEventIndexingException;
+import kbasesearchengine.events.handler.FileEventHandler;
+import kbasesearchengine.events.handler.ResolvedReference;
+import kbasesearchengine.events.handler.SourceData;
+import kbasesearchengine.system.StorageObjectType;
+import kbasesearchengine.test.common.TestCommon;
+
+public class FileEventHandlerTest {
+
+    private static Path tempDir;
+    private static FileEventHandler handler;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        tempDir = Paths.get(TestCommon.getTempDir()).resolve("FileEventHandlerTest")
+                .toAbsolutePath();
+        tempDir.toFile().mkdirs();
+        write(1, "1", 1, ImmutableMap.<String, Object>builder()
+                .put("name", "genome")
+                .put("creator", "user1")
+                .put("type", "Genome")
+                .put("typever", 8)
+                .put("timestamp", "2018-02-25T21:08:04.123Z")
+                .put("data", ImmutableMap.of("id", "g1", "features", Arrays.asList(1, 2)))
+                .put("module", "mod")
+                .put("method", "meth")
+                .put("md5", "abc")
+                .put("tags", Arrays.asList("narrative", " "))
+                .build());
+        write(1, "1", 2, ImmutableMap.of(
+                "name", "genome",
+                "creator", "user2",
+                "type", "Genome",
+                "timestamp", "2018-02-26T21:08:04Z",
+                "data", ImmutableMap.of("id", "g2")));
+        write(1, "2", 1, ImmutableMap.of(
+                "name", "reads",
+                "creator", "user1",
+                "type", "Reads",
+                "timestamp", "2018-02-24T21:08:04Z",
+                "data", ImmutableMap.of("id", "r1")));
+        write(1, "3", 1, ImmutableMap.of(
+                "name", "nodata",
+                "creator", "user1",
+                "type", "Reads",
+                "timestamp", "2018-02-24T21:08:04Z"));
+        handler = new FileEventHandler("FS", tempDir);
+    }
+
+    private static void write(
+            final int accessGroupID,
+            final String objectID,
+            final int version,
+            final Map<String, Object> contents)
+            throws Exception {
+        final Path dir = tempDir.resolve(accessGroupID + "").resolve(objectID);
+        dir.toFile().mkdirs();
+        new ObjectMapper().writeValue(dir.resolve(version + ".json").toFile(), contents);
+    }
+
+    @AfterClass
+    public static void teardown() throws Exception {
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    @Test
+    public void load() throws Exception {
+        final SourceData sd = handler.load(Arrays.asList(
+                new GUID("FS:2/1/1"), new GUID("FS:1/1/1")), tempDir.resolve("unused"));
+
+        assertThat("incorrect name", sd.getName(), is("genome"));
+        assertThat("incorrect creator", sd.getCreator(), is("user1"));
+        assertThat("incorrect copier", sd.getCopier(), is(Optional.absent()));
+        assertThat("incorrect module", sd.getModule(), is(Optional.of("mod")));
+        assertThat("incorrect method", sd.getMethod(), is(Optional.of("meth")));
+        assertThat("incorrect commit", sd.getCommitHash(), is(Optional.absent()));
+        assertThat("incorrect md5", sd.getMD5(), is(Optional.of("abc")));
+        assertThat("incorrect tags", sd.getSourceTags(), is(set("narrative")));
+        assertThat("incorrect has data", sd.hasData(), is(true));
+        assertThat("not mapped", sd.getMappedData().isPresent(), is(true));
+        try (final JsonParser p = sd.getDataParser()) {
+            p.nextToken();
+            assertThat("incorrect data", new ObjectMapper().readValue(p, Map.class),
+                    is(ImmutableMap.of("id", "g1", "features", Arrays.asList(1, 2))));
+        }
+        assertThat("file created", tempDir.resolve("unused").toFile().exists(), is(false));
+    }
+
+    @Test
+    public void loadLatestVersion() throws Exception {
+        final SourceData sd = handler.load(new GUID("FS:1/1"), tempDir.resolve("unused"));
+
+        assertThat("incorrect creator", sd.getCreator(), is("user2"));
+        try (final JsonParser p = sd.getDataParser()) {
+            p.nextToken();
+            assertThat("incorrect data", new ObjectMapper().readValue(p, Map.class),
+                    is(ImmutableMap.of("id", "g2")));
+        }
+    }
+
+    @Test
+    public void loadFail() throws Exception {
+        final Path f = tempDir.resolve("unused");
+        failLoad(new GUID("FS:1/1/3"), f, new UnprocessableEventIndexingException(
+                ErrorType.GUID_NOT_FOUND, "No such object file: " +
+                        tempDir.resolve("1/1/3.json")));
+        failLoad(new GUID("FS:1/4"), f, new UnprocessableEventIndexingException(
+                ErrorType.GUID_NOT_FOUND, "No such object: FS:1/4"));
+        failLoad(new GUID("FS:1/3/1"), f, new UnprocessableEventIndexingException(
+                ErrorType.OTHER, "No data in object file " + tempDir.resolve("1/3/1.json")));
+        failLoad(new GUID("FS:1/../1"), f, new UnprocessableEventIndexingException(
+                ErrorType.OTHER, "Illegal object address: 1/.."));
+        failLoad(new GUID("WS:1/1/1"), f, new IllegalArgumentException(
+                "This handler only accepts FS events"));
+    }
+
+    private void failLoad(final GUID guid, final Path file, final Exception expected) {
+        try {
+            handler.load(guid, file);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+
+    @Test
+    public void resolveReferences() throws Exception {
+        assertThat("incorrect refs", handler.resolveReferences(
+                Arrays.asList(new GUID("FS:2/1/1")),
+                set(new GUID("FS:1/1"), new GUID("FS:1/2/1"))),
+                is(set(
+                        new ResolvedReference(new GUID("FS:1/1"), new GUID("FS:1/1/2"),
+                                new StorageObjectType("FS", "Genome"),
+                                Instant.parse("2018-02-26T21:08:04Z")),
+                        new ResolvedReference(new GUID("FS:1/2/1"), new GUID("FS:1/2/1"),
+                                new StorageObjectType("FS", "Reads"),
+                                Instant.parse("2018-02-24T21:08:04Z")))));
+    }
+
+    @Test
+    public void buildReferencePaths() {
+        assertThat("incorrect paths", handler.buildReferencePaths(
+                Arrays.asList(new GUID("FS:2/1/1"), new GUID("FS:3/1/1")),
+                set(new GUID("FS:1/1/2"))),
+                is(ImmutableMap.of(new GUID("FS:1/1/2"), "2/1/1;3/1/1;1/1/2")));
+    }
+
+    @Test
+    public void expandAccessGroup() throws Exception {
+        final StoredStatusEvent ev = StoredStatusEvent.getBuilder(StatusEvent.getBuilder(
+                "FS", Instant.ofEpochMilli(10000), StatusEventType.COPY_ACCESS_GROUP)
+                .withNullableAccessGroupID(1)
+                .withNullableisPublic(true)
+                .build(),
+                new StatusEventID("parent"), StatusEventProcessingState.PROC)
+                .build();
+
+        assertThat("incorrect expandable", handler.isExpandable(ev), is(true));
+        // object 3 has no data, but expansion only reads the metadata
+        final List<ChildStatusEvent> children = (List<ChildStatusEvent>) handler.expand(ev);
+        assertThat("incorrect children", children, is(Arrays.asList(
+                child("Genome", 8, "2018-02-25T21:08:04.123Z", "1", 1),
+                child("Genome", null, "2018-02-26T21:08:04Z", "1", 2),
+                child("Reads", null, "2018-02-24T21:08:04Z", "2", 1),
+                child("Reads", null, "2018-02-24T21:08:04Z", "3", 1))));
+    }
+
+    @Test
+    public void expandAllVersions() throws Exception {
+        final StoredStatusEvent ev = StoredStatusEvent.getBuilder(StatusEvent.getBuilder(
+                "FS", Instant.ofEpochMilli(10000), StatusEventType.NEW_ALL_VERSIONS)
+                .withNullableAccessGroupID(1)
+                .withNullableObjectID("1")
+                .withNullableisPublic(true)
+                .build(),
+                new StatusEventID("parent"), StatusEventProcessingState.PROC)
+                .build();
+
+        assertThat("incorrect expandable", handler.isExpandable(ev), is(true));
+        assertThat("incorrect children", handler.expand(ev), is(Arrays.asList(
+                child("Genome", 8, "2018-02-25T21:08:04.123Z", "1", 1),
+                child("Genome", null, "2018-02-26T21:08:04Z", "1", 2))));
+    }
+
+    private ChildStatusEvent child(
+            final String type,
+            final Integer typever,
+            final String time,
+            final String objectID,
+            final int version) {
+        return new ChildStatusEvent(StatusEvent.getBuilder(
+                StorageObjectType.fromNullableVersion("FS", type, typever),
+                Instant.parse(time), StatusEventType.NEW_VERSION)
+                .withNullableAccessGroupID(1)
+                .withNullableObjectID(objectID)
+                .withNullableVersion(version)
+                .withNullableisPublic(true)
+                .build(),
+                new StatusEventID("parent"));
+    }
+
+    @Test
+    public void notExpandable() throws Exception {
+        final StoredStatusEvent ev = StoredStatusEvent.getBuilder(StatusEvent.getBuilder(
+                "FS", Instant.ofEpochMilli(10000), StatusEventType.NEW_VERSION)
+                .withNullableAccessGroupID(1)
+                .withNullableObjectID("1")
+                .withNullableVersion(1)
+                .build(),
+                new StatusEventID("parent"), StatusEventProcessingState.PROC)
+                .build();
+
+        assertThat("incorrect expandable", handler.isExpandable(ev), is(false));
+        try {
+            handler.expand(ev);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new IllegalArgumentException(
+                    "Unexpandable event type: NEW_VERSION"));
+        }
+    }
+
+    @Test
+    public void constructFail() {
+        failConstruct(null, tempDir, new IllegalArgumentException(
+                "storageCode cannot be null or whitespace only"));
+        failConstruct("FS", null, new NullPointerException("rootDirectory"));
+        failConstruct("FS", tempDir.resolve("nope"), new IllegalArgumentException(
+                tempDir.resolve("nope") + " is not a directory"));
+    }
+
+    private void failConstruct(
+            final String storageCode,
+            final Path root,
+            final Exception expected) {
+        try {
+            new FileEventHandler(storageCode, root);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+}
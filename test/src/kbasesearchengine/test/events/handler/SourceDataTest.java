@@ -6,14 +6,21 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 
+import kbasesearchengine.common.MappedJsonFile;
+import kbasesearchengine.common.ObjectJsonPath;
 import kbasesearchengine.events.handler.SourceData;
 import kbasesearchengine.test.common.TestCommon;
 import us.kbase.common.service.UObject;
@@ -36,6 +43,7 @@ public class SourceDataTest {
         assertThat("incorrect version", sd.getVersion(), is(Optional.absent()));
         assertThat("incorrect md5", sd.getMD5(), is(Optional.absent()));
         assertThat("incorrect tags", sd.getSourceTags(), is(set()));
+        assertThat("incorrect mapped data", sd.getMappedData(), is(Optional.absent()));
     }
     
     @Test
@@ -65,6 +73,84 @@ public class SourceDataTest {
         assertThat("incorrect tags", sd.getSourceTags(), is(set("refdata", "testworkspace")));
     }
     
+    @Test
+    public void dataParser() throws Exception {
+        final SourceData sd = SourceData.getBuilder(
+                new UObject(ImmutableMap.of("foo", "bar")), "name", "creator")
+                .withNullableMappedData(null)
+                .build();
+        
+        assertThat("incorrect mapped data", sd.getMappedData(), is(Optional.absent()));
+        try (final JsonParser p = sd.getDataParser()) {
+            p.nextToken();
+            assertThat("incorrect data", new ObjectMapper().readValue(p, Map.class),
+                    is(ImmutableMap.of("foo", "bar")));
+        }
+    }
+    
+    @Test
+    public void dataParserMapped() throws Exception {
+        final Path tempDir = Paths.get(TestCommon.getTempDir()).toAbsolutePath()
+                .resolve("SourceDataTest");
+        tempDir.toFile().mkdirs();
+        final Path file = tempDir.resolve("data.json");
+        new ObjectMapper().writeValue(file.toFile(), ImmutableMap.of(
+                "wrapper", ImmutableMap.of("foo", "baz")));
+        final MappedJsonFile mf = new MappedJsonFile(file, new ObjectJsonPath("/wrapper"));
+        
+        final SourceData sd = SourceData.getBuilder(
+                new UObject(ImmutableMap.of("foo", "bar")), "name", "creator")
+                .withNullableMappedData(mf)
+                .build();
+        
+        assertThat("incorrect mapped data", sd.getMappedData(), is(Optional.of(mf)));
+        try (final JsonParser p = sd.getDataParser()) {
+            p.nextToken();
+            assertThat("incorrect data", new ObjectMapper().readValue(p, Map.class),
+                    is(ImmutableMap.of("foo", "baz")));
+        }
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+    
+    @Test
+    public void buildMapped() throws Exception {
+        final Path tempDir = Paths.get(TestCommon.getTempDir()).toAbsolutePath()
+                .resolve("SourceDataTest");
+        tempDir.toFile().mkdirs();
+        final Path file = tempDir.resolve("mapped.json");
+        new ObjectMapper().writeValue(file.toFile(), ImmutableMap.of(
+                "wrapper", ImmutableMap.of("foo", "baz")));
+        final MappedJsonFile mf = new MappedJsonFile(file, new ObjectJsonPath("/wrapper"));
+        
+        final SourceData sd = SourceData.getMappedBuilder(mf, "name", "creator").build();
+        
+        assertThat("incorrect has data", sd.hasData(), is(true));
+        assertThat("incorrect mapped data", sd.getMappedData(), is(Optional.of(mf)));
+        try (final JsonParser p = sd.getDataParser()) {
+            p.nextToken();
+            assertThat("incorrect data", new ObjectMapper().readValue(p, Map.class),
+                    is(ImmutableMap.of("foo", "baz")));
+        }
+        try {
+            sd.getData();
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new IllegalStateException(
+                    "The data for name is only available from the mapped file"));
+        }
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+    
+    @Test
+    public void getMappedBuilderFail() {
+        try {
+            SourceData.getMappedBuilder(null, "n", "c");
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new NullPointerException("mappedData"));
+        }
+    }
+    
     @Test
     public void buildNull() {
         final SourceData sd = SourceData.getBuilder(
@@ -7,23 +7,36 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpServer;
 
 import kbasesearchengine.common.GUID;
 import kbasesearchengine.events.exceptions.ErrorType;
@@ -35,7 +48,9 @@ import kbasesearchengine.events.handler.CloneableWorkspaceClient;
 import kbasesearchengine.events.handler.CloneableWorkspaceClientImpl;
 import kbasesearchengine.events.handler.SourceData;
 import kbasesearchengine.events.handler.WorkspaceEventHandler;
+import kbasesearchengine.main.LineLogger;
 import kbasesearchengine.test.common.TestCommon;
+import us.kbase.auth.AuthToken;
 import us.kbase.common.service.JsonClientException;
 import us.kbase.common.service.Tuple11;
 import us.kbase.common.service.Tuple9;
@@ -73,6 +88,27 @@ public class WorkspaceEventHandlerTest {
             TestCommon.assertExceptionCorrect(
                     got, new NullPointerException("clonableWorkspaceClient"));
         }
+        try {
+            new WorkspaceEventHandler(null, 0, true, mock(LineLogger.class));
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(
+                    got, new NullPointerException("clonableWorkspaceClient"));
+        }
+        try {
+            new WorkspaceEventHandler(mock(CloneableWorkspaceClient.class), 0, true, null);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new NullPointerException("logger"));
+        }
+        try {
+            new WorkspaceEventHandler(
+                    mock(CloneableWorkspaceClient.class), -1, true, mock(LineLogger.class));
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new IllegalArgumentException(
+                    "maxInMemoryObjectSize must be at least 0"));
+        }
     }
     
     @Test
@@ -126,9 +162,15 @@ public class WorkspaceEventHandlerTest {
     private class AdminGetObjectsAnswerMatcher implements ArgumentMatcher<UObject> {
 
         final String ref;
+        final Long noData;
         
         public AdminGetObjectsAnswerMatcher(final String ref) {
+            this(ref, null);
+        }
+        
+        public AdminGetObjectsAnswerMatcher(final String ref, final Long noData) {
             this.ref = ref;
+            this.noData = noData;
         }
         
         @Override
@@ -142,7 +184,7 @@ public class WorkspaceEventHandlerTest {
             final GetObjects2Params p = UObject.transformObjectToObject(
                     cmd.get("params"), GetObjects2Params.class);
             matches = matches && p.getIgnoreErrors() == null;
-            matches = matches && p.getNoData() == null;
+            matches = matches && Objects.equals(p.getNoData(), noData);
             
             final List<ObjectSpecification> objslist = p.getObjects();
             matches = matches && objslist.size() == 1;
@@ -228,6 +270,323 @@ public class WorkspaceEventHandlerTest {
         verify(cloned)._setFileForNextRpcResponse(new File("somefile"));
     }
 
+    @Test
+    public void loadMetadata() throws Exception {
+        final CloneableWorkspaceClient clonecli = mock(CloneableWorkspaceClient.class);
+        final WorkspaceClient wscli = mock(WorkspaceClient.class);
+        when(clonecli.getClient()).thenReturn(wscli);
+        
+        doReturn(new UObject(new GetObjects2Results().withData(Arrays.asList(
+                new ObjectData()
+                        .withProvenance(Arrays.asList(new ProvenanceAction()
+                                .withService("serv")
+                                .withMethod("meth")
+                                .withServiceVer("ver")))
+                        .withCreator("creator")
+                        .withCopySourceInaccessible(1L)
+                        .withInfo(objTuple(2, "objname", "sometype", "date", 3, "copier",
+                                1, "wsname", "checksum", 44, Collections.emptyMap()))))))
+                .when(wscli).administer(argThat(new AdminGetObjectsAnswerMatcher("1/2/3", 1L)));
+        
+        doReturn(new UObject(wsTuple(1, "wsname", "username", "date", 7, "r", "n",
+                "unlocked", Collections.emptyMap())))
+                .when(wscli).administer(argThat(new AdminGetWSInfoAnswerMatcher(1)));
+        
+        final SourceData sd = new WorkspaceEventHandler(clonecli)
+                .loadMetadata(Arrays.asList(new GUID("WS:1/2/3")));
+        
+        final SourceData expected = SourceData.getMetadataBuilder("objname", "creator")
+                .withNullableCopier("copier")
+                .withNullableModule("serv")
+                .withNullableMethod("meth")
+                .withNullableVersion("ver")
+                .withNullableMD5("checksum")
+                .build();
+        
+        compare(sd, expected);
+        
+        verify(clonecli, never()).getClientClone();
+    }
+    
+    @Test
+    public void loadMapsResponseFile() throws Exception {
+        final LineLogger logger = mock(LineLogger.class);
+        final SourceData sd = loadFromFile(true, true, logger);
+        
+        assertThat("incorrect mapped file", sd.getMappedData().get().getFile(),
+                is(getResponseFile()));
+        verify(logger, never()).logError(any(String.class));
+    }
+    
+    @Test
+    public void loadStreamsResponseFile() throws Exception {
+        final LineLogger logger = mock(LineLogger.class);
+        final SourceData sd = loadFromFile(false, true, logger);
+        
+        assertThat("incorrect mapped data", sd.getMappedData().isPresent(), is(false));
+        verify(logger, never()).logError(any(String.class));
+    }
+    
+    @Test
+    public void loadMapFail() throws Exception {
+        // the response file doesn't exist, so it can't be mapped
+        final LineLogger logger = mock(LineLogger.class);
+        final SourceData sd = loadFromFile(true, false, logger);
+        
+        assertThat("incorrect mapped data", sd.getMappedData().isPresent(), is(false));
+        final Path file = getResponseFile();
+        verify(logger).logError(String.format("[WorkspaceEventHandler] Could not memory map " +
+                "%s, reading it as a stream: %s", file, file));
+    }
+    
+    private Path getResponseFile() {
+        return Paths.get(TestCommon.getTempDir()).toAbsolutePath()
+                .resolve("WorkspaceEventHandlerTest").resolve("response.json");
+    }
+    
+    private SourceData loadFromFile(
+            final boolean memoryMap,
+            final boolean writeFile,
+            final LineLogger logger)
+            throws Exception {
+        final CloneableWorkspaceClient clonecli = mock(CloneableWorkspaceClient.class);
+        final WorkspaceClient cloned = mock(WorkspaceClient.class);
+        final WorkspaceClient wscli = mock(WorkspaceClient.class);
+        when(clonecli.getClientClone()).thenReturn(cloned);
+        when(clonecli.getClient()).thenReturn(wscli);
+        
+        final Path file = getResponseFile();
+        final Path tempDir = file.getParent();
+        FileUtils.deleteDirectory(tempDir.toFile());
+        tempDir.toFile().mkdirs();
+        if (writeFile) {
+            // the workspace client would write the response to the file
+            new ObjectMapper().writeValue(file.toFile(), ImmutableMap.of(
+                    "version", "1.1",
+                    "result", Arrays.asList(ImmutableMap.of("data", Arrays.asList(
+                            ImmutableMap.of("data", ImmutableMap.of("genome", "data")))))));
+        }
+        
+        doReturn(new UObject(new GetObjects2Results().withData(Arrays.asList(
+                new ObjectData()
+                        .withData(new UObject(ImmutableMap.of("genome", "data")))
+                        .withProvenance(Collections.emptyList())
+                        .withCreator("creator")
+                        .withCopySourceInaccessible(0L)
+                        .withInfo(objTuple(2, "objname", "sometype", "date", 3, "copier",
+                                1, "wsname", "checksum", 44, Collections.emptyMap()))))))
+                .when(cloned).administer(argThat(new AdminGetObjectsAnswerMatcher("1/2/3")));
+        
+        doReturn(new UObject(wsTuple(1, "wsname", "username", "date", 7, "r", "n",
+                "unlocked", Collections.emptyMap())))
+                .when(wscli).administer(argThat(new AdminGetWSInfoAnswerMatcher(1)));
+        
+        final SourceData sd = new WorkspaceEventHandler(clonecli, 0, memoryMap, logger)
+                .load(new GUID("WS:1/2/3"), file);
+        
+        try (final JsonParser p = sd.getDataParser()) {
+            p.nextToken();
+            assertThat("incorrect data", new ObjectMapper().readValue(p, Map.class),
+                    is(ImmutableMap.of("genome", "data")));
+        }
+        if (sd.getMappedData().isPresent()) {
+            sd.getMappedData().get().close();
+        }
+        FileUtils.deleteDirectory(tempDir.toFile());
+        return sd;
+    }
+    
+    private static class WorkspaceServer implements AutoCloseable {
+        
+        private final HttpServer server;
+        private final List<Map<String, Object>> requests = new ArrayList<>();
+        private final List<String> tokens = new ArrayList<>();
+        
+        // a response without a length is sent in chunks
+        private WorkspaceServer(final int code, final byte[] response, final boolean sendLength)
+                throws IOException {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/", ex -> {
+                @SuppressWarnings("unchecked")
+                final Map<String, Object> request = new ObjectMapper().readValue(
+                        ex.getRequestBody(), Map.class);
+                requests.add(request);
+                tokens.add(ex.getRequestHeaders().getFirst("Authorization"));
+                ex.sendResponseHeaders(code, sendLength ? response.length : 0);
+                try (final OutputStream os = ex.getResponseBody()) {
+                    os.write(response);
+                }
+            });
+            server.start();
+        }
+        
+        private URL getURL() throws Exception {
+            return new URL("http://localhost:" + server.getAddress().getPort() + "/");
+        }
+        
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+    
+    // the data is larger than the buffer used to read the response
+    private static final String LARGE_DATA = String.join("", Collections.nCopies(2000,
+            "0123456789"));
+    
+    private byte[] getObjectsResponse() throws Exception {
+        final ObjectMapper mapper = UObject.getMapper();
+        final ObjectNode obj = mapper.valueToTree(new ObjectData()
+                .withProvenance(Collections.emptyList())
+                .withCreator("creator")
+                .withCopySourceInaccessible(0L)
+                .withInfo(objTuple(2, "objname", "sometype", "date", 3, "copier",
+                        1, "wsname", "checksum", 44, Collections.emptyMap())));
+        obj.set("data", mapper.valueToTree(ImmutableMap.of("genome", LARGE_DATA)));
+        final ObjectNode res = mapper.valueToTree(new GetObjects2Results()
+                .withData(Collections.emptyList()));
+        res.withArray("data").add(obj);
+        return mapper.writeValueAsBytes(ImmutableMap.of(
+                "version", "1.1", "result", Arrays.asList(res)));
+    }
+    
+    private WorkspaceClient mockClient(final URL url, final boolean allowInsecure)
+            throws Exception {
+        final WorkspaceClient wscli = mock(WorkspaceClient.class);
+        final AuthToken token = mock(AuthToken.class);
+        when(token.getToken()).thenReturn("token");
+        when(wscli.getURL()).thenReturn(url);
+        when(wscli.getToken()).thenReturn(token);
+        when(wscli.isInsecureHttpConnectionAllowed()).thenReturn(allowInsecure);
+        doReturn(new UObject(wsTuple(1, "wsname", "username", "date", 7, "r", "n",
+                "unlocked", Collections.emptyMap())))
+                .when(wscli).administer(argThat(new AdminGetWSInfoAnswerMatcher(1)));
+        return wscli;
+    }
+    
+    @Test
+    public void loadInMemory() throws Exception {
+        final int size = getObjectsResponse().length;
+        loadSizeAdaptive(size, true, false);
+        loadSizeAdaptive(size, false, false);
+        loadSizeAdaptive(size + 1000, false, false);
+    }
+    
+    @Test
+    public void loadToFile() throws Exception {
+        final int size = getObjectsResponse().length;
+        // spills part way through the response
+        loadSizeAdaptive(size - 1, false, true);
+        loadSizeAdaptive(10000, false, true);
+        // written straight to the file
+        loadSizeAdaptive(size - 1, true, true);
+    }
+    
+    private void loadSizeAdaptive(
+            final long maxInMemorySize,
+            final boolean sendLength,
+            final boolean expectFile)
+            throws Exception {
+        final Path tempDir = Paths.get(TestCommon.getTempDir()).toAbsolutePath()
+                .resolve("WorkspaceEventHandlerTest");
+        tempDir.toFile().mkdirs();
+        final Path file = tempDir.resolve("response.json");
+        final byte[] response = getObjectsResponse();
+        
+        try (final WorkspaceServer server = new WorkspaceServer(200, response, sendLength)) {
+            final CloneableWorkspaceClient clonecli = mock(CloneableWorkspaceClient.class);
+            final WorkspaceClient wscli = mockClient(server.getURL(), true);
+            when(clonecli.getClient()).thenReturn(wscli);
+            
+            final SourceData sd = new WorkspaceEventHandler(
+                    clonecli, maxInMemorySize, true, mock(LineLogger.class))
+                    .load(new GUID("WS:1/2/3"), file);
+            
+            assertThat("incorrect has data", sd.hasData(), is(true));
+            assertThat("incorrect name", sd.getName(), is("objname"));
+            assertThat("incorrect creator", sd.getCreator(), is("creator"));
+            assertThat("incorrect copier", sd.getCopier(), is(Optional.absent()));
+            assertThat("incorrect md5", sd.getMD5(), is(Optional.of("checksum")));
+            try (final JsonParser p = sd.getDataParser()) {
+                p.nextToken();
+                assertThat("incorrect data", new ObjectMapper().readValue(p, Map.class),
+                        is(ImmutableMap.of("genome", LARGE_DATA)));
+            }
+            assertThat("incorrect mapped data", sd.getMappedData().isPresent(),
+                    is(expectFile));
+            assertThat("incorrect file existence", Files.exists(file), is(expectFile));
+            if (expectFile) {
+                assertThat("incorrect file", Files.readAllBytes(file), is(response));
+            }
+            
+            // the object is fetched in one call without the workspace client
+            verify(clonecli, never()).getClientClone();
+            assertThat("incorrect request count", server.requests.size(), is(1));
+            final Map<String, Object> request = server.requests.get(0);
+            assertThat("incorrect method", request.get("method"), is("Workspace.administer"));
+            assertThat("incorrect params", new AdminGetObjectsAnswerMatcher("1/2/3").matches(
+                    new UObject(((List<?>) request.get("params")).get(0))), is(true));
+            assertThat("incorrect token", server.tokens, is(Arrays.asList("token")));
+        } finally {
+            FileUtils.deleteDirectory(tempDir.toFile());
+        }
+    }
+    
+    @Test
+    public void loadInMemoryFail() throws Exception {
+        final byte[] deleted = new ObjectMapper().writeValueAsBytes(ImmutableMap.of(
+                "version", "1.1",
+                "error", ImmutableMap.of(
+                        "name", "JSONRPCError",
+                        "code", -32500,
+                        "message", "Object 3 has been deleted",
+                        "error", "stack trace")));
+        failLoadInMemory(500, deleted, true, new UnprocessableEventIndexingException(
+                ErrorType.DELETED, "Object 3 has been deleted"));
+        
+        try (final WorkspaceServer server = new WorkspaceServer(502, new byte[0], true)) {
+            failLoadInMemory(server, true, new RetriableIndexingException(ErrorType.OTHER,
+                    server.getURL() + " returned HTTP code 502: Bad Gateway"));
+        }
+        try (final WorkspaceServer server = new WorkspaceServer(200, new byte[0], true)) {
+            failLoadInMemory(server, false, new FatalIndexingException(ErrorType.OTHER,
+                    "Refusing to send a token over the insecure connection to " +
+                    server.getURL()));
+            assertThat("request sent", server.requests.isEmpty(), is(true));
+        }
+    }
+    
+    private void failLoadInMemory(
+            final int code,
+            final byte[] response,
+            final boolean allowInsecure,
+            final Exception expected)
+            throws Exception {
+        try (final WorkspaceServer server = new WorkspaceServer(code, response, true)) {
+            failLoadInMemory(server, allowInsecure, expected);
+        }
+    }
+    
+    private void failLoadInMemory(
+            final WorkspaceServer server,
+            final boolean allowInsecure,
+            final Exception expected)
+            throws Exception {
+        final CloneableWorkspaceClient clonecli = mock(CloneableWorkspaceClient.class);
+        final WorkspaceClient wscli = mockClient(server.getURL(), allowInsecure);
+        when(clonecli.getClient()).thenReturn(wscli);
+        final Path file = Paths.get(TestCommon.getTempDir()).toAbsolutePath()
+                .resolve("WorkspaceEventHandlerTest").resolve("response.json");
+        try {
+            new WorkspaceEventHandler(clonecli, 100000, true, mock(LineLogger.class))
+                    .load(new GUID("WS:1/2/3"), file);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+        assertThat("file created", Files.exists(file), is(false));
+    }
+
     @Test
     public void loadWithPathMaximalCopyRef() throws Exception {
         final CloneableWorkspaceClient clonecli = mock(CloneableWorkspaceClient.class);
@@ -466,8 +825,11 @@ public class WorkspaceEventHandlerTest {
     }
 
     private void compare(final SourceData sd, final SourceData expected) {
-        assertThat("incorrect data", sd.getData().asClassInstance(Map.class),
-                is(expected.getData().asClassInstance(Map.class)));
+        assertThat("incorrect has data", sd.hasData(), is(expected.hasData()));
+        if (expected.hasData()) {
+            assertThat("incorrect data", sd.getData().asClassInstance(Map.class),
+                    is(expected.getData().asClassInstance(Map.class)));
+        }
         assertThat("incorrect name", sd.getName(), is(expected.getName()));
         assertThat("incorrect creator", sd.getCreator(), is(expected.getCreator()));
         assertThat("incorrect copier", sd.getCopier(), is(expected.getCopier()));
@@ -0,0 +1,324 @@
+package kbasesearchengine.test.events.storage;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static kbasesearchengine.test.common.TestCommon.set;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.events.ChildStatusEvent;
+import kbasesearchengine.events.FailedChildStatusEvent;
+import kbasesearchengine.events.StatusEvent;
+import kbasesearchengine.events.StatusEventID;
+import kbasesearchengine.events.StatusEventProcessingState;
+import kbasesearchengine.events.StatusEventType;
+import kbasesearchengine.events.StoredChildStatusEvent;
+import kbasesearchengine.events.StoredStatusEvent;
+import kbasesearchengine.events.StoredStatusEventState;
+import kbasesearchengine.events.exceptions.ErrorType;
+import kbasesearchengine.events.exceptions.UnprocessableEventIndexingException;
+import kbasesearchengine.events.storage.MemoryStatusEventStorage;
+import kbasesearchengine.test.common.TestCommon;
+
+public class MemoryStatusEventStorageTest {
+
+    private static final String LONG1001 = Strings.repeat("a", 1001);
+
+    private Clock clock;
+    private MemoryStatusEventStorage storage;
+
+    @Before
+    public void init() {
+        clock = mock(Clock.class);
+        storage = new MemoryStatusEventStorage(clock);
+    }
+
+    private static StatusEvent event(final long time) {
+        return StatusEvent.getBuilder(
+                "WS", Instant.ofEpochMilli(time), StatusEventType.NEW_VERSION)
+                .withNullableAccessGroupID(1)
+                .withNullableObjectID("2")
+                .withNullableVersion(3)
+                .build();
+    }
+
+    private StoredStatusEvent store(
+            final long time,
+            final StatusEventProcessingState state,
+            final Set<String> workerCodes)
+            throws Exception {
+        return storage.store(event(time), state, workerCodes, "foo");
+    }
+
+    @Test
+    public void storeAndGet() throws Exception {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(30000));
+
+        final StoredStatusEvent sse = storage.store(event(10000),
+                StatusEventProcessingState.UNPROC, null, "Baldrick");
+
+        final StoredStatusEvent expected = StoredStatusEvent.getBuilder(
+                event(10000), sse.getID(), StatusEventProcessingState.UNPROC)
+                .withNullableStoredBy("Baldrick")
+                .withNullableStoreTime(Instant.ofEpochMilli(30000))
+                .withWorkerCode("default")
+                .build();
+        assertThat("incorrect event", sse, is(expected));
+        assertThat("incorrect event", storage.get(sse.getID()), is(Optional.of(expected)));
+        assertThat("incorrect event", storage.get(new StatusEventID("foo")),
+                is(Optional.absent()));
+    }
+
+    @Test
+    public void storeAllAndGet() throws Exception {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(30000));
+
+        final List<StoredStatusEvent> stored = storage.storeAll(
+                Arrays.asList(event(10000), event(20000)),
+                StatusEventProcessingState.READY, set("foo", "bar"), "Baldrick");
+
+        assertThat("incorrect count", stored.size(), is(2));
+        assertThat("duplicate ids", stored.get(0).getID().equals(stored.get(1).getID()),
+                is(false));
+        for (int i = 0; i < 2; i++) {
+            final StoredStatusEvent expected = StoredStatusEvent.getBuilder(
+                    event(10000 * (i + 1)), stored.get(i).getID(),
+                    StatusEventProcessingState.READY)
+                    .withNullableStoredBy("Baldrick")
+                    .withNullableStoreTime(Instant.ofEpochMilli(30000))
+                    .withWorkerCode("foo")
+                    .withWorkerCode("bar")
+                    .build();
+            assertThat("incorrect event", stored.get(i), is(expected));
+            assertThat("incorrect event", storage.get(stored.get(i).getID()).get(),
+                    is(expected));
+        }
+        assertThat("incorrect events", storage.storeAll(Collections.emptyList(),
+                StatusEventProcessingState.READY, null, "Baldrick"),
+                is(Collections.emptyList()));
+    }
+
+    @Test
+    public void storeChildrenAndGet() throws Exception {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(30000));
+        final ChildStatusEvent child = new ChildStatusEvent(event(10000),
+                new StatusEventID("parent"));
+        final Exception err = new UnprocessableEventIndexingException(
+                ErrorType.OTHER, LONG1001);
+
+        final StoredChildStatusEvent single = storage.store(child, "OTHER", err);
+        final List<StoredChildStatusEvent> stored = storage.storeChildren(Arrays.asList(
+                new FailedChildStatusEvent(child, "OTHER", err, false),
+                new FailedChildStatusEvent(child, "OTHER", err, true)));
+
+        final String msg = LONG1001.substring(0, 997) + "...";
+        assertThat("incorrect child", storage.getChild(single.getID()).get(), is(single));
+        assertThat("incorrect message", single.getErrorMessage(), is(Optional.of(msg)));
+        assertThat("incorrect trace", single.getErrorStackTrace().get().startsWith(
+                "kbasesearchengine.events.exceptions.UnprocessableEventIndexingException"),
+                is(true));
+        assertThat("incorrect child", storage.getChild(stored.get(0).getID()).get(),
+                is(StoredChildStatusEvent.getBuilder(child, stored.get(0).getID(),
+                        Instant.ofEpochMilli(30000))
+                        .withNullableError("OTHER", msg, single.getErrorStackTrace().get())
+                        .build()));
+        assertThat("incorrect child", storage.getChild(stored.get(1).getID()).get(),
+                is(StoredChildStatusEvent.getBuilder(child, stored.get(1).getID(),
+                        Instant.ofEpochMilli(30000))
+                        .withNullableError("OTHER", msg, "Stack trace omitted")
+                        .build()));
+        // child and parent events don't share IDs
+        assertThat("incorrect event", storage.get(single.getID()), is(Optional.absent()));
+    }
+
+    @Test
+    public void getByStateSortedAndLimited() throws Exception {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(30000));
+        final StoredStatusEvent e3 = store(3000, StatusEventProcessingState.READY, null);
+        final StoredStatusEvent e1 = store(1000, StatusEventProcessingState.READY, null);
+        store(500, StatusEventProcessingState.PROC, null);
+        final StoredStatusEvent e2 = store(2000, StatusEventProcessingState.READY, null);
+        final StoredStatusEvent e2b = store(2000, StatusEventProcessingState.READY, null);
+
+        assertThat("incorrect events", storage.get(StatusEventProcessingState.READY, -1),
+                is(Arrays.asList(e1, e2, e2b, e3)));
+        assertThat("incorrect events", storage.get(StatusEventProcessingState.READY, 2),
+                is(Arrays.asList(e1, e2)));
+        assertThat("incorrect events", storage.get(StatusEventProcessingState.FAIL, 2),
+                is(Collections.emptyList()));
+    }
+
+    @Test
+    public void setAndGetProcessingStateWithCodes() throws Exception {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(30000));
+        store(1000, StatusEventProcessingState.READY, set("foo"));
+        final StoredStatusEvent bar2 = store(2000, StatusEventProcessingState.READY, set("bar"));
+        final StoredStatusEvent def = store(1500, StatusEventProcessingState.READY, null);
+        store(500, StatusEventProcessingState.PROC, set("bar"));
+
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(40000));
+        final StoredStatusEvent got = storage.setAndGetProcessingState(
+                StatusEventProcessingState.READY, set("bar", "baz"),
+                StatusEventProcessingState.PROC, "whee").get();
+
+        assertThat("incorrect event", got, is(StoredStatusEvent.getBuilder(
+                event(2000), bar2.getID(), StatusEventProcessingState.PROC)
+                .withNullableStoredBy("foo")
+                .withNullableStoreTime(Instant.ofEpochMilli(30000))
+                .withNullableUpdate(Instant.ofEpochMilli(40000), "whee")
+                .withWorkerCode("bar")
+                .build()));
+        assertThat("incorrect event", storage.get(bar2.getID()).get(), is(got));
+        assertThat("incorrect event", storage.setAndGetProcessingState(
+                StatusEventProcessingState.READY, set("bar"),
+                StatusEventProcessingState.PROC, "whee"), is(Optional.absent()));
+        // empty codes imply the default code
+        assertThat("incorrect event", storage.setAndGetProcessingState(
+                StatusEventProcessingState.READY, set(),
+                StatusEventProcessingState.PROC, "whee").get().getID(), is(def.getID()));
+    }
+
+    @Test
+    public void setAndGetProcessingStateConcurrently() throws Exception {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(30000));
+        final List<StatusEvent> events = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            events.add(event(i));
+        }
+        final Set<StatusEventID> ids = storage.storeAll(events, StatusEventProcessingState.READY,
+                null, "foo").stream().map(e -> e.getID()).collect(Collectors.toSet());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final List<Future<List<StatusEventID>>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                final List<StatusEventID> claimed = new ArrayList<>();
+                Optional<StoredStatusEvent> ev;
+                while ((ev = storage.setAndGetProcessingState(StatusEventProcessingState.READY,
+                        null, StatusEventProcessingState.PROC, "w")).isPresent()) {
+                    claimed.add(ev.get().getID());
+                }
+                return claimed;
+            }));
+        }
+        final List<StatusEventID> claimed = new ArrayList<>();
+        for (final Future<List<StatusEventID>> f: futures) {
+            claimed.addAll(f.get());
+        }
+        executor.shutdown();
+
+        // each event is claimed exactly once
+        assertThat("incorrect claim count", claimed.size(), is(1000));
+        assertThat("incorrect claims", new HashSet<>(claimed), is(ids));
+    }
+
+    @Test
+    public void setProcessingStateAndGetStates() throws Exception {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(30000),
+                Instant.ofEpochMilli(30000), Instant.ofEpochMilli(40000),
+                Instant.ofEpochMilli(50000), Instant.ofEpochMilli(60000));
+        final StoredStatusEvent e1 = store(1000, StatusEventProcessingState.READY, null);
+        final StoredStatusEvent e2 = store(2000, StatusEventProcessingState.PROC, null);
+
+        assertThat("incorrect update", storage.setProcessingState(e1.getID(),
+                StatusEventProcessingState.READY, StatusEventProcessingState.PROC), is(true));
+        assertThat("incorrect update", storage.setProcessingState(e2.getID(),
+                StatusEventProcessingState.PROC, "OTHER",
+                new UnprocessableEventIndexingException(ErrorType.OTHER, "oops")), is(true));
+        assertThat("incorrect update", storage.setProcessingState(e2.getID(),
+                null, StatusEventProcessingState.READY), is(true));
+        // wrong old state
+        assertThat("incorrect update", storage.setProcessingState(e1.getID(),
+                StatusEventProcessingState.READY, StatusEventProcessingState.INDX), is(false));
+        assertThat("incorrect update", storage.setProcessingState(new StatusEventID("bar"),
+                null, StatusEventProcessingState.INDX), is(false));
+
+        assertThat("incorrect states", storage.getStates(
+                set(e1.getID(), e2.getID(), new StatusEventID("bar"))),
+                is(ImmutableMap.of(
+                        e1.getID(), new StoredStatusEventState(e1.getID(),
+                                StatusEventProcessingState.PROC, Instant.ofEpochMilli(40000),
+                                null),
+                        e2.getID(), new StoredStatusEventState(e2.getID(),
+                                StatusEventProcessingState.READY, Instant.ofEpochMilli(60000),
+                                null))));
+        final StoredStatusEvent got = storage.get(e2.getID()).get();
+        // error information is retained after the state changes, as for the mongo storage
+        assertThat("incorrect error code", got.getErrorCode(), is(Optional.of("OTHER")));
+        assertThat("incorrect error msg", got.getErrorMessage(), is(Optional.of("oops")));
+        assertThat("incorrect events", storage.get(StatusEventProcessingState.READY, 10),
+                is(Arrays.asList(got)));
+    }
+
+    @Test
+    public void failStore() throws Exception {
+        final StatusEvent ev = event(1000);
+        final StatusEventProcessingState s = StatusEventProcessingState.READY;
+        failStore(null, s, null, "foo", new NullPointerException("newEvent"));
+        failStore(ev, null, null, "foo", new NullPointerException("state"));
+        failStore(ev, s, null, "  \t  ", new IllegalArgumentException(
+                "storedBy cannot be null or whitespace only"));
+        failStore(ev, s, set("foo", "  "), "foo", new IllegalArgumentException(
+                "null or whitespace only item in workerCodes"));
+    }
+
+    private void failStore(
+            final StatusEvent event,
+            final StatusEventProcessingState state,
+            final Set<String> workerCodes,
+            final String storedBy,
+            final Exception expected) {
+        try {
+            storage.store(event, state, workerCodes, storedBy);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+
+    @Test
+    public void failSetProcessingStateWithError() throws Exception {
+        final StatusEventID id = new StatusEventID("foo");
+        final Exception e = new IllegalStateException();
+        failSetProcessingState(null, "code", e, new NullPointerException("id"));
+        failSetProcessingState(id, "  \t   ", e, new IllegalArgumentException(
+                "errorCode cannot be null or whitespace only"));
+        failSetProcessingState(id, "123456789012345678901", e, new IllegalArgumentException(
+                "errorCode exceeds max length of 20"));
+        failSetProcessingState(id, "code", null, new NullPointerException("error"));
+    }
+
+    private void failSetProcessingState(
+            final StatusEventID id,
+            final String errorCode,
+            final Throwable error,
+            final Exception expected) {
+        try {
+            storage.setProcessingState(id, null, errorCode, error);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+}
@@ -11,12 +11,15 @@ import static kbasesearchengine.test.common.TestCommon.set;
 import java.io.PrintWriter;
 import java.nio.file.Paths;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -28,6 +31,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Range;
 import com.mongodb.MongoClient;
 import com.mongodb.client.MongoDatabase;
@@ -35,12 +39,14 @@ import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.ReturnDocument;
 
 import kbasesearchengine.events.ChildStatusEvent;
+import kbasesearchengine.events.FailedChildStatusEvent;
 import kbasesearchengine.events.StatusEvent;
 import kbasesearchengine.events.StatusEventID;
 import kbasesearchengine.events.StatusEventProcessingState;
 import kbasesearchengine.events.StatusEventType;
 import kbasesearchengine.events.StoredChildStatusEvent;
 import kbasesearchengine.events.StoredStatusEvent;
+import kbasesearchengine.events.StoredStatusEventState;
 import kbasesearchengine.events.exceptions.ErrorType;
 import kbasesearchengine.events.exceptions.FatalRetriableIndexingException;
 import kbasesearchengine.events.exceptions.RetriableIndexingException;
@@ -291,6 +297,69 @@ public class MongoDBStatusEventStorageTest {
         assertThat("expected absent", got, is(Optional.absent()));
     }
     
+    @Test
+    public void storeAllAndGet() throws Exception {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(50000L));
+        final StatusEvent e1 = StatusEvent.getBuilder(
+                new StorageObjectType("WS", "foo", 1), Instant.ofEpochMilli(10000),
+                StatusEventType.NEW_VERSION)
+                .withNullableAccessGroupID(3)
+                .withNullableObjectID("4")
+                .withNullableVersion(1)
+                .withNullableisPublic(false)
+                .build();
+        final StatusEvent e2 = StatusEvent.getBuilder(
+                new StorageObjectType("WS", "bar", 2), Instant.ofEpochMilli(20000),
+                StatusEventType.NEW_VERSION)
+                .withNullableAccessGroupID(3)
+                .withNullableObjectID("5")
+                .withNullableVersion(2)
+                .withNullableisPublic(true)
+                .build();
+        final List<StoredStatusEvent> stored = storage.storeAll(Arrays.asList(e1, e2),
+                StatusEventProcessingState.UNPROC, set("business"), "WSEG");
+        
+        assertThat("incorrect count", stored.size(), is(2));
+        assertThat("ids match", stored.get(0).getID().equals(stored.get(1).getID()), is(false));
+        final List<StatusEvent> expected = Arrays.asList(e1, e2);
+        for (int i = 0; i < 2; i++) {
+            final StoredStatusEvent sse = stored.get(i);
+            assertThat("incorrect event", sse.getEvent(), is(expected.get(i)));
+            assertThat("incorrect state", sse.getState(), is(StatusEventProcessingState.UNPROC));
+            assertThat("incorrect worker codes", sse.getWorkerCodes(), is(set("business")));
+            assertThat("incorrect stored by", sse.getStoredBy(), is(Optional.of("WSEG")));
+            assertThat("incorrect store time", sse.getStoreTime(),
+                    is(Optional.of(Instant.ofEpochMilli(50000L))));
+            
+            final StoredStatusEvent got = storage.get(sse.getID()).get();
+            assertThat("ids don't match", got.getID(), is(sse.getID()));
+            assertThat("incorrect event", got.getEvent(), is(expected.get(i)));
+            assertThat("incorrect state", got.getState(), is(StatusEventProcessingState.UNPROC));
+            assertThat("incorrect updater", got.getUpdater(), is(Optional.absent()));
+            assertThat("incorrect update time", got.getUpdateTime(), is(Optional.absent()));
+            assertThat("incorrect worker codes", got.getWorkerCodes(), is(set("business")));
+            assertThat("incorrect stored by", got.getStoredBy(), is(Optional.of("WSEG")));
+            assertThat("incorrect store time", got.getStoreTime(),
+                    is(Optional.of(Instant.ofEpochMilli(50000L))));
+            assertThat("incorrect error code", got.getErrorCode(), is(Optional.absent()));
+        }
+    }
+    
+    @Test
+    public void storeAllDefaultCodesAndEmpty() throws Exception {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(50000L));
+        final List<StoredStatusEvent> stored = storage.storeAll(Arrays.asList(
+                StatusEvent.getBuilder("WS", Instant.ofEpochMilli(10000),
+                        StatusEventType.COPY_ACCESS_GROUP).build()),
+                StatusEventProcessingState.UNPROC, null, "WSEG");
+        assertThat("incorrect worker codes", stored.get(0).getWorkerCodes(), is(set("default")));
+        assertThat("incorrect worker codes", storage.get(stored.get(0).getID()).get()
+                .getWorkerCodes(), is(set("default")));
+        
+        assertThat("incorrect stored", storage.storeAll(Collections.emptyList(),
+                StatusEventProcessingState.UNPROC, null, "WSEG"), is(Collections.emptyList()));
+    }
+    
     @Test
     public void getWithMissingCodesField() throws Exception {
         getWithAlteredCodesField(new Document("$unset", new Document("wrkcde", 1)));
@@ -502,6 +571,61 @@ public class MongoDBStatusEventStorageTest {
                 is(Optional.of(traceExpected)));
     }
     
+    @Test
+    public void storeChildrenAndGet() throws Exception {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(30000L));
+        final ChildStatusEvent c1 = new ChildStatusEvent(StatusEvent.getBuilder(
+                "WS", Instant.ofEpochMilli(10000), StatusEventType.NEW_VERSION)
+                .withNullableAccessGroupID(6)
+                .withNullableObjectID("bar")
+                .withNullableVersion(7)
+                .build(),
+                new StatusEventID("parent id"));
+        final ChildStatusEvent c2 = new ChildStatusEvent(StatusEvent.getBuilder(
+                "WS", Instant.ofEpochMilli(20000), StatusEventType.NEW_VERSION)
+                .withNullableAccessGroupID(6)
+                .withNullableObjectID("bar")
+                .withNullableVersion(8)
+                .build(),
+                new StatusEventID("parent id"));
+        final List<StoredChildStatusEvent> stored = storage.storeChildren(Arrays.asList(
+                new FailedChildStatusEvent(c1, "DELETED",
+                        new UnprocessableEventIndexingException(ErrorType.DELETED, "deleted"),
+                        false),
+                new FailedChildStatusEvent(c2, "OTHER",
+                        new UnprocessableEventIndexingException(ErrorType.OTHER, "other"),
+                        true)));
+        
+        assertThat("incorrect count", stored.size(), is(2));
+        for (final StoredChildStatusEvent sse: stored) {
+            assertThat("stored event doesn't match retrieved event",
+                    storage.getChild(sse.getID()).get(), is(sse));
+            assertThat("incorrect state", sse.getState(), is(StatusEventProcessingState.FAIL));
+            assertThat("incorrect store time", sse.getStoreTime(),
+                    is(Instant.ofEpochMilli(30000L)));
+        }
+        final StoredChildStatusEvent s1 = stored.get(0);
+        assertThat("incorrect event", s1.getChildEvent(), is(c1));
+        assertThat("incorrect error code", s1.getErrorCode(), is(Optional.of("DELETED")));
+        assertThat("incorrect error msg", s1.getErrorMessage(), is(Optional.of("deleted")));
+        assertThat("incorrect error trace",
+                s1.getErrorStackTrace().get().contains("IndexingException: deleted"), is(true));
+        
+        final StoredChildStatusEvent s2 = stored.get(1);
+        assertThat("incorrect event", s2.getChildEvent(), is(c2));
+        assertThat("incorrect error code", s2.getErrorCode(), is(Optional.of("OTHER")));
+        assertThat("incorrect error msg", s2.getErrorMessage(), is(Optional.of("other")));
+        assertThat("incorrect error trace", s2.getErrorStackTrace(),
+                is(Optional.of("Stack trace omitted")));
+    }
+    
+    @Test
+    public void storeChildrenEmpty() throws Exception {
+        assertThat("incorrect stored events", storage.storeChildren(Collections.emptyList()),
+                is(Collections.emptyList()));
+        assertThat("incorrect count", db.getCollection("childEvents").count(), is(0L));
+    }
+    
     @Test
     public void storeAndGetChildNonExistant() throws Exception {
         when(clock.instant()).thenReturn(Instant.ofEpochMilli(100000L));
@@ -687,6 +811,110 @@ public class MongoDBStatusEventStorageTest {
                 is(Optional.of(traceExpected)));
     }
     
+    @Test
+    public void setProcessingStateWithErrorTraceStorage() throws Exception {
+        // tests that traces are stored outside the event document and replaced traces removed
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(10000));
+        final StoredStatusEvent sse = storage.store(StatusEvent.getBuilder(
+                "KE", Instant.ofEpochMilli(30000), StatusEventType.COPY_ACCESS_GROUP).build(),
+                StatusEventProcessingState.UNPROC, null, "WSEG");
+        
+        storage.setProcessingState(sse.getID(), null, "DELETED",
+                new UnprocessableEventIndexingException(ErrorType.DELETED, "deleted"));
+        
+        final Document doc1 = db.getCollection("searchEvents")
+                .find(new Document("_id", new ObjectId(sse.getID().getId()))).first();
+        assertThat("trace in event doc", doc1.containsKey("errtrce"), is(false));
+        final ObjectId traceID1 = doc1.getObjectId("errtrceid");
+        assertThat("incorrect trace count", db.getCollection("errorTraces").count(), is(1L));
+        assertThat("incorrect trace", db.getCollection("errorTraces")
+                .find(new Document("_id", traceID1)).first().getString("trace")
+                .contains("IndexingException: deleted"), is(true));
+        
+        storage.setProcessingState(sse.getID(), null, "OTHER",
+                new UnprocessableEventIndexingException(ErrorType.OTHER, "other"));
+        
+        final ObjectId traceID2 = db.getCollection("searchEvents")
+                .find(new Document("_id", new ObjectId(sse.getID().getId()))).first()
+                .getObjectId("errtrceid");
+        assertThat("trace id not updated", traceID2.equals(traceID1), is(false));
+        assertThat("incorrect trace count", db.getCollection("errorTraces").count(), is(1L));
+        
+        final StoredStatusEvent got = storage.get(sse.getID()).get();
+        assertThat("incorrect error code", got.getErrorCode(), is(Optional.of("OTHER")));
+        assertThat("incorrect error trace",
+                got.getErrorStackTrace().get().contains("IndexingException: other"), is(true));
+    }
+    
+    @Test
+    public void getWithTraceInEventDocument() throws Exception {
+        // tests reading events with traces stored prior to moving them to a separate collection
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(10000));
+        final StoredStatusEvent sse = storage.store(StatusEvent.getBuilder(
+                "KE", Instant.ofEpochMilli(30000), StatusEventType.COPY_ACCESS_GROUP).build(),
+                StatusEventProcessingState.FAIL, null, "WSEG");
+        db.getCollection("searchEvents").updateOne(
+                new Document("_id", new ObjectId(sse.getID().getId())),
+                new Document("$set", new Document("errcde", "OTHER")
+                        .append("errmsg", "msg")
+                        .append("errtrce", "some trace")));
+        
+        final StoredStatusEvent got = storage.get(sse.getID()).get();
+        assertThat("incorrect error trace", got.getErrorStackTrace(),
+                is(Optional.of("some trace")));
+        assertThat("incorrect error trace",
+                storage.get(StatusEventProcessingState.FAIL, -1).get(0).getErrorStackTrace(),
+                is(Optional.of("some trace")));
+    }
+    
+    @Test
+    public void getStates() throws Exception {
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(10000), Instant.ofEpochMilli(10000),
+                Instant.ofEpochMilli(10000), Instant.ofEpochMilli(20000));
+        final StoredStatusEvent sse1 = storage.store(StatusEvent.getBuilder(
+                "KE", Instant.ofEpochMilli(30000), StatusEventType.COPY_ACCESS_GROUP).build(),
+                StatusEventProcessingState.UNPROC, null, "WSEG");
+        final StoredStatusEvent sse2 = storage.store(StatusEvent.getBuilder(
+                "KE", Instant.ofEpochMilli(40000), StatusEventType.COPY_ACCESS_GROUP).build(),
+                StatusEventProcessingState.READY, null, "WSEG");
+        final StoredStatusEvent sse3 = storage.store(StatusEvent.getBuilder(
+                "KE", Instant.ofEpochMilli(50000), StatusEventType.COPY_ACCESS_GROUP).build(),
+                StatusEventProcessingState.UNPROC, null, "WSEG");
+        storage.setAndGetProcessingState(StatusEventProcessingState.READY, null,
+                StatusEventProcessingState.PROC, "work1");
+        final StatusEventID missing = new StatusEventID(new ObjectId().toString());
+        
+        final Map<StatusEventID, StoredStatusEventState> got = storage.getStates(
+                set(sse1.getID(), sse2.getID(), missing));
+        
+        assertThat("incorrect states", got, is(ImmutableMap.of(
+                sse1.getID(), new StoredStatusEventState(
+                        sse1.getID(), StatusEventProcessingState.UNPROC, null, null),
+                sse2.getID(), new StoredStatusEventState(
+                        sse2.getID(), StatusEventProcessingState.PROC,
+                        Instant.ofEpochMilli(20000), "work1"))));
+        assertThat("incorrect states", storage.getStates(set(sse3.getID())).get(sse3.getID()),
+                is(new StoredStatusEventState(
+                        sse3.getID(), StatusEventProcessingState.UNPROC, null, null)));
+        assertThat("incorrect states", storage.getStates(set()), is(Collections.emptyMap()));
+    }
+    
+    @Test
+    public void getStatesFail() {
+        failGetStates(null, new NullPointerException("ids"));
+        failGetStates(set(new StatusEventID(new ObjectId().toString()), null),
+                new NullPointerException("null item in ids"));
+    }
+    
+    private void failGetStates(final Set<StatusEventID> ids, final Exception expected) {
+        try {
+            storage.getStates(ids);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+    
     @Test
     public void setProcessingStateFailNonExistant() throws Exception {
         when(clock.instant()).thenReturn(Instant.now());
@@ -974,6 +1202,134 @@ public class MongoDBStatusEventStorageTest {
         assertThat("expected absent", ret, is(Optional.absent()));
     }
     
+    @Test
+    public void getAndSetProcessingQueryPlan() throws Exception {
+        // check that claiming an event by worker code doesn't scan events for other codes
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(10000));
+        for (final String code: Arrays.asList("code1", "code2", "code3")) {
+            for (final StatusEventProcessingState state: Arrays.asList(
+                    StatusEventProcessingState.READY, StatusEventProcessingState.PROC)) {
+                final List<StatusEvent> events = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    events.add(StatusEvent.getBuilder(
+                            "KE", Instant.ofEpochMilli(20000 + i),
+                            StatusEventType.COPY_ACCESS_GROUP)
+                            .build());
+                }
+                storage.storeAll(events, state, set(code), "foo");
+            }
+        }
+        
+        final Document stats = explainClaim(set("code2"));
+        
+        assertThat("incorrect returned", stats.getInteger("nReturned"), is(1));
+        assertThat("incorrect keys examined", stats.getInteger("totalKeysExamined"), is(1));
+        assertThat("incorrect docs examined", stats.getInteger("totalDocsExamined"), is(1));
+        
+        final Document plan = getWinningPlan(set("code2"));
+        assertThat("incorrect plan stages", getPlanStages(plan).contains("SORT"), is(false));
+        assertThat("incorrect index", getIndexNames(plan), is(set("status_1_wrkcde_1_time_1")));
+        
+        // multiple codes merge the index scans for each code rather than sorting
+        final Document multiStats = explainClaim(set("code1", "code3"));
+        assertThat("incorrect returned", multiStats.getInteger("nReturned"), is(1));
+        assertThat("incorrect docs examined", multiStats.getInteger("totalDocsExamined"),
+                is(1));
+        
+        final Document multiPlan = getWinningPlan(set("code1", "code3"));
+        final List<String> stages = getPlanStages(multiPlan);
+        assertThat("incorrect plan stages", stages.contains("SORT"), is(false));
+        assertThat("incorrect plan stages", stages.contains("SORT_MERGE"), is(true));
+        assertThat("incorrect index", getIndexNames(multiPlan),
+                is(set("status_1_wrkcde_1_time_1")));
+        
+        // events stored without worker codes get the default code, and events stored before
+        // worker codes were added have no code field at all. The earliest events are in the
+        // latter group.
+        for (final StatusEventProcessingState state: Arrays.asList(
+                StatusEventProcessingState.READY, StatusEventProcessingState.PROC)) {
+            final List<StatusEvent> events = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                events.add(StatusEvent.getBuilder(
+                        "KE", Instant.ofEpochMilli(10000 + i), StatusEventType.COPY_ACCESS_GROUP)
+                        .build());
+            }
+            storage.storeAll(events, state, null, "foo");
+        }
+        db.getCollection("searchEvents").updateMany(
+                new Document("time", new Document("$lt", Date.from(Instant.ofEpochMilli(10025)))),
+                new Document("$unset", new Document("wrkcde", "")));
+        
+        // null and the default code both claim events with the default code or no code
+        for (final Set<String> codes: Arrays.asList(null, set("default"))) {
+            final Document defStats = explainClaim(codes);
+            assertThat("incorrect returned for " + codes, defStats.getInteger("nReturned"),
+                    is(1));
+            assertThat("incorrect docs examined for " + codes,
+                    defStats.getInteger("totalDocsExamined"), is(1));
+            
+            final Document defPlan = getWinningPlan(codes);
+            assertThat("incorrect plan stages for " + codes,
+                    getPlanStages(defPlan).contains("SORT"), is(false));
+            assertThat("incorrect index for " + codes, getIndexNames(defPlan),
+                    is(set("status_1_wrkcde_1_time_1")));
+        }
+        assertThat("incorrect claimed event", storage.setAndGetProcessingState(
+                StatusEventProcessingState.READY, set("default"),
+                StatusEventProcessingState.PROC, "foo").get().getEvent().getTimestamp(),
+                is(Instant.ofEpochMilli(10000)));
+    }
+    
+    private Document explain(final Set<String> workerCodes, final String verbosity) {
+        final MongoDBStatusEventStorage.ClaimQuery query = MongoDBStatusEventStorage
+                .getClaimQuery(StatusEventProcessingState.READY, workerCodes);
+        return db.runCommand(new Document("explain", new Document("find", "searchEvents")
+                .append("filter", query.getFilter())
+                .append("sort", query.getSort())
+                .append("limit", 1))
+                .append("verbosity", verbosity));
+    }
+    
+    private Document explainClaim(final Set<String> workerCodes) {
+        return (Document) explain(workerCodes, "executionStats").get("executionStats");
+    }
+    
+    private Document getWinningPlan(final Set<String> workerCodes) {
+        return (Document) ((Document) explain(workerCodes, "queryPlanner").get("queryPlanner"))
+                .get("winningPlan");
+    }
+    
+    private List<String> getPlanStages(final Document plan) {
+        final List<String> stages = new ArrayList<>();
+        stages.add(plan.getString("stage"));
+        for (final Document input: getInputStages(plan)) {
+            stages.addAll(getPlanStages(input));
+        }
+        return stages;
+    }
+    
+    private Set<String> getIndexNames(final Document plan) {
+        final Set<String> names = new HashSet<>();
+        if (plan.getString("indexName") != null) {
+            names.add(plan.getString("indexName"));
+        }
+        for (final Document input: getInputStages(plan)) {
+            names.addAll(getIndexNames(input));
+        }
+        return names;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<Document> getInputStages(final Document plan) {
+        if (plan.get("inputStage") != null) {
+            return Arrays.asList((Document) plan.get("inputStage"));
+        }
+        if (plan.get("inputStages") != null) {
+            return (List<Document>) plan.get("inputStages");
+        }
+        return Collections.emptyList();
+    }
+    
     @Test
     public void setAndGetProcessingFail() {
         failSetAndGetProcessing(null, null, StatusEventProcessingState.FAIL, "foo",
@@ -1149,6 +1505,36 @@ public class MongoDBStatusEventStorageTest {
         }
     }
     
+    @Test
+    public void storeAllFail() {
+        final StatusEvent event = StatusEvent.getBuilder(
+                "Ws", Instant.ofEpochMilli(10000), StatusEventType.NEW_ALL_VERSIONS).build();
+        final List<StatusEvent> events = Arrays.asList(event);
+        failStoreAll(null, StatusEventProcessingState.UNINDX, null, "s",
+                new NullPointerException("newEvents"));
+        failStoreAll(Arrays.asList(event, null), StatusEventProcessingState.UNINDX, null, "s",
+                new NullPointerException("null item in newEvents"));
+        failStoreAll(events, null, null, "s", new NullPointerException("state"));
+        failStoreAll(events, StatusEventProcessingState.UNINDX, set("foo", null), "s",
+                new IllegalArgumentException("null or whitespace only item in workerCodes"));
+        failStoreAll(events, StatusEventProcessingState.UNINDX, set(), "   \t   \n  ",
+                new IllegalArgumentException("storedBy cannot be null or whitespace only"));
+    }
+    
+    private void failStoreAll(
+            final List<StatusEvent> events,
+            final StatusEventProcessingState state,
+            final Set<String> workerCodes,
+            final String storedBy,
+            final Exception expected) {
+        try {
+            storage.storeAll(events, state, workerCodes, storedBy);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+    
     @Test
     public void storeChildFail() {
         final ChildStatusEvent c = new ChildStatusEvent(StatusEvent.getBuilder(
@@ -1183,6 +1569,34 @@ public class MongoDBStatusEventStorageTest {
         }
     }
     
+    @Test
+    public void storeChildrenFail() {
+        final ChildStatusEvent c = new ChildStatusEvent(StatusEvent.getBuilder(
+                "WS", Instant.ofEpochMilli(20000), StatusEventType.DELETE_ALL_VERSIONS).build(),
+                new StatusEventID("parent id"));
+        final Throwable e = new RuntimeException("foo");
+        
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(10000L));
+        
+        failStoreChildren(null, new NullPointerException("newEvents"));
+        failStoreChildren(Arrays.asList(new FailedChildStatusEvent(c, "c", e, false), null),
+                new NullPointerException("null item in newEvents"));
+        failStoreChildren(Arrays.asList(
+                new FailedChildStatusEvent(c, "01234567890123456789a", e, false)),
+                new IllegalArgumentException("errorCode exceeds max length of 20"));
+    }
+    
+    private void failStoreChildren(
+            final List<FailedChildStatusEvent> events,
+            final Exception expected) {
+        try {
+            storage.storeChildren(events);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+    
     @Test
     public void getFail() {
         try {
@@ -1261,6 +1675,181 @@ public class MongoDBStatusEventStorageTest {
         }
     }
     
+    @Test
+    public void archiveCompletedEvents() throws Exception {
+        // store times, update times, archive time
+        when(clock.instant()).thenReturn(
+                Instant.ofEpochMilli(10000), Instant.ofEpochMilli(10000),
+                Instant.ofEpochMilli(10000), Instant.ofEpochMilli(10000),
+                Instant.ofEpochMilli(10000), Instant.parse("2018-02-28T10:00:00Z"),
+                Instant.parse("2018-03-01T10:00:00Z"), Instant.parse("2018-03-01T23:00:00Z"),
+                Instant.parse("2018-03-02T10:00:00Z"), Instant.parse("2018-03-01T10:00:00Z"),
+                Instant.parse("2018-03-05T10:00:00Z"),
+                Instant.parse("2018-03-04T00:00:00Z"));
+        final List<StatusEventID> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(storage.store(StatusEvent.getBuilder(
+                    "KE", Instant.ofEpochMilli(30000 + i), StatusEventType.COPY_ACCESS_GROUP)
+                    .build(),
+                    StatusEventProcessingState.PROC, null, "WSEG").getID());
+        }
+        // the first event failed and was reprocessed
+        storage.setProcessingState(ids.get(0), null, "OTHER",
+                new UnprocessableEventIndexingException(ErrorType.OTHER, "other"));
+        storage.setProcessingState(ids.get(0), null, StatusEventProcessingState.INDX);
+        storage.setProcessingState(ids.get(1), null, StatusEventProcessingState.UNINDX);
+        storage.setProcessingState(ids.get(2), null, StatusEventProcessingState.INDX);
+        storage.setProcessingState(ids.get(3), null, StatusEventProcessingState.FAIL);
+        storage.setProcessingState(ids.get(4), null, StatusEventProcessingState.INDX);
+        final StoredStatusEvent unarchived = storage.get(ids.get(4)).get();
+        
+        final MongoDBStatusEventStorage mstorage = (MongoDBStatusEventStorage) storage;
+        final long count = mstorage.archiveCompletedEvents(
+                Instant.parse("2018-03-03T00:00:00Z"), Duration.ofDays(2));
+        
+        assertThat("incorrect count", count, is(3L));
+        assertThat("incorrect live events", storage.get(ids.get(0)), is(Optional.absent()));
+        assertThat("incorrect live events", storage.get(ids.get(1)), is(Optional.absent()));
+        assertThat("incorrect live events", storage.get(ids.get(2)), is(Optional.absent()));
+        assertThat("incorrect live event", storage.get(ids.get(3)).get().getState(),
+                is(StatusEventProcessingState.FAIL));
+        assertThat("incorrect live event", storage.get(ids.get(4)).get(), is(unarchived));
+        assertThat("incorrect live events", db.getCollection("searchEvents").count(), is(2L));
+        
+        final Set<Document> archived = new HashSet<>();
+        db.getCollection("searchEventsArchive").find()
+                .projection(new Document("status", 1).append("expires", 1).append("errcde", 1)
+                        .append("errtrceid", 1))
+                .forEach((Consumer<Document>) archived::add);
+        final Date expires = Date.from(Instant.parse("2018-03-06T00:00:00Z"));
+        assertThat("incorrect archive", archived, is(set(
+                new Document("_id", new ObjectId(ids.get(0).getId())).append("status", "INDX")
+                        .append("errcde", "OTHER").append("expires", expires),
+                new Document("_id", new ObjectId(ids.get(1).getId())).append("status", "UNINDX")
+                        .append("expires", expires),
+                new Document("_id", new ObjectId(ids.get(2).getId())).append("status", "INDX")
+                        .append("expires", expires))));
+        assertThat("incorrect traces", db.getCollection("errorTraces").count(), is(0L));
+        
+        final Set<Document> daily = new HashSet<>();
+        db.getCollection("searchEventsArchiveDaily").find()
+                .projection(new Document("_id", 0))
+                .forEach((Consumer<Document>) daily::add);
+        assertThat("incorrect daily counts", daily, is(set(
+                new Document("day", "2018-03-01").append("status", "INDX").append("count", 1),
+                new Document("day", "2018-03-01").append("status", "UNINDX").append("count", 1),
+                new Document("day", "2018-03-02").append("status", "INDX").append("count", 1))));
+        
+        // nothing left to archive
+        assertThat("incorrect count", mstorage.archiveCompletedEvents(
+                Instant.parse("2018-03-03T00:00:00Z"), Duration.ofDays(2)), is(0L));
+    }
+    
+    @Test
+    public void archiveCompletedEventsQueryPlan() throws Exception {
+        // check that finding completed events doesn't scan events in other states or events
+        // completed after the archive time
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(10000));
+        for (final StatusEventProcessingState state: Arrays.asList(
+                StatusEventProcessingState.READY, StatusEventProcessingState.PROC,
+                StatusEventProcessingState.INDX, StatusEventProcessingState.UNINDX,
+                StatusEventProcessingState.FAIL)) {
+            final List<StatusEvent> events = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                events.add(StatusEvent.getBuilder(
+                        "KE", Instant.ofEpochMilli(20000 + i), StatusEventType.COPY_ACCESS_GROUP)
+                        .build());
+            }
+            storage.storeAll(events, state, null, "foo");
+        }
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(30000));
+        final StatusEventID late = storage.store(StatusEvent.getBuilder(
+                "KE", Instant.ofEpochMilli(40000), StatusEventType.COPY_ACCESS_GROUP).build(),
+                StatusEventProcessingState.INDX, null, "foo").getID();
+
+        // the query used by archiveCompletedEvents
+        final Document filter = new Document("status", new Document("$in",
+                Arrays.asList("INDX", "UNINDX")))
+                .append("updte", new Document("$lt", Date.from(Instant.ofEpochMilli(20000))));
+        final Document explain = db.runCommand(new Document("explain",
+                new Document("find", "searchEvents").append("filter", filter))
+                .append("verbosity", "executionStats"));
+        final Document stats = (Document) explain.get("executionStats");
+        assertThat("incorrect returned", stats.getInteger("nReturned"), is(100));
+        assertThat("incorrect docs examined", stats.getInteger("totalDocsExamined"), is(100));
+        final Document plan = (Document) ((Document) explain.get("queryPlanner"))
+                .get("winningPlan");
+        assertThat("incorrect index", getIndexNames(plan), is(set("status_1_updte_1")));
+
+        assertThat("incorrect count", ((MongoDBStatusEventStorage) storage)
+                .archiveCompletedEvents(Instant.ofEpochMilli(20000), Duration.ofDays(1)),
+                is(100L));
+        assertThat("incorrect live event", storage.get(late).isPresent(), is(true));
+    }
+    
+    @Test
+    public void archiveCompletedEventsFail() {
+        failArchive(null, Duration.ZERO, new NullPointerException("completedBefore"));
+        failArchive(Instant.now(), null, new NullPointerException("retention"));
+        failArchive(Instant.now(), Duration.ofMillis(-1),
+                new IllegalArgumentException("retention cannot be negative"));
+    }
+    
+    private void failArchive(
+            final Instant completedBefore,
+            final Duration retention,
+            final Exception expected) {
+        try {
+            ((MongoDBStatusEventStorage) storage).archiveCompletedEvents(
+                    completedBefore, retention);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+    
+    @Test
+    public void archiveIndexes() {
+        final Set<Document> indexes = new HashSet<>();
+        db.getCollection("searchEventsArchive").listIndexes()
+                .forEach((Consumer<Document>) indexes::add);
+        for (final Document d: indexes) {
+            d.remove("v"); // remove the mongo index version which is no business of ours
+        }
+        assertThat("incorrect indexes", indexes, is(set(
+                new Document()
+                        .append("key", new Document("expires", 1))
+                        .append("name", "expires_1")
+                        .append("ns", "test_mongostorage.searchEventsArchive")
+                        .append("expireAfterSeconds", 0L),
+                new Document()
+                        .append("key", new Document("_id", 1))
+                        .append("name", "_id_")
+                        .append("ns", "test_mongostorage.searchEventsArchive")
+                )));
+    }
+    
+    @Test
+    public void archiveDailyIndexes() {
+        final Set<Document> indexes = new HashSet<>();
+        db.getCollection("searchEventsArchiveDaily").listIndexes()
+                .forEach((Consumer<Document>) indexes::add);
+        for (final Document d: indexes) {
+            d.remove("v"); // remove the mongo index version which is no business of ours
+        }
+        assertThat("incorrect indexes", indexes, is(set(
+                new Document()
+                        .append("key", new Document("day", 1).append("status", 1))
+                        .append("name", "day_1_status_1")
+                        .append("ns", "test_mongostorage.searchEventsArchiveDaily")
+                        .append("unique", true),
+                new Document()
+                        .append("key", new Document("_id", 1))
+                        .append("name", "_id_")
+                        .append("ns", "test_mongostorage.searchEventsArchiveDaily")
+                )));
+    }
+    
     @Test
     public void searchEventsIndexes() {
         final Set<Document> indexes = new HashSet<>();
@@ -1275,10 +1864,19 @@ public class MongoDBStatusEventStorageTest {
                         .append("key", new Document("status", 1).append("time", 1))
                         .append("name", "status_1_time_1")
                         .append("ns", "test_mongostorage.searchEvents"),
+                new Document()
+                        .append("key", new Document("status", 1).append("wrkcde", 1)
+                                .append("time", 1))
+                        .append("name", "status_1_wrkcde_1_time_1")
+                        .append("ns", "test_mongostorage.searchEvents"),
                 new Document()
                         .append("key", new Document("sttime", 1).append("status", 1))
                         .append("name", "sttime_1_status_1")
                         .append("ns", "test_mongostorage.searchEvents"),
+                new Document()
+                        .append("key", new Document("status", 1).append("updte", 1))
+                        .append("name", "status_1_updte_1")
+                        .append("ns", "test_mongostorage.searchEvents"),
                 new Document()
                         .append("key", new Document("_id", 1))
                         .append("name", "_id_")
@@ -0,0 +1,138 @@
+package kbasesearchengine.test.main;
+
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import kbasesearchengine.events.exceptions.ErrorType;
+import kbasesearchengine.events.exceptions.FatalRetriableIndexingException;
+import kbasesearchengine.events.storage.MongoDBStatusEventStorage;
+import kbasesearchengine.main.EventArchiver;
+import kbasesearchengine.main.LineLogger;
+import kbasesearchengine.test.common.TestCommon;
+
+public class EventArchiverTest {
+
+    private static final Duration DAY = Duration.ofDays(1);
+    private static final Duration WEEK = Duration.ofDays(7);
+
+    private Runnable start(
+            final EventArchiver archiver,
+            final ScheduledExecutorService executor) {
+        final ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        archiver.startArchiver();
+        verify(executor).scheduleWithFixedDelay(
+                runnable.capture(), eq(0L), eq(60L), eq(TimeUnit.MINUTES));
+        return runnable.getValue();
+    }
+
+    @Test
+    public void archive() throws Exception {
+        final MongoDBStatusEventStorage storage = mock(MongoDBStatusEventStorage.class);
+        final LineLogger logger = mock(LineLogger.class);
+        final ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        final Clock clock = mock(Clock.class);
+
+        final EventArchiver archiver = new EventArchiver(
+                storage, DAY, WEEK, logger, executor, clock);
+        final Runnable runner = start(archiver, executor);
+
+        when(clock.instant()).thenReturn(Instant.ofEpochSecond(200_000),
+                Instant.ofEpochSecond(300_000));
+        when(storage.archiveCompletedEvents(Instant.ofEpochSecond(113_600), WEEK))
+                .thenReturn(24L);
+        when(storage.archiveCompletedEvents(Instant.ofEpochSecond(213_600), WEEK))
+                .thenReturn(0L);
+
+        runner.run();
+        runner.run();
+
+        verify(logger).logInfo("Archived 24 completed events");
+        verify(logger, never()).logInfo("Archived 0 completed events");
+        verify(logger, never()).logError(any(String.class));
+    }
+
+    @Test
+    public void archiveFail() throws Exception {
+        final MongoDBStatusEventStorage storage = mock(MongoDBStatusEventStorage.class);
+        final LineLogger logger = mock(LineLogger.class);
+        final ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        final Clock clock = mock(Clock.class);
+
+        final EventArchiver archiver = new EventArchiver(
+                storage, DAY, WEEK, logger, executor, clock);
+        final Runnable runner = start(archiver, executor);
+
+        when(clock.instant()).thenReturn(Instant.ofEpochSecond(200_000));
+        when(storage.archiveCompletedEvents(Instant.ofEpochSecond(113_600), WEEK))
+                .thenThrow(new FatalRetriableIndexingException(ErrorType.OTHER, "whoops"))
+                .thenThrow(new IllegalStateException("oh dear"));
+
+        runner.run();
+        runner.run();
+
+        verify(logger).logError("Error archiving events: kbasesearchengine.events.exceptions." +
+                "FatalRetriableIndexingException: whoops");
+        verify(logger).logError(
+                argThat((Throwable t) -> t instanceof FatalRetriableIndexingException));
+        verify(logger).logError("Unexpected error archiving events: " +
+                "java.lang.IllegalStateException: oh dear");
+        verify(logger).logError(argThat((Throwable t) -> t instanceof IllegalStateException));
+    }
+
+    @Test
+    public void stop() throws Exception {
+        final ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        final EventArchiver archiver = new EventArchiver(
+                mock(MongoDBStatusEventStorage.class), DAY, WEEK, mock(LineLogger.class),
+                executor, mock(Clock.class));
+
+        archiver.stop(-1);
+
+        verify(executor).shutdown();
+        verify(executor).awaitTermination(0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void constructFail() {
+        final MongoDBStatusEventStorage s = mock(MongoDBStatusEventStorage.class);
+        final LineLogger l = mock(LineLogger.class);
+
+        failConstruct(null, DAY, WEEK, l, new NullPointerException("storage"));
+        failConstruct(s, null, WEEK, l, new NullPointerException("age"));
+        failConstruct(s, DAY, null, l, new NullPointerException("retention"));
+        failConstruct(s, DAY, WEEK, null, new NullPointerException("logger"));
+        failConstruct(s, Duration.ZERO, WEEK, l,
+                new IllegalArgumentException("age must be positive"));
+        failConstruct(s, DAY, Duration.ofMillis(-1), l,
+                new IllegalArgumentException("retention cannot be negative"));
+    }
+
+    private void failConstruct(
+            final MongoDBStatusEventStorage storage,
+            final Duration age,
+            final Duration retention,
+            final LineLogger logger,
+            final Exception expected) {
+        try {
+            new EventArchiver(storage, age, retention, logger);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+}
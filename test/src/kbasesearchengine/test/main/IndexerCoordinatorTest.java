@@ -1,5 +1,6 @@
 package kbasesearchengine.test.main;
 
+import static kbasesearchengine.test.common.TestCommon.set;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
@@ -16,7 +17,9 @@ import java.time.Clock;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -25,7 +28,6 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
-import com.google.common.base.Optional;
 import com.google.common.base.Ticker;
 
 import kbasesearchengine.events.StatusEvent;
@@ -33,6 +35,7 @@ import kbasesearchengine.events.StatusEventID;
 import kbasesearchengine.events.StatusEventProcessingState;
 import kbasesearchengine.events.StatusEventType;
 import kbasesearchengine.events.StoredStatusEvent;
+import kbasesearchengine.events.StoredStatusEventState;
 import kbasesearchengine.events.exceptions.ErrorType;
 import kbasesearchengine.events.exceptions.FatalIndexingException;
 import kbasesearchengine.events.exceptions.FatalRetriableIndexingException;
@@ -170,11 +173,11 @@ public class IndexerCoordinatorTest {
                 }) // cycle should end here because the coordinator has been stopped
                 .thenReturn(Arrays.asList(changeID(event1, "foo4")));
         
-        when(storage.get(new StatusEventID("foo1"))).thenReturn(Optional.of(ready1));
-        when(storage.get(new StatusEventID("foo2")))
-                .thenReturn(Optional.of(changeID(ready1, "foo2")));
-        when(storage.get(new StatusEventID("foo3")))
-                .thenReturn(Optional.of(changeID(ready1, "foo3")));
+        when(storage.getStates(set(new StatusEventID("foo1")))).thenReturn(states(ready1));
+        when(storage.getStates(set(new StatusEventID("foo2"))))
+                .thenReturn(states(changeID(ready1, "foo2")));
+        when(storage.getStates(set(new StatusEventID("foo3"))))
+                .thenReturn(states(changeID(ready1, "foo3")));
 
         coordRunner.run();
         // changed when fast loop behavior removed 18/2/21
@@ -192,7 +195,16 @@ public class IndexerCoordinatorTest {
         assertThat("incorrect cycle count", coord.getContinuousCycles(), is(0));
         assertThat("incorrect queue size", coord.getQueueSize(), is(3));
         
-        verify(storage, never()).get(new StatusEventID("foo4"));
+        verify(storage, never()).getStates(set(new StatusEventID("foo4")));
+    }
+    
+    private Map<StatusEventID, StoredStatusEventState> states(final StoredStatusEvent... events) {
+        final Map<StatusEventID, StoredStatusEventState> ret = new HashMap<>();
+        for (final StoredStatusEvent e: events) {
+            ret.put(e.getID(), new StoredStatusEventState(e.getID(), e.getState(),
+                    e.getUpdateTime().orNull(), e.getUpdater().orNull()));
+        }
+        return ret;
     }
     
     private StoredStatusEvent changeID(final StoredStatusEvent event, final String id) {
@@ -270,10 +282,10 @@ public class IndexerCoordinatorTest {
                 .thenReturn(Arrays.asList(event1, event2))
                 .thenReturn(Collections.emptyList());
         
-        when(storage.get(new StatusEventID("foo1")))
-                .thenReturn(Optional.of(ready1))
-                .thenReturn(Optional.of(proc1)) // 2nd loop of 1st run call [18/2/21: 2nd run call]
-                .thenReturn(Optional.of(idx1)); // this will return on the second run() call [18/2/21: 3rd]
+        when(storage.getStates(set(new StatusEventID("foo1"))))
+                .thenReturn(states(ready1))
+                .thenReturn(states(proc1)) // 2nd loop of 1st run call [18/2/21: 2nd run call]
+                .thenReturn(states(idx1)); // this will return on the second run() call [18/2/21: 3rd]
         
         coordRunner.run();
         // changed when fast loop behavior removed 18/2/21
@@ -297,7 +309,7 @@ public class IndexerCoordinatorTest {
         verify(storage, never()).setProcessingState(new StatusEventID("foo2"),
                 StatusEventProcessingState.UNPROC, StatusEventProcessingState.READY);
         
-        when(storage.get(new StatusEventID("foo2"))).thenReturn(Optional.of(ready2));
+        when(storage.getStates(set(new StatusEventID("foo2")))).thenReturn(states(ready2));
         
         coordRunner.run();
         assertThat("incorrect cycle count", coord.getContinuousCycles(), is(1));
@@ -357,8 +369,8 @@ public class IndexerCoordinatorTest {
                 .thenReturn(Arrays.asList(event3)) // third call
                 .thenReturn(null);
         
-        when(storage.get(new StatusEventID("foo1")))
-                .thenReturn(Optional.of(ready1)); //queue blocks forever
+        when(storage.getStates(set(new StatusEventID("foo1"))))
+                .thenReturn(states(ready1)); //queue blocks forever
         
         coordRunner.run();
         // changed when fast loop behavior removed 18/2/21
@@ -396,7 +408,7 @@ public class IndexerCoordinatorTest {
         assertThat("incorrect cycle count", coord.getContinuousCycles(), is(1));
         assertThat("incorrect queue size", coord.getQueueSize(), is(3));
 
-        verify(storage, times(6)).get(new StatusEventID("foo1"));
+        verify(storage, times(6)).getStates(set(new StatusEventID("foo1")));
         verify(storage, never()).get(StatusEventProcessingState.UNPROC, 0);
         verify(storage, never()).setProcessingState(new StatusEventID("foo2"),
                 StatusEventProcessingState.UNPROC, StatusEventProcessingState.READY);
@@ -425,6 +437,7 @@ public class IndexerCoordinatorTest {
         assertThat("incorrect queue size", coord.getQueueSize(), is(0));
         
         verify(storage, never()).get(any());
+        verify(storage, never()).getStates(any());
         verify(storage, never()).get(any(), eq(2)); // must be an easier way of doing this
         verify(storage, never()).get(any(), eq(1));
         verify(storage, never()).get(any(), eq(0));
@@ -470,12 +483,11 @@ public class IndexerCoordinatorTest {
         
         when(storage.get(eq(StatusEventProcessingState.UNPROC), anyInt()))
                 .thenReturn(Collections.emptyList());
-        when(storage.get(new StatusEventID("foo1")))
-                .thenReturn(Optional.of(event1))
-                .thenReturn(Optional.of(unidx1)) //2nd call
+        when(storage.getStates(set(new StatusEventID("foo1"), new StatusEventID("foo2"))))
+                .thenReturn(states(event1, fail2))
                 .thenReturn(null);
-        when(storage.get(new StatusEventID("foo2")))
-                .thenReturn(Optional.of(fail2))
+        when(storage.getStates(set(new StatusEventID("foo1"))))
+                .thenReturn(states(unidx1)) //2nd call
                 .thenReturn(null);
         
         final Runnable coordRunner = getIndexerRunnable(executor, coord);
@@ -521,9 +533,9 @@ public class IndexerCoordinatorTest {
         
         when(storage.get(eq(StatusEventProcessingState.UNPROC), anyInt()))
                 .thenReturn(Collections.emptyList());
-        when(storage.get(new StatusEventID("foo1")))
-                .thenReturn(Optional.of(event1))
-                .thenReturn(Optional.of(idx1)) //2nd call
+        when(storage.getStates(set(new StatusEventID("foo1"))))
+                .thenReturn(states(event1))
+                .thenReturn(states(idx1)) //2nd call
                 .thenReturn(null);
         
         final Runnable coordRunner = getIndexerRunnable(executor, coord);
@@ -564,7 +576,7 @@ public class IndexerCoordinatorTest {
                 .thenReturn(Arrays.asList(event1))
                 .thenReturn(Collections.emptyList());
         
-        when(storage.get(new StatusEventID("foo1"))).thenReturn(Optional.absent());
+        when(storage.getStates(set(new StatusEventID("foo1")))).thenReturn(Collections.emptyMap());
         
         final Runnable coordRunner = getIndexerRunnable(executor, coord);
         
@@ -738,7 +750,7 @@ public class IndexerCoordinatorTest {
         
         when(storage.get(StatusEventProcessingState.UNPROC, 3)).thenReturn(Arrays.asList(event1));
         
-        when(storage.get(new StatusEventID("foo1"))).thenThrow(
+        when(storage.getStates(set(new StatusEventID("foo1")))).thenThrow(
                         new FatalRetriableIndexingException(ErrorType.OTHER, "yay"));
         
         coordRunner.run();
@@ -754,14 +766,11 @@ public class IndexerCoordinatorTest {
                 "Moved event foo1 DELETE_ALL_VERSIONS WS:2/1 from UNPROC to READY");
         verify(executor).shutdown();
 
-        verify(logger).logError("Retriable error in indexer for event " +
-                "DELETE_ALL_VERSIONS foo1, retry 1: " +
+        verify(logger).logError("Retriable error in indexer, retry 1: " +
                 "kbasesearchengine.events.exceptions.FatalRetriableIndexingException: yay");
-        verify(logger).logError("Retriable error in indexer for event " +
-                "DELETE_ALL_VERSIONS foo1, retry 2: " +
+        verify(logger).logError("Retriable error in indexer, retry 2: " +
                 "kbasesearchengine.events.exceptions.FatalRetriableIndexingException: yay");
-        verify(logger).logError("Retriable error in indexer for event " +
-                "DELETE_ALL_VERSIONS foo1, retry 3: " +
+        verify(logger).logError("Retriable error in indexer, retry 3: " +
                 "kbasesearchengine.events.exceptions.FatalRetriableIndexingException: yay");
         verify(logger).logError("Fatal error in indexer, shutting down: " +
                 "kbasesearchengine.events.exceptions.FatalIndexingException: yay");
@@ -811,7 +820,7 @@ public class IndexerCoordinatorTest {
                 .thenReturn(Instant.ofEpochMilli(10000 + (2 * 3600 * 1000) + 2000))
                 .thenReturn(null);
         
-        when(storage.get(new StatusEventID("foo1"))).thenReturn(Optional.of(event1));
+        when(storage.getStates(set(new StatusEventID("foo1")))).thenReturn(states(event1));
         
         coordRunner.run();
         assertThat("incorrect cycle count", coord.getContinuousCycles(), is(1));
@@ -877,7 +886,7 @@ public class IndexerCoordinatorTest {
                 .thenReturn(3 * 3600 * 1_000_000_000L) //3rd run get force expiration
                 .thenReturn(1_000_000_000_000_000_000L); // 3rd run put
 
-        when(storage.get(new StatusEventID("foo1"))).thenReturn(Optional.of(event1));
+        when(storage.getStates(set(new StatusEventID("foo1")))).thenReturn(states(event1));
         
         coordRunner.run();
         assertThat("incorrect cycle count", coord.getContinuousCycles(), is(1));
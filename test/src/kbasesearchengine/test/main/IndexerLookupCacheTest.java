@@ -0,0 +1,233 @@
+package kbasesearchengine.test.main;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.events.handler.ResolvedReference;
+import kbasesearchengine.main.IndexerLookupCache;
+import kbasesearchengine.system.SearchObjectType;
+import kbasesearchengine.system.StorageObjectType;
+import kbasesearchengine.test.common.TestCommon;
+
+public class IndexerLookupCacheTest {
+
+    private static ResolvedReference rr(final String ref, final String resolved) {
+        return new ResolvedReference(new GUID(ref), new GUID(resolved),
+                new StorageObjectType("WS", "Assembly"), Instant.ofEpochMilli(10000));
+    }
+
+    private static ResolvedReference rr(final String ref) {
+        return rr(ref, ref);
+    }
+
+    @Test
+    public void putAndGet() throws Exception {
+        final IndexerLookupCache cache = new IndexerLookupCache(10, 100);
+
+        cache.putResolvedReference(rr("WS:4/5/6"));
+        cache.putType(new GUID("WS:4/5/6"), new SearchObjectType("Assembly", 1));
+
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:4/5/6")),
+                is(Optional.of(rr("WS:4/5/6"))));
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:4/5/7")),
+                is(Optional.absent()));
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS2:4/5/6")),
+                is(Optional.absent()));
+        assertThat("incorrect type", cache.getType(new GUID("WS:4/5/6")),
+                is(Optional.of(new SearchObjectType("Assembly", 1))));
+        assertThat("incorrect type", cache.getType(new GUID("WS:4/5/7")),
+                is(Optional.absent()));
+
+        final Map<String, Long> expected = new LinkedHashMap<>();
+        expected.put("refhits", 1L);
+        expected.put("refmisses", 2L);
+        expected.put("refevictions", 0L);
+        expected.put("refsize", 1L);
+        expected.put("typehits", 1L);
+        expected.put("typemisses", 1L);
+        expected.put("typeevictions", 0L);
+        expected.put("typesize", 1L);
+        assertThat("incorrect stats", cache.getStatistics(), is(expected));
+        assertThat("incorrect hits", cache.getResolvedReferenceStats().hitCount(), is(1L));
+        assertThat("incorrect misses", cache.getTypeStats().missCount(), is(1L));
+    }
+
+    @Test
+    public void expiresOnTime() throws Exception {
+        final Ticker ticker = mock(Ticker.class);
+        final IndexerLookupCache cache = new IndexerLookupCache(10, 100, ticker);
+
+        final AtomicLong time = new AtomicLong();
+        when(ticker.read()).thenAnswer(inv -> time.get());
+
+        cache.putResolvedReference(rr("WS:4/5/6"));
+        time.set(9000000000L);
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:4/5/6")),
+                is(Optional.of(rr("WS:4/5/6"))));
+        // entries expire 10s after the last access
+        time.set(19000000001L);
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:4/5/6")),
+                is(Optional.absent()));
+    }
+
+    @Test
+    public void expiresOnWeight() throws Exception {
+        // each entry weighs 24: 2 GUIDs and a type name, each 8 characters
+        final IndexerLookupCache cache = new IndexerLookupCache(10000, 50);
+
+        cache.putResolvedReference(rr("WS:7/8/9"));
+        cache.putResolvedReference(rr("WS:4/5/6"));
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:7/8/9")),
+                is(Optional.of(rr("WS:7/8/9"))));
+
+        cache.putResolvedReference(rr("WS:4/5/8"));
+
+        // the least recently used entry should be evicted
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:4/5/6")),
+                is(Optional.absent()));
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:7/8/9")),
+                is(Optional.of(rr("WS:7/8/9"))));
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:4/5/8")),
+                is(Optional.of(rr("WS:4/5/8"))));
+        assertThat("incorrect evictions",
+                cache.getStatistics().get("refevictions"), is(1L));
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        final IndexerLookupCache cache = new IndexerLookupCache(10, 100);
+
+        cache.putResolvedReference(rr("WS:4/5/6"));
+        cache.putResolvedReference(rr("WS:4/5/7"));
+        cache.putResolvedReference(rr("WS:4/6/7"));
+        // a reference that resolves to a different object, e.g. via a copy
+        cache.putResolvedReference(rr("WS:3/1/1", "WS:4/5/2"));
+        cache.putResolvedReference(rr("WS2:4/5/6"));
+        cache.putType(new GUID("WS:4/5/6"), new SearchObjectType("Assembly", 1));
+        cache.putType(new GUID("WS:4/5/6:contig/c1"), new SearchObjectType("Contig", 1));
+        cache.putType(new GUID("WS:4/6/6"), new SearchObjectType("Assembly", 1));
+
+        cache.invalidate(new GUID("WS:4/5"));
+
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:4/5/6")),
+                is(Optional.absent()));
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:4/5/7")),
+                is(Optional.absent()));
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:3/1/1")),
+                is(Optional.absent()));
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:4/6/7")),
+                is(Optional.of(rr("WS:4/6/7"))));
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS2:4/5/6")),
+                is(Optional.of(rr("WS2:4/5/6"))));
+        assertThat("incorrect type", cache.getType(new GUID("WS:4/5/6")),
+                is(Optional.absent()));
+        assertThat("incorrect type", cache.getType(new GUID("WS:4/5/6:contig/c1")),
+                is(Optional.absent()));
+        assertThat("incorrect type", cache.getType(new GUID("WS:4/6/6")),
+                is(Optional.of(new SearchObjectType("Assembly", 1))));
+    }
+
+    @Test
+    public void expiresOnWeightHeavyEntry() throws Exception {
+        // each entry weighs 16
+        final IndexerLookupCache cache = new IndexerLookupCache(10000, 40);
+
+        cache.putType(new GUID("WS:7/8/9"), new SearchObjectType("Assembly", 1));
+        cache.putType(new GUID("WS:4/5/6"), new SearchObjectType("Assembly", 1));
+        // weighs 30, so both the other entries are evicted
+        cache.putType(new GUID("WS:4/5/6:contig/c1234567"), new SearchObjectType("Contig", 1));
+
+        assertThat("incorrect type", cache.getType(new GUID("WS:7/8/9")),
+                is(Optional.absent()));
+        assertThat("incorrect type", cache.getType(new GUID("WS:4/5/6")),
+                is(Optional.absent()));
+        assertThat("incorrect type", cache.getType(new GUID("WS:4/5/6:contig/c1234567")),
+                is(Optional.of(new SearchObjectType("Contig", 1))));
+        assertThat("incorrect evictions", cache.getStatistics().get("typeevictions"), is(2L));
+    }
+
+    @Test
+    public void invalidateEvicted() throws Exception {
+        // evicted and replaced entries are removed from the object index
+        final IndexerLookupCache cache = new IndexerLookupCache(10000, 50);
+
+        cache.putResolvedReference(rr("WS:3/1/1", "WS:4/5/2"));
+        cache.putResolvedReference(rr("WS:3/1/1", "WS:3/1/1"));
+        cache.putResolvedReference(rr("WS:4/5/6"));
+        cache.putResolvedReference(rr("WS:4/5/7"));
+
+        cache.invalidate(new GUID("WS:4/5"));
+        cache.invalidate(new GUID("WS:3/1"));
+        assertThat("incorrect size", cache.getStatistics().get("refsize"), is(0L));
+
+        cache.putResolvedReference(rr("WS:4/5/6"));
+        cache.putResolvedReference(rr("WS:3/1/1"));
+        cache.invalidate(new GUID("WS:4/5"));
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:4/5/6")),
+                is(Optional.absent()));
+        assertThat("incorrect ref", cache.getResolvedReference(new GUID("WS:3/1/1")),
+                is(Optional.of(rr("WS:3/1/1"))));
+    }
+
+    @Test
+    public void constructFail() throws Exception {
+        failConstruct(0, 10, Ticker.systemTicker(),
+                new IllegalArgumentException("cache lifetime must be at least one second"));
+        failConstruct(10, 0, Ticker.systemTicker(),
+                new IllegalArgumentException("cache weight must be at least one"));
+        failConstruct(10, 10, null, new NullPointerException("ticker"));
+    }
+
+    private void failConstruct(
+            final int lifetimeSec,
+            final int size,
+            final Ticker ticker,
+            final Exception expected) {
+        try {
+            new IndexerLookupCache(lifetimeSec, size, ticker);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+
+    @Test
+    public void putGetFail() throws Exception {
+        final IndexerLookupCache cache = new IndexerLookupCache(10, 100);
+        final GUID g = new GUID("WS:1/2/3");
+
+        try {
+            cache.putResolvedReference(null);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got,
+                    new NullPointerException("resolvedReference"));
+        }
+        try {
+            cache.getResolvedReference(null);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new NullPointerException("reference"));
+        }
+        try {
+            cache.putType(g, null);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new NullPointerException("type"));
+        }
+    }
+}
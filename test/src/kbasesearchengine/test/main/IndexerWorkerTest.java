@@ -14,6 +14,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
@@ -22,13 +23,19 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -40,6 +47,7 @@ import com.google.common.collect.ImmutableMap;
 import kbasesearchengine.common.GUID;
 import kbasesearchengine.common.ObjectJsonPath;
 import kbasesearchengine.events.ChildStatusEvent;
+import kbasesearchengine.events.FailedChildStatusEvent;
 import kbasesearchengine.events.StatusEvent;
 import kbasesearchengine.events.StatusEventID;
 import kbasesearchengine.events.StatusEventProcessingState;
@@ -55,11 +63,14 @@ import kbasesearchengine.events.handler.EventHandler;
 import kbasesearchengine.events.handler.ResolvedReference;
 import kbasesearchengine.events.handler.SourceData;
 import kbasesearchengine.events.storage.StatusEventStorage;
+import kbasesearchengine.main.IndexerLookupCache;
 import kbasesearchengine.main.IndexerWorker;
 import kbasesearchengine.main.LineLogger;
+import kbasesearchengine.parse.ParseResultCache;
 import kbasesearchengine.parse.ParsedObject;
 import kbasesearchengine.search.IndexingConflictException;
 import kbasesearchengine.search.IndexingStorage;
+import kbasesearchengine.search.ObjectData;
 import kbasesearchengine.system.IndexingRules;
 import kbasesearchengine.system.LocationTransformType;
 import kbasesearchengine.system.ObjectTypeParsingRules;
@@ -197,6 +208,100 @@ public class IndexerWorkerTest {
                 eq(false));
     }
     
+    @Test
+    public void parseCacheReuse() throws Exception {
+        // tests that objects with the same MD5 are only parsed once
+        final EventHandler ws = mock(EventHandler.class);
+        final StatusEventStorage storage = mock(StatusEventStorage.class);
+        final IndexingStorage idxStore = mock(IndexingStorage.class);
+        final TypeStorage typeStore = mock(TypeStorage.class);
+        final LineLogger logger = mock(LineLogger.class);
+        final ParseResultCache parseCache = new ParseResultCache(10000);
+        
+        final Path tempDir = Paths.get(TestCommon.getTempDir()).toAbsolutePath()
+                .resolve("IndexerWorkerTest");
+        deleteRecursively(tempDir);
+        
+        when(ws.getStorageCode()).thenReturn("code");
+        
+        final IndexerWorker worker = new IndexerWorker(
+                "myid", Arrays.asList(ws), storage, idxStore, typeStore, tempDir.toFile(), logger,
+                null, 1000, new IndexerLookupCache(10, 100), parseCache);
+        
+        final GUID guid1 = new GUID("code:1/2/3");
+        final GUID guid2 = new GUID("code:4/5/6");
+        when(idxStore.checkParentGuidsExist(set(guid1))).thenReturn(ImmutableMap.of(guid1, false));
+        when(idxStore.checkParentGuidsExist(set(guid2))).thenReturn(ImmutableMap.of(guid2, false));
+        
+        when(ws.load(eq(Arrays.asList(guid1)), any(Path.class)))
+                .thenReturn(sourceData(ImmutableMap.of("subobjs", Arrays.asList(
+                        ImmutableMap.of("id", "an id", "somedata", "data")))));
+        // the second object's data should never be downloaded or parsed
+        when(ws.load(eq(Arrays.asList(guid2)), any(Path.class)))
+                .thenReturn(sourceData(ImmutableMap.of("subobjs", "not a list")));
+        for (final GUID g: Arrays.asList(guid1, guid2)) {
+            when(ws.loadMetadata(Arrays.asList(g))).thenReturn(
+                    SourceData.getMetadataBuilder("myobj", "somedude")
+                            .withNullableMD5("md5")
+                            .build());
+        }
+
+        final StorageObjectType storageObjectType = StorageObjectType
+                .fromNullableVersion("code", "sometype", 3);
+        
+        final ObjectTypeParsingRules rule = ObjectTypeParsingRules.getBuilder(
+                new SearchObjectType("foo", 1), storageObjectType)
+                .toSubObjectRule("subfoo", new ObjectJsonPath("/subobjs/[*]/"),
+                        new ObjectJsonPath("id"))
+                .withIndexingRule(IndexingRules.fromPath(
+                        new ObjectJsonPath("somedata"))
+                        .build())
+                .withIndexingRule(IndexingRules.fromPath(new ObjectJsonPath("id"))
+                        .build())
+                .build();
+        when(typeStore.listObjectTypeParsingRules(storageObjectType)).thenReturn(set(rule));
+        
+        for (final GUID g: Arrays.asList(guid1, guid2)) {
+            final StatusEventProcessingState res = worker.processEvent(
+                    new ChildStatusEvent(StatusEvent.getBuilder(
+                            storageObjectType,
+                            Instant.ofEpochMilli(10000), StatusEventType.NEW_VERSION)
+                            .withNullableAccessGroupID(g.getAccessGroupId())
+                            .withNullableObjectID(g.getAccessGroupObjectId())
+                            .withNullableVersion(g.getVersion())
+                            .withNullableisPublic(false)
+                            .build(),
+                            new StatusEventID("parentID")));
+            assertThat("incorrect state", res, is(StatusEventProcessingState.INDX));
+        }
+        
+        final ParsedObject po = new ParsedObject(
+                new ObjectMapper().writeValueAsString(
+                        ImmutableMap.of( "id", "an id", "somedata", "data")),
+                ImmutableMap.of("somedata", Arrays.asList("data"),
+                        "id", Arrays.asList("an id")));
+        
+        for (final GUID g: Arrays.asList(guid1, guid2)) {
+            verify(idxStore).indexObjects(
+                    eq(rule),
+                    any(SourceData.class),
+                    eq(Instant.ofEpochMilli(10000)),
+                    eq(null),
+                    eq(g),
+                    eq(ImmutableMap.of(new GUID(g, "subfoo", "an id"), po)),
+                    eq(false));
+        }
+        verify(ws, never()).load(eq(Arrays.asList(guid2)), any(Path.class));
+        assertThat("incorrect hits", parseCache.getStats().hitCount(), is(1L));
+        assertThat("incorrect misses", parseCache.getStats().missCount(), is(1L));
+    }
+    
+    private SourceData sourceData(final Map<String, Object> data) {
+        return SourceData.getBuilder(new UObject(data), "myobj", "somedude")
+                .withNullableMD5("md5")
+                .build();
+    }
+    
     @Test
     public void idManglingBugFailBadID() throws Exception {
         /* tests a bug where subobject ids would be mangled when primary-key-path was not
@@ -1026,6 +1131,227 @@ public class IndexerWorkerTest {
                         "GUID code:4/5/6 not found"))));
     }
     
+    @Test
+    public void batchReferenceResolution() throws Exception {
+        /* tests that the references in all the subobjects of an object are resolved and
+         * checked in single calls rather than once per subobject.
+         */
+        final Map<String, Object> data = ImmutableMap.of(
+                "subobjs", Arrays.asList(
+                        ImmutableMap.of("id", "an id", "assy_ref", "4/5/6"),
+                        ImmutableMap.of("id", "an id2", "assy_ref", "4/7/1"),
+                        ImmutableMap.of("id", "an id3", "assy_ref", "4/5/6")
+                        )
+                );
+        
+        final EventHandler ws = mock(EventHandler.class);
+        final StatusEventStorage storage = mock(StatusEventStorage.class);
+        final IndexingStorage idxStore = mock(IndexingStorage.class);
+        final TypeStorage typeStore = mock(TypeStorage.class);
+        final LineLogger logger = mock(LineLogger.class);
+        
+        final Path tempDir = Paths.get(TestCommon.getTempDir()).toAbsolutePath()
+                .resolve("IndexerWorkerTest");
+        deleteRecursively(tempDir);
+        
+        when(ws.getStorageCode()).thenReturn("code");
+        
+        final IndexerWorker worker = new IndexerWorker(
+                "myid", Arrays.asList(ws), storage, idxStore, typeStore, tempDir.toFile(), logger,
+                null, 1000);
+        
+        final GUID guid = new GUID("code:1/2/3");
+        final GUID dep1 = new GUID("code:4/5/6");
+        final GUID dep2 = new GUID("code:4/7/1");
+        final SearchObjectType dependentType = new SearchObjectType("Assembly", 1);
+        when(idxStore.checkParentGuidsExist(set(guid))).thenReturn(ImmutableMap.of(guid, false));
+        
+        when(ws.load(eq(Arrays.asList(guid)), any(Path.class)))
+                .thenAnswer(new Answer<SourceData>() {
+
+                        @Override
+                        public SourceData answer(final InvocationOnMock inv) throws Throwable {
+                            final Path path = inv.getArgument(1);
+                            new ObjectMapper().writeValue(path.toFile(), data);
+                            return SourceData.getBuilder(
+                                    new UObject(path.toFile()), "myobj", "somedude")
+                                    .build();
+                        }
+        });
+        
+        final StorageObjectType storageObjectType = StorageObjectType
+                .fromNullableVersion("code", "sometype", 3);
+        
+        final ObjectTypeParsingRules rule = ObjectTypeParsingRules.getBuilder(
+                new SearchObjectType("foo", 1), storageObjectType)
+                .toSubObjectRule("subfoo", new ObjectJsonPath("/subobjs/[*]/"),
+                        new ObjectJsonPath("id"))
+                .withIndexingRule(IndexingRules.fromPath(new ObjectJsonPath("id"))
+                        .build())
+                .withIndexingRule(IndexingRules.fromPath(new ObjectJsonPath("assy_ref"))
+                        .withTransform(Transform.guid(dependentType))
+                        .build())
+                .build();
+        when(typeStore.listObjectTypeParsingRules(storageObjectType)).thenReturn(set(rule));
+        
+        when(typeStore.getObjectTypeParsingRules(dependentType)).thenReturn(
+                ObjectTypeParsingRules.getBuilder(
+                        dependentType,
+                        new StorageObjectType("code", "KBaseAssy.Assembly"))
+                        .build());
+        
+        when(ws.resolveReferences(Arrays.asList(guid), set(dep1, dep2)))
+                .thenReturn(set(
+                        new ResolvedReference(dep1, dep1,
+                                new StorageObjectType("code", "Assembly"),
+                                Instant.ofEpochMilli(10000)),
+                        new ResolvedReference(dep2, dep2,
+                                new StorageObjectType("code", "Assembly"),
+                                Instant.ofEpochMilli(10000))));
+        
+        when(idxStore.checkParentGuidsExist(set(dep1, dep2)))
+                .thenReturn(ImmutableMap.of(dep1, true, dep2, true));
+        
+        when(idxStore.getObjectsByIds(eq(set(dep1, dep2)), any())).thenReturn(Arrays.asList(
+                ObjectData.getBuilder(dep1).withNullableType(dependentType).build(),
+                ObjectData.getBuilder(dep2).withNullableType(dependentType).build()));
+        
+        final StatusEventProcessingState res = worker.processEvent(
+                new ChildStatusEvent(StatusEvent.getBuilder(
+                        storageObjectType,
+                        Instant.ofEpochMilli(10000), StatusEventType.NEW_VERSION)
+                        .withNullableAccessGroupID(1)
+                        .withNullableObjectID("2")
+                        .withNullableVersion(3)
+                        .withNullableisPublic(false)
+                        .build(),
+                        new StatusEventID("parentID")));
+        assertThat("incorrect state", res, is(StatusEventProcessingState.INDX));
+        
+        verify(ws).resolveReferences(any(), any());
+        verify(idxStore).checkParentGuidsExist(set(dep1, dep2));
+        verify(idxStore).getObjectsByIds(any(), any());
+        
+        verify(idxStore).indexObjects(
+                eq(rule),
+                any(SourceData.class),
+                eq(Instant.ofEpochMilli(10000)),
+                eq(null),
+                eq(guid),
+                eq(ImmutableMap.of(
+                        new GUID(guid, "subfoo", "an id"), new ParsedObject(
+                                new ObjectMapper().writeValueAsString(ImmutableMap.of(
+                                        "id", "an id", "assy_ref", "4/5/6")),
+                                ImmutableMap.of("id", Arrays.asList("an id"),
+                                        "assy_ref", Arrays.asList("code:4/5/6"))),
+                        new GUID(guid, "subfoo", "an id2"), new ParsedObject(
+                                new ObjectMapper().writeValueAsString(ImmutableMap.of(
+                                        "id", "an id2", "assy_ref", "4/7/1")),
+                                ImmutableMap.of("id", Arrays.asList("an id2"),
+                                        "assy_ref", Arrays.asList("code:4/7/1"))),
+                        new GUID(guid, "subfoo", "an id3"), new ParsedObject(
+                                new ObjectMapper().writeValueAsString(ImmutableMap.of(
+                                        "id", "an id3", "assy_ref", "4/5/6")),
+                                ImmutableMap.of("id", Arrays.asList("an id3"),
+                                        "assy_ref", Arrays.asList("code:4/5/6"))))),
+                eq(false));
+    }
+    
+    @Test
+    public void referenceCacheSharedAcrossParents() throws Exception {
+        /* tests that a reference resolved for one object is not resolved again for a different
+         * object with the same reference, and that the referenced object is reindexed if it
+         * is no longer in the index.
+         */
+        final EventHandler ws = mock(EventHandler.class);
+        final StatusEventStorage storage = mock(StatusEventStorage.class);
+        final IndexingStorage idxStore = mock(IndexingStorage.class);
+        final TypeStorage typeStore = mock(TypeStorage.class);
+        final LineLogger logger = mock(LineLogger.class);
+        
+        final Path tempDir = Paths.get(TestCommon.getTempDir()).toAbsolutePath()
+                .resolve("IndexerWorkerTest");
+        deleteRecursively(tempDir);
+        
+        when(ws.getStorageCode()).thenReturn("code");
+        
+        final IndexerWorker worker = new IndexerWorker(
+                "myid", Arrays.asList(ws), storage, idxStore, typeStore, tempDir.toFile(), logger,
+                null, 1000, new IndexerLookupCache(10, 100), null);
+        
+        final GUID parent1 = new GUID("code:1/2/3");
+        final GUID parent2 = new GUID("code:7/8/9");
+        final GUID dep = new GUID("code:4/5/6");
+        final SearchObjectType dependentType = new SearchObjectType("Assembly", 1);
+        final StorageObjectType depStorageType = new StorageObjectType("code", "Assembly");
+        when(idxStore.checkParentGuidsExist(set(parent1)))
+                .thenReturn(ImmutableMap.of(parent1, false));
+        when(idxStore.checkParentGuidsExist(set(parent2)))
+                .thenReturn(ImmutableMap.of(parent2, false));
+        
+        final Map<String, Object> data = ImmutableMap.of("assy_ref", "4/5/6");
+        final Answer<SourceData> load = new Answer<SourceData>() {
+
+            @Override
+            public SourceData answer(final InvocationOnMock inv) throws Throwable {
+                final Path path = inv.getArgument(1);
+                new ObjectMapper().writeValue(path.toFile(), data);
+                return SourceData.getBuilder(new UObject(path.toFile()), "myobj", "somedude")
+                        .build();
+            }
+        };
+        when(ws.load(eq(Arrays.asList(parent1)), any(Path.class))).thenAnswer(load);
+        when(ws.load(eq(Arrays.asList(parent2)), any(Path.class))).thenAnswer(load);
+        when(ws.load(eq(Arrays.asList(parent2, dep)), any(Path.class))).thenAnswer(load);
+        
+        final StorageObjectType storageObjectType = StorageObjectType
+                .fromNullableVersion("code", "sometype", 3);
+        
+        final ObjectTypeParsingRules rule = ObjectTypeParsingRules.getBuilder(
+                new SearchObjectType("foo", 1), storageObjectType)
+                .withIndexingRule(IndexingRules.fromPath(new ObjectJsonPath("assy_ref"))
+                        .withTransform(Transform.guid(dependentType))
+                        .build())
+                .build();
+        when(typeStore.listObjectTypeParsingRules(storageObjectType)).thenReturn(set(rule));
+        when(typeStore.listObjectTypeParsingRules(depStorageType)).thenReturn(set());
+        when(typeStore.getObjectTypeParsingRules(dependentType)).thenReturn(
+                ObjectTypeParsingRules.getBuilder(dependentType, depStorageType).build());
+        
+        when(ws.resolveReferences(Arrays.asList(parent1), set(dep))).thenReturn(set(
+                new ResolvedReference(dep, dep, depStorageType, Instant.ofEpochMilli(10000))));
+        
+        // the referenced object is removed from the index between the two events
+        when(idxStore.checkParentGuidsExist(set(dep)))
+                .thenReturn(ImmutableMap.of(dep, true), ImmutableMap.of(dep, false));
+        
+        when(idxStore.getObjectsByIds(eq(set(dep)), any())).thenReturn(Arrays.asList(
+                ObjectData.getBuilder(dep).withNullableType(dependentType).build()));
+        
+        for (final GUID parent: Arrays.asList(parent1, parent2)) {
+            final StatusEventProcessingState res = worker.processEvent(
+                    new ChildStatusEvent(StatusEvent.getBuilder(
+                            storageObjectType,
+                            Instant.ofEpochMilli(10000), StatusEventType.NEW_VERSION)
+                            .withNullableAccessGroupID(parent.getAccessGroupId())
+                            .withNullableObjectID(parent.getAccessGroupObjectId())
+                            .withNullableVersion(parent.getVersion())
+                            .withNullableisPublic(false)
+                            .build(),
+                            new StatusEventID("parentID")));
+            assertThat("incorrect state", res, is(StatusEventProcessingState.INDX));
+        }
+        
+        // the second parent's reference comes from the cache
+        verify(ws).resolveReferences(any(), any());
+        verify(idxStore, times(2)).checkParentGuidsExist(set(dep));
+        // but the referenced object is reindexed via the second parent
+        verify(ws).load(eq(Arrays.asList(parent2, dep)), any(Path.class));
+        verify(ws, never()).load(eq(Arrays.asList(parent1, dep)), any(Path.class));
+        verify(idxStore).indexObjects(eq(rule), any(SourceData.class), any(), any(),
+                eq(parent2), any(), eq(false));
+    }
+    
     @Test
     public void skipEvent() throws Exception {
         /* tests the handling of events where no search specifications are available. */
@@ -1067,6 +1393,173 @@ public class IndexerWorkerTest {
                 "[Indexer] skipping NEW_VERSION, code:KBaseGenome.Genome-3, code:1/2/3");
     }
 
+    @Test
+    public void expandedChildFailuresBatched() throws Exception {
+        /* tests that failed child events are stored in one batch and that only a limited
+         * number of stack traces are stored.
+         */
+        final EventHandler ws = mock(EventHandler.class);
+        final StatusEventStorage storage = mock(StatusEventStorage.class);
+        final IndexingStorage idxStore = mock(IndexingStorage.class);
+        final TypeStorage typeStore = mock(TypeStorage.class);
+        final LineLogger logger = mock(LineLogger.class);
+        
+        final Path tempDir = Paths.get(TestCommon.getTempDir()).toAbsolutePath()
+                .resolve("IndexerWorkerTest");
+        deleteRecursively(tempDir);
+        
+        when(ws.getStorageCode()).thenReturn("code");
+        
+        final IndexerWorker worker = new IndexerWorker(
+                "myid", Arrays.asList(ws), storage, idxStore, typeStore, tempDir.toFile(), logger,
+                null, 1000);
+        
+        final StorageObjectType storageObjectType = StorageObjectType
+                .fromNullableVersion("code", "sometype", 3);
+        
+        final ObjectTypeParsingRules rule = ObjectTypeParsingRules.getBuilder(
+                new SearchObjectType("foo", 1), storageObjectType)
+                .build();
+        when(typeStore.listObjectTypeParsingRules(storageObjectType)).thenReturn(set(rule));
+        
+        final StoredStatusEvent parent = StoredStatusEvent.getBuilder(StatusEvent.getBuilder(
+                "code", Instant.ofEpochMilli(10000L), StatusEventType.NEW_ALL_VERSIONS)
+                .withNullableAccessGroupID(1)
+                .withNullableObjectID("2")
+                .build(),
+                new StatusEventID("parentID"), StatusEventProcessingState.PROC)
+                .build();
+        when(storage.setAndGetProcessingState(StatusEventProcessingState.READY, null,
+                StatusEventProcessingState.PROC, "myid"))
+                .thenReturn(Optional.of(parent));
+        
+        final List<ChildStatusEvent> children = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            children.add(new ChildStatusEvent(StatusEvent.getBuilder(
+                    storageObjectType,
+                    Instant.ofEpochMilli(10000), StatusEventType.NEW_VERSION)
+                    .withNullableAccessGroupID(1)
+                    .withNullableObjectID("2")
+                    .withNullableVersion(i)
+                    .withNullableisPublic(false)
+                    .build(),
+                    new StatusEventID("parentID")));
+        }
+        when(ws.isExpandable(parent)).thenReturn(true);
+        when(ws.expand(parent)).thenReturn(children);
+        
+        when(idxStore.checkParentGuidsExist(any())).thenAnswer(inv -> {
+            final Set<GUID> guids = inv.getArgument(0);
+            return guids.stream().collect(Collectors.toMap(g -> g, g -> false));
+        });
+        when(ws.load(ArgumentMatchers.<List<GUID>>any(), any(Path.class))).thenThrow(
+                new UnprocessableEventIndexingException(ErrorType.OTHER, "bad object"));
+        
+        assertThat("incorrect result", worker.runCycle(), is(true));
+        
+        @SuppressWarnings("unchecked")
+        final ArgumentCaptor<List<FailedChildStatusEvent>> captor =
+                ArgumentCaptor.forClass(List.class);
+        verify(storage).storeChildren(captor.capture());
+        final List<FailedChildStatusEvent> stored = captor.getValue();
+        assertThat("incorrect count", stored.size(), is(12));
+        for (int i = 0; i < 12; i++) {
+            final FailedChildStatusEvent f = stored.get(i);
+            assertThat("incorrect event", f.getEvent(), is(children.get(i)));
+            assertThat("incorrect code", f.getErrorCode(), is("OTHER"));
+            TestCommon.assertExceptionCorrect(f.getError(),
+                    new UnprocessableEventIndexingException(ErrorType.OTHER, "bad object"));
+            assertThat("incorrect omit", f.isStackTraceOmitted(), is(i >= 10));
+        }
+        verify(storage, never()).store(any(ChildStatusEvent.class), any(), any());
+        verify(storage).setProcessingState(new StatusEventID("parentID"),
+                StatusEventProcessingState.PROC, StatusEventProcessingState.FAIL);
+    }
+    
+    @Test
+    public void processUnstoredEvent() throws Exception {
+        final EventHandler ws = mock(EventHandler.class);
+        final StatusEventStorage storage = mock(StatusEventStorage.class);
+        final IndexingStorage idxStore = mock(IndexingStorage.class);
+        final TypeStorage typeStore = mock(TypeStorage.class);
+        final LineLogger logger = mock(LineLogger.class);
+        
+        final Path tempDir = Paths.get(TestCommon.getTempDir()).toAbsolutePath()
+                .resolve("IndexerWorkerTest");
+        deleteRecursively(tempDir);
+        
+        when(ws.getStorageCode()).thenReturn("code");
+        
+        final IndexerWorker worker = new IndexerWorker(
+                "myid", Arrays.asList(ws), storage, idxStore, typeStore, tempDir.toFile(), logger,
+                null, 1000);
+        
+        final StatusEventProcessingState res = worker.processUnstoredEvent(
+                StatusEvent.getBuilder("code", Instant.ofEpochMilli(10000),
+                        StatusEventType.DELETE_ALL_VERSIONS)
+                .withNullableAccessGroupID(3)
+                .withNullableObjectID("6")
+                .build());
+        assertThat("incorrect state", res, is(StatusEventProcessingState.INDX));
+        verify(idxStore).deleteAllVersions(new GUID("code:3/6"));
+        
+        // check skipped events
+        final StorageObjectType storageObjectType = StorageObjectType
+                .fromNullableVersion("code", "KBaseGenome.Genome", 3);
+        when(typeStore.listObjectTypeParsingRules(storageObjectType)).thenReturn(set());
+        
+        final StatusEventProcessingState skip = worker.processUnstoredEvent(
+                StatusEvent.getBuilder(storageObjectType, Instant.ofEpochMilli(10000),
+                        StatusEventType.NEW_VERSION)
+                .withNullableAccessGroupID(1)
+                .withNullableObjectID("2")
+                .withNullableVersion(3)
+                .withNullableisPublic(false)
+                .build());
+        assertThat("incorrect state", skip, is(StatusEventProcessingState.UNINDX));
+        
+        verifyZeroInteractions(storage);
+    }
+    
+    @Test
+    public void processUnstoredEventFail() throws Exception {
+        final EventHandler ws = mock(EventHandler.class);
+        final StatusEventStorage storage = mock(StatusEventStorage.class);
+        final IndexingStorage idxStore = mock(IndexingStorage.class);
+        final TypeStorage typeStore = mock(TypeStorage.class);
+        final LineLogger logger = mock(LineLogger.class);
+        
+        final Path tempDir = Paths.get(TestCommon.getTempDir()).toAbsolutePath()
+                .resolve("IndexerWorkerTest");
+        deleteRecursively(tempDir);
+        
+        when(ws.getStorageCode()).thenReturn("code");
+        
+        final IndexerWorker worker = new IndexerWorker(
+                "myid", Arrays.asList(ws), storage, idxStore, typeStore, tempDir.toFile(), logger,
+                null, 1000);
+        
+        try {
+            worker.processUnstoredEvent(StatusEvent.getBuilder(
+                    "code", Instant.ofEpochMilli(10000), StatusEventType.COPY_ACCESS_GROUP)
+                    .withNullableAccessGroupID(3)
+                    .build());
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new UnprocessableEventIndexingException(
+                    ErrorType.OTHER, "Unsupported event type: COPY_ACCESS_GROUP"));
+        }
+        
+        try {
+            worker.processUnstoredEvent(null);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new NullPointerException("ev"));
+        }
+        
+        verifyZeroInteractions(storage);
+    }
+
     @Test
     public void getEventFromStorageFail() throws Exception {
         
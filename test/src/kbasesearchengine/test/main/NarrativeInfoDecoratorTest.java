@@ -5,7 +5,11 @@ import static kbasesearchengine.test.events.handler.WorkspaceEventHandlerTest.ws
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
@@ -14,13 +18,17 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
 
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableMap;
 
 import kbasesearchengine.GetObjectsInput;
 import kbasesearchengine.GetObjectsOutput;
+import kbasesearchengine.MultiSearchInput;
+import kbasesearchengine.MultiSearchOutput;
 import kbasesearchengine.ObjectData;
 import kbasesearchengine.SearchObjectsInput;
 import kbasesearchengine.SearchObjectsOutput;
@@ -50,6 +58,34 @@ public class NarrativeInfoDecoratorTest {
                 new IllegalArgumentException("token cannot be null or whitespace only"));
         failConstruct(si, weh, auth, "  \n  \t",
                 new IllegalArgumentException("token cannot be null or whitespace only"));
+        
+        final Ticker t = Ticker.systemTicker();
+        failConstruct(si, weh, auth, "t", 0, 1, 1, t,
+                new IllegalArgumentException("cache lifetime must be at least one second"));
+        failConstruct(si, weh, auth, "t", 1, 0, 1, t,
+                new IllegalArgumentException("cache size must be at least one"));
+        failConstruct(si, weh, auth, "t", 1, 1, 0, t,
+                new IllegalArgumentException("maxConcurrentFetches must be at least one"));
+        failConstruct(si, weh, auth, "t", 1, 1, 1, null, new NullPointerException("ticker"));
+    }
+    
+    private void failConstruct(
+            final SearchInterface search,
+            final WorkspaceEventHandler weh,
+            final TemporaryAuth2Client cli,
+            final String token,
+            final int cacheLifeTimeInSec,
+            final int cacheSize,
+            final int maxConcurrentFetches,
+            final Ticker ticker,
+            final Exception expected) {
+        try {
+            new NarrativeInfoDecorator(search, weh, cli, token, cacheLifeTimeInSec, cacheSize,
+                    maxConcurrentFetches, ticker);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
     }
     
     private void failConstruct(
@@ -101,6 +137,32 @@ public class NarrativeInfoDecoratorTest {
                 is(Collections.emptyMap()));
     }
     
+    @Test
+    public void close() throws Exception {
+        final WorkspaceEventHandler weh = mock(WorkspaceEventHandler.class);
+        final SearchInterface search = mock(SearchInterface.class);
+        final TemporaryAuth2Client auth = mock(TemporaryAuth2Client.class);
+        
+        final NarrativeInfoDecorator nid = new NarrativeInfoDecorator(search, weh, auth, "token");
+        
+        final SearchObjectsInput dummyInput = new SearchObjectsInput();
+        
+        when(search.searchObjects(dummyInput, "user")).thenReturn(new SearchObjectsOutput()
+                .withObjects(Collections.emptyList()));
+        
+        nid.close();
+        nid.close(); // no effect
+        
+        try {
+            nid.searchObjects(dummyInput, "user");
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got,
+                    new IllegalStateException("The decorator is closed"));
+        }
+        verifyZeroInteractions(weh, auth);
+    }
+    
     @Test
     public void searchObjectsDecorateWithNullInfo() throws Exception {
         // also tests the case where a username in the workspace is, for some reason, not
@@ -167,6 +229,69 @@ public class NarrativeInfoDecoratorTest {
         compare(res.getAccessGroupNarrativeInfo(), expected);
     }
     
+    @Test
+    public void multiSearch() throws Exception {
+        // tests that workspaces and users are looked up once across all the searches
+        final WorkspaceEventHandler weh = mock(WorkspaceEventHandler.class);
+        final SearchInterface search = mock(SearchInterface.class);
+        final TemporaryAuth2Client auth = mock(TemporaryAuth2Client.class);
+        
+        final NarrativeInfoDecorator nid = new NarrativeInfoDecorator(search, weh, auth, "tok");
+        
+        final MultiSearchInput dummyInput = new MultiSearchInput();
+        final SearchTypesOutput typesOutput = new SearchTypesOutput();
+        
+        when(search.multiSearch(dummyInput, "user")).thenReturn(new MultiSearchOutput()
+                .withObjectResults(Arrays.asList(
+                        new SearchObjectsOutput()
+                                .withObjects(Arrays.asList(
+                                        new ObjectData().withGuid("WS:65/2/7"),
+                                        new ObjectData().withGuid("WS:42/7/21"))),
+                        new SearchObjectsOutput()
+                                .withObjects(Arrays.asList(
+                                        new ObjectData().withGuid("WS:42/1/1"),
+                                        new ObjectData().withGuid("FS:6/22/3"), // expect skip
+                                        new ObjectData().withGuid("WS:1/61/1")))
+                                .withAccessGroupNarrativeInfo(ImmutableMap.of(
+                                        3L, narrInfo("narr", 1L, 2L, "owner3", null))),
+                        new SearchObjectsOutput()
+                                .withObjects(Collections.emptyList())))
+                .withTypeResults(Arrays.asList(typesOutput)));
+        
+        when(weh.getWorkspaceInfo(65)).thenReturn(wsTuple(
+                65, "name1", "owner1", "2018-02-08T21:55:45Z", 0, "r", "n", "unlocked",
+                Collections.emptyMap()));
+        when(weh.getWorkspaceInfo(1)).thenReturn(wsTuple(
+                1, "name2", "owner2", "2018-02-08T21:55:57Z", 0, "r", "n", "unlocked",
+                ImmutableMap.of("narrative", "2")));
+        when(weh.getWorkspaceInfo(42)).thenReturn(wsTuple(
+                42, "name4", "owner4", "2018-02-08T21:55:50.678Z", 0, "r", "n", "unlocked",
+                ImmutableMap.of("narrative", "3", "narrative_nice_name", "mylovelynarrative")));
+        
+        when(auth.getUserDisplayNames("tok", set("owner1", "owner2", "owner4")))
+                .thenReturn(ImmutableMap.of(
+                        "owner1", "disp1",
+                        "owner2", "disp2",
+                        "owner4", "disp4"));
+        
+        final MultiSearchOutput res = nid.multiSearch(dummyInput, "user");
+        
+        compare(res.getObjectResults().get(0).getAccessGroupNarrativeInfo(), ImmutableMap.of(
+                65L, narrInfo(null, null, 1518126945000L, "owner1", "disp1"),
+                42L, narrInfo("mylovelynarrative", 3L, 1518126950678L, "owner4", "disp4")));
+        compare(res.getObjectResults().get(1).getAccessGroupNarrativeInfo(), ImmutableMap.of(
+                3L, narrInfo("narr", 1L, 2L, "owner3", null),
+                1L, narrInfo(null, null, 1518126957000L, "owner2", "disp2"),
+                42L, narrInfo("mylovelynarrative", 3L, 1518126950678L, "owner4", "disp4")));
+        compare(res.getObjectResults().get(2).getAccessGroupNarrativeInfo(),
+                Collections.emptyMap());
+        assertThat("incorrect type results", res.getTypeResults(), is(Arrays.asList(
+                typesOutput)));
+        
+        verify(weh, times(1)).getWorkspaceInfo(42);
+        verify(auth, times(1)).getUserDisplayNames(any(), any());
+    }
+    
     @Test
     public void searchObjectsDecorateWithPreexistingInfo() throws Exception {
         final WorkspaceEventHandler weh = mock(WorkspaceEventHandler.class);
@@ -258,6 +383,115 @@ public class NarrativeInfoDecoratorTest {
         }
     }
     
+    @Test
+    public void searchObjectsDecorateFailConcurrent() throws Exception {
+        final WorkspaceEventHandler weh = mock(WorkspaceEventHandler.class);
+        final SearchInterface search = mock(SearchInterface.class);
+        final TemporaryAuth2Client auth = mock(TemporaryAuth2Client.class);
+        
+        final NarrativeInfoDecorator nid = new NarrativeInfoDecorator(search, weh, auth, "tok");
+        
+        final SearchObjectsInput dummyInput = new SearchObjectsInput();
+        
+        when(search.searchObjects(dummyInput, "user")).thenReturn(new SearchObjectsOutput()
+                .withObjects(Arrays.asList(
+                        new ObjectData().withGuid("WS:65/2/7"),
+                        new ObjectData().withGuid("WS:42/7/21"))));
+        
+        when(weh.getWorkspaceInfo(65)).thenReturn(wsTuple(
+                65, "name1", "owner1", "2018-02-08T21:55:45Z", 0, "r", "n", "unlocked",
+                Collections.emptyMap()));
+        when(weh.getWorkspaceInfo(42)).thenThrow(new IOException("beer on router"));
+        
+        try {
+            nid.searchObjects(dummyInput, "user");
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got,
+                    new IOException("Failed retrieving workspace info: beer on router"));
+        }
+    }
+    
+    @Test
+    public void searchObjectsCache() throws Exception {
+        final WorkspaceEventHandler weh = mock(WorkspaceEventHandler.class);
+        final SearchInterface search = mock(SearchInterface.class);
+        final TemporaryAuth2Client auth = mock(TemporaryAuth2Client.class);
+        final Ticker ticker = mock(Ticker.class);
+        
+        final AtomicLong time = new AtomicLong();
+        when(ticker.read()).thenAnswer(inv -> time.get());
+        
+        final NarrativeInfoDecorator nid = new NarrativeInfoDecorator(
+                search, weh, auth, "tok", 10, 100, 2, ticker);
+        
+        final SearchObjectsInput input1 = new SearchObjectsInput();
+        final SearchObjectsInput input2 = new SearchObjectsInput();
+        
+        when(search.searchObjects(input1, "user")).thenReturn(new SearchObjectsOutput()
+                .withObjects(Arrays.asList(
+                        new ObjectData().withGuid("WS:65/2/7").withTimestamp(1518126945000L),
+                        new ObjectData().withGuid("WS:42/7/21"),
+                        new ObjectData().withGuid("WS:1/7/21"))));
+        // object in 42 is newer than the cached workspace info
+        when(search.searchObjects(input2, "user")).thenReturn(new SearchObjectsOutput()
+                .withObjects(Arrays.asList(
+                        new ObjectData().withGuid("WS:65/2/7").withTimestamp(1518126945000L),
+                        new ObjectData().withGuid("WS:42/7/22").withTimestamp(1518126950679L),
+                        new ObjectData().withGuid("WS:42/7/21").withTimestamp(1518126940000L),
+                        new ObjectData().withGuid("WS:1/7/21"))));
+        
+        when(weh.getWorkspaceInfo(65)).thenReturn(wsTuple(
+                65, "name1", "owner1", "2018-02-08T21:55:45Z", 0, "r", "n", "unlocked",
+                Collections.emptyMap()));
+        when(weh.getWorkspaceInfo(42)).thenReturn(wsTuple(
+                42, "name4", "owner4", "2018-02-08T21:55:50.678Z", 0, "r", "n", "unlocked",
+                ImmutableMap.of("narrative", "3", "narrative_nice_name", "mylovelynarrative")))
+                .thenReturn(wsTuple(42, "name4", "owner4", "2018-02-08T21:55:50.680Z", 0, "r",
+                        "n", "unlocked",
+                        ImmutableMap.of("narrative", "3", "narrative_nice_name", "renamed")));
+        when(weh.getWorkspaceInfo(1)).thenReturn(wsTuple(
+                1, "name2", "owner2", "2018-02-08T21:55:57Z", 0, "r", "n", "unlocked",
+                ImmutableMap.of("narrative", "2")));
+        
+        when(auth.getUserDisplayNames("tok", set("owner1", "owner2", "owner4")))
+                .thenReturn(ImmutableMap.of(
+                        "owner1", "disp1",
+                        "owner2", "disp2",
+                        "owner4", "disp4"));
+        
+        final Map<Long, Tuple5<String, Long, Long, String, String>> expected = ImmutableMap.of(
+                65L, narrInfo(null, null, 1518126945000L, "owner1", "disp1"),
+                1L, narrInfo(null, null, 1518126957000L, "owner2", "disp2"),
+                42L, narrInfo("mylovelynarrative", 3L, 1518126950678L, "owner4", "disp4"));
+        
+        compare(nid.searchObjects(input1, "user").getAccessGroupNarrativeInfo(), expected);
+        // cached
+        time.set(9000000000L);
+        compare(nid.searchObjects(input1, "user").getAccessGroupNarrativeInfo(), expected);
+        verify(weh, times(1)).getWorkspaceInfo(65);
+        verify(weh, times(1)).getWorkspaceInfo(42);
+        verify(weh, times(1)).getWorkspaceInfo(1);
+        
+        // the newer object should cause a refresh of workspace 42 only
+        compare(nid.searchObjects(input2, "user").getAccessGroupNarrativeInfo(),
+                ImmutableMap.of(
+                        65L, narrInfo(null, null, 1518126945000L, "owner1", "disp1"),
+                        1L, narrInfo(null, null, 1518126957000L, "owner2", "disp2"),
+                        42L, narrInfo("renamed", 3L, 1518126950680L, "owner4", "disp4")));
+        verify(weh, times(1)).getWorkspaceInfo(65);
+        verify(weh, times(2)).getWorkspaceInfo(42);
+        verify(weh, times(1)).getWorkspaceInfo(1);
+        
+        // entries should expire
+        time.set(10000000001L);
+        nid.searchObjects(input1, "user");
+        verify(weh, times(2)).getWorkspaceInfo(65);
+        verify(weh, times(2)).getWorkspaceInfo(1);
+        // workspace 42 was refreshed more recently
+        verify(weh, times(2)).getWorkspaceInfo(42);
+    }
+    
     @Test
     public void getObjectsSimpleTest() throws Exception {
         final WorkspaceEventHandler weh = mock(WorkspaceEventHandler.class);
@@ -340,6 +574,20 @@ public class NarrativeInfoDecoratorTest {
                 "type", dummyOutput)));
     }
     
+    @Test
+    public void getTypesVersion() throws Exception {
+        // this is just a passthrough
+        final WorkspaceEventHandler weh = mock(WorkspaceEventHandler.class);
+        final SearchInterface search = mock(SearchInterface.class);
+        final TemporaryAuth2Client auth = mock(TemporaryAuth2Client.class);
+
+        final NarrativeInfoDecorator nid = new NarrativeInfoDecorator(search, weh, auth, "tok");
+
+        when(search.getTypesVersion()).thenReturn("abc123");
+
+        assertThat("incorrect version", nid.getTypesVersion(), is("abc123"));
+    }
+    
     public static void compare(
             final Map<Long, Tuple5<String, Long, Long, String, String>> got,
             final Map<Long, Tuple5<String, Long, Long, String, String>> expected) {
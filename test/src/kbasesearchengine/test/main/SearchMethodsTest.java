@@ -2,7 +2,11 @@ package kbasesearchengine.test.main;
 
 import com.google.common.collect.ImmutableMap;
 import kbasesearchengine.AccessFilter;
+import kbasesearchengine.GetObjectsInput;
+import kbasesearchengine.GetObjectsOutput;
 import kbasesearchengine.MatchFilter;
+import kbasesearchengine.MultiSearchInput;
+import kbasesearchengine.MultiSearchOutput;
 import kbasesearchengine.Pagination;
 import kbasesearchengine.SearchObjectsInput;
 import kbasesearchengine.SearchObjectsOutput;
@@ -10,14 +14,21 @@ import kbasesearchengine.SearchTypesInput;
 import kbasesearchengine.SearchTypesOutput;
 import kbasesearchengine.SortingRule;
 import kbasesearchengine.authorization.AccessGroupProvider;
+import kbasesearchengine.authorization.AccessGroupSet;
 import kbasesearchengine.common.GUID;
 import kbasesearchengine.main.SearchInterface;
 import kbasesearchengine.main.SearchMethods;
 import kbasesearchengine.search.FoundHits;
 import kbasesearchengine.search.IndexingStorage;
+import kbasesearchengine.search.MultiSearchResult;
 import kbasesearchengine.search.ObjectData;
+import kbasesearchengine.search.ObjectDataConsumer;
+import kbasesearchengine.search.ObjectSearchQuery;
 import kbasesearchengine.search.PostProcessing;
+import kbasesearchengine.search.TypeSearchQuery;
+import kbasesearchengine.system.ObjectTypeParsingRules;
 import kbasesearchengine.system.SearchObjectType;
+import kbasesearchengine.system.StorageObjectType;
 import kbasesearchengine.system.TypeStorage;
 import kbasesearchengine.test.common.TestCommon;
 import org.junit.Test;
@@ -35,7 +46,12 @@ import static kbasesearchengine.test.common.TestCommon.set;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SearchMethodsTest {
@@ -135,6 +151,7 @@ public class SearchMethodsTest {
             final kbasesearchengine.search.MatchFilter expected)
             throws Exception {
         final AccessGroupProvider agp = mock(AccessGroupProvider.class);
+        when(agp.findAccessGroups("auser")).thenReturn(AccessGroupSet.empty());
         final IndexingStorage is = mock(IndexingStorage.class);
         final TypeStorage ts = mock(TypeStorage.class);
 
@@ -176,8 +193,255 @@ public class SearchMethodsTest {
         // don't care about the sorting rules for this test, so just check size
         assertThat("incorrect sorting rules count", res.getSortingRules().size(), is(1));
         assertThat("incorrect total", res.getTotal(), is(1L));
+        assertThat("incorrect token", res.getContinuationToken(), is((String) null));
     }
-    
+
+    @Test
+    public void exportObjects() throws Exception {
+        final AccessGroupProvider agp = mock(AccessGroupProvider.class);
+        when(agp.findAccessGroups("auser")).thenReturn(AccessGroupSet.of(Arrays.asList(1)));
+        final IndexingStorage is = mock(IndexingStorage.class);
+        final TypeStorage ts = mock(TypeStorage.class);
+
+        final SearchInterface sm = new SearchMethods(agp, is, ts, Collections.emptySet());
+
+        doAnswer(inv -> {
+            final ObjectDataConsumer c = inv.getArgument(5);
+            c.accept(ObjectData.getBuilder(new GUID("WS:1/2/3"))
+                    .withNullableObjectName("o1").build());
+            c.accept(ObjectData.getBuilder(new GUID("WS:1/3/3"))
+                    .withNullableObjectName("o2").build());
+            return null;
+        }).when(is).exportObjects(
+                eq(Arrays.asList("Genome")),
+                eq(kbasesearchengine.search.MatchFilter.getBuilder().build()),
+                eq(null), // sort
+                eq(new kbasesearchengine.search.AccessFilter().withAccessGroups(set(1))),
+                eq(PP_DEFAULT),
+                any(ObjectDataConsumer.class));
+
+        final List<kbasesearchengine.ObjectData> got = new ArrayList<>();
+        sm.exportObjects(new SearchObjectsInput()
+                .withObjectTypes(Arrays.asList("Genome"))
+                .withMatchFilter(new MatchFilter())
+                .withAccessFilter(new AccessFilter())
+                // pagination is ignored
+                .withPagination(new Pagination().withStart(1L).withCount(1L)),
+                "auser", od -> got.add(od));
+
+        assertThat("incorrect object count", got.size(), is(2));
+        assertThat("incorrect guid", got.get(0).getGuid(), is("WS:1/2/3"));
+        assertThat("incorrect name", got.get(0).getObjectName(), is("o1"));
+        assertThat("incorrect guid", got.get(1).getGuid(), is("WS:1/3/3"));
+        assertThat("incorrect name", got.get(1).getObjectName(), is("o2"));
+    }
+
+    @Test
+    public void exportObjectsIdsOnly() throws Exception {
+        final AccessGroupProvider agp = mock(AccessGroupProvider.class);
+        when(agp.findAccessGroups("auser")).thenReturn(AccessGroupSet.empty());
+        final IndexingStorage is = mock(IndexingStorage.class);
+        final TypeStorage ts = mock(TypeStorage.class);
+
+        final SearchInterface sm = new SearchMethods(agp, is, ts, Collections.emptySet());
+
+        doAnswer(inv -> {
+            final ObjectDataConsumer c = inv.getArgument(5);
+            c.accept(ObjectData.getBuilder(new GUID("WS:1/2/3")).build());
+            return null;
+        }).when(is).exportObjects(
+                eq(Collections.emptyList()),
+                eq(kbasesearchengine.search.MatchFilter.getBuilder().build()),
+                eq(null), // sort
+                eq(new kbasesearchengine.search.AccessFilter().withAccessGroups(set())),
+                any(PostProcessing.class),
+                any(ObjectDataConsumer.class));
+
+        final List<kbasesearchengine.ObjectData> got = new ArrayList<>();
+        sm.exportObjects(new SearchObjectsInput()
+                .withMatchFilter(new MatchFilter())
+                .withAccessFilter(new AccessFilter())
+                .withPostProcessing(new kbasesearchengine.PostProcessing().withIdsOnly(1L)),
+                "auser", od -> got.add(od));
+
+        assertThat("incorrect object count", got.size(), is(1));
+        assertThat("incorrect guid", got.get(0).getGuid(), is("WS:1/2/3"));
+        assertThat("incorrect props", got.get(0).getObjectProps(), is((Object) null));
+        assertThat("incorrect keys", got.get(0).getKeyProps(), is((Object) null));
+    }
+
+    @Test
+    public void searchObjectsContinuationToken() throws Exception {
+        final AccessGroupProvider agp = mock(AccessGroupProvider.class);
+        when(agp.findAccessGroups("auser")).thenReturn(AccessGroupSet.empty());
+        final IndexingStorage is = mock(IndexingStorage.class);
+        final TypeStorage ts = mock(TypeStorage.class);
+
+        final SearchInterface sm = new SearchMethods(agp, is, ts, Collections.emptySet());
+
+        final FoundHits fh = new FoundHits();
+        fh.pagination = new kbasesearchengine.search.Pagination(0, 2, "tok1");
+        fh.sortingRules = Arrays.asList(
+                kbasesearchengine.search.SortingRule.getStandardPropertyBuilder("timestamp")
+                .build());
+        fh.total = 5;
+        fh.guids = set(new GUID("WS:1/2/3"), new GUID("WS:1/3/3"));
+        fh.continuationToken = "tok2";
+
+        when(is.searchObjects(
+                Arrays.asList("Genome"),
+                kbasesearchengine.search.MatchFilter.getBuilder().build(),
+                null, // sort
+                new kbasesearchengine.search.AccessFilter().withAccessGroups(set()),
+                new kbasesearchengine.search.Pagination(null, 2, "tok1"),
+                PP_DEFAULT))
+                .thenReturn(fh);
+
+        final SearchObjectsOutput res = sm.searchObjects(new SearchObjectsInput()
+                .withObjectTypes(Arrays.asList("Genome"))
+                .withMatchFilter(new MatchFilter())
+                .withAccessFilter(new AccessFilter())
+                .withPagination(new Pagination().withCount(2L).withContinuationToken("tok1")),
+                "auser");
+
+        assertThat("incorrect pagination start", res.getPagination().getStart(), is(0L));
+        assertThat("incorrect pagination count", res.getPagination().getCount(), is(2L));
+        assertThat("incorrect pagination token", res.getPagination().getContinuationToken(),
+                is("tok1"));
+        assertThat("incorrect objects count", res.getObjects().size(), is(2));
+        assertThat("incorrect total", res.getTotal(), is(5L));
+        assertThat("incorrect token", res.getContinuationToken(), is("tok2"));
+    }
+
+    @Test
+    public void multiSearch() throws Exception {
+        final AccessGroupProvider agp = mock(AccessGroupProvider.class);
+        when(agp.findAccessGroups("auser")).thenReturn(AccessGroupSet.of(Arrays.asList(4, 6)));
+        final IndexingStorage is = mock(IndexingStorage.class);
+        final TypeStorage ts = mock(TypeStorage.class);
+
+        final SearchInterface sm = new SearchMethods(agp, is, ts, Collections.emptySet());
+
+        final FoundHits fh = new FoundHits();
+        fh.pagination = new kbasesearchengine.search.Pagination(0, 50);
+        fh.sortingRules = Arrays.asList(
+                kbasesearchengine.search.SortingRule.getStandardPropertyBuilder("timestamp")
+                .build());
+        fh.total = 1;
+        fh.guids = set(new GUID("WS:4/2/3"));
+
+        final List<ObjectSearchQuery> objectQueries = new ArrayList<>();
+        final List<TypeSearchQuery> typeQueries = new ArrayList<>();
+        doAnswer(inv -> {
+            objectQueries.addAll(inv.getArgument(0));
+            typeQueries.addAll(inv.getArgument(1));
+            return new MultiSearchResult(Arrays.asList(fh, fh), Arrays.asList(5L, 0L),
+                    Arrays.asList(ImmutableMap.of("Genome", 3)), Arrays.asList(7L));
+        }).when(is).multiSearch(any(), any());
+
+        final MultiSearchOutput res = sm.multiSearch(new MultiSearchInput()
+                .withObjectSearches(Arrays.asList(
+                        new SearchObjectsInput()
+                                .withObjectTypes(Arrays.asList("Genome"))
+                                .withMatchFilter(new MatchFilter().withFullTextInAll("foo"))
+                                .withAccessFilter(new AccessFilter()),
+                        new SearchObjectsInput()
+                                .withMatchFilter(new MatchFilter())
+                                .withAccessFilter(new AccessFilter().withWithPrivate(0L)
+                                        .withWithPublic(1L))
+                                .withPagination(new Pagination().withCount(10L))))
+                .withTypeSearches(Arrays.asList(new SearchTypesInput()
+                        .withMatchFilter(new MatchFilter().withFullTextInAll("bar"))
+                        .withAccessFilter(new AccessFilter()))),
+                "auser");
+
+        // access groups are only looked up once for all the searches
+        verify(agp).findAccessGroups("auser");
+
+        assertThat("incorrect query count", objectQueries.size(), is(2));
+        final ObjectSearchQuery q1 = objectQueries.get(0);
+        assertThat("incorrect types", q1.getObjectTypes(), is(Arrays.asList("Genome")));
+        assertThat("incorrect match filter", q1.getMatchFilter(),
+                is(kbasesearchengine.search.MatchFilter.getBuilder()
+                        .withNullableFullTextInAll("foo").build()));
+        assertThat("incorrect access filter", q1.getAccessFilter(),
+                is(new kbasesearchengine.search.AccessFilter().withAccessGroups(set(4, 6))));
+        final ObjectSearchQuery q2 = objectQueries.get(1);
+        assertThat("incorrect types", q2.getObjectTypes(), is(Collections.emptyList()));
+        assertThat("incorrect access filter", q2.getAccessFilter(),
+                is(new kbasesearchengine.search.AccessFilter().withAccessGroups(set())
+                        .withPublic(true)));
+        assertThat("incorrect pagination", q2.getPagination().get(),
+                is(new kbasesearchengine.search.Pagination(null, 10)));
+
+        assertThat("incorrect query count", typeQueries.size(), is(1));
+        assertThat("incorrect match filter", typeQueries.get(0).getMatchFilter(),
+                is(kbasesearchengine.search.MatchFilter.getBuilder()
+                        .withNullableFullTextInAll("bar").build()));
+        assertThat("incorrect access filter", typeQueries.get(0).getAccessFilter(),
+                is(new kbasesearchengine.search.AccessFilter().withAccessGroups(set(4, 6))));
+
+        assertThat("incorrect result count", res.getObjectResults().size(), is(2));
+        final SearchObjectsOutput o1 = res.getObjectResults().get(0);
+        assertThat("incorrect guid", o1.getObjects().get(0).getGuid(), is("WS:4/2/3"));
+        assertThat("incorrect total", o1.getTotal(), is(1L));
+        assertThat("incorrect time", o1.getSearchTime(), is(5L));
+        assertThat("incorrect time", res.getObjectResults().get(1).getSearchTime(), is(0L));
+        assertThat("incorrect result count", res.getTypeResults().size(), is(1));
+        final SearchTypesOutput t1 = res.getTypeResults().get(0);
+        assertThat("incorrect counts", t1.getTypeToCount(), is(ImmutableMap.of("Genome", 3L)));
+        assertThat("incorrect time", t1.getSearchTime(), is(7L));
+    }
+
+    @Test
+    public void multiSearchPublicOnly() throws Exception {
+        final AccessGroupProvider agp = mock(AccessGroupProvider.class);
+        final IndexingStorage is = mock(IndexingStorage.class);
+        final TypeStorage ts = mock(TypeStorage.class);
+
+        final SearchInterface sm = new SearchMethods(agp, is, ts, Collections.emptySet());
+
+        when(is.multiSearch(any(), any())).thenReturn(new MultiSearchResult(
+                Collections.emptyList(), Collections.emptyList(),
+                Arrays.asList(Collections.emptyMap()), Arrays.asList(0L)));
+
+        final MultiSearchOutput res = sm.multiSearch(new MultiSearchInput()
+                .withTypeSearches(Arrays.asList(new SearchTypesInput()
+                        .withMatchFilter(new MatchFilter())
+                        .withAccessFilter(new AccessFilter().withWithPrivate(0L)))),
+                "auser");
+
+        // no private data requested, so no need to look up access groups
+        verify(agp, never()).findAccessGroups(any());
+        assertThat("incorrect result count", res.getObjectResults().size(), is(0));
+        assertThat("incorrect result count", res.getTypeResults().size(), is(1));
+    }
+
+    @Test
+    public void listTypes() throws Exception {
+        final AccessGroupProvider agp = mock(AccessGroupProvider.class);
+        final IndexingStorage is = mock(IndexingStorage.class);
+        final TypeStorage ts = mock(TypeStorage.class);
+
+        final SearchInterface sm = new SearchMethods(agp, is, ts, Collections.emptySet());
+
+        when(ts.listObjectTypeParsingRules()).thenReturn(set(
+                ObjectTypeParsingRules.getBuilder(new SearchObjectType("Genome", 1),
+                        new StorageObjectType("WS", "KBaseGenomes.Genome")).build(),
+                ObjectTypeParsingRules.getBuilder(new SearchObjectType("Assembly", 1),
+                        new StorageObjectType("WS", "KBaseGenomes.Assembly")).build()));
+
+        final String version = sm.getTypesVersion();
+        assertThat("incorrect types", sm.listTypes(null).keySet(),
+                is(set("Assembly", "Genome")));
+        assertThat("incorrect types", sm.listTypes("Genome").keySet(), is(set("Genome")));
+        assertThat("incorrect types", sm.listTypes("Foo").keySet(), is(set()));
+        assertThat("incorrect version", sm.getTypesVersion(), is(version));
+
+        // the catalogue is only built once
+        verify(ts).listObjectTypeParsingRules();
+    }
+
     @Test
     public void searchTypesExcludeSubObjects() throws Exception {
         // false cases
@@ -264,6 +528,7 @@ public class SearchMethodsTest {
             final kbasesearchengine.search.MatchFilter expected)
             throws Exception {
         final AccessGroupProvider agp = mock(AccessGroupProvider.class);
+        when(agp.findAccessGroups("auser")).thenReturn(AccessGroupSet.empty());
         final IndexingStorage is = mock(IndexingStorage.class);
         final TypeStorage ts = mock(TypeStorage.class);
 
@@ -417,6 +682,7 @@ public class SearchMethodsTest {
             final String query)
             throws Exception {
         final AccessGroupProvider agp = mock(AccessGroupProvider.class);
+        when(agp.findAccessGroups("auser")).thenReturn(AccessGroupSet.empty());
         final TypeStorage ts = mock(TypeStorage.class);
         final SearchMethods sm = new SearchMethods(agp, idx, ts, Collections.emptySet());
 
@@ -656,6 +922,7 @@ public class SearchMethodsTest {
             final kbasesearchengine.search.SortingRule expected)
             throws Exception {
         final AccessGroupProvider agp = mock(AccessGroupProvider.class);
+        when(agp.findAccessGroups("auser")).thenReturn(AccessGroupSet.empty());
         final IndexingStorage is = mock(IndexingStorage.class);
         final TypeStorage ts = mock(TypeStorage.class);
 
@@ -698,6 +965,28 @@ public class SearchMethodsTest {
         compare(res.getSortingRules().get(0), input);
     }
 
+    @Test
+    public void getObjectsFiltersByAccessGroup() throws Exception {
+        final AccessGroupProvider agp = mock(AccessGroupProvider.class);
+        final IndexingStorage is = mock(IndexingStorage.class);
+        final TypeStorage ts = mock(TypeStorage.class);
+
+        final SearchInterface sm = new SearchMethods(agp, is, ts, Collections.emptySet());
+        
+        when(agp.findAccessGroups("auser")).thenReturn(
+                AccessGroupSet.of(Arrays.asList(3, 1)));
+        when(is.getObjectsByIds(set(new GUID("WS:1/2/3"), new GUID("WS:3/1/1")), PP_DEFAULT))
+                .thenReturn(Collections.emptyList());
+        
+        final GetObjectsOutput res = sm.getObjects(new GetObjectsInput()
+                .withGuids(Arrays.asList("WS:1/2/3", "WS:2/2/3", "WS:3/1/1")),
+                "auser");
+        
+        assertThat("incorrect objects", res.getObjects(), is(Collections.emptyList()));
+        verify(is).getObjectsByIds(
+                set(new GUID("WS:1/2/3"), new GUID("WS:3/1/1")), PP_DEFAULT);
+    }
+
     private void compare(final SortingRule got, final SortingRule expected) {
         assertThat("incorrect property", got.getProperty(), is(expected.getProperty()));
         assertThat("incorrect ascending", got.getAscending(),
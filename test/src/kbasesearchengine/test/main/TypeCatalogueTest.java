@@ -0,0 +1,139 @@
+package kbasesearchengine.test.main;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import kbasesearchengine.KeyDescription;
+import kbasesearchengine.TypeDescriptor;
+import kbasesearchengine.common.ObjectJsonPath;
+import kbasesearchengine.main.TypeCatalogue;
+import kbasesearchengine.system.IndexingRules;
+import kbasesearchengine.system.ObjectTypeParsingRules;
+import kbasesearchengine.system.SearchObjectType;
+import kbasesearchengine.system.StorageObjectType;
+import kbasesearchengine.test.common.TestCommon;
+
+public class TypeCatalogueTest {
+
+    private static ObjectTypeParsingRules rules(final String type, final String keyUIName)
+            throws Exception {
+        return ObjectTypeParsingRules.getBuilder(new SearchObjectType(type, 1),
+                new StorageObjectType("WS", "foo"))
+                .withIndexingRule(IndexingRules.fromPath(new ObjectJsonPath("name"))
+                        .withKeywordType("integer").withNullableUIName(keyUIName).build())
+                .withIndexingRule(IndexingRules.fromPath(new ObjectJsonPath("desc"))
+                        .withFullText().withUIHidden().build())
+                .withIndexingRule(IndexingRules.fromPath(new ObjectJsonPath("skip"))
+                        .withNotIndexed().build())
+                .build();
+    }
+
+    @Test
+    public void build() throws Exception {
+        final TypeCatalogue tc = TypeCatalogue.build(Arrays.asList(
+                rules("genome", "Name"),
+                ObjectTypeParsingRules.getBuilder(new SearchObjectType("Assembly", 2),
+                        new StorageObjectType("WS", "bar"))
+                        .withNullableUITypeName("Assembly UI")
+                        .build()));
+
+        assertThat("incorrect types", tc.getTypes().keySet(),
+                is(TestCommon.set("Assembly", "genome")));
+        // the types are listed in the order of the specifications
+        assertThat("incorrect order", new ArrayList<>(tc.getTypes().keySet()),
+                is(Arrays.asList("genome", "Assembly")));
+
+        final TypeDescriptor genome = tc.getTypes().get("genome");
+        assertThat("incorrect name", genome.getTypeName(), is("genome"));
+        assertThat("incorrect ui name", genome.getTypeUiTitle(), is("Genome"));
+        assertThat("incorrect key count", genome.getKeys().size(), is(2));
+        final KeyDescription name = genome.getKeys().get(0);
+        assertThat("incorrect key", name.getKeyName(), is("name"));
+        assertThat("incorrect key ui", name.getKeyUiTitle(), is("Name"));
+        assertThat("incorrect key type", name.getKeyValueType(), is("integer"));
+        assertThat("incorrect hidden", name.getHidden(), is(0L));
+        final KeyDescription desc = genome.getKeys().get(1);
+        assertThat("incorrect key", desc.getKeyName(), is("desc"));
+        assertThat("incorrect key type", desc.getKeyValueType(), is("string"));
+        assertThat("incorrect hidden", desc.getHidden(), is(1L));
+
+        final TypeDescriptor assembly = tc.getTypes().get("Assembly");
+        assertThat("incorrect ui name", assembly.getTypeUiTitle(), is("Assembly UI"));
+        assertThat("incorrect keys", assembly.getKeys(), is(Collections.emptyList()));
+
+        assertThat("incorrect type", tc.getType("genome").keySet(), is(TestCommon.set("genome")));
+        assertThat("incorrect type", tc.getType("genome").get("genome").getTypeUiTitle(),
+                is("Genome"));
+        assertThat("incorrect type", tc.getType("foo"), is(Collections.emptyMap()));
+    }
+
+    @Test
+    public void immutable() throws Exception {
+        final TypeCatalogue tc = TypeCatalogue.build(Arrays.asList(rules("genome", "Name")));
+        try {
+            tc.getTypes().put("foo", new TypeDescriptor());
+            fail("expected exception");
+        } catch (UnsupportedOperationException e) {
+            // test passed
+        }
+        try {
+            tc.getType("genome").put("foo", new TypeDescriptor());
+            fail("expected exception");
+        } catch (UnsupportedOperationException e) {
+            // test passed
+        }
+        try {
+            tc.getTypes().get("genome").getKeys().clear();
+            fail("expected exception");
+        } catch (UnsupportedOperationException e) {
+            // test passed
+        }
+    }
+
+    @Test
+    public void shared() throws Exception {
+        // the output is built once rather than on every call
+        final TypeCatalogue tc = TypeCatalogue.build(Arrays.asList(rules("genome", "Name")));
+        assertThat("types rebuilt", tc.getTypes(), sameInstance(tc.getTypes()));
+        assertThat("type rebuilt", tc.getType("genome"), sameInstance(tc.getType("genome")));
+        assertThat("descriptor rebuilt", tc.getType("genome").get("genome"),
+                sameInstance(tc.getTypes().get("genome")));
+    }
+
+    @Test
+    public void version() throws Exception {
+        final String v1 = TypeCatalogue.build(Arrays.asList(
+                rules("genome", "Name"), rules("Assembly", "Name"))).getVersion();
+        // order of the input doesn't matter
+        final String v2 = TypeCatalogue.build(Arrays.asList(
+                rules("Assembly", "Name"), rules("genome", "Name"))).getVersion();
+        final String v3 = TypeCatalogue.build(Arrays.asList(
+                rules("genome", "Name2"), rules("Assembly", "Name"))).getVersion();
+        final String v4 = TypeCatalogue.build(Arrays.asList(rules("genome", "Name")))
+                .getVersion();
+
+        assertThat("incorrect version length", v1.length(), is(64));
+        assertThat("incorrect version", v2, is(v1));
+        assertThat("incorrect version", v3, not(v1));
+        assertThat("incorrect version", v4, not(v1));
+    }
+
+    @Test
+    public void buildFail() throws Exception {
+        try {
+            TypeCatalogue.build(null);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new NullPointerException("rules"));
+        }
+    }
+}
@@ -5,11 +5,14 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Set;
 
 import org.junit.Test;
 
@@ -193,4 +196,62 @@ public class KeyWordParserTest {
                     got, new GUIDNotFoundException("GUID CODE:4/5/6 not found"));
         }
     }
+    
+    @Test
+    public void resolveReferences() throws Exception {
+        final GUID parent = new GUID("CODE:1/2/3");
+        final ObjectLookupProvider lookup = mock(ObjectLookupProvider.class);
+        
+        when(lookup.getTypeDescriptor(new SearchObjectType("Assembly", 1)))
+                .thenReturn(ObjectTypeParsingRules.getBuilder(
+                        new SearchObjectType("Assembly", 1),
+                        new StorageObjectType("CODE", "KBaseAssembly.Assembly"))
+                        .build());
+        
+        final Set<GUID> refs = set(new GUID("CODE:4/5/6"), new GUID("CODE:4/7/1"),
+                new GUID("CODE:8/9/10"));
+        when(lookup.resolveRefs(Arrays.asList(parent), refs)).thenReturn(refs);
+        
+        KeywordParser.resolveReferences(
+                Arrays.asList(
+                        new ObjectMapper().writeValueAsString(
+                                ImmutableMap.of("assy_ref", "4/5/6")),
+                        new ObjectMapper().writeValueAsString(
+                                ImmutableMap.of("assy_ref", "4/7/1")),
+                        new ObjectMapper().writeValueAsString(
+                                ImmutableMap.of("assy_ref", "4/5/6")),
+                        new ObjectMapper().writeValueAsString(ImmutableMap.of("id", "foo"))),
+                new ObjectMapper().writeValueAsString(ImmutableMap.of("par_ref", "8/9/10")),
+                Arrays.asList(
+                        IndexingRules.fromPath(new ObjectJsonPath("assy_ref"))
+                                .withTransform(Transform.guid(
+                                        new SearchObjectType("Assembly", 1)))
+                                .build(),
+                        IndexingRules.fromPath(new ObjectJsonPath("par_ref"))
+                                .withTransform(Transform.guid(
+                                        new SearchObjectType("Assembly", 1)))
+                                .withFromParent()
+                                .build(),
+                        IndexingRules.fromPath(new ObjectJsonPath("id")).build()),
+                lookup,
+                Arrays.asList(parent));
+        
+        verify(lookup).resolveRefs(Arrays.asList(parent), refs);
+        verify(lookup).getTypesForGuids(refs);
+    }
+    
+    @Test
+    public void resolveReferencesNoGUIDRules() throws Exception {
+        final ObjectLookupProvider lookup = mock(ObjectLookupProvider.class);
+        
+        KeywordParser.resolveReferences(
+                Arrays.asList(new ObjectMapper().writeValueAsString(
+                        ImmutableMap.of("assy_ref", "4/5/6"))),
+                null, // parent json
+                Arrays.asList(IndexingRules.fromPath(new ObjectJsonPath("assy_ref")).build()),
+                lookup,
+                Arrays.asList(new GUID("CODE:1/2/3")));
+        
+        verifyZeroInteractions(lookup);
+    }
 }
@@ -0,0 +1,223 @@
+package kbasesearchengine.test.parse;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.common.ObjectJsonPath;
+import kbasesearchengine.parse.ParseResultCache;
+import kbasesearchengine.parse.ParseResultCache.ParseResult;
+import kbasesearchengine.system.IndexingRules;
+import kbasesearchengine.system.ObjectTypeParsingRules;
+import kbasesearchengine.system.SearchObjectType;
+import kbasesearchengine.system.StorageObjectType;
+import kbasesearchengine.test.common.TestCommon;
+
+public class ParseResultCacheTest {
+
+    private static ObjectTypeParsingRules rules(
+            final String searchType,
+            final int version,
+            final String storageType)
+            throws Exception {
+        return ObjectTypeParsingRules.getBuilder(
+                new SearchObjectType(searchType, version),
+                new StorageObjectType("WS", storageType))
+                .withIndexingRule(IndexingRules.fromPath(new ObjectJsonPath("foo")).build())
+                .build();
+    }
+
+    @Test
+    public void putAndGet() throws Exception {
+        final ParseResultCache cache = new ParseResultCache(1000);
+        final ObjectTypeParsingRules rules = rules("Genome", 1, "KBaseGenomes.Genome");
+
+        cache.put("md5", rules, "{\"parent\":1}", ImmutableMap.of(
+                new GUID("WS:1/2/3"), "{\"a\":1}"));
+
+        final Optional<ParseResult> res = cache.get("md5", rules);
+        assertThat("incorrect parent json", res.get().getParentJson(),
+                is(Optional.of("{\"parent\":1}")));
+        assertThat("incorrect objects", res.get().getJson(new GUID("WS:1/2/3")),
+                is(ImmutableMap.of(new GUID("WS:1/2/3"), "{\"a\":1}")));
+        assertThat("incorrect result", cache.get("md6", rules), is(Optional.absent()));
+
+        assertThat("incorrect hits", cache.getStats().hitCount(), is(1L));
+        assertThat("incorrect misses", cache.getStats().missCount(), is(1L));
+    }
+
+    @Test
+    public void noParentJson() throws Exception {
+        final ParseResultCache cache = new ParseResultCache(1000);
+        final ObjectTypeParsingRules rules = rules("Genome", 1, "KBaseGenomes.Genome");
+
+        cache.put("md5", rules, null, Collections.emptyMap());
+
+        final ParseResult res = cache.get("md5", rules).get();
+        assertThat("incorrect parent json", res.getParentJson(), is(Optional.absent()));
+        assertThat("incorrect objects", res.getJson(new GUID("WS:1/2/3")),
+                is(Collections.emptyMap()));
+    }
+
+    @Test
+    public void rebaseGUIDs() throws Exception {
+        final ParseResultCache cache = new ParseResultCache(1000);
+        final ObjectTypeParsingRules rules = rules("Contig", 1, "KBaseGenomes.ContigSet");
+
+        cache.put("md5", rules, "{}", ImmutableMap.of(
+                new GUID("WS:1/2/3:contig/c1"), "{\"a\":1}",
+                new GUID("WS:1/2/3:contig/c2"), "{\"a\":2}"));
+
+        final Map<GUID, String> res = cache.get("md5", rules).get()
+                .getJson(new GUID("WS:4/5/6"));
+        assertThat("incorrect objects", res, is(ImmutableMap.of(
+                new GUID("WS:4/5/6:contig/c1"), "{\"a\":1}",
+                new GUID("WS:4/5/6:contig/c2"), "{\"a\":2}")));
+    }
+
+    @Test
+    public void keySeparation() throws Exception {
+        final ParseResultCache cache = new ParseResultCache(1000);
+        final GUID g = new GUID("WS:1/2/3");
+
+        cache.put("md5", rules("Genome", 1, "KBaseGenomes.Genome"), "{}",
+                ImmutableMap.of(g, "\"v1\""));
+        cache.put("md5", rules("Genome", 2, "KBaseGenomes.Genome"), "{}",
+                ImmutableMap.of(g, "\"v2\""));
+        cache.put("md5", rules("Genome", 1, "KBaseGenomes.Genome2"), "{}",
+                ImmutableMap.of(g, "\"st\""));
+        cache.put("md5", rules("Genome2", 1, "KBaseGenomes.Genome"), "{}",
+                ImmutableMap.of(g, "\"g2\""));
+
+        assertParsed(cache, "md5", rules("Genome", 1, "KBaseGenomes.Genome"), "\"v1\"");
+        assertParsed(cache, "md5", rules("Genome", 2, "KBaseGenomes.Genome"), "\"v2\"");
+        assertParsed(cache, "md5", rules("Genome", 1, "KBaseGenomes.Genome2"), "\"st\"");
+        assertParsed(cache, "md5", rules("Genome2", 1, "KBaseGenomes.Genome"), "\"g2\"");
+        assertThat("incorrect result",
+                cache.get("md5", rules("Genome", 3, "KBaseGenomes.Genome")),
+                is(Optional.absent()));
+    }
+
+    private void assertParsed(
+            final ParseResultCache cache,
+            final String md5,
+            final ObjectTypeParsingRules rules,
+            final String json)
+            throws Exception {
+        final GUID g = new GUID("WS:1/2/3");
+        assertThat("incorrect objects", cache.get(md5, rules).get().getJson(g),
+                is(ImmutableMap.of(g, json)));
+    }
+
+    @Test
+    public void weighsSubObjectIDs() throws Exception {
+        // results are weighted by the length of the JSON and subobject IDs, plus one
+        final ParseResultCache cache = new ParseResultCache(10);
+        final ObjectTypeParsingRules rules = rules("Contig", 1, "KBaseGenomes.ContigSet");
+
+        cache.put("md5-1", rules, null, ImmutableMap.of(
+                new GUID("WS:1/2/3:contig/c1"), "{}")); // 5
+        cache.put("md5-2", rules, "{}", ImmutableMap.of(
+                new GUID("WS:1/2/3:contig/c1"), "{}")); // 7
+
+        assertThat("incorrect result", cache.get("md5-1", rules), is(Optional.absent()));
+        assertThat("incorrect result", cache.get("md5-2", rules).isPresent(), is(true));
+    }
+
+    @Test
+    public void expiresOnSize() throws Exception {
+        // results are weighted by the length of the JSON, plus one
+        final ParseResultCache cache = new ParseResultCache(19);
+        final ObjectTypeParsingRules rules = rules("Genome", 1, "KBaseGenomes.Genome");
+        final GUID g = new GUID("WS:1/2/3");
+
+        cache.put("md5-1", rules, null, ImmutableMap.of(g, "\"aaaaaa\"")); // 9
+        cache.put("md5-2", rules, null, ImmutableMap.of(g, "\"bbbbbb\"")); // 9
+        assertThat("incorrect result", cache.get("md5-1", rules).isPresent(), is(true));
+
+        cache.put("md5-3", rules, null, ImmutableMap.of(g, "\"cc\"")); // 5
+
+        // the least recently used result should be evicted
+        assertThat("incorrect result", cache.get("md5-2", rules), is(Optional.absent()));
+        assertThat("incorrect result", cache.get("md5-1", rules).isPresent(), is(true));
+        assertThat("incorrect result", cache.get("md5-3", rules).isPresent(), is(true));
+        assertThat("incorrect evictions", cache.getStats().evictionCount(), is(1L));
+    }
+
+    @Test
+    public void constructFail() throws Exception {
+        for (final long size: Arrays.asList(0L, -1L)) {
+            try {
+                new ParseResultCache(size);
+                fail("expected exception");
+            } catch (Exception got) {
+                TestCommon.assertExceptionCorrect(got,
+                        new IllegalArgumentException("cache size must be at least one"));
+            }
+        }
+    }
+
+    @Test
+    public void getAndPutFail() throws Exception {
+        final ParseResultCache cache = new ParseResultCache(1000);
+        final ObjectTypeParsingRules r = rules("Genome", 1, "KBaseGenomes.Genome");
+        final Map<GUID, String> objs = Collections.emptyMap();
+
+        final List<String> badMD5s = Arrays.asList(null, "   \t  ");
+        for (final String md5: badMD5s) {
+            final Exception e = new IllegalArgumentException(
+                    "md5 cannot be null or whitespace only");
+            failGet(cache, md5, r, e);
+            failPut(cache, md5, r, objs, e);
+        }
+        failGet(cache, "md5", null, new NullPointerException("rules"));
+        failPut(cache, "md5", null, objs, new NullPointerException("rules"));
+        failPut(cache, "md5", r, null, new NullPointerException("guidToJson"));
+
+        try {
+            cache.put("md5", r, "{}", objs);
+            cache.get("md5", r).get().getJson(null);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new NullPointerException("guid"));
+        }
+    }
+
+    private void failGet(
+            final ParseResultCache cache,
+            final String md5,
+            final ObjectTypeParsingRules rules,
+            final Exception expected) {
+        try {
+            cache.get(md5, rules);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+
+    private void failPut(
+            final ParseResultCache cache,
+            final String md5,
+            final ObjectTypeParsingRules rules,
+            final Map<GUID, String> objs,
+            final Exception expected) {
+        try {
+            cache.put(md5, rules, "{}", objs);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package kbasesearchengine.test.performance;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.events.handler.SourceData;
+import kbasesearchengine.parse.ParsedObject;
+import kbasesearchengine.search.AccessFilter;
+import kbasesearchengine.search.FoundHits;
+import kbasesearchengine.search.IndexingStorage;
+import kbasesearchengine.search.MatchFilter;
+import kbasesearchengine.search.MultiSearchResult;
+import kbasesearchengine.search.ObjectData;
+import kbasesearchengine.search.ObjectDataConsumer;
+import kbasesearchengine.search.ObjectSearchQuery;
+import kbasesearchengine.search.Pagination;
+import kbasesearchengine.search.PostProcessing;
+import kbasesearchengine.search.SortingRule;
+import kbasesearchengine.search.TypeSearchQuery;
+import kbasesearchengine.system.ObjectTypeParsingRules;
+
+/** A local stand-in for the indexing storage system for benchmarking the indexer worker
+ * without an ElasticSearch instance.
+ *
+ * Indexed objects are serialized to JSON documents, as they would be for a bulk upload, and then
+ * discarded. Only the parent GUIDs are retained so that the worker can check whether an object
+ * has already been indexed. Lookups of indexed objects always return nothing, and the sharing
+ * and search methods are unsupported.
+ */
+public class BenchmarkIndexingStorage implements IndexingStorage {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Set<GUID> parents = new HashSet<>();
+    private long documents = 0;
+    private long documentBytes = 0;
+    private long indexNanos = 0;
+
+    /** Get the number of documents indexed, including subobject documents.
+     * @return the number of documents.
+     */
+    public synchronized long getDocumentCount() {
+        return documents;
+    }
+
+    /** Get the total size of the serialized documents.
+     * @return the size in bytes.
+     */
+    public synchronized long getDocumentBytes() {
+        return documentBytes;
+    }
+
+    /** Get the total time spent indexing objects.
+     * @return the time in nanoseconds.
+     */
+    public synchronized long getIndexNanos() {
+        return indexNanos;
+    }
+
+    @Override
+    public synchronized void dropData() {
+        parents.clear();
+        documents = 0;
+        documentBytes = 0;
+        indexNanos = 0;
+    }
+
+    @Override
+    public void indexObject(
+            final ObjectTypeParsingRules rule,
+            final SourceData source,
+            final Instant timestamp,
+            final String parentJsonValue,
+            final GUID guid,
+            final ParsedObject obj,
+            final boolean isPublic)
+            throws IOException {
+        indexObjects(rule, source, timestamp, parentJsonValue, guid,
+                Collections.singletonMap(guid, obj), isPublic);
+    }
+
+    @Override
+    public synchronized void indexObjects(
+            final ObjectTypeParsingRules rule,
+            final SourceData source,
+            final Instant timestamp,
+            final String parentJsonValue,
+            final GUID pguid,
+            final Map<GUID, ParsedObject> idToObj,
+            final boolean isPublic)
+            throws IOException {
+        final long start = System.nanoTime();
+        final GUID parent = new GUID(pguid, null, null);
+        for (final GUID guid: idToObj.keySet()) {
+            final ParsedObject obj = idToObj.get(guid);
+            final Map<String, Object> doc = new LinkedHashMap<>();
+            doc.put("guid", guid.toString());
+            doc.put("pguid", parent.toString());
+            doc.put("otype", rule.getGlobalObjectType().getType());
+            doc.put("otypever", rule.getGlobalObjectType().getVersion());
+            doc.put("oname", source.getName());
+            doc.put("creator", source.getCreator());
+            doc.put("timestamp", timestamp.toEpochMilli());
+            doc.put("public", isPublic);
+            doc.put("keywords", obj.getKeywords());
+            doc.put("ojson", obj.getJson());
+            doc.put("pjson", parentJsonValue);
+            documentBytes += mapper.writeValueAsBytes(doc).length;
+            documents++;
+        }
+        parents.add(parent);
+        indexNanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public synchronized Map<GUID, Boolean> checkParentGuidsExist(final Set<GUID> parentGuids) {
+        final Map<GUID, Boolean> ret = new HashMap<>();
+        for (final GUID guid: parentGuids) {
+            ret.put(guid, parents.contains(new GUID(guid, null, null)));
+        }
+        return ret;
+    }
+
+    @Override
+    public void flushIndexing(final ObjectTypeParsingRules objectType) {
+        // nothing is buffered
+    }
+
+    @Override
+    public List<ObjectData> getObjectsByIds(final Set<GUID> guids) throws IOException {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<ObjectData> getObjectsByIds(
+            final Set<GUID> guids,
+            final PostProcessing postProcessing)
+            throws IOException {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void shareObjects(
+            final Set<GUID> guids,
+            final int accessGroupId,
+            final boolean isPublicGroup) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unshareObjects(final Set<GUID> guids, final int accessGroupId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void publishObjects(final Set<GUID> guids) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unpublishObjects(final Set<GUID> guids) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void publishObjectsExternally(final Set<GUID> guids, final int accessGroupId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unpublishObjectsExternally(final Set<GUID> guids, final int accessGroupId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, Integer> searchTypes(
+            final MatchFilter matchFilter,
+            final AccessFilter accessFilter)
+            throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FoundHits searchIds(
+            final List<String> objectType,
+            final MatchFilter matchFilter,
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final Pagination pagination)
+            throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FoundHits searchObjects(
+            final List<String> objectType,
+            final MatchFilter matchFilter,
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final Pagination pagination,
+            final PostProcessing postProcessing)
+            throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MultiSearchResult multiSearch(
+            final List<ObjectSearchQuery> objectSearches,
+            final List<TypeSearchQuery> typeSearches)
+            throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void exportObjects(
+            final List<String> objectTypes,
+            final MatchFilter matchFilter,
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final PostProcessing postProcessing,
+            final ObjectDataConsumer consumer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int setNameOnAllObjectVersions(final GUID object, final String newName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteAllVersions(final GUID guid) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void undeleteAllVersions(final GUID guid) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void publishAllVersions(final GUID guid) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unpublishAllVersions(final GUID guid) {
+        throw new UnsupportedOperationException();
+    }
+}
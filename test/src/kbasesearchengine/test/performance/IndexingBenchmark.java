@@ -0,0 +1,632 @@
+package kbasesearchengine.test.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.common.FileUtil;
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.events.ChildStatusEvent;
+import kbasesearchengine.events.StatusEvent;
+import kbasesearchengine.events.StatusEventProcessingState;
+import kbasesearchengine.events.StatusEventType;
+import kbasesearchengine.events.StoredStatusEvent;
+import kbasesearchengine.events.exceptions.IndexingException;
+import kbasesearchengine.events.exceptions.RetriableIndexingException;
+import kbasesearchengine.events.handler.EventHandler;
+import kbasesearchengine.events.handler.FileEventHandler;
+import kbasesearchengine.events.handler.ResolvedReference;
+import kbasesearchengine.events.handler.SourceData;
+import kbasesearchengine.events.storage.MemoryStatusEventStorage;
+import kbasesearchengine.main.IndexerWorker;
+import kbasesearchengine.main.LineLogger;
+import kbasesearchengine.system.FileLister;
+import kbasesearchengine.system.ObjectTypeParsingRules;
+import kbasesearchengine.system.ObjectTypeParsingRulesFileParser;
+import kbasesearchengine.system.StorageObjectType;
+import kbasesearchengine.system.TypeFileStorage;
+import kbasesearchengine.system.TypeStorage;
+import kbasesearchengine.system.YAMLTypeMappingParser;
+import kbasesearchengine.tools.Utils;
+
+/** An end to end indexing throughput benchmark.
+ *
+ * The benchmark generates synthetic objects for each storage type known to a
+ * {@link TypeStorage} with a {@link SyntheticObjectGenerator}, writes them to disk in the
+ * {@link FileEventHandler} layout, and stores a new version event for each object in a
+ * {@link MemoryStatusEventStorage}. An {@link IndexerWorker} then processes the events one
+ * cycle at a time into a {@link BenchmarkIndexingStorage}, so the results measure the worker
+ * itself rather than MongoDB, ElasticSearch, or a data source.
+ *
+ * The time for each cycle is split into the load stage (reading the object from disk), the
+ * index stage (building and serializing the search documents), and the parse stage, which is
+ * everything else (parsing, keyword extraction, and the worker's own overhead). Latency
+ * percentiles are reported for each stage along with the overall object and byte throughput.
+ *
+ * The first cycles are treated as warmup and are not measured. Objects are generated from a
+ * seed, so two runs with the same configuration process identical data.
+ */
+public class IndexingBenchmark {
+
+    private static final String WORKER_ID = "benchmark";
+    private static final String CREATOR = "benchmark";
+    private static final Instant START_TIME = Instant.parse("2018-01-01T00:00:00Z");
+
+    private final TypeStorage typeStorage;
+    private final Path workDir;
+    private final List<String> types;
+    private final int objectsPerType;
+    private final int warmupPerType;
+    private final int subObjects;
+    private final int listSize;
+    private final int textWords;
+    private final long seed;
+
+    private IndexingBenchmark(
+            final TypeStorage typeStorage,
+            final Path workDir,
+            final List<String> types,
+            final int objectsPerType,
+            final int warmupPerType,
+            final int subObjects,
+            final int listSize,
+            final int textWords,
+            final long seed) {
+        this.typeStorage = typeStorage;
+        this.workDir = workDir;
+        this.types = types;
+        this.objectsPerType = objectsPerType;
+        this.warmupPerType = warmupPerType;
+        this.subObjects = subObjects;
+        this.listSize = listSize;
+        this.textWords = textWords;
+        this.seed = seed;
+    }
+
+    /** Run the benchmark. Any data from a previous run in the working directory is deleted.
+     * @return the benchmark results.
+     * @throws IOException if an IO error occurs writing the synthetic objects.
+     * @throws IndexingException if the worker encounters a fatal error.
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    public Result run() throws IOException, IndexingException, InterruptedException {
+        final File dataDir = FileUtil.getOrCreateCleanSubDir(workDir.toFile(), "data");
+        final File tempDir = FileUtil.getOrCreateCleanSubDir(workDir.toFile(), "temp");
+        final Map<StorageObjectType, Set<ObjectTypeParsingRules>> rules = getRules();
+        final SyntheticObjectGenerator gen = new SyntheticObjectGenerator(
+                subObjects, listSize, textWords, seed);
+        final MemoryStatusEventStorage eventStorage = new MemoryStatusEventStorage();
+        final Map<GUID, Long> sizes = new HashMap<>();
+        final ObjectMapper mapper = new ObjectMapper();
+        // interleave the types so the warmup covers all of them
+        long eventCount = 0;
+        for (int obj = 1; obj <= warmupPerType + objectsPerType; obj++) {
+            int accessGroup = 1;
+            for (final StorageObjectType type: rules.keySet()) {
+                final Instant time = START_TIME.plusMillis(eventCount++);
+                final Map<String, Object> contents = new LinkedHashMap<>();
+                contents.put("name", type.getType() + "_" + obj);
+                contents.put("creator", CREATOR);
+                contents.put("type", type.getType());
+                contents.put("timestamp", time.toString());
+                contents.put("data", gen.generate(rules.get(type)));
+                final File dir = FileUtil.getOrCreateSubDir(FileUtil.getOrCreateSubDir(
+                        FileUtil.getOrCreateSubDir(dataDir, type.getStorageCode()),
+                        accessGroup + ""), obj + "");
+                final File file = new File(dir, "1.json");
+                mapper.writeValue(file, contents);
+                sizes.put(new GUID(type.getStorageCode(), accessGroup, obj + "", 1, null, null),
+                        file.length());
+                eventStorage.store(StatusEvent.getBuilder(type, time, StatusEventType.NEW_VERSION)
+                        .withNullableAccessGroupID(accessGroup)
+                        .withNullableObjectID(obj + "")
+                        .withNullableVersion(1)
+                        .withNullableisPublic(false)
+                        .build(),
+                        StatusEventProcessingState.READY, null, WORKER_ID);
+                accessGroup++;
+            }
+        }
+        final List<TimingEventHandler> handlers = new ArrayList<>();
+        for (final String code: dataDir.list()) {
+            handlers.add(new TimingEventHandler(
+                    new FileEventHandler(code, dataDir.toPath().resolve(code)), sizes));
+        }
+        final BenchmarkIndexingStorage indexStorage = new BenchmarkIndexingStorage();
+        final BenchmarkLogger logger = new BenchmarkLogger();
+        final IndexerWorker worker = new IndexerWorker(WORKER_ID,
+                new LinkedList<>(handlers), eventStorage, indexStorage, typeStorage, tempDir,
+                logger, Collections.emptySet(),
+                // the subobject count is controlled by the benchmark configuration
+                Integer.MAX_VALUE);
+        final Result res = new Result(rules.keySet());
+        final long warmupCycles = (long) warmupPerType * rules.size();
+        long cycle = 0;
+        long measureStart = System.nanoTime();
+        long measureEnd = measureStart;
+        while (true) {
+            final long load = TimingEventHandler.getTotal(handlers, h -> h.loadNanos);
+            final long bytes = TimingEventHandler.getTotal(handlers, h -> h.loadBytes);
+            final long index = indexStorage.getIndexNanos();
+            final long start = System.nanoTime();
+            if (!worker.runCycle()) {
+                break;
+            }
+            final long end = System.nanoTime();
+            cycle++;
+            if (cycle == warmupCycles) {
+                measureStart = end;
+            } else if (cycle > warmupCycles) {
+                final long cycleLoad = TimingEventHandler.getTotal(handlers, h -> h.loadNanos)
+                        - load;
+                final long cycleIndex = indexStorage.getIndexNanos() - index;
+                res.load.record(cycleLoad);
+                res.index.record(cycleIndex);
+                res.parse.record(Math.max(0, end - start - cycleLoad - cycleIndex));
+                res.total.record(end - start);
+                res.bytes += TimingEventHandler.getTotal(handlers, h -> h.loadBytes) - bytes;
+                res.objects++;
+                measureEnd = end;
+            }
+        }
+        worker.stop(0);
+        res.nanos = measureEnd - measureStart;
+        res.documents = indexStorage.getDocumentCount();
+        res.documentBytes = indexStorage.getDocumentBytes();
+        res.failed = eventStorage.get(StatusEventProcessingState.FAIL, -1).size();
+        res.errors.addAll(logger.errors);
+        return res;
+    }
+
+    private Map<StorageObjectType, Set<ObjectTypeParsingRules>> getRules() {
+        // sort for a stable order across runs
+        final Map<String, StorageObjectType> sorted = new TreeMap<>();
+        for (final ObjectTypeParsingRules rule: typeStorage.listObjectTypeParsingRules()) {
+            final StorageObjectType sot = rule.getStorageObjectType();
+            if (types.isEmpty() || types.contains(sot.getType())) {
+                sorted.put(sot.getStorageCode() + ":" + sot.getType(),
+                        new StorageObjectType(sot.getStorageCode(), sot.getType()));
+            }
+        }
+        if (sorted.isEmpty()) {
+            throw new IllegalArgumentException("No parsing rules for the requested types");
+        }
+        final Map<StorageObjectType, Set<ObjectTypeParsingRules>> ret = new LinkedHashMap<>();
+        for (final StorageObjectType sot: sorted.values()) {
+            ret.put(sot, typeStorage.listObjectTypeParsingRules(sot));
+        }
+        return ret;
+    }
+
+    /** The results of a benchmark run. */
+    public static class Result {
+
+        private final List<String> types = new LinkedList<>();
+        private final LatencyRecorder load = new LatencyRecorder();
+        private final LatencyRecorder parse = new LatencyRecorder();
+        private final LatencyRecorder index = new LatencyRecorder();
+        private final LatencyRecorder total = new LatencyRecorder();
+        private final List<String> errors = new LinkedList<>();
+        private long objects = 0;
+        private long bytes = 0;
+        private long nanos = 0;
+        private long documents = 0;
+        private long documentBytes = 0;
+        private long failed = 0;
+
+        private Result(final Set<StorageObjectType> types) {
+            types.stream().forEach(t -> this.types.add(t.getStorageCode() + ":" + t.getType()));
+        }
+
+        /** Get the number of objects processed after the warmup.
+         * @return the number of objects.
+         */
+        public long getObjects() {
+            return objects;
+        }
+
+        /** Get the number of events, including warmup events, that failed to process.
+         * @return the number of failed events.
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /** Get the error messages logged by the worker, if any.
+         * @return the error messages.
+         */
+        public List<String> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+
+        /** Get the number of search documents created, including during the warmup.
+         * @return the number of documents.
+         */
+        public long getDocuments() {
+            return documents;
+        }
+
+        /** Get the latencies for a benchmark stage.
+         * @param stage the stage, one of load, parse, index, or total.
+         * @return the latencies.
+         */
+        public LatencyRecorder getStage(final String stage) {
+            final LatencyRecorder ret = ImmutableMap.of(
+                    "load", load, "parse", parse, "index", index, "total", total).get(stage);
+            if (ret == null) {
+                throw new IllegalArgumentException("No such stage: " + stage);
+            }
+            return ret;
+        }
+
+        /** Summarize the results as a map suitable for serializing to JSON.
+         * @return the summary.
+         */
+        public Map<String, Object> toMap() {
+            final double seconds = nanos / 1_000_000_000.0;
+            final Map<String, Object> ret = new LinkedHashMap<>();
+            ret.put("types", types);
+            ret.put("objects", objects);
+            ret.put("failed", failed);
+            ret.put("seconds", seconds);
+            ret.put("objects_per_sec", seconds == 0 ? 0.0 : objects / seconds);
+            ret.put("bytes", bytes);
+            ret.put("bytes_per_sec", seconds == 0 ? 0.0 : bytes / seconds);
+            ret.put("documents", documents);
+            ret.put("document_bytes", documentBytes);
+            final Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("load", load.toMap());
+            latency.put("parse", parse.toMap());
+            latency.put("index", index.toMap());
+            latency.put("total", total.toMap());
+            ret.put("latency_ms", latency);
+            return ret;
+        }
+    }
+
+    /** Get a builder for an {@link IndexingBenchmark}.
+     * @param typeStorage the source of the parsing rules for the types to benchmark.
+     * @param workDir the directory in which to store synthetic objects and temporary files.
+     * @return a new builder.
+     */
+    public static Builder getBuilder(final TypeStorage typeStorage, final Path workDir) {
+        return new Builder(typeStorage, workDir);
+    }
+
+    /** A builder for an {@link IndexingBenchmark}. */
+    public static class Builder {
+
+        private final TypeStorage typeStorage;
+        private final Path workDir;
+        private List<String> types = Collections.emptyList();
+        private int objectsPerType = 100;
+        private int warmupPerType = 10;
+        private int subObjects = 100;
+        private int listSize = 3;
+        private int textWords = 10;
+        private long seed = 1;
+
+        private Builder(final TypeStorage typeStorage, final Path workDir) {
+            Utils.nonNull(typeStorage, "typeStorage");
+            Utils.nonNull(workDir, "workDir");
+            this.typeStorage = typeStorage;
+            this.workDir = workDir;
+        }
+
+        /** Restrict the benchmark to a set of storage object types, e.g. KBaseGenomes.Genome.
+         * By default all storage object types with parsing rules are benchmarked.
+         * @param types the types to benchmark, or null or an empty list for all types.
+         * @return this builder.
+         */
+        public Builder withNullableTypes(final List<String> types) {
+            this.types = types == null ? Collections.emptyList() : new ArrayList<>(types);
+            return this;
+        }
+
+        /** Set the number of objects to measure per type. The default is 100.
+         * @param objectsPerType the number of objects.
+         * @return this builder.
+         */
+        public Builder withObjectsPerType(final int objectsPerType) {
+            if (objectsPerType < 1) {
+                throw new IllegalArgumentException("objectsPerType must be at least 1");
+            }
+            this.objectsPerType = objectsPerType;
+            return this;
+        }
+
+        /** Set the number of unmeasured warmup objects per type. The default is 10.
+         * @param warmupPerType the number of warmup objects.
+         * @return this builder.
+         */
+        public Builder withWarmupPerType(final int warmupPerType) {
+            if (warmupPerType < 0) {
+                throw new IllegalArgumentException("warmupPerType cannot be negative");
+            }
+            this.warmupPerType = warmupPerType;
+            return this;
+        }
+
+        /** Set the number of subobjects generated for each subobject path. The default is 100.
+         * Note that nested subobject paths multiply the count, e.g. the FBA model protein
+         * subunits.
+         * @param subObjects the number of subobjects.
+         * @return this builder.
+         */
+        public Builder withSubObjects(final int subObjects) {
+            if (subObjects < 0) {
+                throw new IllegalArgumentException("subObjects cannot be negative");
+            }
+            this.subObjects = subObjects;
+            return this;
+        }
+
+        /** Set the size of other generated lists and mappings. The default is 3.
+         * @param listSize the list size.
+         * @return this builder.
+         */
+        public Builder withListSize(final int listSize) {
+            if (listSize < 1) {
+                throw new IllegalArgumentException("listSize must be at least 1");
+            }
+            this.listSize = listSize;
+            return this;
+        }
+
+        /** Set the number of words in generated full text fields, which controls the object
+         * size. The default is 10.
+         * @param textWords the number of words.
+         * @return this builder.
+         */
+        public Builder withTextWords(final int textWords) {
+            if (textWords < 1) {
+                throw new IllegalArgumentException("textWords must be at least 1");
+            }
+            this.textWords = textWords;
+            return this;
+        }
+
+        /** Set the seed for the object generator. The default is 1.
+         * @param seed the seed.
+         * @return this builder.
+         */
+        public Builder withSeed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /** Build the benchmark.
+         * @return the benchmark.
+         */
+        public IndexingBenchmark build() {
+            return new IndexingBenchmark(typeStorage, workDir, types, objectsPerType,
+                    warmupPerType, subObjects, listSize, textWords, seed);
+        }
+    }
+
+    /* Times loads and records the size of the loaded object files. Only the load methods are
+     * used by the worker when processing new version events. Metadata loads are not timed.
+     */
+    private static class TimingEventHandler implements EventHandler {
+
+        private final EventHandler handler;
+        private final Map<GUID, Long> sizes;
+        private long loadNanos = 0;
+        private long loadBytes = 0;
+
+        private TimingEventHandler(final EventHandler handler, final Map<GUID, Long> sizes) {
+            this.handler = handler;
+            this.sizes = sizes;
+        }
+
+        private static long getTotal(
+                final List<TimingEventHandler> handlers,
+                final ToLongFunction<TimingEventHandler> getter) {
+            return handlers.stream().mapToLong(getter).sum();
+        }
+
+        @Override
+        public String getStorageCode() {
+            return handler.getStorageCode();
+        }
+
+        @Override
+        public Iterable<ChildStatusEvent> expand(final StoredStatusEvent event)
+                throws IndexingException, RetriableIndexingException {
+            return handler.expand(event);
+        }
+
+        @Override
+        public SourceData load(final GUID guid, final Path file)
+                throws IndexingException, RetriableIndexingException {
+            return load(Collections.singletonList(guid), file);
+        }
+
+        @Override
+        public SourceData load(final List<GUID> guids, final Path file)
+                throws IndexingException, RetriableIndexingException {
+            final long start = System.nanoTime();
+            final SourceData ret = handler.load(guids, file);
+            loadNanos += System.nanoTime() - start;
+            final Long size = sizes.get(guids.get(guids.size() - 1));
+            loadBytes += size == null ? 0 : size;
+            return ret;
+        }
+
+        @Override
+        public SourceData loadMetadata(final List<GUID> guids)
+                throws IndexingException, RetriableIndexingException {
+            return handler.loadMetadata(guids);
+        }
+
+        @Override
+        public Map<GUID, String> buildReferencePaths(
+                final List<GUID> refpath,
+                final Set<GUID> refs) {
+            return handler.buildReferencePaths(refpath, refs);
+        }
+
+        @Override
+        public Set<ResolvedReference> resolveReferences(
+                final List<GUID> refpath,
+                final Set<GUID> refsToResolve)
+                throws IndexingException, RetriableIndexingException {
+            return handler.resolveReferences(refpath, refsToResolve);
+        }
+
+        @Override
+        public boolean isExpandable(final StoredStatusEvent parentEvent) {
+            return handler.isExpandable(parentEvent);
+        }
+    }
+
+    /* Discards info messages and keeps the first few errors. */
+    private static class BenchmarkLogger implements LineLogger {
+
+        private static final int MAX_ERRORS = 10;
+
+        private final List<String> errors = new LinkedList<>();
+
+        @Override
+        public void logInfo(final String line) {
+            // too noisy and affects the timings
+        }
+
+        @Override
+        public void logError(final String line) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(line);
+            }
+        }
+
+        @Override
+        public void logError(final Throwable error) {
+            logError(error.toString());
+        }
+
+        @Override
+        public void timeStat(
+                final GUID guid,
+                final long loadMs,
+                final long parseMs,
+                final long indexMs) {
+            // the benchmark measures the stages itself with nanosecond resolution
+        }
+    }
+
+    private static class Args {
+
+        @Parameter(names = {"-h", "--help"}, help = true, description = "Display help.")
+        private boolean help;
+
+        @Parameter(names = {"-w", "--work-dir"}, required = true, description =
+                "The directory in which to store synthetic objects and temporary files. " +
+                "Any data from a previous run is deleted.")
+        private String workDir;
+
+        @Parameter(names = {"-o", "--output"}, description =
+                "A file in which to save the results as JSON. The results are always printed.")
+        private String output;
+
+        @Parameter(names = {"--types-dir"}, description = "The directory of type specifications.")
+        private String typesDir = "resources/types";
+
+        @Parameter(names = {"--mappings-dir"}, description = "The directory of type mappings.")
+        private String mappingsDir = "resources/typemappings";
+
+        @Parameter(names = {"-t", "--types"}, description = "A comma delimited list of " +
+                "storage object types to benchmark, e.g. KBaseGenomes.Genome. Defaults to " +
+                "all types.")
+        private List<String> types;
+
+        @Parameter(names = {"-n", "--objects"}, description = "The number of objects to " +
+                "measure per type.")
+        private int objects = 100;
+
+        @Parameter(names = {"--warmup"}, description = "The number of unmeasured warmup " +
+                "objects per type.")
+        private int warmup = 10;
+
+        @Parameter(names = {"-s", "--sub-objects"}, description = "The number of subobjects " +
+                "per subobject path. Nested paths multiply the count.")
+        private int subObjects = 100;
+
+        @Parameter(names = {"--list-size"}, description = "The size of other lists and maps.")
+        private int listSize = 3;
+
+        @Parameter(names = {"--text-words"}, description = "The number of words in full text " +
+                "fields.")
+        private int textWords = 10;
+
+        @Parameter(names = {"--seed"}, description = "The seed for the object generator.")
+        private long seed = 1;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Args a = new Args();
+        final JCommander jc = new JCommander(a);
+        jc.setProgramName("indexing_benchmark");
+        try {
+            jc.parse(args);
+        } catch (ParameterException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        if (a.help) {
+            jc.usage();
+            return;
+        }
+        final LineLogger logger = new BenchmarkLogger();
+        final TypeStorage ts = new TypeFileStorage(Paths.get(a.typesDir),
+                Paths.get(a.mappingsDir), new ObjectTypeParsingRulesFileParser(),
+                ImmutableMap.of("yaml", new YAMLTypeMappingParser()), new FileLister(), logger);
+        final Result res = getBuilder(ts, Paths.get(a.workDir))
+                .withNullableTypes(a.types)
+                .withObjectsPerType(a.objects)
+                .withWarmupPerType(a.warmup)
+                .withSubObjects(a.subObjects)
+                .withListSize(a.listSize)
+                .withTextWords(a.textWords)
+                .withSeed(a.seed)
+                .build()
+                .run();
+        final Map<String, Object> config = new LinkedHashMap<>();
+        config.put("objects_per_type", a.objects);
+        config.put("warmup_per_type", a.warmup);
+        config.put("sub_objects", a.subObjects);
+        config.put("list_size", a.listSize);
+        config.put("text_words", a.textWords);
+        config.put("seed", a.seed);
+        final Map<String, Object> out = new LinkedHashMap<>();
+        out.put("benchmark", "indexing");
+        out.put("timestamp", Instant.now().toString());
+        out.put("config", config);
+        out.putAll(res.toMap());
+        final ObjectMapper mapper = new ObjectMapper();
+        System.out.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(out));
+        if (a.output != null) {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(new File(a.output), out);
+        }
+        for (final String err: res.getErrors()) {
+            System.err.println(err);
+        }
+    }
+}
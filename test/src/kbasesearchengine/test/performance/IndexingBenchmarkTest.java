@@ -0,0 +1,123 @@
+package kbasesearchengine.test.performance;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.main.LineLogger;
+import kbasesearchengine.system.FileLister;
+import kbasesearchengine.system.ObjectTypeParsingRulesFileParser;
+import kbasesearchengine.system.StorageObjectType;
+import kbasesearchengine.system.TypeFileStorage;
+import kbasesearchengine.system.TypeStorage;
+import kbasesearchengine.system.YAMLTypeMappingParser;
+import kbasesearchengine.test.common.TestCommon;
+import kbasesearchengine.test.performance.IndexingBenchmark.Result;
+
+public class IndexingBenchmarkTest {
+
+    private static Path tempDir;
+    private static TypeStorage typeStorage;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        tempDir = Paths.get(TestCommon.getTempDir()).resolve("IndexingBenchmarkTest")
+                .toAbsolutePath();
+        tempDir.toFile().mkdirs();
+        typeStorage = new TypeFileStorage(Paths.get("resources/types"),
+                Paths.get("resources/typemappings"), new ObjectTypeParsingRulesFileParser(),
+                ImmutableMap.of("yaml", new YAMLTypeMappingParser()), new FileLister(),
+                mock(LineLogger.class));
+    }
+
+    @AfterClass
+    public static void teardown() throws Exception {
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    @Test
+    public void runAllTypes() throws Exception {
+        // checks that the generated objects satisfy the parsing rules for every type
+        final Result res = IndexingBenchmark.getBuilder(typeStorage, tempDir)
+                .withObjectsPerType(2)
+                .withWarmupPerType(1)
+                .withSubObjects(3)
+                .build()
+                .run();
+
+        assertThat("incorrect errors", res.getErrors(), is(Collections.emptyList()));
+        assertThat("incorrect failed", res.getFailed(), is(0L));
+        final int types = ((List<?>) res.toMap().get("types")).size();
+        assertThat("incorrect objects", res.getObjects(), is(2L * types));
+        assertThat("no subobjects indexed", res.getDocuments() > 3L * types, is(true));
+        for (final String stage: Arrays.asList("load", "parse", "index", "total")) {
+            assertThat("incorrect count for " + stage, res.getStage(stage).getCount(),
+                    is(2 * types));
+        }
+    }
+
+    @Test
+    public void runOneType() throws Exception {
+        final Result res = IndexingBenchmark.getBuilder(typeStorage, tempDir)
+                .withNullableTypes(Arrays.asList("KBaseGenomes.Genome"))
+                .withObjectsPerType(3)
+                .withWarmupPerType(0)
+                .withSubObjects(5)
+                .build()
+                .run();
+
+        assertThat("incorrect failed", res.getFailed(), is(0L));
+        assertThat("incorrect types", res.toMap().get("types"),
+                is(Arrays.asList("WS:KBaseGenomes.Genome")));
+        assertThat("incorrect objects", res.getObjects(), is(3L));
+        // a genome document and 5 feature documents per object
+        assertThat("incorrect documents", res.getDocuments(), is(18L));
+    }
+
+    @Test
+    public void generatorIsDeterministic() {
+        final StorageObjectType type = new StorageObjectType("WS", "KBaseGenomes.Genome");
+        final Map<String, Object> o1 = new SyntheticObjectGenerator(4, 2, 5, 42)
+                .generate(typeStorage.listObjectTypeParsingRules(type));
+        final Map<String, Object> o2 = new SyntheticObjectGenerator(4, 2, 5, 42)
+                .generate(typeStorage.listObjectTypeParsingRules(type));
+
+        assertThat("incorrect object", o1, is(o2));
+        assertThat("incorrect feature count", ((List<?>) o1.get("features")).size(), is(4));
+    }
+
+    @Test
+    public void latencyPercentiles() {
+        final LatencyRecorder lr = new LatencyRecorder();
+        for (int i = 100; i > 0; i--) {
+            lr.record(i * 1_000_000L);
+        }
+
+        assertThat("incorrect count", lr.getCount(), is(100));
+        assertThat("incorrect p50", lr.getPercentile(50), is(50_000_000L));
+        assertThat("incorrect p99", lr.getPercentile(99), is(99_000_000L));
+        assertThat("incorrect summary", lr.toMap(), is(ImmutableMap.builder()
+                .put("count", 100)
+                .put("mean", 50.5)
+                .put("p50", 50.0)
+                .put("p90", 90.0)
+                .put("p95", 95.0)
+                .put("p99", 99.0)
+                .put("max", 100.0)
+                .build()));
+    }
+}
@@ -0,0 +1,84 @@
+package kbasesearchengine.test.performance;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Records latency samples for one stage of a benchmark and summarizes them as percentiles.
+ *
+ * Samples are kept in full so that the percentiles are exact rather than estimated. Not thread
+ * safe.
+ */
+public class LatencyRecorder {
+
+    private static final double NANOS_PER_MS = 1_000_000.0;
+
+    private long[] samples = new long[1024];
+    private int count = 0;
+    private long total = 0;
+
+    /** Record a sample.
+     * @param nanos the latency in nanoseconds.
+     */
+    public void record(final long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("nanos cannot be negative");
+        }
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = nanos;
+        total += nanos;
+    }
+
+    /** Get the number of samples recorded.
+     * @return the number of samples.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /** Get the sum of the samples.
+     * @return the sum of the samples in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return total;
+    }
+
+    /** Get a percentile of the recorded samples using the nearest rank method.
+     * @param percentile the percentile, greater than 0 and no greater than 100.
+     * @return the sample at the percentile in nanoseconds, or 0 if no samples have been recorded.
+     */
+    public long getPercentile(final double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be > 0 and <= 100");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        final long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        final int rank = (int) Math.ceil(percentile / 100 * count);
+        return sorted[rank - 1];
+    }
+
+    /** Summarize the samples as a map suitable for serializing to JSON. Times are in
+     * milliseconds.
+     * @return the summary.
+     */
+    public Map<String, Object> toMap() {
+        final Map<String, Object> ret = new LinkedHashMap<>();
+        ret.put("count", count);
+        ret.put("mean", count == 0 ? 0.0 : round((double) total / count));
+        ret.put("p50", round(getPercentile(50)));
+        ret.put("p90", round(getPercentile(90)));
+        ret.put("p95", round(getPercentile(95)));
+        ret.put("p99", round(getPercentile(99)));
+        ret.put("max", round(getPercentile(100)));
+        return ret;
+    }
+
+    private static double round(final double nanos) {
+        return Math.round(nanos / NANOS_PER_MS * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,307 @@
+package kbasesearchengine.test.performance;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.common.MappedJsonFile;
+import kbasesearchengine.common.ObjectJsonPath;
+import kbasesearchengine.events.handler.SourceData;
+import kbasesearchengine.parse.IdMapper;
+import kbasesearchengine.parse.KeywordParser;
+import kbasesearchengine.parse.KeywordParser.ObjectLookupProvider;
+import kbasesearchengine.parse.ObjectParser;
+import kbasesearchengine.parse.SimpleIdConsumer;
+import kbasesearchengine.parse.SimpleSubObjectConsumer;
+import kbasesearchengine.parse.ValueCollectingNode;
+import kbasesearchengine.parse.ValueCollector;
+import kbasesearchengine.search.ObjectData;
+import kbasesearchengine.system.IndexingRules;
+import kbasesearchengine.system.NoSuchTypeException;
+import kbasesearchengine.system.ObjectTypeParsingRules;
+import kbasesearchengine.system.ParsingRulesSubtypeFirstComparator;
+import kbasesearchengine.system.SearchObjectType;
+import kbasesearchengine.system.StorageObjectType;
+import kbasesearchengine.system.TypeStorage;
+import kbasesearchengine.tools.Utils;
+import us.kbase.common.service.UObject;
+
+/** A fixture for the {@link ParseMicrobenchmarks}, consisting of an object and the parsing
+ * rules for the object, along with the intermediate parse results needed for benchmarking the
+ * later parse stages.
+ *
+ * The fixtures are genome and FBA model objects of several sizes generated from the type
+ * specifications with a {@link SyntheticObjectGenerator}. The genome fixtures include the
+ * feature subobjects and the FBA model fixtures include the nested reaction, compound and
+ * protein subunit subobjects. Each operation processes one whole fixture object with all the
+ * parsing rules for its type, as the indexer worker does, and passes its results to a sink.
+ *
+ * Fixture objects are read from memory mapped files as they are when indexing from a
+ * {@link kbasesearchengine.events.handler.FileEventHandler}.
+ */
+public class ParseFixture implements Closeable {
+
+    private static final String GENOME = "KBaseGenomes.Genome";
+    private static final String FBA_MODEL = "KBaseFBA.FBAModel";
+
+    // the subobject counts for the FBA model are per level of nesting
+    private static final Map<String, FixtureSpec> FIXTURES = ImmutableMap.<String, FixtureSpec>
+            builder()
+            .put("genome_small", new FixtureSpec(GENOME, 10))
+            .put("genome_medium", new FixtureSpec(GENOME, 1000))
+            .put("genome_huge", new FixtureSpec(GENOME, 20000))
+            .put("fbamodel_small", new FixtureSpec(FBA_MODEL, 3))
+            .put("fbamodel_medium", new FixtureSpec(FBA_MODEL, 10))
+            .put("fbamodel_huge", new FixtureSpec(FBA_MODEL, 25))
+            .build();
+
+    private static final ObjectJsonPath DATA_PATH = new ObjectJsonPath(new String[] {"data"});
+
+    private static class FixtureSpec {
+
+        private final String storageType;
+        private final int subObjects;
+
+        private FixtureSpec(final String storageType, final int subObjects) {
+            this.storageType = storageType;
+            this.subObjects = subObjects;
+        }
+    }
+
+    private final String name;
+    private final TypeStorage typeStorage;
+    private final GUID guid = new GUID("WS:1/1/1");
+    private final List<ObjectTypeParsingRules> rules;
+    private final MappedJsonFile mapped;
+    private final SourceData data;
+    private final long bytes;
+    private final Map<ObjectTypeParsingRules, Map<GUID, String>> subObjects =
+            new LinkedHashMap<>();
+    private final Map<ObjectTypeParsingRules, String> parentJson = new LinkedHashMap<>();
+    private final List<String> guids = new ArrayList<>();
+
+    /** Create a fixture.
+     * @param name the name of the fixture, one of {@link #getFixtureNames()}.
+     * @param typeStorage the source of the parsing rules for the fixture.
+     * @param dir the directory in which to store the fixture data file.
+     * @throws Exception if the fixture could not be created.
+     */
+    public ParseFixture(final String name, final TypeStorage typeStorage, final Path dir)
+            throws Exception {
+        Utils.nonNull(name, "name");
+        Utils.nonNull(typeStorage, "typeStorage");
+        Utils.nonNull(dir, "dir");
+        final FixtureSpec spec = FIXTURES.get(name);
+        if (spec == null) {
+            throw new IllegalArgumentException("No such fixture: " + name);
+        }
+        this.name = name;
+        this.typeStorage = typeStorage;
+        rules = new ArrayList<>(typeStorage.listObjectTypeParsingRules(
+                new StorageObjectType("WS", spec.storageType)));
+        rules.sort(new ParsingRulesSubtypeFirstComparator());
+        final Map<String, Object> obj = new SyntheticObjectGenerator(
+                spec.subObjects, 3, 10, 1).generate(rules);
+        final File file = dir.resolve(name + ".json").toFile();
+        new ObjectMapper().writeValue(file, ImmutableMap.of("data", obj));
+        bytes = file.length();
+        mapped = new MappedJsonFile(file.toPath(), DATA_PATH);
+        data = SourceData.getMappedBuilder(mapped, name, "benchmark").build();
+        for (final ObjectTypeParsingRules rule: rules) {
+            subObjects.put(rule, ObjectParser.parseSubObjects(data, guid, rule));
+            try (final JsonParser jp = data.getDataParser()) {
+                parentJson.put(rule, ObjectParser.extractParentFragment(rule, jp));
+            }
+            subObjects.get(rule).keySet().stream().forEach(g -> guids.add(g.toString()));
+        }
+    }
+
+    /** Get the names of the available fixtures.
+     * @return the fixture names.
+     */
+    public static Set<String> getFixtureNames() {
+        return FIXTURES.keySet();
+    }
+
+    /** Get the name of the fixture.
+     * @return the name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /** Get the number of subobjects in the fixture across all the parsing rules, including
+     * the parent object for each rule without subobjects.
+     * @return the number of subobjects.
+     */
+    public int getSubObjectCount() {
+        return guids.size();
+    }
+
+    /** Get the size of the fixture's data file.
+     * @return the size in bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /** Extract the subobjects from the object with
+     * {@link ObjectParser#extractSubObjects(ObjectTypeParsingRules,
+     * kbasesearchengine.parse.SubObjectConsumer, JsonParser)}.
+     * @param sink receives the subobjects, mapped by path, for each parsing rule.
+     * @throws Exception if the extraction fails.
+     */
+    public void extract(final Consumer<Object> sink) throws Exception {
+        for (final ObjectTypeParsingRules rule: rules) {
+            final Map<ObjectJsonPath, String> out = new LinkedHashMap<>();
+            try (final JsonParser jp = data.getDataParser()) {
+                ObjectParser.extractSubObjects(rule, new SimpleSubObjectConsumer(out), jp);
+            }
+            sink.accept(out);
+        }
+    }
+
+    /** Parse the subobjects from the object with
+     * {@link ObjectParser#parseSubObjects(SourceData, GUID, ObjectTypeParsingRules)}.
+     * @param sink receives the subobjects, mapped by GUID, for each parsing rule.
+     * @throws Exception if the parse fails.
+     */
+    public void parseSubObjects(final Consumer<Object> sink) throws Exception {
+        for (final ObjectTypeParsingRules rule: rules) {
+            sink.accept(ObjectParser.parseSubObjects(data, guid, rule));
+        }
+    }
+
+    /** Extract the keywords from each subobject with {@link KeywordParser}.
+     * @param sink receives the parsed object for each subobject.
+     * @throws Exception if the extraction fails.
+     */
+    public void extractKeywords(final Consumer<Object> sink) throws Exception {
+        final List<GUID> refPath = Arrays.asList(guid);
+        for (final ObjectTypeParsingRules rule: rules) {
+            final Map<GUID, String> subs = subObjects.get(rule);
+            for (final GUID g: subs.keySet()) {
+                sink.accept(KeywordParser.extractKeywords(g, rule.getGlobalObjectType(),
+                        subs.get(g), parentJson.get(rule), rule.getIndexingRules(),
+                        new NullLookupProvider(typeStorage), refPath));
+            }
+        }
+    }
+
+    /** Map the subobject IDs of each subobject with {@link IdMapper}.
+     * @param sink receives the primary key of each subobject.
+     * @throws Exception if the mapping fails.
+     */
+    public void mapIds(final Consumer<Object> sink) throws Exception {
+        for (final ObjectTypeParsingRules rule: rules) {
+            if (!rule.getSubObjectIDPath().isPresent()) {
+                continue;
+            }
+            for (final String json: subObjects.get(rule).values()) {
+                final SimpleIdConsumer consumer = new SimpleIdConsumer();
+                try (final JsonParser jp = parser(json)) {
+                    IdMapper.mapKeys(rule.getSubObjectIDPath().get(), jp, consumer);
+                }
+                sink.accept(consumer.getPrimaryKey());
+            }
+        }
+    }
+
+    /** Collect the indexed values of each subobject with a {@link ValueCollector}.
+     * @param sink receives each collected value.
+     * @throws Exception if the collection fails.
+     */
+    public void collectValues(final Consumer<Object> sink) throws Exception {
+        for (final ObjectTypeParsingRules rule: rules) {
+            final ValueCollectingNode<IndexingRules> root = new ValueCollectingNode<>();
+            for (final IndexingRules ir: rule.getIndexingRules()) {
+                if (!ir.isDerivedKey() && !ir.isFromParent()) {
+                    root.addPath(ir.getPath().get(), ir);
+                }
+            }
+            final ValueCollector<IndexingRules> collector = new ValueCollector<>();
+            for (final String json: subObjects.get(rule).values()) {
+                try (final JsonParser jp = parser(json)) {
+                    collector.mapKeys(root, jp, (r, v) -> sink.accept(v));
+                }
+            }
+        }
+    }
+
+    /** Parse the GUID of each subobject from its string form.
+     * @param sink receives each GUID.
+     */
+    public void parseGUIDs(final Consumer<Object> sink) {
+        for (final String g: guids) {
+            sink.accept(new GUID(g));
+        }
+    }
+
+    /** Convert the GUID of each subobject to its string form.
+     * @param sink receives each string.
+     */
+    public void guidsToString(final Consumer<Object> sink) {
+        for (final ObjectTypeParsingRules rule: rules) {
+            for (final GUID g: subObjects.get(rule).keySet()) {
+                sink.accept(g.toString());
+            }
+        }
+    }
+
+    private JsonParser parser(final String json) throws IOException {
+        return UObject.getMapper().getFactory().createParser(json);
+    }
+
+    /** Release the memory mapping of the fixture's data file. The data file itself is not
+     * deleted.
+     */
+    @Override
+    public void close() {
+        mapped.close();
+    }
+
+    /* Provides type information but no objects, as the fixtures contain no references. */
+    private static class NullLookupProvider implements ObjectLookupProvider {
+
+        private final TypeStorage typeStorage;
+
+        private NullLookupProvider(final TypeStorage typeStorage) {
+            this.typeStorage = typeStorage;
+        }
+
+        @Override
+        public Set<GUID> resolveRefs(final List<GUID> refpath, final Set<GUID> unresolved) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Map<GUID, SearchObjectType> getTypesForGuids(final Set<GUID> guids) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Map<GUID, ObjectData> lookupObjectsByGuid(final Set<GUID> guids) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public ObjectTypeParsingRules getTypeDescriptor(final SearchObjectType type)
+                throws NoSuchTypeException {
+            return typeStorage.getObjectTypeParsingRules(type);
+        }
+    }
+}
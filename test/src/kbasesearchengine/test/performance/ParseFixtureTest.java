@@ -0,0 +1,130 @@
+package kbasesearchengine.test.performance;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.main.LineLogger;
+import kbasesearchengine.system.FileLister;
+import kbasesearchengine.system.ObjectTypeParsingRulesFileParser;
+import kbasesearchengine.system.TypeFileStorage;
+import kbasesearchengine.system.TypeStorage;
+import kbasesearchengine.system.YAMLTypeMappingParser;
+import kbasesearchengine.test.common.TestCommon;
+
+public class ParseFixtureTest {
+
+    private static Path tempDir;
+    private static TypeStorage typeStorage;
+
+    private interface Operation {
+        void run(ParseFixture fixture, List<Object> sink) throws Exception;
+    }
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        tempDir = Paths.get(TestCommon.getTempDir()).resolve("ParseFixtureTest")
+                .toAbsolutePath();
+        tempDir.toFile().mkdirs();
+        typeStorage = new TypeFileStorage(Paths.get("resources/types"),
+                Paths.get("resources/typemappings"), new ObjectTypeParsingRulesFileParser(),
+                ImmutableMap.of("yaml", new YAMLTypeMappingParser()), new FileLister(),
+                mock(LineLogger.class));
+    }
+
+    @AfterClass
+    public static void teardown() throws Exception {
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    @Test
+    public void fixtureNames() throws Exception {
+        assertThat("incorrect names", ParseFixture.getFixtureNames(), is(TestCommon.set(
+                "genome_small", "genome_medium", "genome_huge",
+                "fbamodel_small", "fbamodel_medium", "fbamodel_huge")));
+    }
+
+    @Test
+    public void operations() throws Exception {
+        try (final ParseFixture genome = new ParseFixture(
+                "genome_small", typeStorage, tempDir)) {
+            assertThat("incorrect name", genome.getName(), is("genome_small"));
+            // the genome and 10 features
+            assertThat("incorrect subobjects", genome.getSubObjectCount(), is(11));
+            assertThat("no data", genome.getBytes() > 0, is(true));
+            checkOperations(genome);
+        }
+        try (final ParseFixture model = new ParseFixture(
+                "fbamodel_small", typeStorage, tempDir)) {
+            checkOperations(model);
+        }
+    }
+
+    private void checkOperations(final ParseFixture f) throws Exception {
+        // each of these produces one result per subobject, possibly grouped by rule
+        final Map<String, Operation> perSubObject = ImmutableMap.of(
+                "parseSubObjects", (fx, s) -> fx.parseSubObjects(s::add),
+                "extractKeywords", (fx, s) -> fx.extractKeywords(s::add),
+                "parseGUIDs", (fx, s) -> fx.parseGUIDs(s::add),
+                "guidsToString", (fx, s) -> fx.guidsToString(s::add));
+        for (final String name: perSubObject.keySet()) {
+            final List<Object> sink = new ArrayList<>();
+            perSubObject.get(name).run(f, sink);
+            assertThat("incorrect result count for " + name + " on " + f.getName(),
+                    count(sink), is(f.getSubObjectCount()));
+        }
+        for (final Operation op: Arrays.<Operation>asList(
+                (fx, s) -> fx.extract(s::add),
+                (fx, s) -> fx.mapIds(s::add),
+                (fx, s) -> fx.collectValues(s::add))) {
+            final List<Object> sink = new ArrayList<>();
+            op.run(f, sink);
+            assertThat("no results for " + f.getName(), sink.isEmpty(), is(false));
+        }
+    }
+
+    private int count(final List<Object> results) {
+        int count = 0;
+        for (final Object o: results) {
+            count += o instanceof Map ? ((Map<?, ?>) o).size() : 1;
+        }
+        return count;
+    }
+
+    @Test
+    public void constructFail() throws Exception {
+        failConstruct(null, typeStorage, tempDir, new NullPointerException("name"));
+        failConstruct("genome_small", null, tempDir, new NullPointerException("typeStorage"));
+        failConstruct("genome_small", typeStorage, null, new NullPointerException("dir"));
+        failConstruct("genome_tiny", typeStorage, tempDir,
+                new IllegalArgumentException("No such fixture: genome_tiny"));
+    }
+
+    private void failConstruct(
+            final String name,
+            final TypeStorage typeStorage,
+            final Path dir,
+            final Exception expected) {
+        try {
+            new ParseFixture(name, typeStorage, dir);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package kbasesearchengine.test.performance;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.main.LineLogger;
+import kbasesearchengine.system.FileLister;
+import kbasesearchengine.system.ObjectTypeParsingRulesFileParser;
+import kbasesearchengine.system.TypeFileStorage;
+import kbasesearchengine.system.TypeStorage;
+import kbasesearchengine.system.YAMLTypeMappingParser;
+
+/** JMH microbenchmarks for the CPU bound code on the indexing path in the parse package.
+ *
+ * Each benchmark operation processes one whole {@link ParseFixture} object with all the
+ * parsing rules for its type. The fixture is selected with the fixture parameter, e.g.
+ * -p fixture=genome_small. Run the benchmarks with the parse-microbenchmarks ant target, which
+ * runs the JMH annotation processor and requires JMH in the jars directory. The JMH GC profiler,
+ * -prof gc, reports the allocation per operation.
+ *
+ * The type specifications and mappings are read from resources/types and
+ * resources/typemappings relative to the working directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ParseMicrobenchmarks {
+
+    @Param({"genome_small", "genome_medium", "genome_huge",
+            "fbamodel_small", "fbamodel_medium", "fbamodel_huge"})
+    public String fixture;
+
+    private Path dir;
+    private ParseFixture data;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        final TypeStorage ts = new TypeFileStorage(Paths.get("resources/types"),
+                Paths.get("resources/typemappings"), new ObjectTypeParsingRulesFileParser(),
+                ImmutableMap.of("yaml", new YAMLTypeMappingParser()), new FileLister(),
+                new LineLogger() {
+
+                    @Override
+                    public void logInfo(final String line) {}
+
+                    @Override
+                    public void logError(final String line) {
+                        System.err.println(line);
+                    }
+
+                    @Override
+                    public void logError(final Throwable error) {
+                        error.printStackTrace();
+                    }
+
+                    @Override
+                    public void timeStat(
+                            final GUID guid,
+                            final long loadMs,
+                            final long parseMs,
+                            final long indexMs) {}
+                });
+        dir = Files.createTempDirectory("parse_microbenchmarks");
+        data = new ParseFixture(fixture, ts, dir);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        if (data != null) {
+            data.close();
+        }
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    @Benchmark
+    public void subObjectExtractorExtract(final Blackhole bh) throws Exception {
+        data.extract(bh::consume);
+    }
+
+    @Benchmark
+    public void objectParserParseSubObjects(final Blackhole bh) throws Exception {
+        data.parseSubObjects(bh::consume);
+    }
+
+    @Benchmark
+    public void keywordParserExtractKeywords(final Blackhole bh) throws Exception {
+        data.extractKeywords(bh::consume);
+    }
+
+    @Benchmark
+    public void idMapperMapKeys(final Blackhole bh) throws Exception {
+        data.mapIds(bh::consume);
+    }
+
+    @Benchmark
+    public void valueCollectorMapKeys(final Blackhole bh) throws Exception {
+        data.collectValues(bh::consume);
+    }
+
+    @Benchmark
+    public void guidParse(final Blackhole bh) {
+        data.parseGUIDs(bh::consume);
+    }
+
+    @Benchmark
+    public void guidToString(final Blackhole bh) {
+        data.guidsToString(bh::consume);
+    }
+}
@@ -0,0 +1,1243 @@
+package kbasesearchengine.test.performance;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.http.HttpHost;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.AccessFilter;
+import kbasesearchengine.GetObjectsInput;
+import kbasesearchengine.GetObjectsOutput;
+import kbasesearchengine.MatchFilter;
+import kbasesearchengine.MultiSearchInput;
+import kbasesearchengine.MultiSearchOutput;
+import kbasesearchengine.Pagination;
+import kbasesearchengine.PostProcessing;
+import kbasesearchengine.SearchObjectsInput;
+import kbasesearchengine.SearchObjectsOutput;
+import kbasesearchengine.SearchTypesInput;
+import kbasesearchengine.SearchTypesOutput;
+import kbasesearchengine.TypeDescriptor;
+import kbasesearchengine.authorization.AccessGroupCache;
+import kbasesearchengine.authorization.AccessGroupProvider;
+import kbasesearchengine.authorization.CachingAuth2Client;
+import kbasesearchengine.authorization.TemporaryAuth2Client;
+import kbasesearchengine.common.FileUtil;
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.events.handler.CloneableWorkspaceClient;
+import kbasesearchengine.events.handler.WorkspaceEventHandler;
+import kbasesearchengine.main.ExportConsumer;
+import kbasesearchengine.main.LineLogger;
+import kbasesearchengine.main.NarrativeInfoDecorator;
+import kbasesearchengine.main.SearchInterface;
+import kbasesearchengine.main.SearchMethods;
+import kbasesearchengine.main.TemporaryNarrativePruner;
+import kbasesearchengine.search.ElasticIndexingStorage;
+import kbasesearchengine.search.IndexingStorage;
+import kbasesearchengine.system.FileLister;
+import kbasesearchengine.system.ObjectTypeParsingRules;
+import kbasesearchengine.system.ObjectTypeParsingRulesFileParser;
+import kbasesearchengine.system.TypeFileStorage;
+import kbasesearchengine.system.TypeStorage;
+import kbasesearchengine.system.YAMLTypeMappingParser;
+import kbasesearchengine.tools.Utils;
+import us.kbase.common.service.Tuple9;
+import us.kbase.common.service.UObject;
+import us.kbase.workspace.WorkspaceClient;
+
+/** A search load generator and latency benchmark.
+ *
+ * The generator assembles the search stack as the server does, a
+ * {@link TemporaryNarrativePruner} wrapping a {@link NarrativeInfoDecorator} wrapping
+ * {@link SearchMethods}, along with the server's access group and display name caches. The
+ * remote services are replaced with local stand-ins that sleep for a configurable
+ * {@link SimulatedLatency}: the workspace, which supplies access groups and narrative info, the
+ * auth service, which supplies display names, and the search storage system, which is a
+ * {@link SimulatedSearchStorage} unless another {@link IndexingStorage}, such as an
+ * {@link ElasticIndexingStorage} pointing at a local ElasticSearch instance, is supplied.
+ *
+ * Requests are a weighted synthetic mix of search_objects, search_types, and get_objects calls
+ * from a population of simulated users, or are replayed from a recording. They are issued open
+ * loop at a fixed rate from a pool of threads standing in for the server's request threads, so
+ * a slow response does not delay later requests. Latency is measured from the time a request
+ * was scheduled to be sent rather than the time it was actually sent, which includes any time
+ * spent waiting for a free thread and avoids the coordinated omission of a closed loop test.
+ * The time from the request starting to run to completion is reported separately as the
+ * service time.
+ *
+ * Each layer of the stack is wrapped in a timing decorator, so the report includes the time
+ * spent in each layer, including the layers below it, and the self time of the layer, which
+ * excludes the layers below it, for each method.
+ *
+ * The first requests are treated as warmup and are not measured.
+ */
+public class SearchLoadGenerator {
+
+    /** The name of the search objects method. */
+    public static final String SEARCH_OBJECTS = "search_objects";
+    /** The name of the search types method. */
+    public static final String SEARCH_TYPES = "search_types";
+    /** The name of the get objects method. */
+    public static final String GET_OBJECTS = "get_objects";
+
+    private static final List<String> METHODS = Arrays.asList(
+            SEARCH_OBJECTS, SEARCH_TYPES, GET_OBJECTS);
+    // outermost first
+    private static final List<String> LAYERS = Arrays.asList("TemporaryNarrativePruner",
+            "NarrativeInfoDecorator", "SearchMethods");
+    private static final String TOKEN = "benchmark_token";
+    private static final int FIRST_PRIVATE_ACCESS_GROUP = 100;
+    private static final int MAX_ERRORS = 10;
+    private static final List<String> QUERY_WORDS = Arrays.asList("protein", "kinase",
+            "transport", "membrane", "binding", "domain", "regulator", "synthase", "coli",
+            "subtilis", "assembly", "reads");
+
+    private final TypeStorage typeStorage;
+    private final IndexingStorage storage;
+    private final SimulatedLatency workspaceLatency;
+    private final SimulatedLatency authLatency;
+    private final boolean caches;
+    private final List<Request> recording;
+    private final Map<String, Integer> mix;
+    private final double qps;
+    private final double durationSec;
+    private final double warmupSec;
+    private final int threads;
+    private final int users;
+    private final int workspaces;
+    private final int workspacesPerUser;
+    private final long seed;
+
+    // the results for the request running on the current thread, or null during the warmup
+    private final ThreadLocal<Result> currentResult = new ThreadLocal<>();
+    // the time spent in the layers below the current layer, one entry per active layer
+    private final ThreadLocal<Deque<long[]>> childNanos =
+            ThreadLocal.withInitial(() -> new ArrayDeque<>());
+
+    private SearchLoadGenerator(
+            final TypeStorage typeStorage,
+            final IndexingStorage storage,
+            final SimulatedLatency workspaceLatency,
+            final SimulatedLatency authLatency,
+            final boolean caches,
+            final List<Request> recording,
+            final Map<String, Integer> mix,
+            final double qps,
+            final double durationSec,
+            final double warmupSec,
+            final int threads,
+            final int users,
+            final int workspaces,
+            final int workspacesPerUser,
+            final long seed) {
+        this.typeStorage = typeStorage;
+        this.storage = storage;
+        this.workspaceLatency = workspaceLatency;
+        this.authLatency = authLatency;
+        this.caches = caches;
+        this.recording = recording;
+        this.mix = mix;
+        this.qps = qps;
+        this.durationSec = durationSec;
+        this.warmupSec = warmupSec;
+        this.threads = threads;
+        this.users = users;
+        this.workspaces = workspaces;
+        this.workspacesPerUser = workspacesPerUser;
+        this.seed = seed;
+    }
+
+    /** Run the load test. A new search stack is built for each run, so caches start empty.
+     * @return the results of the run.
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    public Result run() throws InterruptedException {
+        final NarrativeInfoDecorator decorator = buildDecorator();
+        final SearchInterface search = new TimingSearchInterface(LAYERS.get(0),
+                new TemporaryNarrativePruner(
+                        new TimingSearchInterface(LAYERS.get(1), decorator)));
+        final Result res = new Result(qps);
+        final RequestSource source = recording.isEmpty() ?
+                new SyntheticRequests() : new RecordedRequests();
+        final long warmup = Math.round(qps * warmupSec);
+        final long requests = Math.round(qps * durationSec);
+        final double intervalNanos = 1_000_000_000.0 / qps;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = new Thread(r, "SearchLoadGenerator-request");
+            t.setDaemon(true);
+            return t;
+        });
+        final long start = System.nanoTime();
+        res.start = start + (long) (warmup * intervalNanos);
+        try {
+            for (long i = 0; i < warmup + requests; i++) {
+                final long scheduled = start + (long) (i * intervalNanos);
+                long now;
+                while ((now = System.nanoTime()) < scheduled) {
+                    LockSupport.parkNanos(scheduled - now);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                final Request req = source.next();
+                final Result target = i < warmup ? null : res;
+                executor.execute(() -> call(search, req, scheduled, target));
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // wait for the queued requests
+            }
+        } finally {
+            executor.shutdownNow();
+            decorator.close();
+        }
+        return res;
+    }
+
+    private void call(
+            final SearchInterface search,
+            final Request req,
+            final long scheduled,
+            final Result res) {
+        final long start = System.nanoTime();
+        currentResult.set(res);
+        boolean success = false;
+        String error = null;
+        try {
+            switch (req.getMethod()) {
+                case SEARCH_OBJECTS:
+                    search.searchObjects(UObject.transformObjectToObject(
+                            req.getParams(), SearchObjectsInput.class), req.getUser());
+                    break;
+                case SEARCH_TYPES:
+                    search.searchTypes(UObject.transformObjectToObject(
+                            req.getParams(), SearchTypesInput.class), req.getUser());
+                    break;
+                default:
+                    search.getObjects(UObject.transformObjectToObject(
+                            req.getParams(), GetObjectsInput.class), req.getUser());
+            }
+            success = true;
+        } catch (Exception e) {
+            error = req.getMethod() + ": " + e;
+        } finally {
+            currentResult.remove();
+            childNanos.get().clear();
+        }
+        final long end = System.nanoTime();
+        if (res != null) {
+            res.recordRequest(req.getMethod(), end - scheduled, end - start, end, error);
+        }
+    }
+
+    private NarrativeInfoDecorator buildDecorator() {
+        final AccessGroupProvider simAccess = new SimulatedAccessGroupProvider();
+        final TemporaryAuth2Client simAuth = new SimulatedAuthClient();
+        // match the server's cache configuration
+        final AccessGroupProvider access = caches ?
+                new AccessGroupCache(simAccess, 120, 50000 * 1000, 30, 10) : simAccess;
+        final TemporaryAuth2Client auth = caches ?
+                new CachingAuth2Client(simAuth, 60 * 60, 10000) : simAuth;
+        return new NarrativeInfoDecorator(
+                new TimingSearchInterface(LAYERS.get(2),
+                        new SearchMethods(access, storage, typeStorage, null)),
+                new SimulatedWorkspace(), auth, TOKEN);
+    }
+
+    /** Get the access groups that a user can read. The same user always has the same
+     * access groups.
+     * @param user the user.
+     * @param workspaces the number of private access groups.
+     * @param workspacesPerUser the number of private access groups each user can read.
+     * @return the access group IDs.
+     */
+    public static List<Integer> getAccessGroups(
+            final String user,
+            final int workspaces,
+            final int workspacesPerUser) {
+        final Random r = new Random(user.hashCode());
+        final Set<Integer> ret = new TreeSet<>();
+        while (ret.size() < Math.min(workspaces, workspacesPerUser)) {
+            ret.add(FIRST_PRIVATE_ACCESS_GROUP + r.nextInt(workspaces));
+        }
+        return new ArrayList<>(ret);
+    }
+
+    /** A search request. */
+    public static class Request {
+
+        private final String method;
+        private final String user;
+        private final Map<String, Object> params;
+
+        /** Create a request.
+         * @param method the method, one of search_objects, search_types, or get_objects.
+         * A KBaseSearchEngine. prefix is ignored.
+         * @param user the user making the request.
+         * @param params the method parameters as they would appear in the JSON RPC request.
+         */
+        public Request(
+                final String method,
+                final String user,
+                final Map<String, Object> params) {
+            Utils.notNullOrEmpty(method, "method cannot be null or whitespace only");
+            Utils.notNullOrEmpty(user, "user cannot be null or whitespace only");
+            Utils.nonNull(params, "params");
+            final String m = method.replaceFirst("^KBaseSearchEngine\\.", "");
+            if (!METHODS.contains(m)) {
+                throw new IllegalArgumentException("Unsupported method: " + method);
+            }
+            this.method = m;
+            this.user = user;
+            this.params = params;
+        }
+
+        /** Get the method.
+         * @return the method.
+         */
+        public String getMethod() {
+            return method;
+        }
+
+        /** Get the user making the request.
+         * @return the user.
+         */
+        public String getUser() {
+            return user;
+        }
+
+        /** Get the method parameters.
+         * @return the parameters.
+         */
+        public Map<String, Object> getParams() {
+            return params;
+        }
+    }
+
+    /** Read a recording of requests. The recording has one JSON object per line with the
+     * method, user, and params keys, e.g.
+     * <pre>
+     * {"method": "get_objects", "user": "jdoe", "params": {"guids": ["WS:1/2/3"]}}
+     * </pre>
+     * Blank lines are ignored.
+     * @param file the file containing the recording.
+     * @return the requests.
+     * @throws IOException if the file could not be read or a line could not be parsed.
+     */
+    public static List<Request> readRecording(final Path file) throws IOException {
+        final ObjectMapper mapper = new ObjectMapper();
+        final List<Request> ret = new ArrayList<>();
+        try (final BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNum = 0;
+            while ((line = br.readLine()) != null) {
+                lineNum++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    @SuppressWarnings("unchecked")
+                    final Map<String, Object> req = mapper.readValue(line, Map.class);
+                    @SuppressWarnings("unchecked")
+                    final Map<String, Object> params = (Map<String, Object>) req.get("params");
+                    ret.add(new Request((String) req.get("method"), (String) req.get("user"),
+                            params));
+                } catch (IOException | RuntimeException e) {
+                    throw new IOException(String.format("Bad request at line %s of %s: %s",
+                            lineNum, file, e.getMessage()), e);
+                }
+            }
+        }
+        return ret;
+    }
+
+    private interface RequestSource {
+
+        Request next();
+    }
+
+    /* Replays the recording in order, starting again from the beginning when it runs out. */
+    private class RecordedRequests implements RequestSource {
+
+        private int next = 0;
+
+        @Override
+        public Request next() {
+            final Request ret = recording.get(next);
+            next = (next + 1) % recording.size();
+            return ret;
+        }
+    }
+
+    /* Generates a weighted mix of requests from the simulated users. Only used by the
+     * dispatching thread.
+     */
+    private class SyntheticRequests implements RequestSource {
+
+        private final Random random = new Random(seed);
+        private final List<String> types = getSearchTypes(typeStorage);
+        private final int totalWeight = mix.values().stream().mapToInt(i -> i).sum();
+
+        @Override
+        public Request next() {
+            final String user = "user" + (random.nextInt(users) + 1);
+            int pick = random.nextInt(totalWeight);
+            String method = null;
+            for (final String m: mix.keySet()) {
+                pick -= mix.get(m);
+                if (pick < 0) {
+                    method = m;
+                    break;
+                }
+            }
+            final Object params;
+            if (SEARCH_OBJECTS.equals(method)) {
+                final SearchObjectsInput input = new SearchObjectsInput()
+                        .withMatchFilter(matchFilter())
+                        .withAccessFilter(accessFilter())
+                        .withPagination(new Pagination()
+                                // most users look at the first page
+                                .withStart(random.nextInt(4) == 0 ?
+                                        50L * (random.nextInt(4) + 1) : 0L)
+                                .withCount(random.nextBoolean() ? 20L : 50L));
+                if (random.nextInt(3) == 0) {
+                    input.withObjectTypes(Arrays.asList(types.get(random.nextInt(
+                            types.size()))));
+                }
+                if (random.nextInt(5) == 0) {
+                    input.withPostProcessing(new PostProcessing().withIdsOnly(1L));
+                }
+                params = input;
+            } else if (SEARCH_TYPES.equals(method)) {
+                params = new SearchTypesInput()
+                        .withMatchFilter(matchFilter())
+                        .withAccessFilter(accessFilter());
+            } else {
+                final List<Integer> groups = getAccessGroups(
+                        user, workspaces, workspacesPerUser);
+                final List<String> guids = new ArrayList<>();
+                for (int i = random.nextInt(10); i >= 0; i--) {
+                    guids.add(String.format("WS:%s/%s/1",
+                            groups.get(random.nextInt(groups.size())), random.nextInt(100) + 1));
+                }
+                params = new GetObjectsInput().withGuids(guids);
+            }
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> p = UObject.transformObjectToObject(params, Map.class);
+            return new Request(method, user, p);
+        }
+
+        private MatchFilter matchFilter() {
+            final int words = random.nextInt(3);
+            final List<String> query = new LinkedList<>();
+            for (int i = 0; i < words; i++) {
+                query.add(QUERY_WORDS.get(random.nextInt(QUERY_WORDS.size())));
+            }
+            return new MatchFilter().withFullTextInAll(query.isEmpty() ?
+                    null : String.join(" ", query));
+        }
+
+        private AccessFilter accessFilter() {
+            return new AccessFilter().withWithPrivate(1L)
+                    .withWithPublic(random.nextBoolean() ? 1L : 0L);
+        }
+    }
+
+    private static List<String> getSearchTypes(final TypeStorage typeStorage) {
+        final Set<String> ret = new TreeSet<>();
+        for (final ObjectTypeParsingRules rule: typeStorage.listObjectTypeParsingRules()) {
+            ret.add(rule.getGlobalObjectType().getType());
+        }
+        return new ArrayList<>(ret);
+    }
+
+    /* Times a layer of the search stack. The self time excludes the time spent in the next
+     * timed layer down the stack.
+     */
+    private class TimingSearchInterface implements SearchInterface {
+
+        private final String layer;
+        private final SearchInterface source;
+
+        private TimingSearchInterface(final String layer, final SearchInterface source) {
+            this.layer = layer;
+            this.source = source;
+        }
+
+        private <T> T time(final String method, final Callable<T> call) throws Exception {
+            final Deque<long[]> stack = childNanos.get();
+            final long[] children = new long[1];
+            stack.push(children);
+            final long start = System.nanoTime();
+            try {
+                return call.call();
+            } finally {
+                final long nanos = System.nanoTime() - start;
+                stack.pop();
+                if (!stack.isEmpty()) {
+                    stack.peek()[0] += nanos;
+                }
+                final Result res = currentResult.get();
+                if (res != null) {
+                    res.recordLayer(layer, method, nanos, nanos - children[0]);
+                }
+            }
+        }
+
+        @Override
+        public SearchTypesOutput searchTypes(final SearchTypesInput params, final String user)
+                throws Exception {
+            return time(SEARCH_TYPES, () -> source.searchTypes(params, user));
+        }
+
+        @Override
+        public SearchObjectsOutput searchObjects(
+                final SearchObjectsInput params,
+                final String user)
+                throws Exception {
+            return time(SEARCH_OBJECTS, () -> source.searchObjects(params, user));
+        }
+
+        @Override
+        public void exportObjects(
+                final SearchObjectsInput params,
+                final String user,
+                final ExportConsumer consumer)
+                throws Exception {
+            source.exportObjects(params, user, consumer);
+        }
+
+        @Override
+        public MultiSearchOutput multiSearch(final MultiSearchInput params, final String user)
+                throws Exception {
+            return source.multiSearch(params, user);
+        }
+
+        @Override
+        public GetObjectsOutput getObjects(final GetObjectsInput params, final String user)
+                throws Exception {
+            return time(GET_OBJECTS, () -> source.getObjects(params, user));
+        }
+
+        @Override
+        public Map<String, TypeDescriptor> listTypes(final String uniqueType) throws Exception {
+            return source.listTypes(uniqueType);
+        }
+
+        @Override
+        public String getTypesVersion() throws Exception {
+            return source.getTypesVersion();
+        }
+    }
+
+    /* Stands in for the workspace access group lookup. */
+    private class SimulatedAccessGroupProvider implements AccessGroupProvider {
+
+        @Override
+        public List<Integer> findAccessGroupIds(final String user) throws IOException {
+            workspaceLatency.pause();
+            return getAccessGroups(user, workspaces, workspacesPerUser);
+        }
+    }
+
+    /* Stands in for the auth service display name lookup. */
+    private class SimulatedAuthClient extends TemporaryAuth2Client {
+
+        private SimulatedAuthClient() {
+            super(dummyURL());
+        }
+
+        @Override
+        public Map<String, String> getUserDisplayNames(
+                final String token,
+                final Set<String> userNames)
+                throws IOException {
+            authLatency.pause();
+            final Map<String, String> ret = new HashMap<>();
+            for (final String user: userNames) {
+                ret.put(user, "Display name for " + user);
+            }
+            return ret;
+        }
+    }
+
+    private static URL dummyURL() {
+        try {
+            return new URL("http://localhost/services/auth");
+        } catch (MalformedURLException e) {
+            throw new RuntimeException("this should be impossible", e);
+        }
+    }
+
+    /* Stands in for the workspace info lookup. Each workspace is a narrative owned by one of
+     * the simulated users.
+     */
+    private class SimulatedWorkspace extends WorkspaceEventHandler {
+
+        private SimulatedWorkspace() {
+            super(new CloneableWorkspaceClient() {
+
+                @Override
+                public WorkspaceClient getClient() {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public WorkspaceClient getClientClone() {
+                    throw new UnsupportedOperationException();
+                }
+            });
+        }
+
+        @Override
+        public Tuple9<Long, String, String, String, Long, String, String, String,
+                Map<String, String>> getWorkspaceInfo(final long workspaceID)
+                throws IOException {
+            workspaceLatency.pause();
+            final String owner = "user" + (workspaceID % users + 1);
+            return new Tuple9<Long, String, String, String, Long, String, String, String,
+                    Map<String, String>>()
+                    .withE1(workspaceID)
+                    .withE2(owner + ":narrative_" + workspaceID)
+                    .withE3(owner)
+                    // after the simulated objects, or the decorator's cache entries are stale
+                    .withE4("2018-02-01T00:00:00+0000")
+                    .withE5(100L)
+                    .withE6("r")
+                    .withE7("n")
+                    .withE8("unlocked")
+                    .withE9(ImmutableMap.of(
+                            "narrative", "1",
+                            "narrative_nice_name", "Narrative " + workspaceID));
+        }
+    }
+
+    /** The results of a load test. All times are measured after the warmup. */
+    public static class Result {
+
+        private final double targetQPS;
+        private final Map<String, LatencyRecorder> latency = new TreeMap<>();
+        private final Map<String, LatencyRecorder> service = new TreeMap<>();
+        private final Map<String, Long> errorCounts = new TreeMap<>();
+        // layer -> method -> time
+        private final Map<String, Map<String, LatencyRecorder>> layerTime = new LinkedHashMap<>();
+        private final Map<String, Map<String, LatencyRecorder>> layerSelfTime =
+                new LinkedHashMap<>();
+        private final List<String> errors = new LinkedList<>();
+        private long start;
+        private long end;
+
+        private Result(final double targetQPS) {
+            this.targetQPS = targetQPS;
+            for (final String layer: LAYERS) {
+                layerTime.put(layer, new TreeMap<>());
+                layerSelfTime.put(layer, new TreeMap<>());
+            }
+        }
+
+        private synchronized void recordRequest(
+                final String method,
+                final long latencyNanos,
+                final long serviceNanos,
+                final long endNanos,
+                final String error) {
+            latency.computeIfAbsent(method, m -> new LatencyRecorder()).record(latencyNanos);
+            service.computeIfAbsent(method, m -> new LatencyRecorder()).record(serviceNanos);
+            errorCounts.put(method, errorCounts.getOrDefault(method, 0L) +
+                    (error == null ? 0 : 1));
+            if (error != null && errors.size() < MAX_ERRORS) {
+                errors.add(error);
+            }
+            end = Math.max(end, endNanos);
+        }
+
+        private synchronized void recordLayer(
+                final String layer,
+                final String method,
+                final long nanos,
+                final long selfNanos) {
+            layerTime.get(layer).computeIfAbsent(method, m -> new LatencyRecorder())
+                    .record(nanos);
+            layerSelfTime.get(layer).computeIfAbsent(method, m -> new LatencyRecorder())
+                    .record(Math.max(0, selfNanos));
+        }
+
+        /** Get the number of measured requests.
+         * @return the number of requests.
+         */
+        public synchronized long getRequests() {
+            return latency.values().stream().mapToLong(l -> l.getCount()).sum();
+        }
+
+        /** Get the number of measured requests that failed.
+         * @return the number of failed requests.
+         */
+        public synchronized long getErrorCount() {
+            return errorCounts.values().stream().mapToLong(l -> l).sum();
+        }
+
+        /** Get the first few error messages, if any.
+         * @return the error messages.
+         */
+        public synchronized List<String> getErrors() {
+            return new ArrayList<>(errors);
+        }
+
+        /** Get the latencies, measured from when each request was scheduled, for a method.
+         * @param method the method.
+         * @return the latencies, or null if the method was not called.
+         */
+        public synchronized LatencyRecorder getLatency(final String method) {
+            return latency.get(method);
+        }
+
+        /** Get the time spent in a layer of the search stack, including the layers below it,
+         * for a method.
+         * @param layer the layer, e.g. NarrativeInfoDecorator.
+         * @param method the method.
+         * @return the times, or null if the method was not called.
+         */
+        public synchronized LatencyRecorder getLayerTime(final String layer, final String method) {
+            return getLayer(layerTime, layer).get(method);
+        }
+
+        /** Get the time spent in a layer of the search stack, excluding the layers below it,
+         * for a method.
+         * @param layer the layer, e.g. NarrativeInfoDecorator.
+         * @param method the method.
+         * @return the times, or null if the method was not called.
+         */
+        public synchronized LatencyRecorder getLayerSelfTime(
+                final String layer,
+                final String method) {
+            return getLayer(layerSelfTime, layer).get(method);
+        }
+
+        private Map<String, LatencyRecorder> getLayer(
+                final Map<String, Map<String, LatencyRecorder>> layers,
+                final String layer) {
+            final Map<String, LatencyRecorder> ret = layers.get(layer);
+            if (ret == null) {
+                throw new IllegalArgumentException("No such layer: " + layer);
+            }
+            return ret;
+        }
+
+        /** Summarize the results as a map suitable for serializing to JSON.
+         * @return the summary.
+         */
+        public synchronized Map<String, Object> toMap() {
+            final double seconds = end <= start ? 0 : (end - start) / 1_000_000_000.0;
+            final long requests = getRequests();
+            final Map<String, Object> ret = new LinkedHashMap<>();
+            ret.put("requests", requests);
+            ret.put("errors", getErrorCount());
+            ret.put("seconds", seconds);
+            ret.put("target_qps", targetQPS);
+            ret.put("achieved_qps", seconds == 0 ? 0.0 : requests / seconds);
+            final Map<String, Object> methods = new LinkedHashMap<>();
+            for (final String method: latency.keySet()) {
+                final Map<String, Object> m = new LinkedHashMap<>();
+                final int count = latency.get(method).getCount();
+                m.put("requests", count);
+                m.put("errors", errorCounts.get(method));
+                m.put("qps", seconds == 0 ? 0.0 : count / seconds);
+                m.put("latency_ms", latency.get(method).toMap());
+                m.put("service_ms", service.get(method).toMap());
+                methods.put(method, m);
+            }
+            ret.put("methods", methods);
+            final Map<String, Object> layers = new LinkedHashMap<>();
+            for (final String layer: layerTime.keySet()) {
+                final Map<String, Object> l = new LinkedHashMap<>();
+                for (final String method: layerTime.get(layer).keySet()) {
+                    l.put(method, ImmutableMap.of(
+                            "total_ms", layerTime.get(layer).get(method).toMap(),
+                            "self_ms", layerSelfTime.get(layer).get(method).toMap()));
+                }
+                layers.put(layer, l);
+            }
+            ret.put("layers", layers);
+            ret.put("error_samples", new ArrayList<>(errors));
+            return ret;
+        }
+    }
+
+    /** Get a builder for a {@link SearchLoadGenerator}.
+     * @param typeStorage the source of the search types.
+     * @return a new builder.
+     */
+    public static Builder getBuilder(final TypeStorage typeStorage) {
+        return new Builder(typeStorage);
+    }
+
+    /** A builder for a {@link SearchLoadGenerator}. */
+    public static class Builder {
+
+        private final TypeStorage typeStorage;
+        private IndexingStorage storage = null;
+        private SimulatedLatency storageLatency = new SimulatedLatency(20, 10);
+        private SimulatedLatency workspaceLatency = new SimulatedLatency(30, 15);
+        private SimulatedLatency authLatency = new SimulatedLatency(10, 5);
+        private boolean caches = true;
+        private List<Request> recording = Collections.emptyList();
+        private final Map<String, Integer> mix = new LinkedHashMap<>(ImmutableMap.of(
+                SEARCH_OBJECTS, 70, SEARCH_TYPES, 20, GET_OBJECTS, 10));
+        private double qps = 50;
+        private double durationSec = 60;
+        private double warmupSec = 10;
+        private int threads = 50;
+        private int users = 100;
+        private int workspaces = 1000;
+        private int workspacesPerUser = 20;
+        private int hitsPerQuery = 1000;
+        private int textWords = 20;
+        private long seed = 1;
+
+        private Builder(final TypeStorage typeStorage) {
+            Utils.nonNull(typeStorage, "typeStorage");
+            this.typeStorage = typeStorage;
+        }
+
+        /** Set the storage system to search. By default a {@link SimulatedSearchStorage} is
+         * used.
+         * @param storage the storage system, or null for the default.
+         * @return this builder.
+         */
+        public Builder withNullableStorage(final IndexingStorage storage) {
+            this.storage = storage;
+            return this;
+        }
+
+        /** Set the latency of the default simulated storage system. The default is 20 +- 10 ms.
+         * @param latency the latency.
+         * @return this builder.
+         */
+        public Builder withStorageLatency(final SimulatedLatency latency) {
+            Utils.nonNull(latency, "latency");
+            this.storageLatency = latency;
+            return this;
+        }
+
+        /** Set the latency of the workspace. The default is 30 +- 15 ms.
+         * @param latency the latency.
+         * @return this builder.
+         */
+        public Builder withWorkspaceLatency(final SimulatedLatency latency) {
+            Utils.nonNull(latency, "latency");
+            this.workspaceLatency = latency;
+            return this;
+        }
+
+        /** Set the latency of the auth service. The default is 10 +- 5 ms.
+         * @param latency the latency.
+         * @return this builder.
+         */
+        public Builder withAuthLatency(final SimulatedLatency latency) {
+            Utils.nonNull(latency, "latency");
+            this.authLatency = latency;
+            return this;
+        }
+
+        /** Set whether to use the server's access group and display name caches. The
+         * {@link NarrativeInfoDecorator} always caches workspace info. The default is true.
+         * @param caches true to use the caches.
+         * @return this builder.
+         */
+        public Builder withCaches(final boolean caches) {
+            this.caches = caches;
+            return this;
+        }
+
+        /** Replay a recording rather than generating a synthetic mix of requests. The
+         * recording is replayed in a loop.
+         * @param recording the requests to replay, or null or an empty list to generate
+         * requests.
+         * @return this builder.
+         */
+        public Builder withNullableRecording(final List<Request> recording) {
+            this.recording = recording == null ?
+                    Collections.emptyList() : new ArrayList<>(recording);
+            return this;
+        }
+
+        /** Set the relative weight of a method in the synthetic request mix. The default
+         * weights are 70 for search_objects, 20 for search_types, and 10 for get_objects.
+         * @param method the method.
+         * @param weight the weight. 0 excludes the method from the mix.
+         * @return this builder.
+         */
+        public Builder withWeight(final String method, final int weight) {
+            if (!METHODS.contains(method)) {
+                throw new IllegalArgumentException("Unsupported method: " + method);
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("weight cannot be negative");
+            }
+            mix.put(method, weight);
+            return this;
+        }
+
+        /** Set the request rate. The default is 50 requests per second.
+         * @param qps the number of requests per second.
+         * @return this builder.
+         */
+        public Builder withQPS(final double qps) {
+            if (qps <= 0) {
+                throw new IllegalArgumentException("qps must be greater than 0");
+            }
+            this.qps = qps;
+            return this;
+        }
+
+        /** Set the duration of the measured part of the test. The default is 60 s.
+         * @param durationSec the duration in seconds.
+         * @return this builder.
+         */
+        public Builder withDurationSec(final double durationSec) {
+            if (durationSec <= 0) {
+                throw new IllegalArgumentException("durationSec must be greater than 0");
+            }
+            this.durationSec = durationSec;
+            return this;
+        }
+
+        /** Set the duration of the unmeasured warmup. The default is 10 s.
+         * @param warmupSec the duration in seconds.
+         * @return this builder.
+         */
+        public Builder withWarmupSec(final double warmupSec) {
+            if (warmupSec < 0) {
+                throw new IllegalArgumentException("warmupSec cannot be negative");
+            }
+            this.warmupSec = warmupSec;
+            return this;
+        }
+
+        /** Set the number of threads processing requests, equivalent to the server's request
+         * thread pool. The default is 50.
+         * @param threads the number of threads.
+         * @return this builder.
+         */
+        public Builder withThreads(final int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be at least 1");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /** Set the number of simulated users making synthetic requests. The default is 100.
+         * @param users the number of users.
+         * @return this builder.
+         */
+        public Builder withUsers(final int users) {
+            if (users < 1) {
+                throw new IllegalArgumentException("users must be at least 1");
+            }
+            this.users = users;
+            return this;
+        }
+
+        /** Set the number of private workspaces and the number each user can read. The
+         * defaults are 1000 and 20.
+         * @param workspaces the number of private workspaces.
+         * @param workspacesPerUser the number of workspaces each user can read.
+         * @return this builder.
+         */
+        public Builder withWorkspaces(final int workspaces, final int workspacesPerUser) {
+            if (workspaces < 1 || workspacesPerUser < 1) {
+                throw new IllegalArgumentException(
+                        "workspaces and workspacesPerUser must be at least 1");
+            }
+            this.workspaces = workspaces;
+            this.workspacesPerUser = workspacesPerUser;
+            return this;
+        }
+
+        /** Set the number of objects matched by each search in the default simulated storage
+         * system. The default is 1000.
+         * @param hitsPerQuery the number of objects.
+         * @return this builder.
+         */
+        public Builder withHitsPerQuery(final int hitsPerQuery) {
+            if (hitsPerQuery < 0) {
+                throw new IllegalArgumentException("hitsPerQuery cannot be negative");
+            }
+            this.hitsPerQuery = hitsPerQuery;
+            return this;
+        }
+
+        /** Set the number of words in the text fields of the objects returned by the default
+         * simulated storage system, which controls the response size. The default is 20.
+         * @param textWords the number of words.
+         * @return this builder.
+         */
+        public Builder withTextWords(final int textWords) {
+            if (textWords < 1) {
+                throw new IllegalArgumentException("textWords must be at least 1");
+            }
+            this.textWords = textWords;
+            return this;
+        }
+
+        /** Set the seed for the synthetic request generator. The default is 1.
+         * @param seed the seed.
+         * @return this builder.
+         */
+        public Builder withSeed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /** Build the load generator.
+         * @return the load generator.
+         */
+        public SearchLoadGenerator build() {
+            if (recording.isEmpty() && mix.values().stream().mapToInt(i -> i).sum() == 0) {
+                throw new IllegalArgumentException("At least one method must have a weight");
+            }
+            final IndexingStorage s = storage != null ? storage : new SimulatedSearchStorage(
+                    getSearchTypes(typeStorage), storageLatency, hitsPerQuery, textWords);
+            return new SearchLoadGenerator(typeStorage, s, workspaceLatency, authLatency,
+                    caches, recording, new LinkedHashMap<>(mix), qps, durationSec, warmupSec,
+                    threads, users, workspaces, workspacesPerUser, seed);
+        }
+    }
+
+    private static class Args {
+
+        @Parameter(names = {"-h", "--help"}, help = true, description = "Display help.")
+        private boolean help;
+
+        @Parameter(names = {"-o", "--output"}, description =
+                "A file in which to save the results as JSON. The results are always printed.")
+        private String output;
+
+        @Parameter(names = {"--types-dir"}, description = "The directory of type specifications.")
+        private String typesDir = "resources/types";
+
+        @Parameter(names = {"--mappings-dir"}, description = "The directory of type mappings.")
+        private String mappingsDir = "resources/typemappings";
+
+        @Parameter(names = {"-q", "--qps"}, description = "The number of requests per second.")
+        private double qps = 50;
+
+        @Parameter(names = {"-d", "--duration"}, description = "The duration of the measured " +
+                "part of the test in seconds.")
+        private double duration = 60;
+
+        @Parameter(names = {"--warmup"}, description = "The duration of the unmeasured " +
+                "warmup in seconds.")
+        private double warmup = 10;
+
+        @Parameter(names = {"-t", "--threads"}, description = "The number of request threads.")
+        private int threads = 50;
+
+        @Parameter(names = {"-r", "--recording"}, description = "A file of requests to replay, " +
+                "one JSON object per line with the method, user, and params keys. If omitted " +
+                "a synthetic mix of requests is generated.")
+        private String recording;
+
+        @Parameter(names = {"--mix"}, description = "The relative weights of the " +
+                "search_objects, search_types, and get_objects methods in the synthetic mix.",
+                arity = 3)
+        private List<Integer> mix = Arrays.asList(70, 20, 10);
+
+        @Parameter(names = {"--users"}, description = "The number of simulated users.")
+        private int users = 100;
+
+        @Parameter(names = {"--workspaces"}, description = "The number of private workspaces.")
+        private int workspaces = 1000;
+
+        @Parameter(names = {"--workspaces-per-user"}, description = "The number of private " +
+                "workspaces each user can read.")
+        private int workspacesPerUser = 20;
+
+        @Parameter(names = {"--ws-latency"}, description = "The mean and jitter of the " +
+                "simulated workspace latency in ms.", arity = 2)
+        private List<Double> wsLatency = Arrays.asList(30.0, 15.0);
+
+        @Parameter(names = {"--auth-latency"}, description = "The mean and jitter of the " +
+                "simulated auth service latency in ms.", arity = 2)
+        private List<Double> authLatency = Arrays.asList(10.0, 5.0);
+
+        @Parameter(names = {"--storage-latency"}, description = "The mean and jitter of the " +
+                "simulated search storage latency in ms. Ignored if --es-host is set.",
+                arity = 2)
+        private List<Double> storageLatency = Arrays.asList(20.0, 10.0);
+
+        @Parameter(names = {"--hits"}, description = "The number of objects matched by each " +
+                "simulated search.")
+        private int hits = 1000;
+
+        @Parameter(names = {"--text-words"}, description = "The number of words in the text " +
+                "fields of simulated search results.")
+        private int textWords = 20;
+
+        @Parameter(names = {"--no-caches"}, description = "Disable the access group and " +
+                "display name caches.")
+        private boolean noCaches = false;
+
+        @Parameter(names = {"--es-host"}, description = "Search a local ElasticSearch " +
+                "instance at host:port rather than the simulated search storage. The simulated " +
+                "users can read the public data and the access groups from 100 to 100 + " +
+                "--workspaces.")
+        private String esHost;
+
+        @Parameter(names = {"--es-prefix"}, description = "The ElasticSearch index name prefix.")
+        private String esPrefix = "";
+
+        @Parameter(names = {"-w", "--work-dir"}, description = "A directory for temporary " +
+                "files when searching ElasticSearch.")
+        private String workDir = "work/search_load";
+
+        @Parameter(names = {"--seed"}, description = "The seed for the request generator.")
+        private long seed = 1;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Args a = new Args();
+        final JCommander jc = new JCommander(a);
+        jc.setProgramName("search_load_generator");
+        try {
+            jc.parse(args);
+        } catch (ParameterException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        if (a.help) {
+            jc.usage();
+            return;
+        }
+        final TypeStorage ts = new TypeFileStorage(Paths.get(a.typesDir),
+                Paths.get(a.mappingsDir), new ObjectTypeParsingRulesFileParser(),
+                ImmutableMap.of("yaml", new YAMLTypeMappingParser()), new FileLister(),
+                new StdErrLogger());
+        ElasticIndexingStorage es = null;
+        if (a.esHost != null) {
+            final String[] hostPort = a.esHost.split(":");
+            es = new ElasticIndexingStorage(
+                    new HttpHost(hostPort[0], Integer.parseInt(hostPort[1])),
+                    FileUtil.getOrCreateCleanSubDir(new File(a.workDir), "esbulk"));
+            es.setIndexNamePrefix(a.esPrefix);
+        }
+        final Result res = getBuilder(ts)
+                .withNullableStorage(es)
+                .withStorageLatency(new SimulatedLatency(
+                        a.storageLatency.get(0), a.storageLatency.get(1)))
+                .withWorkspaceLatency(new SimulatedLatency(
+                        a.wsLatency.get(0), a.wsLatency.get(1)))
+                .withAuthLatency(new SimulatedLatency(
+                        a.authLatency.get(0), a.authLatency.get(1)))
+                .withCaches(!a.noCaches)
+                .withNullableRecording(a.recording == null ?
+                        null : readRecording(Paths.get(a.recording)))
+                .withWeight(SEARCH_OBJECTS, a.mix.get(0))
+                .withWeight(SEARCH_TYPES, a.mix.get(1))
+                .withWeight(GET_OBJECTS, a.mix.get(2))
+                .withQPS(a.qps)
+                .withDurationSec(a.duration)
+                .withWarmupSec(a.warmup)
+                .withThreads(a.threads)
+                .withUsers(a.users)
+                .withWorkspaces(a.workspaces, a.workspacesPerUser)
+                .withHitsPerQuery(a.hits)
+                .withTextWords(a.textWords)
+                .withSeed(a.seed)
+                .build()
+                .run();
+        final Map<String, Object> config = new LinkedHashMap<>();
+        config.put("qps", a.qps);
+        config.put("duration_sec", a.duration);
+        config.put("warmup_sec", a.warmup);
+        config.put("threads", a.threads);
+        config.put("requests", a.recording == null ? "synthetic" : a.recording);
+        config.put("mix", ImmutableMap.of(SEARCH_OBJECTS, a.mix.get(0),
+                SEARCH_TYPES, a.mix.get(1), GET_OBJECTS, a.mix.get(2)));
+        config.put("users", a.users);
+        config.put("workspaces", a.workspaces);
+        config.put("workspaces_per_user", a.workspacesPerUser);
+        config.put("ws_latency_ms", a.wsLatency);
+        config.put("auth_latency_ms", a.authLatency);
+        config.put("storage", a.esHost == null ? "simulated" : a.esHost);
+        if (a.esHost == null) {
+            config.put("storage_latency_ms", a.storageLatency);
+            config.put("hits", a.hits);
+            config.put("text_words", a.textWords);
+        }
+        config.put("caches", !a.noCaches);
+        config.put("seed", a.seed);
+        final Map<String, Object> out = new LinkedHashMap<>();
+        out.put("benchmark", "search_load");
+        out.put("timestamp", Instant.now().toString());
+        out.put("config", config);
+        out.putAll(res.toMap());
+        final ObjectMapper mapper = new ObjectMapper();
+        System.out.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(out));
+        if (a.output != null) {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(new File(a.output), out);
+        }
+    }
+
+    /* Only used for loading the type specifications. */
+    private static class StdErrLogger implements LineLogger {
+
+        @Override
+        public void logInfo(final String line) {
+            // not interesting here
+        }
+
+        @Override
+        public void logError(final String line) {
+            System.err.println(line);
+        }
+
+        @Override
+        public void logError(final Throwable error) {
+            error.printStackTrace();
+        }
+
+        @Override
+        public void timeStat(
+                final GUID guid,
+                final long loadMs,
+                final long parseMs,
+                final long indexMs) {
+            // not used
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package kbasesearchengine.test.performance;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.main.LineLogger;
+import kbasesearchengine.search.AccessFilter;
+import kbasesearchengine.search.FoundHits;
+import kbasesearchengine.search.ObjectData;
+import kbasesearchengine.search.Pagination;
+import kbasesearchengine.search.PostProcessing;
+import kbasesearchengine.system.FileLister;
+import kbasesearchengine.system.ObjectTypeParsingRulesFileParser;
+import kbasesearchengine.system.TypeFileStorage;
+import kbasesearchengine.system.TypeStorage;
+import kbasesearchengine.system.YAMLTypeMappingParser;
+import kbasesearchengine.test.common.TestCommon;
+import kbasesearchengine.test.performance.SearchLoadGenerator.Result;
+
+public class SearchLoadGeneratorTest {
+
+    private static final List<String> LAYERS = Arrays.asList("TemporaryNarrativePruner",
+            "NarrativeInfoDecorator", "SearchMethods");
+
+    private static Path tempDir;
+    private static TypeStorage typeStorage;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        tempDir = Paths.get(TestCommon.getTempDir()).resolve("SearchLoadGeneratorTest")
+                .toAbsolutePath();
+        tempDir.toFile().mkdirs();
+        typeStorage = new TypeFileStorage(Paths.get("resources/types"),
+                Paths.get("resources/typemappings"), new ObjectTypeParsingRulesFileParser(),
+                ImmutableMap.of("yaml", new YAMLTypeMappingParser()), new FileLister(),
+                mock(LineLogger.class));
+    }
+
+    @AfterClass
+    public static void teardown() throws Exception {
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    private SearchLoadGenerator.Builder noLatency() {
+        return SearchLoadGenerator.getBuilder(typeStorage)
+                .withStorageLatency(SimulatedLatency.NONE)
+                .withWorkspaceLatency(SimulatedLatency.NONE)
+                .withAuthLatency(SimulatedLatency.NONE)
+                .withThreads(4);
+    }
+
+    @Test
+    public void syntheticMix() throws Exception {
+        final Result res = noLatency()
+                .withQPS(400)
+                .withDurationSec(0.5)
+                .withWarmupSec(0.1)
+                .build()
+                .run();
+
+        assertThat("incorrect errors", res.getErrors(), is(Collections.emptyList()));
+        assertThat("incorrect requests", res.getRequests(), is(200L));
+        long total = 0;
+        for (final String method: Arrays.asList("search_objects", "search_types",
+                "get_objects")) {
+            final int count = res.getLatency(method).getCount();
+            total += count;
+            for (final String layer: LAYERS) {
+                // every request passes through every layer once
+                assertThat("incorrect count for " + layer, res.getLayerTime(layer, method)
+                        .getCount(), is(count));
+                assertThat("self time exceeds total time for " + layer,
+                        res.getLayerSelfTime(layer, method).getTotalNanos() <=
+                        res.getLayerTime(layer, method).getTotalNanos(), is(true));
+            }
+        }
+        assertThat("incorrect total", total, is(200L));
+        assertThat("incorrect keys", res.toMap().keySet(), is(TestCommon.set("requests",
+                "errors", "seconds", "target_qps", "achieved_qps", "methods", "layers",
+                "error_samples")));
+    }
+
+    @Test
+    public void layerSelfTime() throws Exception {
+        // without the cache every search looks up the access groups from the workspace
+        final Result res = noLatency()
+                .withWorkspaceLatency(new SimulatedLatency(5, 0))
+                .withCaches(false)
+                .withWeight("search_objects", 0)
+                .withWeight("get_objects", 0)
+                .withQPS(100)
+                .withDurationSec(0.2)
+                .withWarmupSec(0)
+                .build()
+                .run();
+
+        assertThat("incorrect errors", res.getErrors(), is(Collections.emptyList()));
+        assertThat("incorrect methods", res.getLatency("search_objects"), is(nullValue()));
+        final LatencyRecorder methods = res.getLayerSelfTime("SearchMethods", "search_types");
+        assertThat("incorrect count", methods.getCount(), is(20));
+        assertThat("missing latency", methods.getPercentile(1) >= 5_000_000, is(true));
+        // type searches don't look up narrative info
+        final LatencyRecorder narr = res.getLayerSelfTime(
+                "NarrativeInfoDecorator", "search_types");
+        assertThat("latency in wrong layer", narr.getPercentile(100) < 5_000_000, is(true));
+        assertThat("missing latency", res.getLatency("search_types").getPercentile(1)
+                >= 5_000_000, is(true));
+    }
+
+    @Test
+    public void recording() throws Exception {
+        final Path file = tempDir.resolve("recording.jsonl");
+        Files.write(file, Arrays.asList(
+                "{\"method\": \"KBaseSearchEngine.search_types\", \"user\": \"user1\", " +
+                        "\"params\": {\"match_filter\": {\"full_text_in_all\": \"kinase\"}, " +
+                        "\"access_filter\": {\"with_public\": 1}}}",
+                "",
+                "{\"method\": \"get_objects\", \"user\": \"user2\", " +
+                        "\"params\": {\"guids\": [\"WS:1/1/1\"]}}"));
+        final List<SearchLoadGenerator.Request> recording =
+                SearchLoadGenerator.readRecording(file);
+        assertThat("incorrect methods", recording.stream().map(r -> r.getMethod())
+                .collect(Collectors.toList()), is(Arrays.asList("search_types", "get_objects")));
+
+        final Result res = noLatency()
+                .withNullableRecording(recording)
+                .withQPS(200)
+                .withDurationSec(0.1)
+                .withWarmupSec(0)
+                .build()
+                .run();
+
+        assertThat("incorrect errors", res.getErrors(), is(Collections.emptyList()));
+        assertThat("incorrect search_types", res.getLatency("search_types").getCount(), is(10));
+        assertThat("incorrect get_objects", res.getLatency("get_objects").getCount(), is(10));
+        assertThat("incorrect search_objects", res.getLatency("search_objects"),
+                is(nullValue()));
+    }
+
+    @Test
+    public void recordingBadLine() throws Exception {
+        final Path file = tempDir.resolve("bad_recording.jsonl");
+        Files.write(file, Arrays.asList(
+                "{\"method\": \"search_types\", \"user\": \"user1\", \"params\": {}}",
+                "{\"method\": \"list_types\", \"user\": \"user1\", \"params\": {}}"));
+        try {
+            SearchLoadGenerator.readRecording(file);
+            fail("expected exception");
+        } catch (IOException got) {
+            assertThat("incorrect exception", got.getMessage(), is(
+                    "Bad request at line 2 of " + file + ": Unsupported method: list_types"));
+        }
+    }
+
+    @Test
+    public void simulatedStorage() throws Exception {
+        final SimulatedSearchStorage storage = new SimulatedSearchStorage(
+                Arrays.asList("Genome", "Narrative"), SimulatedLatency.NONE, 5, 3);
+        final PostProcessing pp = new PostProcessing();
+        pp.objectInfo = true;
+        pp.objectKeys = true;
+        final FoundHits hits = storage.searchObjects(null, null, null,
+                new AccessFilter().withAccessGroups(100, 101), new Pagination(1, 10), pp);
+
+        assertThat("incorrect total", hits.total, is(5));
+        assertThat("incorrect guids", hits.guids.stream().map(g -> g.toString())
+                .collect(Collectors.toList()), is(Arrays.asList(
+                        "WS:101/1/1", "WS:100/2/1", "WS:101/2/1", "WS:100/3/1")));
+        final ObjectData narr = hits.objects.get(0);
+        assertThat("incorrect type", narr.getType().get().getType(), is("Narrative"));
+        assertThat("incorrect keys", narr.getKeyProperties().keySet(), is(TestCommon.set(
+                "name", "description", "source", "code_output", "app_output", "app_info",
+                "app_input", "job_ids")));
+        assertThat("incorrect data", narr.getData().isPresent(), is(false));
+
+        assertThat("incorrect public total", storage.searchObjects(null, null, null,
+                new AccessFilter().withPublic(true), null, pp).guids.size(), is(5));
+        assertThat("incorrect empty total", storage.searchObjects(null, null, null,
+                new AccessFilter(), null, pp).total, is(0));
+        assertThat("incorrect type counts", storage.searchTypes(null,
+                new AccessFilter().withPublic(true)), is(ImmutableMap.of(
+                        "Genome", 3, "Narrative", 2)));
+    }
+
+    @Test
+    public void accessGroups() {
+        final List<Integer> groups = SearchLoadGenerator.getAccessGroups("user1", 1000, 20);
+        assertThat("incorrect size", groups.size(), is(20));
+        assertThat("not deterministic", SearchLoadGenerator.getAccessGroups("user1", 1000, 20),
+                is(groups));
+        assertThat("incorrect range", groups.stream().allMatch(g -> g >= 100 && g < 1100),
+                is(true));
+        assertThat("incorrect small", SearchLoadGenerator.getAccessGroups("user1", 3, 20),
+                is(Arrays.asList(100, 101, 102)));
+    }
+
+    @Test
+    public void latencyFail() {
+        failLatency(-1, 0, "latencies cannot be negative");
+        failLatency(1, -1, "latencies cannot be negative");
+        failLatency(1, 2, "jitter cannot exceed the base latency");
+    }
+
+    private void failLatency(final double base, final double jitter, final String expected) {
+        try {
+            new SimulatedLatency(base, jitter);
+            fail("expected exception");
+        } catch (IllegalArgumentException got) {
+            assertThat("incorrect exception", got.getMessage(), is(expected));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package kbasesearchengine.test.performance;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Simulates the latency of a remote service, e.g. a round trip to the workspace, by sleeping
+ * for a time drawn uniformly from a base latency plus or minus a jitter. Thread safe.
+ */
+public class SimulatedLatency {
+
+    /** A latency of zero, which never sleeps. */
+    public static final SimulatedLatency NONE = new SimulatedLatency(0, 0);
+
+    private final double baseMillis;
+    private final double jitterMillis;
+
+    /** Create a latency.
+     * @param baseMillis the mean latency in milliseconds.
+     * @param jitterMillis the maximum deviation from the mean in milliseconds. The jitter
+     * cannot exceed the mean.
+     */
+    public SimulatedLatency(final double baseMillis, final double jitterMillis) {
+        if (baseMillis < 0 || jitterMillis < 0) {
+            throw new IllegalArgumentException("latencies cannot be negative");
+        }
+        if (jitterMillis > baseMillis) {
+            throw new IllegalArgumentException("jitter cannot exceed the base latency");
+        }
+        this.baseMillis = baseMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /** Get the mean latency.
+     * @return the mean latency in milliseconds.
+     */
+    public double getBaseMillis() {
+        return baseMillis;
+    }
+
+    /** Get the maximum deviation from the mean latency.
+     * @return the jitter in milliseconds.
+     */
+    public double getJitterMillis() {
+        return jitterMillis;
+    }
+
+    /** Sleep for a simulated latency.
+     * @throws InterruptedIOException if the thread is interrupted. The interrupt flag is
+     * restored. The exception is an IOException since that is what a remote call would throw.
+     */
+    public void pause() throws InterruptedIOException {
+        if (baseMillis == 0) {
+            return;
+        }
+        final double millis = jitterMillis == 0 ? baseMillis : baseMillis +
+                ThreadLocalRandom.current().nextDouble(-jitterMillis, jitterMillis);
+        try {
+            TimeUnit.NANOSECONDS.sleep((long) (millis * 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during simulated latency");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return baseMillis + "+-" + jitterMillis + "ms";
+    }
+}
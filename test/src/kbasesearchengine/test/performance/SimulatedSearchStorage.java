@@ -0,0 +1,275 @@
+package kbasesearchengine.test.performance;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.search.AccessFilter;
+import kbasesearchengine.search.FoundHits;
+import kbasesearchengine.search.MatchFilter;
+import kbasesearchengine.search.MultiSearchResult;
+import kbasesearchengine.search.ObjectData;
+import kbasesearchengine.search.ObjectSearchQuery;
+import kbasesearchengine.search.Pagination;
+import kbasesearchengine.search.PostProcessing;
+import kbasesearchengine.search.SortingRule;
+import kbasesearchengine.search.TypeSearchQuery;
+import kbasesearchengine.system.SearchObjectType;
+import kbasesearchengine.tools.Utils;
+
+/** A local stand-in for the search storage system for benchmarking the search stack without an
+ * ElasticSearch instance.
+ *
+ * Every search sleeps for a {@link SimulatedLatency} and then returns synthetic hits. Each
+ * query matches a fixed number of objects, spread round robin over the access groups the
+ * {@link AccessFilter} allows and over the requested types, so the cost of a search depends on
+ * the page size and post processing options as it does for ElasticSearch, but not on the match
+ * filter. Hits are generated deterministically from their position in the results, so the same
+ * page of the same query always returns the same objects. Object timestamps fall within the
+ * first two weeks of 2018. Multiple searches in a {@link #multiSearch(List, List)} share one
+ * round trip.
+ *
+ * The indexing methods behave as for {@link BenchmarkIndexingStorage}; indexed objects are not
+ * searchable.
+ */
+public class SimulatedSearchStorage extends BenchmarkIndexingStorage {
+
+    /** The access groups that hold public data. */
+    public static final Set<Integer> PUBLIC_ACCESS_GROUPS = Collections.unmodifiableSet(
+            new TreeSet<>(Arrays.asList(1, 2, 3, 4, 5)));
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_INDEX = 1_000_000;
+    private static final Instant START_TIME = Instant.parse("2018-01-01T00:00:00Z");
+    private static final List<String> WORDS = Arrays.asList("protein", "kinase", "transport",
+            "membrane", "binding", "domain", "hypothetical", "regulator", "synthase", "family",
+            "putative", "subunit", "reductase", "ribosomal", "oxidase", "factor");
+    // the fields removed from narratives by the TemporaryNarrativePruner
+    private static final List<String> NARRATIVE_KEYS = Arrays.asList(
+            "source", "code_output", "app_output", "app_info", "app_input", "job_ids");
+
+    private final List<String> types;
+    private final SimulatedLatency latency;
+    private final int hitsPerQuery;
+    private final int textWords;
+
+    /** Create the storage.
+     * @param types the search types of the synthetic objects, e.g. Genome.
+     * @param latency the latency of a round trip to the storage system.
+     * @param hitsPerQuery the total number of objects matched by each object search.
+     * @param textWords the number of words in the text fields of the synthetic objects, which
+     * controls the object size.
+     */
+    public SimulatedSearchStorage(
+            final List<String> types,
+            final SimulatedLatency latency,
+            final int hitsPerQuery,
+            final int textWords) {
+        Utils.nonNull(types, "types");
+        Utils.nonNull(latency, "latency");
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("types cannot be empty");
+        }
+        if (hitsPerQuery < 0) {
+            throw new IllegalArgumentException("hitsPerQuery cannot be negative");
+        }
+        if (textWords < 1) {
+            throw new IllegalArgumentException("textWords must be at least 1");
+        }
+        this.types = new ArrayList<>(types);
+        this.latency = latency;
+        this.hitsPerQuery = hitsPerQuery;
+        this.textWords = textWords;
+    }
+
+    @Override
+    public List<ObjectData> getObjectsByIds(final Set<GUID> guids) throws IOException {
+        final PostProcessing pp = new PostProcessing();
+        pp.objectInfo = true;
+        pp.objectData = true;
+        pp.objectKeys = true;
+        return getObjectsByIds(guids, pp);
+    }
+
+    @Override
+    public List<ObjectData> getObjectsByIds(
+            final Set<GUID> guids,
+            final PostProcessing postProcessing)
+            throws IOException {
+        latency.pause();
+        final List<ObjectData> ret = new ArrayList<>();
+        for (final GUID guid: guids) {
+            final int index = Math.floorMod(guid.toString().hashCode(), MAX_INDEX);
+            ret.add(toObjectData(guid, types.get(index % types.size()), index, postProcessing));
+        }
+        return ret;
+    }
+
+    @Override
+    public Map<String, Integer> searchTypes(
+            final MatchFilter matchFilter,
+            final AccessFilter accessFilter)
+            throws IOException {
+        latency.pause();
+        return countTypes(accessFilter);
+    }
+
+    private Map<String, Integer> countTypes(final AccessFilter accessFilter) {
+        final Map<String, Integer> ret = new LinkedHashMap<>();
+        if (!getAccessGroups(accessFilter).isEmpty()) {
+            for (int i = 0; i < types.size(); i++) {
+                // spread the remainder over the first types, as the object searches do
+                ret.put(types.get(i), hitsPerQuery / types.size() +
+                        (i < hitsPerQuery % types.size() ? 1 : 0));
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public FoundHits searchIds(
+            final List<String> objectType,
+            final MatchFilter matchFilter,
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final Pagination pagination)
+            throws IOException {
+        latency.pause();
+        return search(objectType, sorting, accessFilter, pagination, null);
+    }
+
+    @Override
+    public FoundHits searchObjects(
+            final List<String> objectType,
+            final MatchFilter matchFilter,
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final Pagination pagination,
+            final PostProcessing postProcessing)
+            throws IOException {
+        latency.pause();
+        return search(objectType, sorting, accessFilter, pagination, postProcessing);
+    }
+
+    @Override
+    public MultiSearchResult multiSearch(
+            final List<ObjectSearchQuery> objectSearches,
+            final List<TypeSearchQuery> typeSearches)
+            throws IOException {
+        latency.pause();
+        final List<FoundHits> objectResults = new ArrayList<>();
+        final List<Long> objectTimes = new ArrayList<>();
+        for (final ObjectSearchQuery q: objectSearches) {
+            objectResults.add(search(q.getObjectTypes(), q.getSorting().orNull(),
+                    q.getAccessFilter(), q.getPagination().orNull(),
+                    q.getPostProcessing().orNull()));
+            objectTimes.add(0L);
+        }
+        final List<Map<String, Integer>> typeResults = new ArrayList<>();
+        final List<Long> typeTimes = new ArrayList<>();
+        for (final TypeSearchQuery q: typeSearches) {
+            typeResults.add(countTypes(q.getAccessFilter()));
+            typeTimes.add(0L);
+        }
+        return new MultiSearchResult(objectResults, objectTimes, typeResults, typeTimes);
+    }
+
+    // postProcessing is null for an ID only search
+    private FoundHits search(
+            final List<String> objectType,
+            final List<SortingRule> sorting,
+            final AccessFilter accessFilter,
+            final Pagination pagination,
+            final PostProcessing postProcessing) {
+        final List<Integer> groups = getAccessGroups(accessFilter);
+        final List<String> hitTypes = objectType == null || objectType.isEmpty() ?
+                types : objectType;
+        final int start = pagination == null || pagination.start == null ? 0 : pagination.start;
+        final int count = pagination == null || pagination.count == null ?
+                DEFAULT_PAGE_SIZE : pagination.count;
+        final int total = groups.isEmpty() ? 0 : hitsPerQuery;
+        final FoundHits ret = new FoundHits();
+        ret.pagination = new Pagination(start, count);
+        ret.sortingRules = sorting == null ? Collections.emptyList() : sorting;
+        ret.total = total;
+        ret.guids = new LinkedHashSet<>();
+        ret.objects = postProcessing == null ? null : new ArrayList<>();
+        for (int i = start; i < Math.min(total, start + count); i++) {
+            final GUID guid = new GUID("WS", groups.get(i % groups.size()),
+                    (i / groups.size() + 1) + "", 1, null, null);
+            ret.guids.add(guid);
+            if (postProcessing != null) {
+                ret.objects.add(toObjectData(
+                        guid, hitTypes.get(i % hitTypes.size()), i, postProcessing));
+            }
+        }
+        return ret;
+    }
+
+    private List<Integer> getAccessGroups(final AccessFilter accessFilter) {
+        final Set<Integer> ret = new TreeSet<>();
+        if (accessFilter.accessGroupIds != null) {
+            ret.addAll(accessFilter.accessGroupIds);
+        }
+        if (accessFilter.withPublic) {
+            ret.addAll(PUBLIC_ACCESS_GROUPS);
+        }
+        return new ArrayList<>(ret);
+    }
+
+    private ObjectData toObjectData(
+            final GUID guid,
+            final String type,
+            final int index,
+            final PostProcessing pp) {
+        final ObjectData.Builder b = ObjectData.getBuilder(guid);
+        if (pp.objectInfo) {
+            b.withNullableObjectName(type + "_" + index)
+                    .withNullableType(new SearchObjectType(type, 1))
+                    .withNullableCreator("user" + (index % 100))
+                    .withNullableTimestamp(START_TIME.plusSeconds(index % MAX_INDEX));
+        } else {
+            // the narrative pruner requires the type
+            b.withNullableType(new SearchObjectType(type, 1));
+        }
+        if (pp.objectData) {
+            final Map<String, Object> data = new LinkedHashMap<>();
+            data.put("id", type + "_" + index);
+            data.put("description", text(index));
+            b.withNullableData(data);
+        }
+        if (pp.objectKeys) {
+            b.withKeyProperty("name", type + "_" + index);
+            b.withKeyProperty("description", text(index + 1));
+            if (type.equals("Narrative")) {
+                for (final String key: NARRATIVE_KEYS) {
+                    b.withKeyProperty(key, text(index + key.length()));
+                }
+            }
+        }
+        if (pp.objectHighlight) {
+            b.withHighlight("description", Arrays.asList("<em>" + text(index) + "</em>"));
+        }
+        return b.build();
+    }
+
+    private String text(final int seed) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < textWords; i++) {
+            if (i > 0) {
+                sb.append(" ");
+            }
+            sb.append(WORDS.get(Math.floorMod(seed + i * 7, WORDS.size())));
+        }
+        return sb.toString();
+    }
+}
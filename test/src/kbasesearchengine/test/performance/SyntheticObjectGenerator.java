@@ -0,0 +1,219 @@
+package kbasesearchengine.test.performance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import kbasesearchengine.system.IndexingRules;
+import kbasesearchengine.system.ObjectTypeParsingRules;
+import kbasesearchengine.system.ParsingRulesSubtypeFirstComparator;
+import kbasesearchengine.system.TransformType;
+
+/** Generates synthetic data objects that satisfy a set of parsing rules, e.g. the rules for
+ * a storage type provided by a {@link kbasesearchengine.system.TypeStorage}.
+ *
+ * Every indexing rule with a path gets a value at that path, with the type of the value chosen
+ * from the rule's transform and keyword type. Each subobject path gets the configured number of
+ * subobjects, each with a unique ID at the subobject ID path. References that would be
+ * transformed into GUIDs are omitted, since the objects they point to do not exist; the rules
+ * fall back to their default values.
+ *
+ * Objects are generated from a seeded random number generator so that the same generator
+ * configuration always produces the same sequence of objects.
+ */
+public class SyntheticObjectGenerator {
+
+    private static final String[] WORDS = {"alpha", "bacteria", "carbon", "domain", "enzyme",
+            "ferredoxin", "glucose", "helicase", "isomerase", "kinase", "ligase", "membrane",
+            "nitrogen", "operon", "protein", "quinone", "ribosome", "synthase", "transporter",
+            "ubiquitin", "vesicle", "xylose", "yeast", "zinc"};
+
+    private final int subObjects;
+    private final int listSize;
+    private final int textWords;
+    private final Random random;
+    private long idCounter = 0;
+
+    /** Create a generator.
+     * @param subObjects the number of subobjects to create at each subobject path, and the size
+     * of lists whose size is indexed.
+     * @param listSize the number of items in any other list or mapping.
+     * @param textWords the number of words in full text fields.
+     * @param seed the seed for the random number generator.
+     */
+    public SyntheticObjectGenerator(
+            final int subObjects,
+            final int listSize,
+            final int textWords,
+            final long seed) {
+        if (subObjects < 0 || listSize < 1 || textWords < 1) {
+            throw new IllegalArgumentException(
+                    "subObjects must be >= 0 and listSize and textWords must be >= 1");
+        }
+        this.subObjects = subObjects;
+        this.listSize = listSize;
+        this.textWords = textWords;
+        this.random = new Random(seed);
+    }
+
+    /** Generate an object.
+     * @param rules the parsing rules the object must satisfy. Usually all the rules for one
+     * storage object type, e.g. a parent type and its subobject types.
+     * @return the object as a structure of maps, lists, and primitives.
+     */
+    public Map<String, Object> generate(final Collection<ObjectTypeParsingRules> rules) {
+        final List<ObjectTypeParsingRules> sorted = new ArrayList<>(rules);
+        // subobjects first so that size rules on the subobject lists see the subobjects
+        sorted.sort(new ParsingRulesSubtypeFirstComparator());
+        Object root = new LinkedHashMap<>();
+        for (final ObjectTypeParsingRules rule: sorted) {
+            if (rule.getSubObjectPath().isPresent()) {
+                root = fill(root, rule.getSubObjectPath().get().getPathItems(), 0, subObjects,
+                        n -> fillSubObject(n, rule));
+            }
+            for (final IndexingRules ir: rule.getIndexingRules()) {
+                if (!rule.getSubObjectPath().isPresent() || ir.isFromParent()) {
+                    root = fillRule(root, ir);
+                }
+            }
+        }
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> ret = (Map<String, Object>) root;
+        return ret;
+    }
+
+    private Object fillSubObject(final Object node, final ObjectTypeParsingRules rule) {
+        Object subobj = node instanceof Map ? node : new LinkedHashMap<>();
+        for (final IndexingRules ir: rule.getIndexingRules()) {
+            if (!ir.isFromParent()) {
+                subobj = fillRule(subobj, ir);
+            }
+        }
+        if (rule.getSubObjectIDPath().isPresent()) {
+            subobj = fill(subobj, rule.getSubObjectIDPath().get().getPathItems(), 0, listSize,
+                    n -> "id_" + idCounter++);
+        }
+        return subobj;
+    }
+
+    private Object fillRule(final Object node, final IndexingRules rule) {
+        if (!rule.getPath().isPresent() || isGUIDTransform(rule)) {
+            return node;
+        }
+        return fill(node, rule.getPath().get().getPathItems(), 0, listSize,
+                n -> n == null ? value(rule) : n);
+    }
+
+    private boolean isGUIDTransform(final IndexingRules rule) {
+        return rule.getTransform().isPresent() &&
+                TransformType.guid.equals(rule.getTransform().get().getType());
+    }
+
+    /* Walks the path from the node, creating any missing structure, and replaces the value at
+     * the end of the path with the result of the terminal function. Wildcards expand to count
+     * items.
+     */
+    @SuppressWarnings("unchecked")
+    private Object fill(
+            final Object node,
+            final String[] path,
+            final int pos,
+            final int count,
+            final Function<Object, Object> terminal) {
+        if (pos == path.length) {
+            return terminal.apply(node);
+        }
+        final String item = path[pos];
+        if (item.equals("{size}")) {
+            if (node instanceof List || node instanceof Map) {
+                return node;
+            }
+            final List<Object> list = new ArrayList<>();
+            for (int i = 0; i < subObjects; i++) {
+                list.add(word());
+            }
+            return list;
+        }
+        if (item.equals("[*]") || item.matches("\\d+")) {
+            final List<Object> list = node instanceof List ?
+                    (List<Object>) node : new ArrayList<>();
+            final int size = item.equals("[*]") ? count : Integer.parseInt(item) + 1;
+            while (list.size() < size) {
+                list.add(null);
+            }
+            final int start = item.equals("[*]") ? 0 : size - 1;
+            for (int i = start; i < size; i++) {
+                list.set(i, fill(list.get(i), path, pos + 1, count, terminal));
+            }
+            return list;
+        }
+        final Map<String, Object> map = node instanceof Map ?
+                (Map<String, Object>) node : new LinkedHashMap<>();
+        if (item.equals("*")) {
+            for (int i = map.size(); i < count; i++) {
+                map.put("key" + i, null);
+            }
+            for (final Map.Entry<String, Object> e: map.entrySet()) {
+                e.setValue(fill(e.getValue(), path, pos + 1, count, terminal));
+            }
+        } else {
+            map.put(item, fill(map.get(item), path, pos + 1, count, terminal));
+        }
+        return map;
+    }
+
+    private Object value(final IndexingRules rule) {
+        if (rule.getTransform().isPresent()) {
+            switch (rule.getTransform().get().getType()) {
+            case location:
+                final List<Object> loc = new ArrayList<>();
+                loc.add("contig_" + random.nextInt(10));
+                loc.add(random.nextInt(1_000_000));
+                loc.add(random.nextBoolean() ? "+" : "-");
+                loc.add(1 + random.nextInt(3000));
+                final List<Object> locs = new ArrayList<>();
+                locs.add(loc);
+                return locs;
+            case values:
+                final Map<String, Object> values = new LinkedHashMap<>();
+                for (int i = 0; i < listSize; i++) {
+                    values.put("key" + i, rule.isFullText() ? text() : word());
+                }
+                return values;
+            case integer:
+                return String.valueOf(random.nextInt(1000));
+            default:
+                break;
+            }
+        }
+        final String keywordType = rule.getKeywordType().or("");
+        switch (keywordType) {
+        case "integer":
+            return random.nextInt(10_000);
+        case "double":
+            return random.nextDouble();
+        case "boolean":
+            return random.nextBoolean();
+        case "string":
+            return word();
+        default:
+            return text();
+        }
+    }
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private String text() {
+        final StringBuilder sb = new StringBuilder(word());
+        for (int i = 1; i < textWords; i++) {
+            sb.append(" ").append(word());
+        }
+        return sb.toString();
+    }
+}
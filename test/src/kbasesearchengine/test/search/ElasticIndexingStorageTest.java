@@ -23,6 +23,7 @@ import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import org.apache.commons.io.FileUtils;
 import org.apache.http.HttpHost;
@@ -57,9 +58,14 @@ import kbasesearchengine.search.ElasticIndexingStorage;
 import kbasesearchengine.search.MatchFilter;
 import kbasesearchengine.search.MatchFilter.Builder;
 import kbasesearchengine.search.MatchValue;
+import kbasesearchengine.search.MultiSearchResult;
 import kbasesearchengine.search.ObjectData;
+import kbasesearchengine.search.ObjectSearchQuery;
+import kbasesearchengine.search.Pagination;
 import kbasesearchengine.search.PostProcessing;
+import kbasesearchengine.search.SearchResultCache;
 import kbasesearchengine.search.SortingRule;
+import kbasesearchengine.search.TypeSearchQuery;
 import kbasesearchengine.search.FoundHits;
 import kbasesearchengine.search.IndexingConflictException;
 import kbasesearchengine.system.IndexingRules;
@@ -307,6 +313,172 @@ public class ElasticIndexingStorageTest {
         System.out.println("*** end testGenome***");
     }
 
+    @Test
+    public void continuationToken() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            indexObject("Genome", 0, "genome01", new GUID("WS:" + i + "/1/1"), "MyGenome.1");
+        }
+        final MatchFilter mf = MatchFilter.getBuilder().build();
+        final AccessFilter af = AccessFilter.create().withAdmin(true);
+        final List<SortingRule> sort = Arrays.asList(
+                SortingRule.getStandardPropertyBuilder("object_name").build());
+
+        final Set<GUID> found = new HashSet<>();
+        String token = null;
+        int pages = 0;
+        do {
+            final FoundHits hits = indexStorage.searchIds(ImmutableList.of("Genome"), mf, sort,
+                    af, new Pagination(0, 2, token));
+            assertThat("incorrect total", hits.total, is(5));
+            for (final GUID g: hits.guids) {
+                assertThat("duplicate guid " + g, found.add(g), is(true));
+            }
+            token = hits.continuationToken;
+            pages++;
+        } while (token != null);
+        assertThat("incorrect page count", pages, is(3));
+        assertThat("incorrect guid count", found.size(), is(5));
+    }
+
+    @Test
+    public void exportObjects() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            indexObject("Genome", 0, "genome01", new GUID("WS:" + i + "/1/1"), "MyGenome.1");
+        }
+        final PostProcessing pp = new PostProcessing();
+        pp.objectInfo = true;
+        final List<ObjectData> objs = new ArrayList<>();
+        indexStorage.exportObjects(ImmutableList.of("Genome"), MatchFilter.getBuilder().build(),
+                null, AccessFilter.create().withAdmin(true), pp, od -> objs.add(od));
+
+        assertThat("incorrect object count", objs.size(), is(5));
+        assertThat("incorrect guids", objs.stream().map(od -> od.getGUID())
+                .collect(Collectors.toSet()), is(set(new GUID("WS:1/1/1"), new GUID("WS:2/1/1"),
+                        new GUID("WS:3/1/1"), new GUID("WS:4/1/1"), new GUID("WS:5/1/1"))));
+        for (final ObjectData od: objs) {
+            assertThat("incorrect name", od.getObjectName(), is(Optional.of("MyGenome.1")));
+        }
+    }
+
+    @Test
+    public void getObjectsByIdsPostProcessing() throws Exception {
+        indexObject("Genome", 0, "genome01", new GUID("WS:1/1/1"), "MyGenome.1");
+        final Set<GUID> guids = set(new GUID("WS:1/1/1"));
+
+        final PostProcessing info = new PostProcessing();
+        info.objectInfo = true;
+        final ObjectData infoOnly = indexStorage.getObjectsByIds(guids, info).get(0);
+        assertThat("incorrect name", infoOnly.getObjectName(), is(Optional.of("MyGenome.1")));
+        assertThat("incorrect creator", infoOnly.getCreator(), is(Optional.of("creator")));
+        assertThat("incorrect data", infoOnly.getData(), is(Optional.absent()));
+        assertThat("incorrect parent data", infoOnly.getParentData(), is(Optional.absent()));
+        assertThat("incorrect keys", infoOnly.getKeyProperties(), is(Collections.emptyMap()));
+
+        final PostProcessing keys = new PostProcessing();
+        keys.objectKeys = true;
+        final ObjectData keysOnly = indexStorage.getObjectsByIds(guids, keys).get(0);
+        assertThat("incorrect guid", keysOnly.getGUID(), is(new GUID("WS:1/1/1")));
+        assertThat("incorrect name", keysOnly.getObjectName(), is(Optional.absent()));
+        assertThat("incorrect data", keysOnly.getData(), is(Optional.absent()));
+        assertThat("incorrect features", keysOnly.getKeyProperties().get("features"), is("3"));
+
+        final PostProcessing data = new PostProcessing();
+        data.objectData = true;
+        final ObjectData dataOnly = indexStorage.getObjectsByIds(guids, data).get(0);
+        assertThat("incorrect name", dataOnly.getObjectName(), is(Optional.absent()));
+        assertThat("missing data", dataOnly.getData().isPresent(), is(true));
+        assertThat("incorrect keys", dataOnly.getKeyProperties(), is(Collections.emptyMap()));
+    }
+
+    @Test
+    public void multiSearch() throws Exception {
+        indexObject("Genome", 0, "genome01", new GUID("WS:1/1/1"), "MyGenome.1");
+        indexObject("Genome", 0, "genome01", new GUID("WS:2/1/1"), "MyGenome.2");
+        final MatchFilter mf = MatchFilter.getBuilder().build();
+        final AccessFilter admin = AccessFilter.create().withAdmin(true);
+        // no access groups and no public data, so no search is required
+        final AccessFilter none = AccessFilter.create();
+
+        final MultiSearchResult res = indexStorage.multiSearch(
+                Arrays.asList(
+                        new ObjectSearchQuery(ImmutableList.of("Genome"), mf, null, admin,
+                                new Pagination(0, 1), null),
+                        new ObjectSearchQuery(ImmutableList.of("Genome"), mf, null, none,
+                                null, null)),
+                Arrays.asList(new TypeSearchQuery(mf, admin), new TypeSearchQuery(mf, none)));
+
+        final FoundHits hits = res.getObjectResults().get(0);
+        assertThat("incorrect total", hits.total, is(2));
+        assertThat("incorrect guid count", hits.guids.size(), is(1));
+        assertThat("incorrect guids", hits.guids, is(indexStorage.searchIds(
+                ImmutableList.of("Genome"), mf, null, admin, new Pagination(0, 1)).guids));
+        assertThat("incorrect total", res.getObjectResults().get(1).total, is(0));
+        assertThat("incorrect time", res.getObjectSearchTimes().get(1), is(0L));
+        assertThat("incorrect counts", res.getTypeResults(), is(Arrays.asList(
+                ImmutableMap.of("Genome", 2), Collections.emptyMap())));
+        assertThat("incorrect time", res.getTypeSearchTimes().get(1), is(0L));
+    }
+
+    @Test
+    public void continuationTokenFail() throws Exception {
+        indexObject("Genome", 0, "genome01", new GUID("WS:1/1/1"), "MyGenome.1");
+        final MatchFilter mf = MatchFilter.getBuilder().build();
+        final AccessFilter af = AccessFilter.create().withAdmin(true);
+        failSearchIds(mf, af, new Pagination(1, 2, "WzFd"), new IllegalArgumentException(
+                "Pagination start must be 0 when a continuation token is provided"));
+        failSearchIds(mf, af, new Pagination(0, 2, "WzFd"),
+                new IllegalArgumentException("Invalid continuation token: WzFd"));
+        failSearchIds(mf, af, new Pagination(0, 2, "%%%"),
+                new IllegalArgumentException("Invalid continuation token: %%%"));
+    }
+
+    private void failSearchIds(
+            final MatchFilter mf,
+            final AccessFilter af,
+            final Pagination pg,
+            final Exception expected) {
+        try {
+            indexStorage.searchIds(ImmutableList.of("Genome"), mf, null, af, pg);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+
+    @Test
+    public void searchResultCache() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(60, 100);
+        indexStorage.setSearchResultCache(cache);
+        try {
+            indexObject("Genome", 0, "genome01", new GUID("WS:1/1/1"), "MyGenome.1");
+            final long gen = indexStorage.getWriteGeneration(ImmutableList.of("Genome"));
+            final MatchFilter mf = MatchFilter.getBuilder().withLookupInKey(
+                    "features", new MatchValue(1, null)).build();
+            final AccessFilter af = AccessFilter.create().withAdmin(true);
+
+            assertThat("incorrect guids", indexStorage.searchIds(
+                    ImmutableList.of("Genome"), mf, null, af), is(set(new GUID("WS:1/1/1"))));
+            assertThat("incorrect guids", indexStorage.searchIds(
+                    ImmutableList.of("Genome"), mf, null, af), is(set(new GUID("WS:1/1/1"))));
+            assertThat("incorrect hits", cache.getStats().hitCount(), is(1L));
+
+            // writes to other types don't affect the generation
+            indexObject("Assembly", 0, "assembly01", new GUID("WS:1/2/1"), "MyAssembly.1");
+            assertThat("incorrect generation", indexStorage.getWriteGeneration(
+                    ImmutableList.of("Genome")), is(gen));
+
+            indexObject("Genome", 0, "genome01", new GUID("WS:2/1/1"), "MyGenome.1");
+            assertThat("generation not incremented", indexStorage.getWriteGeneration(
+                    ImmutableList.of("Genome")) > gen, is(true));
+            assertThat("incorrect guids", indexStorage.searchIds(
+                    ImmutableList.of("Genome"), mf, null, af),
+                    is(set(new GUID("WS:1/1/1"), new GUID("WS:2/1/1"))));
+            assertThat("incorrect hits", cache.getStats().hitCount(), is(1L));
+        } finally {
+            indexStorage.setSearchResultCache(null);
+        }
+    }
+
     @Test
     public void testPangenome() throws Exception {
         System.out.println("*** start testPangenome***");
@@ -0,0 +1,306 @@
+package kbasesearchengine.test.search;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+
+import kbasesearchengine.authorization.AccessGroupSet;
+import kbasesearchengine.common.GUID;
+import kbasesearchengine.search.AccessFilter;
+import kbasesearchengine.search.FoundHits;
+import kbasesearchengine.search.MatchFilter;
+import kbasesearchengine.search.MatchValue;
+import kbasesearchengine.search.Pagination;
+import kbasesearchengine.search.PostProcessing;
+import kbasesearchengine.search.SearchResultCache;
+import kbasesearchengine.search.SortingRule;
+import kbasesearchengine.test.common.TestCommon;
+
+public class SearchResultCacheTest {
+
+    private static final List<SortingRule> SORT = Arrays.asList(
+            SortingRule.getStandardPropertyBuilder("timestamp").build());
+
+    private static MatchFilter mf(final String text) {
+        return MatchFilter.getBuilder().withNullableFullTextInAll(text).build();
+    }
+
+    private static AccessFilter af(final Integer... accessGroupIDs) {
+        return AccessFilter.create().withAccessGroups(accessGroupIDs);
+    }
+
+    private static PostProcessing pp() {
+        final PostProcessing pp = new PostProcessing();
+        pp.objectInfo = true;
+        return pp;
+    }
+
+    private static FoundHits hits(final String... guids) throws Exception {
+        final FoundHits h = new FoundHits();
+        h.pagination = new Pagination(0, 50);
+        h.sortingRules = SORT;
+        h.guids = TestCommon.set();
+        for (final String g: guids) {
+            h.guids.add(new GUID(g));
+        }
+        h.total = guids.length;
+        return h;
+    }
+
+    @Test
+    public void putAndGetHits() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(10, 100);
+        final FoundHits h = hits("WS:1/2/3");
+        cache.putHits(Arrays.asList("Genome", "Assembly"), mf("foo"), SORT, af(1, 2),
+                new Pagination(0, 50), pp(), 3, h);
+
+        final FoundHits got = cache.getHits(Arrays.asList("Assembly", "Genome"), mf("foo"),
+                SORT, af(2, 1), new Pagination(0, 50), pp(), 3).get();
+        assertThat("incorrect guids", got.guids, is(h.guids));
+        assertThat("incorrect total", got.total, is(1));
+        assertThat("incorrect pagination", got.pagination, is(new Pagination(0, 50)));
+        assertThat("incorrect sort", got.sortingRules, is(SORT));
+        assertThat("result not copied", got, not(sameInstance(h)));
+
+        assertThat("incorrect hits", cache.getStats().hitCount(), is(1L));
+    }
+
+    @Test
+    public void keyCopiesParameters() throws Exception {
+        // mutating the parameters after caching the results must not change the cached key
+        final SearchResultCache cache = new SearchResultCache(10, 100);
+        final MatchFilter mf = MatchFilter.getBuilder()
+                .withLookupInKey("size", new MatchValue(1, 10))
+                .build();
+        final AccessFilter af = af(1, 2);
+        final Pagination pag = new Pagination(0, 50);
+        final PostProcessing pp = pp();
+        pp.objectDataIncludes = new ArrayList<>(Arrays.asList("/id"));
+        cache.putHits(Arrays.asList("Genome"), mf, SORT, af, pag, pp, 3, hits("WS:1/2/3"));
+        cache.putTypeCounts(mf, af, 3, ImmutableMap.of("Genome", 1));
+
+        mf.getLookupInKeys().get("size").maxInt = 20;
+        af.accessGroupIds.add(3);
+        af.withPublic(true);
+        pag.start = 50;
+        pp.objectData = true;
+        pp.objectDataIncludes.add("/name");
+
+        assertThat("incorrect mutated hits", cache.getHits(Arrays.asList("Genome"), mf, SORT,
+                af, pag, pp, 3), is(Optional.absent()));
+        assertThat("incorrect mutated counts", cache.getTypeCounts(mf, af, 3),
+                is(Optional.absent()));
+
+        final MatchFilter origmf = MatchFilter.getBuilder()
+                .withLookupInKey("size", new MatchValue(1, 10))
+                .build();
+        final PostProcessing origpp = pp();
+        origpp.objectDataIncludes = Arrays.asList("/id");
+        assertThat("incorrect hits", cache.getHits(Arrays.asList("Genome"), origmf, SORT,
+                af(1, 2), new Pagination(0, 50), origpp, 3).get().guids,
+                is(TestCommon.set(new GUID("WS:1/2/3"))));
+        assertThat("incorrect counts", cache.getTypeCounts(origmf, af(1, 2), 3),
+                is(Optional.of(ImmutableMap.of("Genome", 1))));
+    }
+
+    @Test
+    public void accessGroupSetView() throws Exception {
+        // the access groups are usually a view of the user's access group set
+        final SearchResultCache cache = new SearchResultCache(10, 100);
+        final AccessFilter view = AccessFilter.create()
+                .withAccessGroups(AccessGroupSet.of(Arrays.asList(2, 1)).asSet());
+        cache.putTypeCounts(mf("foo"), view, 1, ImmutableMap.of("Genome", 1));
+
+        assertThat("incorrect counts", cache.getTypeCounts(mf("foo"), af(1, 2), 1),
+                is(Optional.of(ImmutableMap.of("Genome", 1))));
+        assertThat("incorrect counts", cache.getTypeCounts(mf("foo"), AccessFilter.create()
+                .withAccessGroups(AccessGroupSet.of(Arrays.asList(1, 2)).asSet()), 1),
+                is(Optional.of(ImmutableMap.of("Genome", 1))));
+        assertThat("incorrect counts", cache.getTypeCounts(mf("foo"), AccessFilter.create()
+                .withAccessGroups(AccessGroupSet.of(Arrays.asList(1)).asSet()), 1),
+                is(Optional.absent()));
+        assertThat("incorrect counts", cache.getTypeCounts(mf("foo"), AccessFilter.create(), 1),
+                is(Optional.absent()));
+    }
+
+    @Test
+    public void hitsKeySeparation() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(10, 100);
+        final List<String> types = Arrays.asList("Genome");
+        cache.putHits(types, mf("foo"), SORT, af(1), new Pagination(0, 50), null, 1,
+                hits("WS:1/2/3"));
+
+        assertHitsAbsent(cache, Arrays.asList("Assembly"), mf("foo"), SORT, af(1),
+                new Pagination(0, 50), null);
+        assertHitsAbsent(cache, types, mf("bar"), SORT, af(1), new Pagination(0, 50), null);
+        assertHitsAbsent(cache, types, mf("foo"), Arrays.asList(
+                SortingRule.getStandardPropertyBuilder("guid").build()),
+                af(1), new Pagination(0, 50), null);
+        assertHitsAbsent(cache, types, mf("foo"), SORT, af(1, 2), new Pagination(0, 50), null);
+        assertHitsAbsent(cache, types, mf("foo"), SORT, af(1), new Pagination(50, 50), null);
+        assertHitsAbsent(cache, types, mf("foo"), SORT, af(1), new Pagination(0, 50, "t"), null);
+        assertHitsAbsent(cache, types, mf("foo"), SORT, af(1), new Pagination(0, 50), pp());
+        assertThat("incorrect result", cache.getHits(types, mf("foo"), SORT, af(1),
+                new Pagination(0, 50), null, 1).isPresent(), is(true));
+    }
+
+    private void assertHitsAbsent(
+            final SearchResultCache cache,
+            final List<String> types,
+            final MatchFilter mf,
+            final List<SortingRule> sort,
+            final AccessFilter af,
+            final Pagination pg,
+            final PostProcessing pp) {
+        assertThat("incorrect result", cache.getHits(types, mf, sort, af, pg, pp, 1),
+                is(Optional.absent()));
+    }
+
+    @Test
+    public void generationChangeInvalidates() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(10, 100);
+        final List<String> types = Collections.emptyList();
+        cache.putHits(types, mf("foo"), SORT, af(1), new Pagination(0, 50), null, 1,
+                hits("WS:1/2/3"));
+
+        assertThat("incorrect result", cache.getHits(types, mf("foo"), SORT, af(1),
+                new Pagination(0, 50), null, 2), is(Optional.absent()));
+        // the stale entry is discarded
+        assertThat("incorrect result", cache.getHits(types, mf("foo"), SORT, af(1),
+                new Pagination(0, 50), null, 1), is(Optional.absent()));
+        assertThat("incorrect hits", cache.getStats().hitCount(), is(1L));
+    }
+
+    @Test
+    public void typeCounts() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(10, 100);
+        final Map<String, Integer> counts = ImmutableMap.of("Genome", 3, "Assembly", 1);
+        cache.putTypeCounts(mf("foo"), af(1), 6, counts);
+
+        assertThat("incorrect counts", cache.getTypeCounts(mf("foo"), af(1), 6),
+                is(Optional.of(counts)));
+        assertThat("incorrect counts", cache.getTypeCounts(mf("bar"), af(1), 6),
+                is(Optional.absent()));
+        assertThat("incorrect counts", cache.getTypeCounts(mf("foo"), af(2), 6),
+                is(Optional.absent()));
+        assertThat("incorrect counts", cache.getTypeCounts(mf("foo"), af(1), 7),
+                is(Optional.absent()));
+        // type counts and hits don't collide
+        assertThat("incorrect result", cache.getHits(Collections.emptyList(), mf("foo"), SORT,
+                af(1), new Pagination(0, 50), null, 7), is(Optional.absent()));
+    }
+
+    @Test
+    public void expires() throws Exception {
+        final Ticker ticker = mock(Ticker.class);
+        final SearchResultCache cache = new SearchResultCache(10, 100, ticker);
+        final AtomicLong time = new AtomicLong();
+        when(ticker.read()).thenAnswer(inv -> time.get());
+
+        cache.putTypeCounts(mf("foo"), af(1), 1, ImmutableMap.of("Genome", 1));
+        time.set(9000000000L);
+        assertThat("incorrect result", cache.getTypeCounts(mf("foo"), af(1), 1).isPresent(),
+                is(true));
+        time.set(10000000001L);
+        assertThat("incorrect result", cache.getTypeCounts(mf("foo"), af(1), 1),
+                is(Optional.absent()));
+    }
+
+    @Test
+    public void expiresOnSize() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(10, 2);
+        cache.putTypeCounts(mf("a"), af(1), 1, ImmutableMap.of("Genome", 1));
+        cache.putTypeCounts(mf("b"), af(1), 1, ImmutableMap.of("Genome", 1));
+        cache.putTypeCounts(mf("c"), af(1), 1, ImmutableMap.of("Genome", 1));
+
+        assertThat("incorrect evictions", cache.getStats().evictionCount(), is(1L));
+    }
+
+    @Test
+    public void getAndPutFail() throws Exception {
+        final SearchResultCache cache = new SearchResultCache(10, 100);
+        final List<String> t = Collections.emptyList();
+        final Pagination pg = new Pagination(0, 50);
+
+        failPutHits(cache, null, mf("a"), af(1), hits(), new NullPointerException("objectTypes"));
+        failPutHits(cache, t, null, af(1), hits(), new NullPointerException("matchFilter"));
+        failPutHits(cache, t, mf("a"), null, hits(), new NullPointerException("accessFilter"));
+        failPutHits(cache, t, mf("a"), af(1), null, new NullPointerException("hits"));
+
+        failGet(() -> cache.getHits(null, mf("a"), SORT, af(1), pg, null, 1),
+                new NullPointerException("objectTypes"));
+        failGet(() -> cache.getHits(t, null, SORT, af(1), pg, null, 1),
+                new NullPointerException("matchFilter"));
+        failGet(() -> cache.getHits(t, mf("a"), SORT, null, pg, null, 1),
+                new NullPointerException("accessFilter"));
+        failGet(() -> cache.getTypeCounts(null, af(1), 1),
+                new NullPointerException("matchFilter"));
+        failGet(() -> cache.getTypeCounts(mf("a"), null, 1),
+                new NullPointerException("accessFilter"));
+        failGet(() -> cache.putTypeCounts(null, af(1), 1, Collections.emptyMap()),
+                new NullPointerException("matchFilter"));
+        failGet(() -> cache.putTypeCounts(mf("a"), null, 1, Collections.emptyMap()),
+                new NullPointerException("accessFilter"));
+        failGet(() -> cache.putTypeCounts(mf("a"), af(1), 1, null),
+                new NullPointerException("typeCounts"));
+    }
+
+    private void failPutHits(
+            final SearchResultCache cache,
+            final List<String> types,
+            final MatchFilter mf,
+            final AccessFilter af,
+            final FoundHits hits,
+            final Exception expected) {
+        failGet(() -> cache.putHits(types, mf, SORT, af, new Pagination(0, 50), null, 1, hits),
+                expected);
+    }
+
+    private void failGet(final Runnable call, final Exception expected) {
+        try {
+            call.run();
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+
+    @Test
+    public void constructFail() throws Exception {
+        final Ticker t = Ticker.systemTicker();
+        failConstruct(0, 10, t,
+                new IllegalArgumentException("cache lifetime must be at least one second"));
+        failConstruct(10, 0, t, new IllegalArgumentException("cache size must be at least one"));
+        failConstruct(10, 10, null, new NullPointerException("ticker"));
+    }
+
+    private void failConstruct(
+            final int lifetimeSec,
+            final int size,
+            final Ticker ticker,
+            final Exception expected) {
+        try {
+            new SearchResultCache(lifetimeSec, size, ticker);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+}
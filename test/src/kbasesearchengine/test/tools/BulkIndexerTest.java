@@ -0,0 +1,142 @@
+package kbasesearchengine.test.tools;
+
+import static kbasesearchengine.test.common.TestCommon.set;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import kbasesearchengine.events.StatusEvent;
+import kbasesearchengine.events.StatusEventProcessingState;
+import kbasesearchengine.events.StatusEventType;
+import kbasesearchengine.events.exceptions.ErrorType;
+import kbasesearchengine.events.exceptions.FatalIndexingException;
+import kbasesearchengine.events.exceptions.FatalRetriableIndexingException;
+import kbasesearchengine.events.exceptions.UnprocessableEventIndexingException;
+import kbasesearchengine.events.storage.StatusEventStorage;
+import kbasesearchengine.main.IndexerWorker;
+import kbasesearchengine.system.StorageObjectType;
+import kbasesearchengine.test.common.TestCommon;
+import kbasesearchengine.tools.BulkIndexer;
+import kbasesearchengine.tools.WorkspaceEventGenerator.EventGeneratorException;
+
+public class BulkIndexerTest {
+
+    private static StatusEvent event(final int objid) {
+        return StatusEvent.getBuilder(
+                new StorageObjectType("WS", "Foo", 1), Instant.ofEpochMilli(10000),
+                StatusEventType.NEW_VERSION)
+                .withNullableAccessGroupID(1)
+                .withNullableObjectID(objid + "")
+                .withNullableVersion(1)
+                .withNullableisPublic(false)
+                .build();
+    }
+
+    @Test
+    public void accept() throws Exception {
+        final IndexerWorker worker = mock(IndexerWorker.class);
+        final StatusEventStorage storage = mock(StatusEventStorage.class);
+        final BulkIndexer bi = new BulkIndexer(worker, storage, set("code"));
+
+        when(worker.processUnstoredEvent(event(1))).thenReturn(StatusEventProcessingState.INDX);
+        when(worker.processUnstoredEvent(event(2))).thenReturn(StatusEventProcessingState.UNINDX);
+        when(worker.processUnstoredEvent(event(3))).thenThrow(
+                new UnprocessableEventIndexingException(ErrorType.OTHER, "foo"));
+        when(worker.processUnstoredEvent(event(4))).thenReturn(StatusEventProcessingState.INDX);
+
+        bi.accept(Arrays.asList(event(1), event(2), event(3), event(4)));
+
+        verify(storage).storeAll(Arrays.asList(event(3)), StatusEventProcessingState.UNPROC,
+                set("code"), "BULKIDX");
+        assertThat("incorrect indexed", bi.getIndexedCount(), is(2L));
+        assertThat("incorrect skipped", bi.getSkippedCount(), is(1L));
+        assertThat("incorrect failed", bi.getFailedCount(), is(1L));
+    }
+
+    @Test
+    public void acceptNoFailures() throws Exception {
+        final IndexerWorker worker = mock(IndexerWorker.class);
+        final StatusEventStorage storage = mock(StatusEventStorage.class);
+        final BulkIndexer bi = new BulkIndexer(worker, storage, set());
+
+        when(worker.processUnstoredEvent(event(1))).thenReturn(StatusEventProcessingState.INDX);
+
+        bi.accept(Arrays.asList(event(1)));
+
+        verifyZeroInteractions(storage);
+        assertThat("incorrect indexed", bi.getIndexedCount(), is(1L));
+        assertThat("incorrect failed", bi.getFailedCount(), is(0L));
+    }
+
+    @Test
+    public void acceptFailFatal() throws Exception {
+        final IndexerWorker worker = mock(IndexerWorker.class);
+        final StatusEventStorage storage = mock(StatusEventStorage.class);
+        final BulkIndexer bi = new BulkIndexer(worker, storage, set());
+
+        when(worker.processUnstoredEvent(event(1))).thenThrow(
+                new FatalIndexingException(ErrorType.OTHER, "ES is down"));
+
+        failAccept(bi, new EventGeneratorException("Fatal indexing error: ES is down"));
+        verifyZeroInteractions(storage);
+    }
+
+    @Test
+    public void acceptFailStorage() throws Exception {
+        final IndexerWorker worker = mock(IndexerWorker.class);
+        final StatusEventStorage storage = mock(StatusEventStorage.class);
+        final BulkIndexer bi = new BulkIndexer(worker, storage, set());
+
+        when(worker.processUnstoredEvent(event(1))).thenThrow(
+                new UnprocessableEventIndexingException(ErrorType.OTHER, "foo"));
+        when(storage.storeAll(Arrays.asList(event(1)), StatusEventProcessingState.UNPROC,
+                set(), "BULKIDX"))
+                .thenThrow(new FatalRetriableIndexingException(ErrorType.OTHER, "mongo is down"));
+
+        failAccept(bi, new EventGeneratorException("mongo is down"));
+        assertThat("incorrect failed", bi.getFailedCount(), is(0L));
+    }
+
+    private void failAccept(final BulkIndexer bi, final Exception expected) {
+        try {
+            bi.accept(Arrays.asList(event(1)));
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+
+    @Test
+    public void constructFail() throws Exception {
+        final IndexerWorker w = mock(IndexerWorker.class);
+        final StatusEventStorage s = mock(StatusEventStorage.class);
+        final Collection<String> c = Collections.emptySet();
+        failConstruct(null, s, c, new NullPointerException("worker"));
+        failConstruct(w, null, c, new NullPointerException("storage"));
+        failConstruct(w, s, null, new NullPointerException("workerCodes"));
+    }
+
+    private void failConstruct(
+            final IndexerWorker worker,
+            final StatusEventStorage storage,
+            final Collection<String> workerCodes,
+            final Exception expected) {
+        try {
+            new BulkIndexer(worker, storage, workerCodes);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+}
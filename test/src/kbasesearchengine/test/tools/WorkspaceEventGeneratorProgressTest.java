@@ -0,0 +1,322 @@
+package kbasesearchengine.test.tools;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+
+import kbasesearchengine.test.common.TestCommon;
+import kbasesearchengine.tools.WorkspaceEventGenerator.EventGeneratorException;
+import kbasesearchengine.tools.WorkspaceEventGenerator.ObjectVersion;
+import kbasesearchengine.tools.WorkspaceEventGenerator.Progress;
+
+public class WorkspaceEventGeneratorProgressTest {
+
+    private static Path tempDir;
+    private Path checkpoint;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        tempDir = Paths.get(TestCommon.getTempDir()).resolve("WorkspaceEventGeneratorProgressTest")
+                .toAbsolutePath();
+        FileUtils.deleteDirectory(tempDir.toFile());
+        Files.createDirectories(tempDir);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (tempDir != null && TestCommon.getDeleteTempFiles()) {
+            FileUtils.deleteDirectory(tempDir.toFile());
+        }
+    }
+
+    @Before
+    public void init() throws Exception {
+        checkpoint = tempDir.resolve("checkpoint");
+        Files.deleteIfExists(checkpoint);
+    }
+
+    private List<String> read() throws Exception {
+        return Files.readAllLines(checkpoint, StandardCharsets.UTF_8);
+    }
+
+    private void write(final String... lines) throws Exception {
+        Files.write(checkpoint, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void noFile() throws Exception {
+        final Progress p = new Progress(null);
+        assertThat("incorrect checkpoint", p.getCheckpoint(), is(0));
+        p.start(1);
+        p.stored(1, new ObjectVersion(3, 2));
+        assertThat("incorrect resume", p.getResumePoint(1),
+                is(Optional.of(new ObjectVersion(3, 2))));
+        p.finish(1);
+        assertThat("incorrect checkpoint", p.getCheckpoint(), is(1));
+        assertThat("incorrect resume", p.getResumePoint(1), is(Optional.absent()));
+    }
+
+    @Test
+    public void missingFile() throws Exception {
+        final Progress p = new Progress(checkpoint);
+        assertThat("incorrect checkpoint", p.getCheckpoint(), is(0));
+        assertThat("file created", Files.exists(checkpoint), is(false));
+    }
+
+    @Test
+    public void readEmptyFile() throws Exception {
+        write();
+        assertThat("incorrect checkpoint", new Progress(checkpoint).getCheckpoint(), is(0));
+    }
+
+    @Test
+    public void readCheckpointOnly() throws Exception {
+        // the format written before partial workspaces were recorded
+        write("42");
+        final Progress p = new Progress(checkpoint);
+        assertThat("incorrect checkpoint", p.getCheckpoint(), is(42));
+        assertThat("incorrect resume", p.getResumePoint(43), is(Optional.absent()));
+    }
+
+    @Test
+    public void readPartialWorkspaces() throws Exception {
+        write("42", "44 7 3", "", "46 1 1");
+        final Progress p = new Progress(checkpoint);
+        assertThat("incorrect checkpoint", p.getCheckpoint(), is(42));
+        assertThat("incorrect resume", p.getResumePoint(44),
+                is(Optional.of(new ObjectVersion(7, 3))));
+        assertThat("incorrect resume", p.getResumePoint(46),
+                is(Optional.of(new ObjectVersion(1, 1))));
+        assertThat("incorrect resume", p.getResumePoint(45), is(Optional.absent()));
+    }
+
+    @Test
+    public void readFail() throws Exception {
+        failRead(new EventGeneratorException(String.format(
+                "Couldn't parse checkpoint file %s: For input string: \"foo\"", checkpoint)),
+                "foo");
+        failRead(new EventGeneratorException(String.format(
+                "Couldn't parse checkpoint file %s: Expected 3 space separated integers: 44 7",
+                checkpoint)),
+                "42", "44 7");
+        failRead(new EventGeneratorException(String.format(
+                "Couldn't parse checkpoint file %s: For input string: \"x\"", checkpoint)),
+                "42", "44 7 x");
+        failRead(new EventGeneratorException(String.format(
+                "Couldn't parse checkpoint file %s: Expected 3 space separated integers: 44 don",
+                checkpoint)),
+                "42", "44 don");
+        failRead(new EventGeneratorException(String.format(
+                "Couldn't parse checkpoint file %s: For input string: \"x\"", checkpoint)),
+                "42", "x done");
+
+        Files.deleteIfExists(checkpoint);
+        Files.createDirectory(checkpoint);
+        try {
+            new Progress(checkpoint);
+            fail("expected exception");
+        } catch (EventGeneratorException got) {
+            assertThat("incorrect exception", got.getMessage().startsWith(String.format(
+                    "Couldn't read checkpoint file %s: ", checkpoint)), is(true));
+        } finally {
+            Files.delete(checkpoint);
+        }
+    }
+
+    private void failRead(final Exception expected, final String... lines) throws Exception {
+        write(lines);
+        try {
+            new Progress(checkpoint);
+            fail("expected exception");
+        } catch (EventGeneratorException got) {
+            TestCommon.assertExceptionCorrect(got, expected);
+        }
+    }
+
+    @Test
+    public void checkpointHeldByLowestInProgress() throws Exception {
+        final Progress p = new Progress(checkpoint);
+        p.start(1);
+        p.start(2);
+        p.skip(3);
+        p.start(4);
+        assertThat("file written", Files.exists(checkpoint), is(false));
+
+        p.finish(2);
+        // 1 is still in progress
+        assertThat("incorrect checkpoint", p.getCheckpoint(), is(0));
+        assertThat("incorrect file", read(), is(Arrays.asList("0", "2 done")));
+        assertThat("incorrect done", p.isDone(2), is(true));
+
+        p.finish(1);
+        assertThat("incorrect checkpoint", p.getCheckpoint(), is(3));
+        assertThat("incorrect file", read(), is(Arrays.asList("3")));
+        assertThat("incorrect done", p.isDone(2), is(false));
+
+        p.finish(4);
+        assertThat("incorrect checkpoint", p.getCheckpoint(), is(4));
+        assertThat("incorrect file", read(), is(Arrays.asList("4")));
+
+        p.skip(5);
+        p.complete();
+        assertThat("incorrect checkpoint", p.getCheckpoint(), is(5));
+        assertThat("incorrect file", read(), is(Arrays.asList("5")));
+    }
+
+    @Test
+    public void failedWorkspaceHoldsCheckpoint() throws Exception {
+        final Progress p = new Progress(checkpoint);
+        p.start(1);
+        p.start(2);
+        p.stored(1, new ObjectVersion(10, 2));
+        p.finish(2);
+        // 1 failed and is never finished
+        p.complete();
+        assertThat("incorrect checkpoint", p.getCheckpoint(), is(0));
+        assertThat("incorrect file", read(), is(Arrays.asList("0", "1 10 2", "2 done")));
+    }
+
+    @Test
+    public void resumeAfterFailedWorkspace() throws Exception {
+        final Progress p = new Progress(checkpoint);
+        p.start(1);
+        p.start(2);
+        p.start(3);
+        p.stored(1, new ObjectVersion(10, 2));
+        // 1 fails, then the later workspaces complete
+        p.finish(3);
+        p.finish(2);
+        p.start(4);
+        p.finish(4);
+        p.complete();
+        assertThat("incorrect checkpoint", p.getCheckpoint(), is(0));
+        assertThat("incorrect file", read(),
+                is(Arrays.asList("0", "1 10 2", "2 done", "3 done", "4 done")));
+
+        // a new run resumes the failed workspace and skips the completed ones
+        final Progress resume = new Progress(checkpoint);
+        assertThat("incorrect checkpoint", resume.getCheckpoint(), is(0));
+        assertThat("incorrect resume", resume.getResumePoint(1),
+                is(Optional.of(new ObjectVersion(10, 2))));
+        assertThat("incorrect done", resume.isDone(1), is(false));
+        for (final int ws: Arrays.asList(2, 3, 4)) {
+            assertThat("incorrect done", resume.isDone(ws), is(true));
+            assertThat("incorrect resume", resume.getResumePoint(ws), is(Optional.absent()));
+        }
+        resume.start(1);
+        resume.skip(2);
+        resume.skip(3);
+        // the completed workspaces are kept until the checkpoint passes them
+        assertThat("incorrect file", read(),
+                is(Arrays.asList("0", "1 10 2", "2 done", "3 done", "4 done")));
+        resume.finish(1);
+        assertThat("incorrect checkpoint", resume.getCheckpoint(), is(3));
+        assertThat("incorrect file", read(), is(Arrays.asList("3", "4 done")));
+        resume.skip(4);
+        resume.start(5);
+        resume.finish(5);
+        resume.complete();
+        assertThat("incorrect checkpoint", resume.getCheckpoint(), is(5));
+        assertThat("incorrect file", read(), is(Arrays.asList("5")));
+        assertThat("incorrect done", resume.isDone(4), is(false));
+    }
+
+    @Test
+    public void readDoneWorkspaces() throws Exception {
+        // done workspaces at or below the checkpoint are ignored
+        write("42", "40 done", "42 done", "44 7 3", "45 done");
+        final Progress p = new Progress(checkpoint);
+        assertThat("incorrect checkpoint", p.getCheckpoint(), is(42));
+        assertThat("incorrect done", p.isDone(40), is(false));
+        assertThat("incorrect done", p.isDone(42), is(false));
+        assertThat("incorrect done", p.isDone(44), is(false));
+        assertThat("incorrect done", p.isDone(45), is(true));
+    }
+
+    @Test
+    public void writePartialWorkspaces() throws Exception {
+        write("10");
+        final Progress p = new Progress(checkpoint);
+        p.start(11);
+        p.start(12);
+        p.stored(12, new ObjectVersion(5, 1));
+        assertThat("incorrect file", read(), is(Arrays.asList("10", "12 5 1")));
+        p.stored(11, new ObjectVersion(3, 7));
+        p.stored(12, new ObjectVersion(9, 4));
+        assertThat("incorrect file", read(), is(Arrays.asList("10", "11 3 7", "12 9 4")));
+
+        p.finish(12);
+        assertThat("incorrect file", read(), is(Arrays.asList("10", "11 3 7", "12 done")));
+        p.finish(11);
+        assertThat("incorrect file", read(), is(Arrays.asList("12")));
+        assertThat("temp file left", Files.exists(tempDir.resolve("checkpoint.tmp")),
+                is(false));
+
+        // a new run reads the progress
+        assertThat("incorrect checkpoint", new Progress(checkpoint).getCheckpoint(), is(12));
+    }
+
+    @Test
+    public void resumePartialWorkspace() throws Exception {
+        write("10", "12 5 1");
+        final Progress p = new Progress(checkpoint);
+        assertThat("incorrect resume", p.getResumePoint(12),
+                is(Optional.of(new ObjectVersion(5, 1))));
+        p.skip(11);
+        // the partial workspace isn't forgotten until it's finished
+        assertThat("incorrect file", read(), is(Arrays.asList("11", "12 5 1")));
+        p.start(12);
+        p.stored(12, new ObjectVersion(8, 1));
+        assertThat("incorrect file", read(), is(Arrays.asList("11", "12 8 1")));
+        p.finish(12);
+        assertThat("incorrect file", read(), is(Arrays.asList("12")));
+    }
+
+    @Test
+    public void skipPartialWorkspace() throws Exception {
+        // e.g. the workspace was deleted since the last run
+        write("10", "11 5 1");
+        final Progress p = new Progress(checkpoint);
+        p.skip(11);
+        assertThat("incorrect file", read(), is(Arrays.asList("11")));
+        assertThat("incorrect resume", p.getResumePoint(11), is(Optional.absent()));
+    }
+
+    @Test
+    public void storedFail() throws Exception {
+        try {
+            new Progress(null).stored(1, null);
+            fail("expected exception");
+        } catch (Exception got) {
+            TestCommon.assertExceptionCorrect(got, new NullPointerException("lastStored"));
+        }
+    }
+
+    @Test
+    public void objectVersion() throws Exception {
+        final ObjectVersion ov = new ObjectVersion(3, 4);
+        assertThat("incorrect object id", ov.getObjectID(), is(3));
+        assertThat("incorrect version", ov.getVersion(), is(4));
+        assertThat("incorrect equals", ov, is(new ObjectVersion(3, 4)));
+        assertThat("incorrect equals", ov.equals(new ObjectVersion(3, 5)), is(false));
+        assertThat("incorrect equals", ov.equals(new ObjectVersion(4, 4)), is(false));
+        assertThat("incorrect hash", Collections.singleton(ov).contains(
+                new ObjectVersion(3, 4)), is(true));
+    }
+}
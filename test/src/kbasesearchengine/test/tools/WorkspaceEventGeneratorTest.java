@@ -0,0 +1,191 @@
+package kbasesearchengine.test.tools;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.bson.Document;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoDatabase;
+
+import kbasesearchengine.events.StatusEvent;
+import kbasesearchengine.test.common.TestCommon;
+import kbasesearchengine.tools.WorkspaceEventGenerator;
+import kbasesearchengine.tools.WorkspaceEventGenerator.EventGeneratorException;
+import kbasesearchengine.tools.WorkspaceEventGenerator.EventSink;
+import us.kbase.common.test.controllers.mongo.MongoController;
+
+public class WorkspaceEventGeneratorTest {
+
+    private static MongoController mongo;
+    private static MongoDatabase db;
+    private static MongoClient mc;
+    private static Path tempDir;
+    private Path checkpoint;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        TestCommon.stfuLoggers();
+        mongo = new MongoController(
+                TestCommon.getMongoExe(),
+                Paths.get(TestCommon.getTempDir()),
+                TestCommon.useWiredTigerEngine());
+        mc = new MongoClient("localhost:" + mongo.getServerPort());
+        db = mc.getDatabase("test_wseventgen");
+        tempDir = Paths.get(TestCommon.getTempDir()).resolve("WorkspaceEventGeneratorTest")
+                .toAbsolutePath();
+        FileUtils.deleteDirectory(tempDir.toFile());
+        Files.createDirectories(tempDir);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (mc != null) {
+            mc.close();
+        }
+        if (mongo != null) {
+            mongo.destroy(TestCommon.getDeleteTempFiles());
+        }
+        if (tempDir != null && TestCommon.getDeleteTempFiles()) {
+            FileUtils.deleteDirectory(tempDir.toFile());
+        }
+    }
+
+    @Before
+    public void init() throws Exception {
+        TestCommon.destroyDB(db);
+        checkpoint = tempDir.resolve("checkpoint");
+        Files.deleteIfExists(checkpoint);
+        db.getCollection("config").insertOne(new Document("schemaver", 1)
+                .append("inupdate", false));
+        db.getCollection("workspaces").insertOne(new Document("ws", 1L)
+                .append("name", "myws")
+                .append("del", false)
+                .append("meta", Collections.emptyList()));
+        for (final int objid: Arrays.asList(1, 2, 3)) {
+            db.getCollection("workspaceObjects").insertOne(new Document("ws", 1L)
+                    .append("id", (long) objid)
+                    .append("del", false));
+        }
+        // object 1 has 2 versions, object 2 has 1, and object 3 has 3
+        saveVersion(1, 1);
+        saveVersion(1, 2);
+        saveVersion(2, 1);
+        saveVersion(3, 1);
+        saveVersion(3, 2);
+        saveVersion(3, 3);
+    }
+
+    private void saveVersion(final int objid, final int ver) {
+        db.getCollection("workspaceObjVersions").insertOne(new Document("ws", 1L)
+                .append("id", (long) objid)
+                .append("ver", ver)
+                .append("type", "Foo.Bar-1.0")
+                .append("savedate", new Date(10000L * objid + ver))
+                .append("meta", Collections.emptyList()));
+    }
+
+    private WorkspaceEventGenerator.Builder builder(final EventSink sink) {
+        return new WorkspaceEventGenerator.Builder(
+                sink, db, new PrintStream(new ByteArrayOutputStream()))
+                .withBatchSize(2)
+                .withNullableCheckpointFile(checkpoint);
+    }
+
+    private static List<String> toObjVers(final List<StatusEvent> events) {
+        return events.stream().map(e -> e.getAccessGroupId().get() + "/" +
+                e.getAccessGroupObjectId().get() + "/" + e.getVersion().get())
+                .collect(Collectors.toList());
+    }
+
+    // stores the first batch of events and then fails
+    private List<StatusEvent> runAndFail(final BuilderFactory builder)
+            throws Exception {
+        final List<StatusEvent> stored = new ArrayList<>();
+        final EventSink failingSink = events -> {
+            if (!stored.isEmpty()) {
+                throw new EventGeneratorException("sink failed");
+            }
+            stored.addAll(events);
+        };
+        try {
+            builder.apply(failingSink).build().generateEvents();
+            fail("expected exception");
+        } catch (EventGeneratorException got) {
+            TestCommon.assertExceptionCorrect(got, new EventGeneratorException("sink failed"));
+        }
+        return stored;
+    }
+
+    private interface BuilderFactory {
+        WorkspaceEventGenerator.Builder apply(EventSink sink);
+    }
+
+    private List<StatusEvent> run(final BuilderFactory builder) throws Exception {
+        final List<StatusEvent> stored = new ArrayList<>();
+        builder.apply(events -> stored.addAll(events)).build().generateEvents();
+        return stored;
+    }
+
+    @Test
+    public void resumePartialWorkspace() throws Exception {
+        final List<StatusEvent> first = runAndFail(s -> builder(s));
+        assertThat("incorrect first run", toObjVers(first), is(Arrays.asList("1/1/2", "1/1/1")));
+        assertThat("incorrect checkpoint", Files.readAllLines(checkpoint,
+                StandardCharsets.UTF_8), is(Arrays.asList("0", "1 1 1")));
+
+        final List<StatusEvent> second = run(s -> builder(s));
+        // no event is stored twice
+        assertThat("incorrect second run", toObjVers(second), is(Arrays.asList(
+                "1/2/1", "1/3/3", "1/3/2", "1/3/1")));
+        assertThat("incorrect checkpoint", Files.readAllLines(checkpoint,
+                StandardCharsets.UTF_8), is(Arrays.asList("1")));
+
+        assertThat("incorrect third run", run(s -> builder(s)), is(Collections.emptyList()));
+    }
+
+    @Test
+    public void resumePartialWorkspaceMidObject() throws Exception {
+        final List<StatusEvent> first = runAndFail(s -> builder(s).withBatchSize(4));
+        assertThat("incorrect first run", toObjVers(first), is(Arrays.asList(
+                "1/1/2", "1/1/1", "1/2/1", "1/3/3")));
+        assertThat("incorrect checkpoint", Files.readAllLines(checkpoint,
+                StandardCharsets.UTF_8), is(Arrays.asList("0", "1 3 3")));
+
+        final List<StatusEvent> second = run(s -> builder(s));
+        assertThat("incorrect second run", toObjVers(second), is(Arrays.asList(
+                "1/3/2", "1/3/1")));
+    }
+
+    @Test
+    public void resumePartialWorkspaceLastVersionOnly() throws Exception {
+        final List<StatusEvent> first = runAndFail(
+                s -> builder(s).withLastVersionOnly(true).withBatchSize(1));
+        assertThat("incorrect first run", toObjVers(first), is(Arrays.asList("1/1/2")));
+        assertThat("incorrect checkpoint", Files.readAllLines(checkpoint,
+                StandardCharsets.UTF_8), is(Arrays.asList("0", "1 1 2")));
+
+        final List<StatusEvent> second = run(s -> builder(s).withLastVersionOnly(true));
+        assertThat("incorrect second run", toObjVers(second), is(Arrays.asList(
+                "1/2/1", "1/3/3")));
+    }
+}